@@ -0,0 +1,81 @@
+package com.example.scraper.cli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Training run for the class-data-sharing archive built by the {@code appcds} Maven profile.
+ * 
+ * <p>Serves a directory of HTML fixtures on a loopback port and scrapes it through the CLI once
+ * per output format, so the classes a typical short run loads (argument parsing, HTTP client,
+ * robots.txt rules, jsoup, Jackson CSV and JSON writers) are recorded in the archive.
+ * 
+ * <p>Usage: {@code CdsTraining <fixtures dir> <output dir>}
+ */
+public final class CdsTraining {
+    
+    private CdsTraining() {
+    }
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CdsTraining <fixtures dir> <output dir>");
+            System.exit(1);
+        }
+        Path fixtures = Paths.get(args[0]);
+        Path output = Files.createDirectories(Paths.get(args[1]));
+        
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> serve(exchange, fixtures));
+        server.start();
+        try {
+            String base = "http://localhost:" + server.getAddress().getPort() + "/";
+            
+            // A single page with robots.txt checks, written as CSV
+            ScraperCli.main(new String[] {
+                "--url", base + "ecommerce-site.html",
+                "--format", "csv",
+                "--output", output.resolve("training.csv").toString()
+            });
+            
+            // Every fixture and its outlinks, written as JSONL
+            ScraperCli.main(new String[] {
+                "--url", base + "ecommerce-site.html",
+                "--url", base + "news-site.html",
+                "--url", base + "structured-data-site.html",
+                "--follow-links", "1",
+                "--max-pages", "10",
+                "--delay-ms", "0",
+                "--no-respect-robots",
+                "--format", "jsonl",
+                "--output", output.resolve("training.jsonl").toString()
+            });
+        } finally {
+            server.stop(0);
+        }
+    }
+    
+    private static void serve(HttpExchange exchange, Path fixtures) throws IOException {
+        Path file = fixtures.resolve(exchange.getRequestURI().getPath().substring(1)).normalize();
+        if (!file.startsWith(fixtures) || !Files.isRegularFile(file)) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        byte[] body = Files.readAllBytes(file);
+        exchange.getResponseHeaders().set("Content-Type",
+                file.toString().endsWith(".txt") ? "text/plain" : "text/html; charset=UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.scraper.cli;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.example.scraper.core.http.HostPolicy;
+import com.example.scraper.model.DataSelectors;
+import com.example.scraper.model.HostProfile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves the fetch policy and selector sets of each host from per-host profiles.
+ * 
+ * <p>A profile applies to its host and every subdomain of it, the most specific profile winning.
+ * Profile settings left unset fall back to the defaults. Each host is resolved the first time one
+ * of its URLs is seen, and the result is reused for every later URL of the host, so the same
+ * selector objects (and with them the parser's compiled plans) are used across its pages.
+ */
+public class HostProfiles {
+    
+    private static final Logger logger = LoggerFactory.getLogger(HostProfiles.class);
+    
+    private final HostPolicy defaultPolicy;
+    private final Map<String, DataSelectors> defaultSchemas;
+    private final Map<String, HostProfile> profiles = new HashMap<>();
+    private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+    private final Host defaultHost;
+    
+    /**
+     * Creates a resolver.
+     * 
+     * @param defaultPolicy Fetch policy of hosts without a profile
+     * @param defaultSchemas Selector sets by schema name for hosts without a profile
+     * @param profiles Profiles by host name
+     */
+    public HostProfiles(HostPolicy defaultPolicy, Map<String, DataSelectors> defaultSchemas,
+                        Map<String, HostProfile> profiles) {
+        this.defaultPolicy = defaultPolicy;
+        this.defaultSchemas = Collections.unmodifiableMap(new LinkedHashMap<>(defaultSchemas));
+        for (Map.Entry<String, HostProfile> profile : profiles.entrySet()) {
+            this.profiles.put(profile.getKey().toLowerCase(Locale.ROOT), profile.getValue());
+        }
+        this.defaultHost = new Host("*", defaultPolicy, this.defaultSchemas);
+        
+        if (!defaultSchemas.containsKey(WebScraper.DEFAULT_SCHEMA)
+                && profiles.values().stream().anyMatch(profile -> profile.getSelectors() != null)) {
+            logger.warn("Host profile selectors replace the '{}' schema, which is not in use; they are ignored",
+                    WebScraper.DEFAULT_SCHEMA);
+        }
+    }
+    
+    /**
+     * Gets the resolved settings of a URL's host.
+     * 
+     * @param url Absolute URL
+     * @return Host settings; the defaults if the URL has no host or no profile applies
+     */
+    public Host forUrl(String url) {
+        String host;
+        try {
+            host = URI.create(url).getHost();
+        } catch (IllegalArgumentException e) {
+            return defaultHost;
+        }
+        if (host == null || profiles.isEmpty()) {
+            return defaultHost;
+        }
+        return hosts.computeIfAbsent(host.toLowerCase(Locale.ROOT), this::resolve);
+    }
+    
+    /**
+     * Gets the selector sets of hosts without a profile.
+     * 
+     * @return Selector sets by schema name
+     */
+    public Map<String, DataSelectors> getDefaultSchemas() {
+        return defaultSchemas;
+    }
+    
+    private Host resolve(String host) {
+        HostProfile profile = findProfile(host);
+        if (profile == null) {
+            return defaultHost;
+        }
+        
+        HostPolicy policy = new HostPolicy(
+                profile.getRateLimitMs() != null ? profile.getRateLimitMs() : defaultPolicy.getRateLimitMs(),
+                profile.getMaxConcurrency() != null ? profile.getMaxConcurrency() : defaultPolicy.getMaxConcurrency(),
+                profile.getTimeoutMs() != null ? Duration.ofMillis(profile.getTimeoutMs()) : defaultPolicy.getTimeout(),
+                profile.getMaxBodyBytes() != null ? profile.getMaxBodyBytes() : defaultPolicy.getMaxBodyBytes());
+        
+        Map<String, DataSelectors> schemas = new LinkedHashMap<>();
+        for (Map.Entry<String, DataSelectors> schema : defaultSchemas.entrySet()) {
+            DataSelectors selectors = schema.getValue();
+            if (profile.getSelectors() != null && schema.getKey().equals(WebScraper.DEFAULT_SCHEMA)) {
+                // Replace the selectors but keep how the default schema is parsed
+                DataSelectors replaced = selectors;
+                selectors = new DataSelectors(profile.getSelectors());
+                selectors.setParseMode(replaced.getParseMode());
+                selectors.setTemplateLearningPages(replaced.getTemplateLearningPages());
+            }
+            if (profile.getParseMode() != null && profile.getParseMode() != selectors.getParseMode()) {
+                selectors = new DataSelectors(selectors);
+                selectors.setParseMode(profile.getParseMode());
+            }
+            schemas.put(schema.getKey(), selectors);
+        }
+        
+        Host resolved = new Host(host, policy, Collections.unmodifiableMap(schemas));
+        logger.debug("Resolved host profile {}", resolved);
+        return resolved;
+    }
+    
+    /**
+     * Finds the profile of a host or of its closest parent domain.
+     * 
+     * @param host Lower-cased host name
+     * @return HostProfile, or null if none applies
+     */
+    private HostProfile findProfile(String host) {
+        String candidate = host;
+        while (true) {
+            HostProfile profile = profiles.get(candidate);
+            if (profile != null) {
+                return profile;
+            }
+            int dot = candidate.indexOf('.');
+            if (dot < 0) {
+                return null;
+            }
+            candidate = candidate.substring(dot + 1);
+        }
+    }
+    
+    /**
+     * Settings resolved for one host.
+     */
+    public static final class Host {
+        
+        private final String name;
+        private final HostPolicy policy;
+        private final Map<String, DataSelectors> schemas;
+        
+        Host(String name, HostPolicy policy, Map<String, DataSelectors> schemas) {
+            this.name = name;
+            this.policy = policy;
+            this.schemas = schemas;
+        }
+        
+        /**
+         * Gets the host name, or {@code *} for the defaults.
+         * 
+         * @return host name
+         */
+        public String getName() {
+            return name;
+        }
+        
+        /**
+         * Gets the fetch policy of the host.
+         * 
+         * @return HostPolicy
+         */
+        public HostPolicy getPolicy() {
+            return policy;
+        }
+        
+        /**
+         * Gets the selector sets used on the host.
+         * 
+         * @return Selector sets by schema name
+         */
+        public Map<String, DataSelectors> getSchemas() {
+            return schemas;
+        }
+        
+        @Override
+        public String toString() {
+            return name + policy;
+        }
+    }
+}
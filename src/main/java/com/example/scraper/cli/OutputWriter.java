@@ -1,31 +1,20 @@
 package com.example.scraper.cli;
 
-import com.example.scraper.core.persistence.CSVWriter;
-import com.example.scraper.core.persistence.JSONLWriter;
+import com.example.scraper.core.persistence.RecordSink;
 import com.example.scraper.model.ScrapedData;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.util.List;
 
 /**
- * Wrapper class for output writers to provide a unified interface.
+ * Wrapper around the record sink of one schema, which may be a single file, several formats
+ * written at once or a set of shards.
  */
 public class OutputWriter {
     
-    private static final Logger logger = LoggerFactory.getLogger(OutputWriter.class);
+    private final RecordSink sink;
     
-    private final CSVWriter csvWriter;
-    private final JSONLWriter jsonlWriter;
-    
-    public OutputWriter(CSVWriter csvWriter) {
-        this.csvWriter = csvWriter;
-        this.jsonlWriter = null;
-    }
-    
-    public OutputWriter(JSONLWriter jsonlWriter) {
-        this.csvWriter = null;
-        this.jsonlWriter = jsonlWriter;
+    public OutputWriter(RecordSink sink) {
+        this.sink = sink;
     }
     
     /**
@@ -34,11 +23,7 @@ public class OutputWriter {
      * @param dataList List of scraped data
      */
     public void writeData(List<ScrapedData> dataList) {
-        if (csvWriter != null) {
-            csvWriter.writeData(dataList);
-        } else if (jsonlWriter != null) {
-            jsonlWriter.writeData(dataList);
-        }
+        sink.writeData(dataList);
     }
     
     /**
@@ -47,21 +32,48 @@ public class OutputWriter {
      * @param data Scraped data record
      */
     public void writeData(ScrapedData data) {
-        if (csvWriter != null) {
-            csvWriter.writeData(data);
-        } else if (jsonlWriter != null) {
-            jsonlWriter.writeData(data);
-        }
+        sink.writeData(data);
+    }
+    
+    /**
+     * Writes buffered records through to the output file.
+     */
+    public void flush() {
+        sink.flush();
+    }
+    
+    /**
+     * Writes buffered records through to the output file without holding back a partial
+     * compression block, for output that is due by a deadline.
+     */
+    public void drain() {
+        sink.drain();
+    }
+    
+    /**
+     * Sets whether output is synced to disk, as described for {@link RecordSink#setFsync(boolean)}.
+     * 
+     * @param fsync true to sync output to disk
+     */
+    public void setFsync(boolean fsync) {
+        sink.setFsync(fsync);
     }
     
     /**
      * Closes the output writer.
+     * 
+     * @throws RuntimeException if records could not be written, so the output is incomplete
      */
     public void close() {
-        if (csvWriter != null) {
-            csvWriter.close();
-        } else if (jsonlWriter != null) {
-            jsonlWriter.close();
-        }
+        sink.close();
+    }
+    
+    /**
+     * Gets the sink records are written to.
+     * 
+     * @return Record sink
+     */
+    public RecordSink getSink() {
+        return sink;
     }
 }
@@ -0,0 +1,130 @@
+package com.example.scraper.cli;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import com.example.scraper.model.JobRequest;
+
+/**
+ * A job accepted by the scraper daemon, with its effective configuration and live state.
+ */
+class ScrapeJob {
+    
+    /**
+     * Lifecycle of a job.
+     */
+    enum State {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED
+    }
+    
+    private final String id;
+    private final JobRequest request;
+    private final ScraperConfig config;
+    private final boolean spooled;
+    private final Instant submittedAt = Instant.now();
+    private volatile State state = State.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+    private volatile ScrapePipeline pipeline;
+    private volatile Future<?> future;
+    
+    /**
+     * Creates a job.
+     * 
+     * @param id Job id
+     * @param request Submitted request
+     * @param config Effective configuration of the job
+     * @param spooled Whether the output file is a spool file owned by the daemon
+     */
+    ScrapeJob(String id, JobRequest request, ScraperConfig config, boolean spooled) {
+        this.id = id;
+        this.request = request;
+        this.config = config;
+        this.spooled = spooled;
+    }
+    
+    String getId() {
+        return id;
+    }
+    
+    ScraperConfig getConfig() {
+        return config;
+    }
+    
+    boolean isSpooled() {
+        return spooled;
+    }
+    
+    State getState() {
+        return state;
+    }
+    
+    boolean isDone() {
+        State current = state;
+        return current == State.SUCCEEDED || current == State.FAILED || current == State.CANCELLED;
+    }
+    
+    Future<?> getFuture() {
+        return future;
+    }
+    
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+    
+    /**
+     * Marks the job as running through a pipeline.
+     * 
+     * @param pipeline The job's pipeline, whose statistics are reported while it runs
+     */
+    void started(ScrapePipeline pipeline) {
+        this.pipeline = pipeline;
+        this.startedAt = Instant.now();
+        this.state = State.RUNNING;
+    }
+    
+    /**
+     * Marks the job as finished. A job that is already finished keeps its first outcome.
+     * 
+     * @param outcome Final state
+     * @param error Error message, or null
+     */
+    synchronized void finished(State outcome, String error) {
+        if (isDone()) {
+            return;
+        }
+        this.error = error;
+        this.finishedAt = Instant.now();
+        this.state = outcome;
+    }
+    
+    /**
+     * Describes the job for the control API.
+     * 
+     * @return Status fields in display order
+     */
+    Map<String, Object> toStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("id", id);
+        status.put("state", state.name().toLowerCase());
+        status.put("urls", request.getUrls().size());
+        status.put("max_pages", config.getMaxPages());
+        ScrapePipeline current = pipeline;
+        if (current != null) {
+            List<StageStats> stages = current.getStats();
+            status.put("pages_fetched", stages.get(0).getProcessed());
+            status.put("pages_parsed", stages.get(1).getProcessed());
+            status.put("records", current.getRecordsWritten());
+        }
+        status.put("output", spooled ? null : config.getOutputFile());
+        status.put("submitted_at", submittedAt.toString());
+        status.put("started_at", startedAt != null ? startedAt.toString() : null);
+        status.put("finished_at", finishedAt != null ? finishedAt.toString() : null);
+        status.put("error", error);
+        return status;
+    }
+}
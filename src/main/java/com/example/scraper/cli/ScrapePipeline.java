@@ -0,0 +1,584 @@
+package com.example.scraper.cli;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import com.example.scraper.core.crawl.Paginator;
+import com.example.scraper.core.crawl.UrlFrontier;
+import com.example.scraper.core.http.FetchedPage;
+import com.example.scraper.core.parser.HostTemplate;
+import com.example.scraper.core.parser.HtmlParser;
+import com.example.scraper.core.persistence.FlushPolicy;
+import com.example.scraper.model.ScrapedData;
+import org.jsoup.nodes.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Staged fetch, parse and write pipeline connected by bounded queues.
+ * Fetching runs on an I/O-sized pool, parsing on a CPU-sized pool and writing on a single thread,
+ * so a slow disk or slow parser blocks the stage upstream of it instead of buffering without limit.
+ */
+public class ScrapePipeline {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ScrapePipeline.class);
+    private static final FetchedPage END_OF_PAGES = new FetchedPage(null, null);
+    private static final Map<String, List<ScrapedData>> END_OF_RECORDS = new HashMap<>(0);
+    
+    private final WebScraper scraper;
+    private final Map<String, OutputWriter> outputWriters;
+    private final int fetchThreads;
+    private final int parseThreads;
+    private final BlockingQueue<FetchedPage> pageQueue;
+    private final BlockingQueue<Map<String, List<ScrapedData>>> recordQueue;
+    private final StageStats fetchStats;
+    private final StageStats parseStats;
+    private final StageStats writeStats;
+    private final AtomicLong recordsWritten = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicReference<RuntimeException> writeFailure = new AtomicReference<>();
+    private volatile UrlFrontier frontier;
+    private volatile Paginator paginator;
+    private volatile RecordSubscription subscription;
+    private volatile FlushPolicy flushPolicy = FlushPolicy.DEFAULT;
+    
+    public ScrapePipeline(WebScraper scraper, OutputWriter outputWriter,
+                          int fetchThreads, int parseThreads, int queueCapacity) {
+        this(scraper, Map.of(WebScraper.DEFAULT_SCHEMA, outputWriter), fetchThreads, parseThreads, queueCapacity);
+    }
+    
+    /**
+     * Creates a pipeline that routes the records of each schema to its own output writer.
+     * Records of a schema without a writer are dropped.
+     * 
+     * @param scraper Scraper that fetches pages and extracts every schema from them
+     * @param outputWriters Output writers by schema name
+     * @param fetchThreads Number of fetch workers
+     * @param parseThreads Number of parse workers
+     * @param queueCapacity Capacity of the queues between stages
+     */
+    public ScrapePipeline(WebScraper scraper, Map<String, OutputWriter> outputWriters,
+                          int fetchThreads, int parseThreads, int queueCapacity) {
+        this.scraper = scraper;
+        this.outputWriters = outputWriters;
+        this.fetchThreads = fetchThreads;
+        this.parseThreads = parseThreads;
+        this.pageQueue = new ArrayBlockingQueue<>(queueCapacity);
+        this.recordQueue = new ArrayBlockingQueue<>(queueCapacity);
+        this.fetchStats = new StageStats("fetch", fetchThreads, null);
+        this.parseStats = new StageStats("parse", parseThreads, pageQueue);
+        this.writeStats = new StageStats("write", 1, recordQueue);
+    }
+    
+    /**
+     * Runs the pipeline until every URL has been fetched, parsed and written.
+     * URLs are pulled from the iterator only as fetch workers become free.
+     * 
+     * @param urls URLs to scrape
+     * @param respectRobots Whether to respect robots.txt rules
+     * @param maxPages Maximum number of URLs to fetch
+     * @return number of records written
+     * @throws InterruptedException if interrupted while waiting for the stages to finish
+     */
+    public long run(Iterator<String> urls, boolean respectRobots, int maxPages) throws InterruptedException {
+        ExecutorService fetchPool = Executors.newFixedThreadPool(fetchThreads, namedThreads("fetch"));
+        ExecutorService parsePool = Executors.newFixedThreadPool(parseThreads, namedThreads("parse"));
+        ExecutorService writePool = Executors.newSingleThreadExecutor(namedThreads("write"));
+        AtomicInteger remainingPages = new AtomicInteger(maxPages);
+        
+        try {
+            writeStats.start();
+            writePool.execute(this::writeLoop);
+            
+            parseStats.start();
+            for (int i = 0; i < parseThreads; i++) {
+                parsePool.execute(this::parseLoop);
+            }
+            
+            fetchStats.start();
+            for (int i = 0; i < fetchThreads; i++) {
+                fetchPool.execute(() -> fetchLoop(urls, respectRobots, remainingPages));
+            }
+            
+            awaitStage(fetchPool, fetchStats);
+            for (int i = 0; i < parseThreads; i++) {
+                pageQueue.put(END_OF_PAGES);
+            }
+            
+            awaitStage(parsePool, parseStats);
+            recordQueue.put(END_OF_RECORDS);
+            
+            awaitStage(writePool, writeStats);
+        } finally {
+            fetchPool.shutdownNow();
+            parsePool.shutdownNow();
+            writePool.shutdownNow();
+        }
+        
+        logStats();
+        
+        RuntimeException failure = writeFailure.get();
+        if (failure != null) {
+            throw failure;
+        }
+        return recordsWritten.get();
+    }
+    
+    /**
+     * Runs the pipeline as a crawl: URLs come from the frontier, and the outlinks of every parsed
+     * page are extracted from its raw bytes and offered back to the frontier.
+     * 
+     * @param frontier Frontier seeded with the start URLs
+     * @param respectRobots Whether to respect robots.txt rules
+     * @param maxPages Maximum number of URLs to fetch
+     * @return number of records written
+     * @throws InterruptedException if interrupted while waiting for the stages to finish
+     */
+    public long crawl(UrlFrontier frontier, boolean respectRobots, int maxPages) throws InterruptedException {
+        return crawl(frontier, null, respectRobots, maxPages);
+    }
+    
+    /**
+     * Runs the pipeline as a crawl that also follows pagination. The next page of a listing is
+     * admitted ahead of other queued URLs: as soon as the current page is fetched when it comes
+     * from a URL pattern, or as soon as the current page is parsed, before its records are
+     * extracted, when it comes from a next-link selector. Either way the next page is fetched,
+     * subject to the same per-host delay and page limit, while the current one is extracted.
+     * 
+     * @param frontier Frontier seeded with the start URLs
+     * @param paginator Paginator finding next pages, or null
+     * @param respectRobots Whether to respect robots.txt rules
+     * @param maxPages Maximum number of URLs to fetch
+     * @return number of records written
+     * @throws InterruptedException if interrupted while waiting for the stages to finish
+     */
+    public long crawl(UrlFrontier frontier, Paginator paginator, boolean respectRobots, int maxPages)
+            throws InterruptedException {
+        this.frontier = frontier;
+        this.paginator = paginator;
+        try {
+            return run(frontier, respectRobots, maxPages);
+        } finally {
+            this.frontier = null;
+            this.paginator = null;
+        }
+    }
+    
+    /**
+     * Runs the pipeline in the background and publishes its records instead of writing them.
+     * Records of every schema are emitted as their page finishes, in page order. The write stage
+     * only emits as many records as the subscriber has requested; while it waits, the bounded
+     * queues fill up and the parse and fetch stages stop, so memory stays bounded by the pages in
+     * flight. Cancelling the subscription stops the pipeline. The publisher accepts a single
+     * subscriber, and the pipeline must not run anything else until the publisher completes.
+     * 
+     * @param urls URLs to scrape
+     * @param respectRobots Whether to respect robots.txt rules
+     * @param maxPages Maximum number of URLs to fetch
+     * @return Publisher of the scraped records
+     */
+    public Flow.Publisher<ScrapedData> publish(Iterator<String> urls, boolean respectRobots, int maxPages) {
+        AtomicBoolean subscribed = new AtomicBoolean();
+        return subscriber -> {
+            Objects.requireNonNull(subscriber, "subscriber");
+            if (!subscribed.compareAndSet(false, true)) {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                    }
+                    
+                    @Override
+                    public void cancel() {
+                    }
+                });
+                subscriber.onError(new IllegalStateException("Pipeline records can only be subscribed to once"));
+                return;
+            }
+            RecordSubscription recordSubscription = new RecordSubscription(subscriber);
+            Thread runner = new Thread(() -> recordSubscription.run(urls, respectRobots, maxPages),
+                    "scraper-publisher");
+            runner.setDaemon(true);
+            recordSubscription.runner = runner;
+            subscriber.onSubscribe(recordSubscription);
+            runner.start();
+        };
+    }
+    
+    /**
+     * Fetch stage worker: pulls URLs and hands successfully fetched pages to the parse stage.
+     * 
+     * @param urls Shared URL iterator
+     * @param respectRobots Whether to respect robots.txt rules
+     * @param remainingPages Remaining page budget shared by all fetch workers
+     */
+    private void fetchLoop(Iterator<String> urls, boolean respectRobots, AtomicInteger remainingPages) {
+        try {
+            String url;
+            // The fetcher restores the interrupt flag when a stopped run interrupts a fetch
+            while (!Thread.currentThread().isInterrupted() && (url = nextUrl(urls, remainingPages)) != null) {
+                long start = System.nanoTime();
+                FetchedPage page = scraper.fetchPage(url, respectRobots);
+                fetchStats.recordWork(System.nanoTime() - start);
+                
+                if (page != null) {
+                    if (paginator != null && !paginator.needsDocument()) {
+                        // Prefetch: the next page is known from the URL alone
+                        frontier.offerNext(url, paginator.nextFromUrl(url));
+                    }
+                    pageQueue.put(page);
+                } else if (frontier != null) {
+                    frontier.complete(url);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Parse stage worker: turns fetched pages into records for the write stage.
+     */
+    private void parseLoop() {
+        try {
+            FetchedPage page;
+            while ((page = pageQueue.take()) != END_OF_PAGES) {
+                long start = System.nanoTime();
+                String url = page.getUrl();
+                Paginator pages = paginator;
+                Consumer<Document> onParsed = pages != null && pages.needsDocument()
+                        ? document -> frontier.offerNext(url, pages.nextFromDocument(document))
+                        : null;
+                Map<String, List<ScrapedData>> data = scraper.parsePageSchemas(page, onParsed);
+                boolean hasRecords = data.values().stream().anyMatch(records -> !records.isEmpty());
+                if (pages != null && !hasRecords) {
+                    pages.stop(url);
+                }
+                if (frontier != null) {
+                    // Offer links before completing the page so the frontier never looks drained early
+                    frontier.offer(page.getUrl(), scraper.extractLinks(page));
+                    frontier.complete(page.getUrl());
+                }
+                parseStats.recordWork(System.nanoTime() - start);
+                
+                if (hasRecords) {
+                    recordQueue.put(data);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Write stage: the only thread that touches the output writers.
+     * Writers buffer what they are given; the stage flushes them as the flush policy says, by
+     * default once it has caught up with the queue, so a burst of pages costs one flush.
+     * After a write failure it keeps draining the queue so upstream stages never block forever.
+     */
+    private void writeLoop() {
+        FlushPolicy policy = flushPolicy;
+        long buffered = 0;
+        long bufferedSince = 0;
+        try {
+            while (true) {
+                Map<String, List<ScrapedData>> data;
+                if (buffered == 0) {
+                    data = recordQueue.take();
+                } else if (policy.isGroupCommit()) {
+                    data = recordQueue.poll();
+                } else if (policy.getEveryMs() > 0) {
+                    long waitMs = policy.getEveryMs() - (System.nanoTime() - bufferedSince) / 1_000_000;
+                    data = recordQueue.poll(Math.max(0, waitMs), TimeUnit.MILLISECONDS);
+                } else {
+                    data = recordQueue.take();
+                }
+                
+                if (data == null || data == END_OF_RECORDS) {
+                    // Caught up, or the flush interval passed without new records
+                    if (buffered > 0) {
+                        flushWriters(!policy.isGroupCommit());
+                        buffered = 0;
+                    }
+                    if (data == END_OF_RECORDS) {
+                        return;
+                    }
+                    continue;
+                }
+                if (writeFailure.get() != null) {
+                    continue;
+                }
+                
+                long start = System.nanoTime();
+                RecordSubscription target = subscription;
+                if (target != null) {
+                    for (List<ScrapedData> records : data.values()) {
+                        target.emit(records);
+                    }
+                    writeStats.recordWork(System.nanoTime() - start);
+                    continue;
+                }
+                try {
+                    for (Map.Entry<String, List<ScrapedData>> schema : data.entrySet()) {
+                        OutputWriter outputWriter = outputWriters.get(schema.getKey());
+                        if (outputWriter != null && !schema.getValue().isEmpty()) {
+                            outputWriter.writeData(schema.getValue());
+                            recordsWritten.addAndGet(schema.getValue().size());
+                            if (buffered == 0) {
+                                bufferedSince = start;
+                            }
+                            buffered += schema.getValue().size();
+                        }
+                    }
+                    if (policy.isDue(buffered, (System.nanoTime() - bufferedSince) / 1_000_000)) {
+                        flushWriters(true);
+                        buffered = 0;
+                    }
+                } catch (RuntimeException e) {
+                    logger.error("Write stage failed, discarding remaining records: {}", e.getMessage());
+                    writeFailure.set(e);
+                }
+                writeStats.recordWork(System.nanoTime() - start);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Flushes every output writer, recording a failure like a failed write. A group commit only
+     * flushes, so compressed output keeps its partial block for later records; a flush due by
+     * the policy's record count or interval drains the writers so every record reaches the file.
+     * 
+     * @param drain true to drain rather than flush
+     */
+    private void flushWriters(boolean drain) {
+        if (writeFailure.get() != null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            for (OutputWriter outputWriter : outputWriters.values()) {
+                if (drain) {
+                    outputWriter.drain();
+                } else {
+                    outputWriter.flush();
+                }
+            }
+            flushes.incrementAndGet();
+        } catch (RuntimeException e) {
+            logger.error("Write stage failed to flush, discarding remaining records: {}", e.getMessage());
+            writeFailure.set(e);
+        }
+        writeStats.recordWork(System.nanoTime() - start);
+    }
+    
+    /**
+     * Takes the next URL from the shared iterator, honouring the page limit.
+     * 
+     * @param urls Shared URL iterator
+     * @param remainingPages Remaining page budget shared by all fetch workers
+     * @return next URL, or null when the input or the page budget is exhausted
+     */
+    private static String nextUrl(Iterator<String> urls, AtomicInteger remainingPages) {
+        synchronized (urls) {
+            // A crawl frontier's hasNext() waits on this same lock, so check the budget again after it
+            if (remainingPages.get() <= 0 || !urls.hasNext() || remainingPages.get() <= 0) {
+                return null;
+            }
+            remainingPages.decrementAndGet();
+            return urls.next();
+        }
+    }
+    
+    /**
+     * Waits for all workers of a stage to exit.
+     * 
+     * @param pool The stage's worker pool
+     * @param stats The stage's statistics
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static void awaitStage(ExecutorService pool, StageStats stats) throws InterruptedException {
+        pool.shutdown();
+        while (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.debug("Waiting for {}", stats);
+        }
+        stats.finish();
+    }
+    
+    /**
+     * Creates a thread factory producing daemon threads named after a stage.
+     * 
+     * @param stage Stage name
+     * @return ThreadFactory for the stage's workers
+     */
+    private static ThreadFactory namedThreads(String stage) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "scraper-" + stage + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    /**
+     * Logs the statistics of every stage.
+     */
+    public void logStats() {
+        for (StageStats stats : getStats()) {
+            logger.info("Pipeline stage {}", stats);
+        }
+        HtmlParser parser = scraper.getHtmlParser();
+        if (flushes.get() > 0) {
+            logger.info("Write stage flushed {} records in {} flushes", recordsWritten.get(), flushes.get());
+        }
+        logger.info("Pre-screen skipped {} of {} pages without parsing",
+                parser.getPagesSkipped(), parser.getPagesScreened());
+        if (parser.getParallelStats().getPages() > 0) {
+            logger.info("Extraction {}", parser.getParallelStats());
+        }
+        for (HostTemplate template : parser.getHostTemplates()) {
+            logger.info("Host template {}", template);
+        }
+    }
+    
+    /**
+     * Sets when the write stage flushes the output writers. Takes effect on the next run.
+     * 
+     * @param flushPolicy Flush policy
+     */
+    public void setFlushPolicy(FlushPolicy flushPolicy) {
+        this.flushPolicy = flushPolicy;
+    }
+    
+    /**
+     * Gets the number of records written so far.
+     * 
+     * @return records written
+     */
+    public long getRecordsWritten() {
+        return recordsWritten.get();
+    }
+    
+    /**
+     * Gets live statistics for the fetch, parse and write stages, in that order.
+     * 
+     * @return per-stage statistics
+     */
+    public List<StageStats> getStats() {
+        return List.of(fetchStats, parseStats, writeStats);
+    }
+    
+    /**
+     * Subscription to a pipeline run started by {@link #publish}. The run happens on its own
+     * thread; records are handed to the subscriber on the write stage thread as demand allows.
+     */
+    private final class RecordSubscription implements Flow.Subscription {
+        
+        private final Flow.Subscriber<? super ScrapedData> subscriber;
+        private volatile Thread runner;
+        private long demand;
+        private boolean cancelled;
+        private Throwable failure;
+        
+        RecordSubscription(Flow.Subscriber<? super ScrapedData> subscriber) {
+            this.subscriber = subscriber;
+        }
+        
+        @Override
+        public synchronized void request(long n) {
+            if (n <= 0) {
+                failure = new IllegalArgumentException("Requested " + n + " records; must be positive");
+                cancel();
+                return;
+            }
+            demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            notifyAll();
+        }
+        
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                notifyAll();
+            }
+            Thread thread = runner;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+        
+        /**
+         * Emits records, waiting for demand before each.
+         * 
+         * @param records Records of one page and schema
+         * @throws InterruptedException if interrupted while waiting for demand
+         */
+        void emit(List<ScrapedData> records) throws InterruptedException {
+            for (ScrapedData record : records) {
+                synchronized (this) {
+                    while (demand == 0 && !cancelled) {
+                        wait();
+                    }
+                    if (cancelled) {
+                        return;
+                    }
+                    demand--;
+                }
+                try {
+                    subscriber.onNext(record);
+                } catch (RuntimeException e) {
+                    // A subscriber that throws is treated as having cancelled
+                    logger.error("Record subscriber failed, stopping the pipeline: {}", e.getMessage());
+                    cancel();
+                    return;
+                }
+                recordsWritten.incrementAndGet();
+            }
+        }
+        
+        void run(Iterator<String> urls, boolean respectRobots, int maxPages) {
+            subscription = this;
+            Throwable error = null;
+            try {
+                ScrapePipeline.this.run(urls, respectRobots, maxPages);
+            } catch (InterruptedException e) {
+                error = e;
+            } catch (RuntimeException e) {
+                error = e;
+            } finally {
+                subscription = null;
+            }
+            
+            synchronized (this) {
+                if (failure != null) {
+                    error = failure;
+                } else if (cancelled) {
+                    return;
+                }
+            }
+            if (error != null) {
+                subscriber.onError(error);
+            } else {
+                subscriber.onComplete();
+            }
+        }
+    }
+}
@@ -1,13 +1,36 @@
 package com.example.scraper.cli;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.Map;
 
-import com.example.scraper.core.persistence.CSVWriter;
-import com.example.scraper.core.persistence.JSONLWriter;
+import com.example.scraper.core.crawl.Paginator;
+import com.example.scraper.core.crawl.SeedReader;
+import com.example.scraper.core.crawl.UrlFrontier;
+import com.example.scraper.core.http.HostPolicy;
+import com.example.scraper.core.parser.StructuredDataExtractor;
+import com.example.scraper.core.persistence.DeltaSink;
+import com.example.scraper.core.persistence.FanOutSink;
+import com.example.scraper.core.persistence.FlushPolicy;
+import com.example.scraper.core.persistence.RecordSink;
+import com.example.scraper.core.persistence.RecordSinkProvider;
+import com.example.scraper.core.persistence.RecordSinks;
+import com.example.scraper.core.persistence.SegmentPolicy;
+import com.example.scraper.core.persistence.ShardedSink;
+import com.example.scraper.core.persistence.SinkOptions;
 import com.example.scraper.model.DataSelectors;
-import com.example.scraper.model.ScrapedData;
+import com.example.scraper.model.FieldSelector;
+import com.example.scraper.model.HostProfile;
+import com.example.scraper.model.ParseMode;
+import com.example.scraper.model.ScraperSettings;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,39 +51,51 @@ public class ScraperCli {
             
             logger.info("Starting web scraper with configuration: {}", config);
             
-            // Create data selectors
-            DataSelectors selectors = createDataSelectors(config);
+            // Create data selectors, one set per schema
+            Map<String, DataSelectors> schemas = createSchemas(config);
             
-            // Create scraper
-            WebScraper scraper = new WebScraper(config.getUserAgent(), selectors);
+            // Create scraper, resolving fetch policies and selectors per host
+            ScraperSettings settings = config.getSettings();
+            HostProfiles hostProfiles = new HostProfiles(createHostPolicy(config), schemas,
+                    settings != null ? settings.getHosts() : Map.of());
+            WebScraper scraper = new WebScraper(config.getUserAgent(), hostProfiles);
+            scraper.getHtmlParser().setParallelThreshold(config.getParallelThreshold());
             
-            // Create output writer
-            OutputWriter outputWriter = createOutputWriter(config);
+            if (config.getDaemonPort() > 0) {
+                // Serve jobs with the warm scraper until the process is stopped
+                ScraperDaemon daemon = new ScraperDaemon(scraper, config);
+                Runtime.getRuntime().addShutdownHook(new Thread(daemon::stop, "scraper-daemon-shutdown"));
+                daemon.start();
+                daemon.awaitTermination();
+                return;
+            }
+            
+            // Create one output writer per schema
+            Map<String, OutputWriter> outputWriters = new LinkedHashMap<>();
             
+            long recordCount;
             try {
-                // Scrape URLs
-                List<ScrapedData> allData = new ArrayList<>();
+                openOutputWriters(config, schemas, outputWriters);
                 
-                if (config.getUrls().size() == 1) {
-                    // Single URL
-                    List<ScrapedData> data = scraper.scrapeUrl(config.getUrls().get(0), config.isRespectRobots());
-                    allData.addAll(data);
-                } else {
-                    // Multiple URLs
-                    CompletableFuture<List<ScrapedData>> future = scraper.scrapeUrlsAsync(config.getUrls(), config.isRespectRobots());
-                    allData = future.get();
-                }
+                // Scrape URLs through the fetch -> parse -> write pipeline
+                ScrapePipeline pipeline = createPipeline(scraper, config, outputWriters);
+                recordCount = scrape(pipeline, config);
                 
-                // Write output
-                if (!allData.isEmpty()) {
-                    outputWriter.writeData(allData);
-                    logger.info("Successfully scraped {} records", allData.size());
-                } else {
-                    logger.warn("No data was scraped");
+            } catch (Exception e) {
+                try {
+                    closeOutputWriters(outputWriters);
+                } catch (RuntimeException closeFailure) {
+                    e.addSuppressed(closeFailure);
                 }
-                
-            } finally {
-                outputWriter.close();
+                throw e;
+            }
+            // Closing writes out what is still queued, so the run has only succeeded once it is done
+            closeOutputWriters(outputWriters);
+            
+            if (recordCount > 0) {
+                logger.info("Successfully scraped {} records", recordCount);
+            } else {
+                logger.warn("No data was scraped");
             }
             
         } catch (Exception e) {
@@ -69,6 +104,114 @@ public class ScraperCli {
         }
     }
     
+    /**
+     * Scrapes the configured URLs through a pipeline, as a crawl when links or pagination are
+     * followed.
+     * 
+     * @param pipeline Pipeline to run
+     * @param config Scraper configuration
+     * @return number of records written
+     * @throws InterruptedException if interrupted while the pipeline runs
+     * @throws IOException if the seed file cannot be opened
+     */
+    static long scrape(ScrapePipeline pipeline, ScraperConfig config) throws InterruptedException, IOException {
+        Paginator paginator = createPaginator(config);
+        SeedReader seedReader = openSeeds(config);
+        try {
+            if (config.getFollowDepth() > 0 || paginator != null) {
+                UrlFrontier frontier = seedReader != null
+                        ? new UrlFrontier(seedReader, config.getFollowDepth())
+                        : new UrlFrontier(config.getUrls(), config.getFollowDepth());
+                long recordCount = pipeline.crawl(frontier, paginator, config.isRespectRobots(), config.getMaxPages());
+                logger.info("Crawl admitted {} URLs", frontier.getAdmitted());
+                return recordCount;
+            }
+            Iterator<String> urls = seedReader != null ? seedReader : config.getUrls().iterator();
+            return pipeline.run(urls, config.isRespectRobots(), config.getMaxPages());
+        } finally {
+            if (seedReader != null) {
+                seedReader.close();
+                logger.info("Read {} seed URLs, {} of them duplicates", seedReader.getRead(), seedReader.getDuplicates());
+            }
+        }
+    }
+    
+    /**
+     * Opens the seed file or standard input, if seeds are streamed.
+     * 
+     * @param config Scraper configuration
+     * @return SeedReader returning the --url values followed by the streamed seeds, or null
+     * @throws IOException if the seed file cannot be opened
+     */
+    private static SeedReader openSeeds(ScraperConfig config) throws IOException {
+        if (config.getUrlsFile() != null) {
+            return SeedReader.open(config.getUrls(), Paths.get(config.getUrlsFile()));
+        }
+        if (config.isUrlsStdin()) {
+            return new SeedReader(config.getUrls(), System.in);
+        }
+        return null;
+    }
+    
+    /**
+     * Creates the fetch, parse and write pipeline for a run.
+     * 
+     * @param scraper Scraper that fetches and parses pages
+     * @param config Scraper configuration
+     * @param outputWriters Output writers by schema name
+     * @return ScrapePipeline
+     */
+    static ScrapePipeline createPipeline(WebScraper scraper, ScraperConfig config,
+                                         Map<String, OutputWriter> outputWriters) {
+        ScrapePipeline pipeline = new ScrapePipeline(scraper, outputWriters,
+                config.getFetchThreads(), config.getParseThreads(), config.getQueueCapacity());
+        pipeline.setFlushPolicy(new FlushPolicy(config.getFlushRecords(), config.getFlushMs()));
+        return pipeline;
+    }
+    
+    /**
+     * Opens one output writer per schema. With several schemas, each writes to its own file
+     * derived from the configured output file.
+     * 
+     * @param config Scraper configuration
+     * @param schemas Selector sets by schema name
+     * @param outputWriters Map receiving the writers by schema name, to be closed by the caller
+     */
+    static void openOutputWriters(ScraperConfig config, Map<String, DataSelectors> schemas,
+                                  Map<String, OutputWriter> outputWriters) {
+        for (Map.Entry<String, DataSelectors> schema : schemas.entrySet()) {
+            String outputFile = schemas.size() == 1
+                    ? config.getOutputFile() : schemaOutputFile(config.getOutputFile(), schema.getKey());
+            outputWriters.put(schema.getKey(), createOutputWriter(config, schema.getValue(), outputFile));
+        }
+    }
+    
+    /**
+     * Closes every output writer, even if one fails, and removes them from the map.
+     * 
+     * @param outputWriters Output writers by schema name
+     * @throws RuntimeException the first failure, with the others suppressed, if any output is
+     *                          incomplete
+     */
+    static void closeOutputWriters(Map<String, OutputWriter> outputWriters) {
+        RuntimeException failure = null;
+        for (OutputWriter outputWriter : outputWriters.values()) {
+            try {
+                outputWriter.close();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        outputWriters.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    
     /**
      * Parses command-line arguments.
      * 
@@ -78,6 +221,22 @@ public class ScraperCli {
     private static ScraperConfig parseArguments(String[] args) {
         ScraperConfig config = new ScraperConfig();
         
+        // Apply the configuration file first so that other options override it
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--config")) {
+                if (i + 1 >= args.length) {
+                    logger.error("--config requires a file path argument");
+                    return null;
+                }
+                try {
+                    applySettings(config, args[i + 1]);
+                } catch (IOException e) {
+                    logger.error("Cannot read configuration file {}: {}", args[i + 1], e.getMessage());
+                    return null;
+                }
+            }
+        }
+        
         for (int i = 0; i < args.length; i++) {
             String arg = args[i];
             
@@ -91,6 +250,19 @@ public class ScraperCli {
                     }
                     break;
                     
+                case "--urls-file":
+                    if (i + 1 < args.length) {
+                        config.setUrlsFile(args[++i]);
+                    } else {
+                        logger.error("--urls-file requires a file path argument");
+                        return null;
+                    }
+                    break;
+                    
+                case "--urls-stdin":
+                    config.setUrlsStdin(true);
+                    break;
+                    
                 case "--max-pages":
                     if (i + 1 < args.length) {
                         try {
@@ -116,14 +288,14 @@ public class ScraperCli {
                     
                 case "--format":
                     if (i + 1 < args.length) {
-                        String format = args[++i].toLowerCase();
-                        if (!format.equals("csv") && !format.equals("jsonl")) {
-                            logger.error("--format must be 'csv' or 'jsonl'");
+                        try {
+                            config.setOutputFormat(parseFormats(args[++i]));
+                        } catch (IllegalArgumentException e) {
+                            logger.error("--format: {}", e.getMessage());
                             return null;
                         }
-                        config.setOutputFormat(format);
                     } else {
-                        logger.error("--format requires 'csv' or 'jsonl' argument");
+                        logger.error("--format requires a format name argument, e.g. 'csv' or 'csv,jsonl'");
                         return null;
                     }
                     break;
@@ -142,6 +314,174 @@ public class ScraperCli {
                     }
                     break;
                     
+                case "--shard-key":
+                    if (i + 1 < args.length) {
+                        try {
+                            config.setShardKey(ShardedSink.ShardKey.fromString(args[++i]));
+                        } catch (IllegalArgumentException e) {
+                            logger.error("--shard-key must be 'host' or 'url'");
+                            return null;
+                        }
+                    } else {
+                        logger.error("--shard-key requires 'host' or 'url' argument");
+                        return null;
+                    }
+                    break;
+                    
+                case "--parse-mode":
+                    if (i + 1 < args.length) {
+                        String mode = args[++i].toLowerCase();
+                        if (mode.equals("css")) {
+                            config.setParseMode(ParseMode.CSS);
+                        } else if (mode.equals("structured")) {
+                            config.setParseMode(ParseMode.STRUCTURED);
+                        } else {
+                            logger.error("--parse-mode must be 'css' or 'structured'");
+                            return null;
+                        }
+                    } else {
+                        logger.error("--parse-mode requires 'css' or 'structured' argument");
+                        return null;
+                    }
+                    break;
+                    
+                case "--learn-templates":
+                case "--parallel-threshold":
+                case "--follow-links":
+                case "--flush-records":
+                case "--flush-ms":
+                    if (i + 1 < args.length) {
+                        try {
+                            int value = Integer.parseInt(args[++i]);
+                            if (value < 0) {
+                                logger.error("{} must not be negative", arg);
+                                return null;
+                            }
+                            if (arg.equals("--learn-templates")) {
+                                config.setTemplateLearningPages(value);
+                            } else if (arg.equals("--parallel-threshold")) {
+                                config.setParallelThreshold(value);
+                            } else if (arg.equals("--follow-links")) {
+                                config.setFollowDepth(value);
+                            } else if (arg.equals("--flush-records")) {
+                                config.setFlushRecords(value);
+                            } else {
+                                config.setFlushMs(value);
+                            }
+                        } catch (NumberFormatException e) {
+                            logger.error("{} requires a valid number", arg);
+                            return null;
+                        }
+                    } else {
+                        logger.error("{} requires a number argument", arg);
+                        return null;
+                    }
+                    break;
+                    
+                case "--segment-bytes":
+                case "--segment-records":
+                case "--segment-ms":
+                    if (i + 1 < args.length) {
+                        try {
+                            long value = Long.parseLong(args[++i]);
+                            if (value < 0) {
+                                logger.error("{} must not be negative", arg);
+                                return null;
+                            }
+                            if (arg.equals("--segment-bytes")) {
+                                config.setSegmentBytes(value);
+                            } else if (arg.equals("--segment-records")) {
+                                config.setSegmentRecords(value);
+                            } else {
+                                config.setSegmentMs(value);
+                            }
+                        } catch (NumberFormatException e) {
+                            logger.error("{} requires a valid number", arg);
+                            return null;
+                        }
+                    } else {
+                        logger.error("{} requires a number argument", arg);
+                        return null;
+                    }
+                    break;
+                    
+                case "--fetch-threads":
+                case "--parse-threads":
+                case "--queue-size":
+                case "--daemon":
+                case "--max-jobs":
+                case "--shards":
+                    if (i + 1 < args.length) {
+                        try {
+                            int value = Integer.parseInt(args[++i]);
+                            if (value < 1) {
+                                logger.error("{} must be at least 1", arg);
+                                return null;
+                            }
+                            if (arg.equals("--fetch-threads")) {
+                                config.setFetchThreads(value);
+                            } else if (arg.equals("--parse-threads")) {
+                                config.setParseThreads(value);
+                            } else if (arg.equals("--queue-size")) {
+                                config.setQueueCapacity(value);
+                            } else if (arg.equals("--daemon")) {
+                                config.setDaemonPort(value);
+                            } else if (arg.equals("--max-jobs")) {
+                                config.setMaxJobs(value);
+                            } else {
+                                config.setShards(value);
+                            }
+                        } catch (NumberFormatException e) {
+                            logger.error("{} requires a valid number", arg);
+                            return null;
+                        }
+                    } else {
+                        logger.error("{} requires a number argument", arg);
+                        return null;
+                    }
+                    break;
+                    
+                case "--schema":
+                    if (i + 1 < args.length) {
+                        String schema = args[++i];
+                        int separator = schema.indexOf('=');
+                        if (separator <= 0 || separator == schema.length() - 1) {
+                            logger.error("--schema requires a name=file argument");
+                            return null;
+                        }
+                        config.addSchemaFile(schema.substring(0, separator), schema.substring(separator + 1));
+                    } else {
+                        logger.error("--schema requires a name=file argument");
+                        return null;
+                    }
+                    break;
+                    
+                case "--next-selector":
+                case "--page-pattern":
+                    if (i + 1 < args.length) {
+                        String value = args[++i];
+                        try {
+                            if (arg.equals("--next-selector")) {
+                                Paginator.bySelector(value);
+                                config.setNextSelector(value);
+                            } else {
+                                Paginator.byPattern(value);
+                                config.setPagePattern(value);
+                            }
+                        } catch (IllegalArgumentException e) {
+                            logger.error("{}: {}", arg, e.getMessage());
+                            return null;
+                        }
+                    } else {
+                        logger.error("{} requires an argument", arg);
+                        return null;
+                    }
+                    break;
+                    
+                case "--config":
+                    i++; // Already applied
+                    break;
+                    
                 case "--user-agent":
                     if (i + 1 < args.length) {
                         config.setUserAgent(args[++i]);
@@ -159,6 +499,40 @@ public class ScraperCli {
                     config.setRespectRobots(false);
                     break;
                     
+                case "--fsync":
+                    config.setFsync(true);
+                    break;
+                    
+                case "--gzip":
+                    config.setGzip(true);
+                    break;
+                    
+                case "--segments":
+                    config.setSegments(true);
+                    break;
+                    
+                case "--delta":
+                    config.setDelta(true);
+                    break;
+                    
+                case "--job-output-dir":
+                    if (i + 1 < args.length) {
+                        config.setJobOutputDir(args[++i]);
+                    } else {
+                        logger.error("--job-output-dir requires a directory argument");
+                        return null;
+                    }
+                    break;
+                    
+                case "--delta-key":
+                    if (i + 1 < args.length) {
+                        config.setDeltaKey(args[++i]);
+                    } else {
+                        logger.error("--delta-key requires a field name argument");
+                        return null;
+                    }
+                    break;
+                    
                 case "--help":
                 case "-h":
                     return null; // Will trigger usage display
@@ -169,15 +543,145 @@ public class ScraperCli {
             }
         }
         
-        // Validate required arguments
-        if (config.getUrls().isEmpty()) {
-            logger.error("At least one --url argument is required");
+        // Start URLs of the configuration file are used unless seeds are given on the command line
+        boolean streamedSeeds = config.getUrlsFile() != null || config.isUrlsStdin();
+        if (config.getUrls().isEmpty() && !streamedSeeds && config.getSettings() != null) {
+            config.getSettings().getStartUrls().forEach(config::addUrl);
+        }
+        
+        // Validate required arguments; a daemon gets its URLs with each job
+        if (config.getUrls().isEmpty() && !streamedSeeds && config.getDaemonPort() == 0) {
+            logger.error("At least one --url, --urls-file or --urls-stdin argument is required");
+            return null;
+        }
+        
+        if (config.getUrlsFile() != null && config.isUrlsStdin()) {
+            logger.error("--urls-file and --urls-stdin cannot be combined");
+            return null;
+        }
+        
+        if (config.getNextSelector() != null && config.getPagePattern() != null) {
+            logger.error("--next-selector and --page-pattern cannot be combined");
+            return null;
+        }
+        
+        // The store keeps a snapshot itself, and would store deleted records as stubs
+        if (config.isDelta() && config.getOutputFormats().contains("store")) {
+            logger.error("--delta cannot be combined with the store format");
             return null;
         }
         
         return config;
     }
     
+    /**
+     * Loads a configuration file and applies its top-level settings as option defaults.
+     * 
+     * @param config Scraper configuration
+     * @param path Path of the configuration file
+     * @throws IOException if the file cannot be read or parsed
+     */
+    private static void applySettings(ScraperConfig config, String path) throws IOException {
+        ScraperSettings settings = new ObjectMapper().readValue(new File(path), ScraperSettings.class);
+        for (Map.Entry<String, HostProfile> host : settings.getHosts().entrySet()) {
+            Integer maxConcurrency = host.getValue().getMaxConcurrency();
+            if (maxConcurrency != null && maxConcurrency < 1) {
+                throw new IOException("maxConcurrency of host " + host.getKey() + " must be at least 1");
+            }
+        }
+        config.setConfigFile(path);
+        config.setSettings(settings);
+        
+        if (settings.getRateLimitMs() != null) {
+            config.setDelayMs(settings.getRateLimitMs());
+        }
+        if (settings.getUserAgent() != null) {
+            config.setUserAgent(settings.getUserAgent());
+        }
+        if (settings.getRespectRobots() != null) {
+            config.setRespectRobots(settings.getRespectRobots());
+        }
+        if (settings.getParseMode() != null) {
+            config.setParseMode(settings.getParseMode());
+        }
+        if (settings.getFormats() != null && !settings.getFormats().isEmpty()) {
+            try {
+                config.setOutputFormat(parseFormats(String.join(",", settings.getFormats())));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("formats: " + e.getMessage(), e);
+            }
+        }
+        logger.info("Loaded configuration file {} with {} host profiles", path, settings.getHosts().size());
+    }
+    
+    /**
+     * Creates the fetch policy of hosts without a profile from the --delay-ms option and the
+     * top-level settings of the configuration file.
+     * 
+     * @param config Scraper configuration
+     * @return HostPolicy
+     */
+    private static HostPolicy createHostPolicy(ScraperConfig config) {
+        HostPolicy defaults = HostPolicy.DEFAULT;
+        ScraperSettings settings = config.getSettings();
+        if (settings == null) {
+            return defaults.withRateLimitMs(config.getDelayMs());
+        }
+        return new HostPolicy(config.getDelayMs(),
+                settings.getMaxConcurrency() != null ? settings.getMaxConcurrency() : defaults.getMaxConcurrency(),
+                settings.getTimeoutMs() != null ? Duration.ofMillis(settings.getTimeoutMs()) : defaults.getTimeout(),
+                settings.getMaxBodyBytes() != null ? settings.getMaxBodyBytes() : defaults.getMaxBodyBytes());
+    }
+    
+    /**
+     * Creates the named selector sets to extract. Each --schema file is read as a
+     * DataSelectors JSON document, taking the configured parse mode and template learning pages
+     * where it does not set its own; without any, the default selectors form a single schema.
+     * 
+     * @param config Scraper configuration
+     * @return Selector sets by schema name
+     * @throws IOException if a schema file cannot be read
+     */
+    static Map<String, DataSelectors> createSchemas(ScraperConfig config) throws IOException {
+        Map<String, DataSelectors> schemas = new LinkedHashMap<>();
+        if (config.getSchemaFiles().isEmpty()) {
+            schemas.put(WebScraper.DEFAULT_SCHEMA, createDataSelectors(config));
+            return schemas;
+        }
+        
+        ObjectMapper objectMapper = new ObjectMapper();
+        for (Map.Entry<String, String> schema : config.getSchemaFiles().entrySet()) {
+            JsonNode document = objectMapper.readTree(new File(schema.getValue()));
+            DataSelectors selectors = objectMapper.treeToValue(document, DataSelectors.class);
+            if (!document.has("parse_mode")) {
+                selectors.setParseMode(config.getParseMode());
+            }
+            if (!document.has("template_learning_pages")) {
+                selectors.setTemplateLearningPages(config.getTemplateLearningPages());
+            }
+            schemas.put(schema.getKey(), selectors);
+            logger.info("Loaded schema '{}' from {}", schema.getKey(), schema.getValue());
+        }
+        return schemas;
+    }
+    
+    /**
+     * Derives the output file of one schema by inserting the schema name before the extension,
+     * e.g. {@code output.csv} becomes {@code output-products.csv}.
+     * 
+     * @param outputFile Configured output file
+     * @param schema Schema name
+     * @return Output file for the schema
+     */
+    static String schemaOutputFile(String outputFile, String schema) {
+        int slash = Math.max(outputFile.lastIndexOf('/'), outputFile.lastIndexOf(File.separatorChar));
+        int dot = outputFile.lastIndexOf('.');
+        if (dot <= slash + 1) {
+            return outputFile + "-" + schema;
+        }
+        return outputFile.substring(0, dot) + "-" + schema + outputFile.substring(dot);
+    }
+    
     /**
      * Creates data selectors based on configuration.
      * 
@@ -185,33 +689,194 @@ public class ScraperCli {
      * @return DataSelectors object
      */
     private static DataSelectors createDataSelectors(ScraperConfig config) {
-        // Default selectors - these would typically come from a config file
-        DataSelectors selectors = new DataSelectors();
-        selectors.setContainerSelector("article, .item, .product, .post");
-        selectors.setTitleSelector("h1, h2, h3, .title, .name");
-        selectors.setDescriptionSelector("p, .description, .summary");
-        selectors.setUrlSelector("a");
-        selectors.setPriceSelector(".price, .cost");
-        selectors.setImageSelector("img");
+        DataSelectors selectors;
+        ScraperSettings settings = config.getSettings();
+        if (settings != null && settings.getSelectors() != null) {
+            selectors = new DataSelectors(settings.getSelectors());
+        } else {
+            // Default selectors when the configuration file does not set any
+            selectors = new DataSelectors();
+            selectors.setContainerSelector("article, .item, .product, .post");
+            selectors.setTitleSelector("h1, h2, h3, .title, .name");
+            selectors.setDescriptionSelector("p, .description, .summary");
+            selectors.setUrlSelector("a");
+            selectors.setPriceSelector(".price, .cost");
+            selectors.setImageSelector("img");
+        }
+        selectors.setParseMode(config.getParseMode());
+        selectors.setTemplateLearningPages(config.getTemplateLearningPages());
         
         return selectors;
     }
     
     /**
-     * Creates the appropriate output writer based on configuration.
+     * Creates the paginator for the configured next-page selector or page pattern.
+     * 
+     * @param config Scraper configuration
+     * @return Paginator, or null if pagination is not followed
+     */
+    static Paginator createPaginator(ScraperConfig config) {
+        if (config.getNextSelector() != null) {
+            return Paginator.bySelector(config.getNextSelector());
+        }
+        if (config.getPagePattern() != null) {
+            return Paginator.byPattern(config.getPagePattern());
+        }
+        return null;
+    }
+    
+    /**
+     * Parses a comma-separated list of output formats, each of which must have a
+     * {@link RecordSinkProvider}.
+     * 
+     * @param formats Format names, e.g. "csv,jsonl"
+     * @return Lowercase format names without duplicates, separated by commas
+     * @throws IllegalArgumentException if a format is unknown
+     */
+    static String parseFormats(String formats) {
+        List<String> names = new ArrayList<>();
+        for (String format : formats.split(",")) {
+            String name = format.trim().toLowerCase();
+            if (name.isEmpty() || names.contains(name)) {
+                continue;
+            }
+            if (RecordSinks.provider(name) == null) {
+                throw new IllegalArgumentException("unknown format '" + name + "', available: "
+                        + String.join(", ", RecordSinks.names()));
+            }
+            names.add(name);
+        }
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException("no format given");
+        }
+        return String.join(",", names);
+    }
+    
+    /**
+     * Creates the appropriate output writer based on configuration. With several formats, each is
+     * written concurrently to the output file with its own extension. With several shards, each
+     * shard writes its own files, named like the output file with a -shardN suffix. In delta mode
+     * only records that changed since the previous run are written, tracked in a fingerprint
+     * table named like the output file with the extension .delta.
      * 
      * @param config Scraper configuration
+     * @param selectors Data selectors, whose custom fields become extra CSV columns
+     * @param outputFile Output file path
      * @return OutputWriter instance
      */
-    private static OutputWriter createOutputWriter(ScraperConfig config) {
-        String outputFile = config.getOutputFile();
-        String format = config.getOutputFormat();
-        
-        if (format.equals("csv")) {
-            return new OutputWriter(new CSVWriter(outputFile));
+    private static OutputWriter createOutputWriter(ScraperConfig config, DataSelectors selectors, String outputFile) {
+        List<String> formats = config.getOutputFormats();
+        RecordSink sink;
+        if (formats.size() == 1) {
+            sink = createShardedSink(config, selectors, formats.get(0), outputFile);
         } else {
-            return new OutputWriter(new JSONLWriter(outputFile));
+            List<String> files = new ArrayList<>();
+            List<RecordSink> sinks = new ArrayList<>();
+            for (String format : formats) {
+                String formatFile = formatOutputFile(outputFile, RecordSinks.provider(format));
+                files.add(new File(formatFile).getName());
+                sinks.add(createShardedSink(config, selectors, format, formatFile));
+            }
+            sink = new FanOutSink(files, sinks, config.getQueueCapacity());
+        }
+        if (config.isDelta()) {
+            sink = new DeltaSink(sink, Paths.get(replaceExtension(outputFile, ".delta")), config.getDeltaKey());
+            sink.setFsync(config.isFsync());
+        }
+        return new OutputWriter(sink);
+    }
+    
+    /**
+     * Creates the sink of one format, spread over shards if configured.
+     * 
+     * @param config Scraper configuration
+     * @param selectors Data selectors, whose custom fields become extra CSV columns
+     * @param format Format name
+     * @param outputFile Output file path
+     * @return Record sink
+     */
+    private static RecordSink createShardedSink(ScraperConfig config, DataSelectors selectors, String format,
+                                                String outputFile) {
+        if (config.getShards() <= 1) {
+            return createSink(config, selectors, format, outputFile);
+        }
+        List<String> files = new ArrayList<>();
+        List<RecordSink> shards = new ArrayList<>();
+        for (int i = 0; i < config.getShards(); i++) {
+            String shardFile = schemaOutputFile(outputFile, "shard" + i);
+            files.add(new File(shardFile).getName());
+            shards.add(createSink(config, selectors, format, shardFile));
+        }
+        return new ShardedSink(files, shards, config.getShardKey(), config.getQueueCapacity());
+    }
+        
+    /**
+     * Creates the sink of one format for one output file.
+     * 
+     * @param config Scraper configuration
+     * @param selectors Data selectors, whose custom fields (and {@code price_currency} when
+     *                  structured data is parsed) become extra CSV columns
+     * @param format Format name
+     * @param outputFile Output file path
+     * @return Record sink
+     */
+    private static RecordSink createSink(ScraperConfig config, DataSelectors selectors, String format,
+                                         String outputFile) {
+        SinkOptions options = new SinkOptions(outputFile);
+        List<String> extraColumns = new ArrayList<>(selectors.getFields().stream()
+                .map(FieldSelector::getName)
+                .toList());
+        if (isStructured(config, selectors) && !extraColumns.contains(StructuredDataExtractor.PRICE_CURRENCY)) {
+            extraColumns.add(StructuredDataExtractor.PRICE_CURRENCY);
+        }
+        if (config.isDelta()) {
+            extraColumns.add(DeltaSink.CHANGE_TYPE);
+        }
+        options.setExtraColumns(extraColumns);
+        options.setGzip(config.isGzip());
+        options.setSegmentPolicy(new SegmentPolicy(config.getSegmentBytes(), config.getSegmentRecords(),
+                config.getSegmentMs(), config.isSegments()));
+        RecordSink sink = RecordSinks.provider(format).create(options);
+        sink.setFsync(config.isFsync());
+        return sink;
+    }
+    
+    /**
+     * Checks whether a schema's records may come from structured data, either because the schema
+     * is parsed that way or because a host profile switches it on.
+     * 
+     * @param config Scraper configuration
+     * @param selectors Data selectors of the schema
+     * @return true if records may carry structured data fields
+     */
+    private static boolean isStructured(ScraperConfig config, DataSelectors selectors) {
+        if (selectors.getParseMode() == ParseMode.STRUCTURED) {
+            return true;
+        }
+        ScraperSettings settings = config.getSettings();
+        return settings != null && settings.getHosts().values().stream()
+                .anyMatch(profile -> profile.getParseMode() == ParseMode.STRUCTURED);
+    }
+    
+    /**
+     * Derives the output file of one of several formats by replacing the extension with the
+     * format's, e.g. {@code output.csv} becomes {@code output.jsonl}.
+     * 
+     * @param outputFile Configured output file
+     * @param provider Provider of the format
+     * @return Output file for the format
+     */
+    static String formatOutputFile(String outputFile, RecordSinkProvider provider) {
+        return replaceExtension(outputFile, provider.getExtension());
+    }
+    
+    private static String replaceExtension(String outputFile, String extension) {
+        int slash = Math.max(outputFile.lastIndexOf('/'), outputFile.lastIndexOf(File.separatorChar));
+        int dot = outputFile.lastIndexOf('.');
+        if (dot <= slash + 1) {
+            return outputFile + extension;
         }
+        return outputFile.substring(0, dot) + extension;
     }
     
     /**
@@ -224,13 +889,52 @@ public class ScraperCli {
         System.out.println();
         System.out.println("Required options:");
         System.out.println("  --url <url>              URL to scrape (can be specified multiple times)");
+        System.out.println("                           (optional with a --config file that lists startUrls)");
         System.out.println();
         System.out.println("Optional options:");
+        System.out.println("  --config <file>           Read defaults and per-host profiles from a JSON configuration file;");
+        System.out.println("                            other options override its top-level settings");
+        System.out.println("  --urls-file <file>        Stream seed URLs from a file, one per line; may be gzipped");
+        System.out.println("  --urls-stdin              Stream seed URLs from standard input, one per line; may be gzipped");
         System.out.println("  --max-pages <number>      Maximum number of pages to scrape (default: unlimited)");
         System.out.println("  --output <file>          Output file path (default: output.csv)");
-        System.out.println("  --format <format>        Output format: csv or jsonl (default: csv)");
+        System.out.println("  --format <formats>       Output format: csv, jsonl, columnar or store (default: csv); several");
+        System.out.println("                            separated by commas, e.g. csv,jsonl, are written concurrently, each");
+        System.out.println("                            with its own extension");
         System.out.println("  --delay-ms <milliseconds> Minimum delay between requests (default: 1000)");
         System.out.println("  --user-agent <string>     Custom User-Agent string");
+        System.out.println("  --schema <name>=<file>    Extract a named DataSelectors JSON schema into its own output");
+        System.out.println("                            file, e.g. output-<name>.csv (can be specified multiple times)");
+        System.out.println("  --follow-links <depth>    Follow same-host links up to depth links from the seeds (default: 0, off)");
+        System.out.println("  --next-selector <css>     Follow pagination through the href of the first matching element,");
+        System.out.println("                            e.g. 'a[rel=next]'");
+        System.out.println("  --page-pattern <regex>    Follow pagination by incrementing the number captured by the regex");
+        System.out.println("                            in the URL, e.g. 'page=(\\d+)', until a page yields no records");
+        System.out.println("  --parse-mode <mode>       css, or structured to prefer JSON-LD/microdata (default: css)");
+        System.out.println("  --learn-templates <n>     Learn field locations from the first n pages per host (default: 0, off)");
+        System.out.println("  --parallel-threshold <n>  Extract pages with at least n containers in parallel (default: 0, off)");
+        System.out.println("  --fetch-threads <number>  Concurrent page fetches (default: 8)");
+        System.out.println("  --parse-threads <number>  Concurrent page parsers (default: number of cores)");
+        System.out.println("  --queue-size <number>     Pages/batches buffered between stages (default: 64)");
+        System.out.println("  --gzip                    Compress output as gzip on all cores, appending .gz to file names");
+        System.out.println("  --shards <number>         Serialize output on n threads into n sets of files (default: 1)");
+        System.out.println("  --shard-key <key>         Route records to shards by host or url (default: host)");
+        System.out.println("  --segment-bytes <n>       Rotate output files after n bytes, 0 for no limit (default: 10485760)");
+        System.out.println("  --segment-records <n>     Rotate output files after n records (default: 0, off)");
+        System.out.println("  --segment-ms <milliseconds> Rotate output files open this long once they hold records");
+        System.out.println("  --segments                Write sealed, numbered segments and a manifest of finished ones");
+        System.out.println("  --delta                   Write only records new, changed or deleted since the previous run,");
+        System.out.println("                            with a change_type column; state is kept in <output>.delta. Not");
+        System.out.println("                            with the store format, which keeps a snapshot itself");
+        System.out.println("  --delta-key <field>       Field identifying a record across runs in delta mode (default: url)");
+        System.out.println("  --flush-records <n>       Flush output every n records instead of whenever the writer is idle");
+        System.out.println("  --flush-ms <milliseconds> Flush output at most this long after a record is written");
+        System.out.println("  --fsync                   Sync output to disk: files when they are rotated or closed, the");
+        System.out.println("                            record store and delta state on every flush");
+        System.out.println("  --daemon <port>           Run as a daemon accepting scrape jobs over HTTP on localhost:<port>");
+        System.out.println("  --max-jobs <number>       Jobs a daemon runs at once; more are queued (default: 2)");
+        System.out.println("  --job-output-dir <dir>    Directory daemon jobs may name an output file in; without it,");
+        System.out.println("                            jobs only spool results for /jobs/<id>/results");
         System.out.println("  --respect-robots         Respect robots.txt rules (default: true)");
         System.out.println("  --no-respect-robots      Ignore robots.txt rules");
         System.out.println("  --help, -h               Show this help message");
@@ -239,5 +943,6 @@ public class ScraperCli {
         System.out.println("  java -jar scraper.jar --url https://example.com --output data.csv");
         System.out.println("  java -jar scraper.jar --url https://site1.com --url https://site2.com --format jsonl");
         System.out.println("  java -jar scraper.jar --url https://example.com --delay-ms 2000 --no-respect-robots");
+        System.out.println("  java -jar scraper.jar --config scraper-config.json --format jsonl");
     }
 }
@@ -1,7 +1,15 @@
 package com.example.scraper.cli;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+
+import com.example.scraper.core.persistence.SegmentPolicy;
+import com.example.scraper.core.persistence.ShardedSink;
+import com.example.scraper.model.ParseMode;
+import com.example.scraper.model.ScrapedData;
+import com.example.scraper.model.ScraperSettings;
 
 /**
  * Configuration class for the web scraper CLI.
@@ -15,6 +23,35 @@ public class ScraperConfig {
     private long delayMs = 1000;
     private String userAgent = "SimpleWebScraper/1.0 (+https://github.com/example/simple-web-scraper)";
     private boolean respectRobots = true;
+    private int fetchThreads = 8;
+    private int parseThreads = Runtime.getRuntime().availableProcessors();
+    private int queueCapacity = 64;
+    private int flushRecords = 0;
+    private long flushMs = 0;
+    private boolean fsync = false;
+    private boolean gzip = false;
+    private long segmentBytes = SegmentPolicy.DEFAULT_MAX_BYTES;
+    private long segmentRecords = 0;
+    private long segmentMs = 0;
+    private boolean segments = false;
+    private int shards = 1;
+    private ShardedSink.ShardKey shardKey = ShardedSink.ShardKey.HOST;
+    private boolean delta = false;
+    private String deltaKey = ScrapedData.URL;
+    private ParseMode parseMode = ParseMode.CSS;
+    private int templateLearningPages = 0;
+    private int parallelThreshold = 0;
+    private final Map<String, String> schemaFiles = new LinkedHashMap<>();
+    private int followDepth = 0;
+    private String nextSelector;
+    private String pagePattern;
+    private String configFile;
+    private ScraperSettings settings;
+    private int daemonPort = 0;
+    private int maxJobs = 2;
+    private String jobOutputDir;
+    private String urlsFile;
+    private boolean urlsStdin = false;
     
     // Getters and setters
     public List<String> getUrls() {
@@ -45,6 +82,15 @@ public class ScraperConfig {
         return outputFormat;
     }
     
+    /**
+     * Gets the names of the output formats, which may be several separated by commas.
+     * 
+     * @return Format names
+     */
+    public List<String> getOutputFormats() {
+        return List.of(outputFormat.split(","));
+    }
+    
     public void setOutputFormat(String outputFormat) {
         this.outputFormat = outputFormat;
     }
@@ -73,6 +119,253 @@ public class ScraperConfig {
         this.respectRobots = respectRobots;
     }
     
+    public int getFetchThreads() {
+        return fetchThreads;
+    }
+    
+    public void setFetchThreads(int fetchThreads) {
+        this.fetchThreads = fetchThreads;
+    }
+    
+    public int getParseThreads() {
+        return parseThreads;
+    }
+    
+    public void setParseThreads(int parseThreads) {
+        this.parseThreads = parseThreads;
+    }
+    
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+    
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+    
+    public ParseMode getParseMode() {
+        return parseMode;
+    }
+    
+    public void setParseMode(ParseMode parseMode) {
+        this.parseMode = parseMode;
+    }
+    
+    public int getTemplateLearningPages() {
+        return templateLearningPages;
+    }
+    
+    public void setTemplateLearningPages(int templateLearningPages) {
+        this.templateLearningPages = templateLearningPages;
+    }
+    
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+    
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+    
+    public Map<String, String> getSchemaFiles() {
+        return schemaFiles;
+    }
+    
+    public void addSchemaFile(String name, String path) {
+        this.schemaFiles.put(name, path);
+    }
+    
+    public int getFlushRecords() {
+        return flushRecords;
+    }
+    
+    public void setFlushRecords(int flushRecords) {
+        this.flushRecords = flushRecords;
+    }
+    
+    public long getFlushMs() {
+        return flushMs;
+    }
+    
+    public void setFlushMs(long flushMs) {
+        this.flushMs = flushMs;
+    }
+    
+    public boolean isFsync() {
+        return fsync;
+    }
+    
+    public void setFsync(boolean fsync) {
+        this.fsync = fsync;
+    }
+    
+    public boolean isGzip() {
+        return gzip;
+    }
+    
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+    
+    public long getSegmentBytes() {
+        return segmentBytes;
+    }
+    
+    public void setSegmentBytes(long segmentBytes) {
+        this.segmentBytes = segmentBytes;
+    }
+    
+    public long getSegmentRecords() {
+        return segmentRecords;
+    }
+    
+    public void setSegmentRecords(long segmentRecords) {
+        this.segmentRecords = segmentRecords;
+    }
+    
+    public long getSegmentMs() {
+        return segmentMs;
+    }
+    
+    public void setSegmentMs(long segmentMs) {
+        this.segmentMs = segmentMs;
+    }
+    
+    public boolean isSegments() {
+        return segments;
+    }
+    
+    public void setSegments(boolean segments) {
+        this.segments = segments;
+    }
+    
+    public boolean isDelta() {
+        return delta;
+    }
+    
+    public void setDelta(boolean delta) {
+        this.delta = delta;
+    }
+    
+    public String getDeltaKey() {
+        return deltaKey;
+    }
+    
+    public void setDeltaKey(String deltaKey) {
+        this.deltaKey = deltaKey;
+    }
+    
+    public int getShards() {
+        return shards;
+    }
+    
+    public void setShards(int shards) {
+        this.shards = shards;
+    }
+    
+    public ShardedSink.ShardKey getShardKey() {
+        return shardKey;
+    }
+    
+    public void setShardKey(ShardedSink.ShardKey shardKey) {
+        this.shardKey = shardKey;
+    }
+    
+    public int getFollowDepth() {
+        return followDepth;
+    }
+    
+    public void setFollowDepth(int followDepth) {
+        this.followDepth = followDepth;
+    }
+    
+    public String getNextSelector() {
+        return nextSelector;
+    }
+    
+    public void setNextSelector(String nextSelector) {
+        this.nextSelector = nextSelector;
+    }
+    
+    public String getPagePattern() {
+        return pagePattern;
+    }
+    
+    public void setPagePattern(String pagePattern) {
+        this.pagePattern = pagePattern;
+    }
+    
+    public String getConfigFile() {
+        return configFile;
+    }
+    
+    public void setConfigFile(String configFile) {
+        this.configFile = configFile;
+    }
+    
+    /**
+     * Gets the settings loaded from the configuration file.
+     * 
+     * @return ScraperSettings, or null if no configuration file was given
+     */
+    public ScraperSettings getSettings() {
+        return settings;
+    }
+    
+    public void setSettings(ScraperSettings settings) {
+        this.settings = settings;
+    }
+    
+    public int getDaemonPort() {
+        return daemonPort;
+    }
+    
+    public void setDaemonPort(int daemonPort) {
+        this.daemonPort = daemonPort;
+    }
+    
+    public int getMaxJobs() {
+        return maxJobs;
+    }
+    
+    public void setMaxJobs(int maxJobs) {
+        this.maxJobs = maxJobs;
+    }
+    
+    /**
+     * Gets the directory daemon jobs may write their own output files to.
+     * 
+     * @return directory path, or null if jobs may only spool their results
+     */
+    public String getJobOutputDir() {
+        return jobOutputDir;
+    }
+    
+    public void setJobOutputDir(String jobOutputDir) {
+        this.jobOutputDir = jobOutputDir;
+    }
+    
+    /**
+     * Gets the file seed URLs are streamed from, in addition to the --url values.
+     * 
+     * @return file path, or null
+     */
+    public String getUrlsFile() {
+        return urlsFile;
+    }
+    
+    public void setUrlsFile(String urlsFile) {
+        this.urlsFile = urlsFile;
+    }
+    
+    public boolean isUrlsStdin() {
+        return urlsStdin;
+    }
+    
+    public void setUrlsStdin(boolean urlsStdin) {
+        this.urlsStdin = urlsStdin;
+    }
+    
     @Override
     public String toString() {
         return "ScraperConfig{" +
@@ -83,6 +376,34 @@ public class ScraperConfig {
                 ", delayMs=" + delayMs +
                 ", userAgent='" + userAgent + '\'' +
                 ", respectRobots=" + respectRobots +
+                ", fetchThreads=" + fetchThreads +
+                ", parseThreads=" + parseThreads +
+                ", queueCapacity=" + queueCapacity +
+                ", flushRecords=" + flushRecords +
+                ", flushMs=" + flushMs +
+                ", fsync=" + fsync +
+                ", gzip=" + gzip +
+                ", segmentBytes=" + segmentBytes +
+                ", segmentRecords=" + segmentRecords +
+                ", segmentMs=" + segmentMs +
+                ", segments=" + segments +
+                ", shards=" + shards +
+                ", shardKey=" + shardKey +
+                ", delta=" + delta +
+                ", deltaKey='" + deltaKey + '\'' +
+                ", parseMode=" + parseMode +
+                ", templateLearningPages=" + templateLearningPages +
+                ", parallelThreshold=" + parallelThreshold +
+                ", schemaFiles=" + schemaFiles +
+                ", followDepth=" + followDepth +
+                ", nextSelector='" + nextSelector + '\'' +
+                ", pagePattern='" + pagePattern + '\'' +
+                ", configFile='" + configFile + '\'' +
+                ", daemonPort=" + daemonPort +
+                ", maxJobs=" + maxJobs +
+                ", jobOutputDir='" + jobOutputDir + '\'' +
+                ", urlsFile='" + urlsFile + '\'' +
+                ", urlsStdin=" + urlsStdin +
                 '}';
     }
 }
@@ -0,0 +1,535 @@
+package com.example.scraper.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.example.scraper.model.DataSelectors;
+import com.example.scraper.model.JobRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Long-running scraper serving jobs over a local HTTP control API.
+ * 
+ * <p>All jobs share one scraper, so connections, robots.txt rules, per-host rate limits and
+ * learned templates stay warm from one job to the next. Up to {@code --max-jobs} jobs run at once,
+ * each through its own pipeline; further jobs wait in a bounded queue. The API listens on the
+ * loopback interface only and has no authentication, so requests a web page could make are refused:
+ * those with an {@code Origin} header or a {@code Host} other than the loopback names, and job
+ * submissions not sent as {@code application/json}. A job may only name its own output file
+ * inside the {@code --job-output-dir} directory.
+ * <ul>
+ *   <li>{@code POST /jobs} submits a {@link JobRequest}</li>
+ *   <li>{@code GET /jobs} and {@code GET /jobs/<id>} report job status</li>
+ *   <li>{@code GET /jobs/<id>/results} streams the records of a job as JSONL while it runs</li>
+ *   <li>{@code DELETE /jobs/<id>} cancels a job, or forgets it once finished</li>
+ * </ul>
+ */
+public class ScraperDaemon {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ScraperDaemon.class);
+    private static final int MAX_QUEUED_JOBS = 100;
+    private static final long TAIL_INTERVAL_MS = 200;
+    
+    private final WebScraper scraper;
+    private final ScraperConfig config;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, ScrapeJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong jobIds = new AtomicLong();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final ThreadPoolExecutor jobPool;
+    private final ExecutorService requestPool;
+    private HttpServer server;
+    private Path spoolDir;
+    private Path jobOutputDir;
+    
+    /**
+     * Creates a daemon.
+     * 
+     * @param scraper Scraper shared by all jobs
+     * @param config Daemon configuration; the defaults and limits of every job
+     */
+    public ScraperDaemon(WebScraper scraper, ScraperConfig config) {
+        this.scraper = scraper;
+        this.config = config;
+        this.jobPool = new ThreadPoolExecutor(config.getMaxJobs(), config.getMaxJobs(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED_JOBS), daemonThreads("scraper-job"));
+        this.requestPool = Executors.newCachedThreadPool(daemonThreads("scraper-api"));
+    }
+    
+    /**
+     * Starts serving the control API.
+     * 
+     * @throws IOException if the port cannot be bound or the spool or job output directory created
+     */
+    public void start() throws IOException {
+        spoolDir = Files.createTempDirectory("scraper-jobs");
+        if (config.getJobOutputDir() != null) {
+            jobOutputDir = Files.createDirectories(Paths.get(config.getJobOutputDir())).toRealPath();
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), config.getDaemonPort()), 0);
+        server.createContext("/jobs", this::handle);
+        server.setExecutor(requestPool);
+        server.start();
+        logger.info("Scraper daemon listening on http://localhost:{}/jobs, running up to {} jobs at once",
+                getPort(), config.getMaxJobs());
+    }
+    
+    /**
+     * Gets the port the control API listens on.
+     * 
+     * @return port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+    
+    /**
+     * Stops the control API and cancels running and queued jobs.
+     */
+    public void stop() {
+        if (stopped.getCount() == 0) {
+            return;
+        }
+        logger.info("Stopping scraper daemon");
+        if (server != null) {
+            server.stop(0);
+        }
+        jobPool.shutdownNow();
+        requestPool.shutdownNow();
+        for (ScrapeJob job : jobs.values()) {
+            job.finished(ScrapeJob.State.CANCELLED, null);
+        }
+        stopped.countDown();
+    }
+    
+    /**
+     * Waits until the daemon is stopped.
+     * 
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitTermination() throws InterruptedException {
+        stopped.await();
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            // Browsers send Origin on cross-site requests, and a rebound DNS name shows in Host
+            if (exchange.getRequestHeaders().containsKey("Origin")
+                    || !isLoopbackHost(exchange.getRequestHeaders().getFirst("Host"))) {
+                sendError(exchange, 403, "Only local clients other than browsers may use this API");
+                return;
+            }
+            String[] path = exchange.getRequestURI().getPath().replaceAll("/+$", "").split("/");
+            String method = exchange.getRequestMethod();
+            // path is ["", "jobs", id?, "results"?]
+            if (path.length == 2 && method.equals("POST")) {
+                submit(exchange);
+            } else if (path.length == 2 && method.equals("GET")) {
+                List<Map<String, Object>> statuses = new ArrayList<>();
+                jobs.values().stream()
+                        .sorted((a, b) -> Long.compare(Long.parseLong(a.getId()), Long.parseLong(b.getId())))
+                        .forEach(job -> statuses.add(job.toStatus()));
+                sendJson(exchange, 200, statuses);
+            } else if (path.length == 3 || path.length == 4) {
+                ScrapeJob job = jobs.get(path[2]);
+                if (job == null) {
+                    sendError(exchange, 404, "No job " + path[2]);
+                } else if (path.length == 4 && path[3].equals("results") && method.equals("GET")) {
+                    streamResults(exchange, job);
+                } else if (path.length == 3 && method.equals("GET")) {
+                    sendJson(exchange, 200, job.toStatus());
+                } else if (path.length == 3 && method.equals("DELETE")) {
+                    delete(exchange, job);
+                } else {
+                    sendError(exchange, 405, method + " is not supported here");
+                }
+            } else {
+                sendError(exchange, 404, "Unknown path " + exchange.getRequestURI().getPath());
+            }
+        } catch (IOException e) {
+            // Mostly clients going away while results stream
+            logger.debug("Error serving {}: {}", exchange.getRequestURI(), e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error serving {}: {}", exchange.getRequestURI(), e.getMessage());
+            try {
+                sendError(exchange, 500, e.getMessage());
+            } catch (IOException ignored) {
+                // Response already started
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+    
+    private void submit(HttpExchange exchange) throws IOException {
+        // Anything else may be a simple request a web page sent without a CORS preflight
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType == null || !contentType.split(";")[0].trim().equalsIgnoreCase("application/json")) {
+            sendError(exchange, 415, "Job requests must be sent as application/json");
+            return;
+        }
+        
+        JobRequest request;
+        try (InputStream body = exchange.getRequestBody()) {
+            request = objectMapper.readValue(body, JobRequest.class);
+        } catch (JsonProcessingException e) {
+            sendError(exchange, 400, "Invalid job request: " + e.getOriginalMessage());
+            return;
+        }
+        
+        String id = String.valueOf(jobIds.incrementAndGet());
+        ScrapeJob job;
+        try {
+            job = createJob(id, request);
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+            return;
+        }
+        
+        jobs.put(id, job);
+        try {
+            job.setFuture(jobPool.submit(() -> runJob(job)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(id);
+            sendError(exchange, 503, "Job queue is full");
+            return;
+        }
+        logger.info("Accepted job {}: {}", id, request);
+        sendJson(exchange, 202, job.toStatus());
+    }
+    
+    /**
+     * Builds the configuration of a job from the daemon's, capping page and thread counts at
+     * the daemon's limits.
+     * 
+     * @param id Job id
+     * @param request Submitted request
+     * @return ScrapeJob
+     * @throws IllegalArgumentException if the request is invalid
+     */
+    private ScrapeJob createJob(String id, JobRequest request) {
+        if (request.getUrls().isEmpty()) {
+            throw new IllegalArgumentException("A job needs at least one URL");
+        }
+        for (String url : request.getUrls()) {
+            URI uri = URI.create(url);
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                throw new IllegalArgumentException("Not an absolute URL: " + url);
+            }
+        }
+        
+        ScraperConfig jobConfig = new ScraperConfig();
+        request.getUrls().forEach(jobConfig::addUrl);
+        jobConfig.setMaxPages(request.getMaxPages() != null
+                ? Math.min(Math.max(request.getMaxPages(), 0), config.getMaxPages()) : config.getMaxPages());
+        jobConfig.setFetchThreads(request.getFetchThreads() != null
+                ? Math.min(Math.max(request.getFetchThreads(), 1), config.getFetchThreads()) : config.getFetchThreads());
+        jobConfig.setParseThreads(config.getParseThreads());
+        jobConfig.setQueueCapacity(config.getQueueCapacity());
+        jobConfig.setFlushRecords(config.getFlushRecords());
+        jobConfig.setFlushMs(config.getFlushMs());
+        jobConfig.setFsync(config.isFsync());
+        // Spool files are followed by name while they grow, so jobs never write sealed segments
+        jobConfig.setSegmentBytes(config.getSegmentBytes());
+        jobConfig.setSegmentRecords(config.getSegmentRecords());
+        jobConfig.setSegmentMs(config.getSegmentMs());
+        jobConfig.setFollowDepth(request.getFollowLinks() != null
+                ? Math.max(request.getFollowLinks(), 0) : config.getFollowDepth());
+        jobConfig.setRespectRobots(request.getRespectRobots() != null
+                ? request.getRespectRobots() : config.isRespectRobots());
+        
+        if (request.getNextSelector() != null && request.getPagePattern() != null) {
+            throw new IllegalArgumentException("next_selector and page_pattern cannot be combined");
+        }
+        if (request.getNextSelector() != null || request.getPagePattern() != null) {
+            jobConfig.setNextSelector(request.getNextSelector());
+            jobConfig.setPagePattern(request.getPagePattern());
+        } else {
+            jobConfig.setNextSelector(config.getNextSelector());
+            jobConfig.setPagePattern(config.getPagePattern());
+        }
+        // Fails with IllegalArgumentException on an invalid selector or pattern
+        ScraperCli.createPaginator(jobConfig);
+        
+        boolean spooled = request.getOutput() == null;
+        if (spooled) {
+            // Spooled results are streamed back as JSONL
+            jobConfig.setOutputFormat("jsonl");
+            jobConfig.setOutputFile(spoolDir.resolve("job-" + id + ".jsonl").toString());
+        } else {
+            // Results are streamed from one file per schema, so a job writes a single format
+            String format = ScraperCli.parseFormats(
+                    request.getFormat() != null ? request.getFormat() : config.getOutputFormats().get(0));
+            if (format.contains(",")) {
+                throw new IllegalArgumentException("format must name a single output format");
+            }
+            jobConfig.setOutputFormat(format);
+            jobConfig.setOutputFile(jobOutputFile(request.getOutput()).toString());
+        }
+        return new ScrapeJob(id, request, jobConfig, spooled);
+    }
+    
+    /**
+     * Resolves the output file a job asks for inside the job output directory.
+     * 
+     * @param output Requested path, relative to the job output directory
+     * @return Absolute output file
+     * @throws IllegalArgumentException if jobs may not name an output file or the path leads out of
+     *                                  the job output directory
+     */
+    private Path jobOutputFile(String output) {
+        if (jobOutputDir == null) {
+            throw new IllegalArgumentException("output is not accepted unless the daemon runs with --job-output-dir");
+        }
+        try {
+            Path file = jobOutputDir.resolve(output).normalize();
+            Path parent = file.getParent();
+            // Compare real paths too, so a link inside the directory cannot lead out of it
+            if (!file.startsWith(jobOutputDir) || file.equals(jobOutputDir)
+                    || Files.exists(parent) && !parent.toRealPath().startsWith(jobOutputDir)) {
+                throw new IllegalArgumentException("output must be a file inside the job output directory");
+            }
+            return file;
+        } catch (InvalidPathException | IOException e) {
+            throw new IllegalArgumentException("Invalid output path: " + output, e);
+        }
+    }
+    
+    private void runJob(ScrapeJob job) {
+        if (job.isDone()) {
+            // Cancelled while queued
+            return;
+        }
+        Map<String, OutputWriter> outputWriters = new LinkedHashMap<>();
+        try {
+            ScraperConfig jobConfig = job.getConfig();
+            ScraperCli.openOutputWriters(jobConfig, scraper.getSchemas(), outputWriters);
+            ScrapePipeline pipeline = ScraperCli.createPipeline(scraper, jobConfig, outputWriters);
+            job.started(pipeline);
+            
+            long recordCount = ScraperCli.scrape(pipeline, jobConfig);
+            // Closing writes out what is still queued and reports a failed write
+            ScraperCli.closeOutputWriters(outputWriters);
+            job.finished(ScrapeJob.State.SUCCEEDED, null);
+            logger.info("Job {} finished with {} records", job.getId(), recordCount);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.finished(ScrapeJob.State.CANCELLED, null);
+            logger.info("Job {} cancelled", job.getId());
+        } catch (Exception e) {
+            job.finished(ScrapeJob.State.FAILED, e.getMessage());
+            logger.error("Job {} failed: {}", job.getId(), e.getMessage());
+        } finally {
+            try {
+                ScraperCli.closeOutputWriters(outputWriters);
+            } catch (RuntimeException e) {
+                logger.warn("Error closing output of job {}: {}", job.getId(), e.getMessage());
+            }
+        }
+    }
+    
+    private void delete(HttpExchange exchange, ScrapeJob job) throws IOException {
+        if (!job.isDone()) {
+            job.getFuture().cancel(true);
+            job.finished(ScrapeJob.State.CANCELLED, null);
+            jobPool.remove((Runnable) job.getFuture());
+            sendJson(exchange, 200, job.toStatus());
+            return;
+        }
+        jobs.remove(job.getId());
+        if (job.isSpooled()) {
+            for (String outputFile : outputFiles(job).values()) {
+                deleteWithRotations(Paths.get(outputFile));
+            }
+        }
+        exchange.sendResponseHeaders(204, -1);
+    }
+    
+    /**
+     * Streams the records of one schema of a job, following the output file as it grows until
+     * the job is done.
+     * 
+     * @param exchange Exchange to respond on
+     * @param job The job
+     * @throws IOException if the client goes away or the output cannot be read
+     */
+    private void streamResults(HttpExchange exchange, ScrapeJob job) throws IOException {
+        Map<String, String> outputFiles = outputFiles(job);
+        String schema = queryParameter(exchange, "schema");
+        String outputFile = schema != null ? outputFiles.get(schema) : outputFiles.values().iterator().next();
+        if (outputFile == null) {
+            sendError(exchange, 404, "No schema " + schema);
+            return;
+        }
+        
+        exchange.getResponseHeaders().set("Content-Type", contentType(job.getConfig().getOutputFormat()));
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            Path current = Paths.get(outputFile);
+            int rotation = 0;
+            long position = 0;
+            while (true) {
+                // Read the state first so nothing written before the job finished is missed
+                boolean done = job.isDone();
+                position = copyFrom(current, position, out);
+                Path next = rotatedFile(outputFile, rotation + 1);
+                if (Files.exists(next)) {
+                    // The writer has moved on; take what was left in the previous file
+                    copyFrom(current, position, out);
+                    current = next;
+                    rotation++;
+                    position = 0;
+                } else if (done) {
+                    return;
+                } else {
+                    out.flush();
+                    try {
+                        Thread.sleep(TAIL_INTERVAL_MS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+    
+    private static long copyFrom(Path file, long position, OutputStream out) throws IOException {
+        if (!Files.exists(file)) {
+            return position;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= position) {
+                return position;
+            }
+            channel.position(position);
+            // Only whole lines are sent; a partly written last line waits for the next pass
+            byte[] bytes = Channels.newInputStream(channel).readNBytes((int) Math.min(size - position, 1 << 20));
+            int end = bytes.length;
+            while (end > 0 && bytes[end - 1] != '\n') {
+                end--;
+            }
+            out.write(bytes, 0, end);
+            return position + end;
+        }
+    }
+    
+    private static String contentType(String format) {
+        switch (format) {
+            case "csv":
+                return "text/csv";
+            case "jsonl":
+                return "application/x-ndjson";
+            default:
+                return "application/octet-stream";
+        }
+    }
+    
+    private Map<String, String> outputFiles(ScrapeJob job) {
+        Map<String, DataSelectors> schemas = scraper.getSchemas();
+        Map<String, String> outputFiles = new LinkedHashMap<>();
+        String outputFile = job.getConfig().getOutputFile();
+        for (String schema : schemas.keySet()) {
+            outputFiles.put(schema, schemas.size() == 1 ? outputFile : ScraperCli.schemaOutputFile(outputFile, schema));
+        }
+        return outputFiles;
+    }
+    
+    /**
+     * Gets the file an output file is rotated to, named the way the writers name it.
+     */
+    private static Path rotatedFile(String outputFile, int rotation) {
+        int dot = outputFile.lastIndexOf('.');
+        return Paths.get(outputFile.substring(0, dot) + "_" + rotation + outputFile.substring(dot));
+    }
+    
+    private static void deleteWithRotations(Path file) {
+        try {
+            Files.deleteIfExists(file);
+            for (int rotation = 1; Files.deleteIfExists(rotatedFile(file.toString(), rotation)); rotation++) {
+                // Keep going until the last rotation
+            }
+        } catch (IOException e) {
+            logger.warn("Could not delete {}: {}", file, e.getMessage());
+        }
+    }
+    
+    /**
+     * Checks whether a Host header names the loopback interface, with or without a port.
+     */
+    private static boolean isLoopbackHost(String host) {
+        if (host == null) {
+            return false;
+        }
+        String name = host.startsWith("[")
+                ? host.substring(0, host.indexOf(']') + 1) : host.replaceFirst(":\\d*$", "");
+        return name.equalsIgnoreCase("localhost") || name.equals("127.0.0.1") || name.equals("[::1]");
+    }
+    
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0 && parameter.substring(0, equals).equals(name)) {
+                return parameter.substring(equals + 1);
+            }
+        }
+        return null;
+    }
+    
+    private void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+    
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        sendJson(exchange, status, Map.of("error", message != null ? message : "Internal error"));
+    }
+    
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicLong count = new AtomicLong();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.scraper.cli;
+
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live statistics for one stage of the scrape pipeline.
+ */
+public class StageStats {
+    
+    private final String name;
+    private final int workers;
+    private final BlockingQueue<?> inputQueue;
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    
+    private volatile long startNanos;
+    private volatile long endNanos;
+    
+    public StageStats(String name, int workers, BlockingQueue<?> inputQueue) {
+        this.name = name;
+        this.workers = workers;
+        this.inputQueue = inputQueue;
+    }
+    
+    /**
+     * Marks the stage as started.
+     */
+    void start() {
+        startNanos = System.nanoTime();
+    }
+    
+    /**
+     * Marks the stage as finished.
+     */
+    void finish() {
+        endNanos = System.nanoTime();
+    }
+    
+    /**
+     * Records one unit of work done by a worker of this stage.
+     * 
+     * @param nanos Time spent working, excluding time blocked on queues
+     */
+    void recordWork(long nanos) {
+        processed.incrementAndGet();
+        busyNanos.addAndGet(nanos);
+    }
+    
+    /**
+     * Gets the stage name.
+     * 
+     * @return stage name
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Gets the number of worker threads in this stage.
+     * 
+     * @return number of workers
+     */
+    public int getWorkers() {
+        return workers;
+    }
+    
+    /**
+     * Gets the number of items processed so far.
+     * 
+     * @return items processed
+     */
+    public long getProcessed() {
+        return processed.get();
+    }
+    
+    /**
+     * Gets the number of items waiting in this stage's input queue.
+     * 
+     * @return current queue depth, or 0 if the stage has no input queue
+     */
+    public int getQueueDepth() {
+        return inputQueue != null ? inputQueue.size() : 0;
+    }
+    
+    /**
+     * Gets the capacity of this stage's input queue.
+     * 
+     * @return queue capacity, or 0 if the stage has no input queue
+     */
+    public int getQueueCapacity() {
+        return inputQueue != null ? inputQueue.size() + inputQueue.remainingCapacity() : 0;
+    }
+    
+    /**
+     * Gets the fraction of available worker time spent doing work rather than waiting on queues.
+     * 
+     * @return utilization between 0.0 and 1.0
+     */
+    public double getUtilization() {
+        long start = startNanos;
+        if (start == 0) {
+            return 0.0;
+        }
+        long end = endNanos != 0 ? endNanos : System.nanoTime();
+        long available = (end - start) * workers;
+        return available > 0 ? Math.min(1.0, (double) busyNanos.get() / available) : 0.0;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s[workers=%d, processed=%d, queue=%d/%d, utilization=%.1f%%]",
+                name, workers, getProcessed(), getQueueDepth(), getQueueCapacity(), getUtilization() * 100);
+    }
+}
@@ -1,16 +1,24 @@
 package com.example.scraper.cli;
 
-import java.net.http.HttpClient;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
 
+import com.example.scraper.core.http.FetchedPage;
+import com.example.scraper.core.http.HostPolicy;
 import com.example.scraper.core.http.HttpFetcher;
 import com.example.scraper.core.parser.HtmlParser;
+import com.example.scraper.core.parser.LinkExtractor;
 import com.example.scraper.core.robots.RobotsTxtCompliance;
 import com.example.scraper.model.DataSelectors;
 import com.example.scraper.model.ScrapedData;
+import org.jsoup.nodes.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,23 +29,43 @@ public class WebScraper {
     
     private static final Logger logger = LoggerFactory.getLogger(WebScraper.class);
     
+    /** Schema name used when the scraper is created with a single selector set. */
+    public static final String DEFAULT_SCHEMA = "default";
+    
     private final HttpFetcher httpFetcher;
     private final HtmlParser htmlParser;
+    private final LinkExtractor linkExtractor = new LinkExtractor();
     private final RobotsTxtCompliance robotsCompliance;
-    private final DataSelectors selectors;
+    private final HostProfiles hostProfiles;
     
     public WebScraper(String userAgent, DataSelectors selectors) {
-        this.selectors = selectors;
-        
-        HttpClient httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10))
-                .followRedirects(HttpClient.Redirect.NORMAL)
-                .version(HttpClient.Version.HTTP_2)
-                .build();
+        this(userAgent, Map.of(DEFAULT_SCHEMA, selectors));
+    }
+    
+    /**
+     * Creates a scraper that extracts several named schemas from every page it fetches.
+     * Each page is fetched and parsed once, and every schema runs against the same document.
+     * 
+     * @param userAgent User-Agent string
+     * @param schemas Selector sets by schema name; iteration order is kept in the results
+     */
+    public WebScraper(String userAgent, Map<String, DataSelectors> schemas) {
+        this(userAgent, new HostProfiles(HostPolicy.DEFAULT, schemas, Map.of()));
+    }
+    
+    /**
+     * Creates a scraper whose fetch policy and schemas are resolved per host.
+     * 
+     * @param userAgent User-Agent string
+     * @param hostProfiles Per-host fetch policies and selector sets
+     */
+    public WebScraper(String userAgent, HostProfiles hostProfiles) {
+        this.hostProfiles = hostProfiles;
         
         this.httpFetcher = new HttpFetcher(userAgent, Duration.ofSeconds(30));
         this.htmlParser = new HtmlParser();
-        this.robotsCompliance = new RobotsTxtCompliance(httpClient);
+        // robots.txt is fetched over the page fetcher's client rather than a client of its own
+        this.robotsCompliance = new RobotsTxtCompliance(httpFetcher.getHttpClient());
     }
     
     /**
@@ -48,43 +76,144 @@ public class WebScraper {
      * @return List of scraped data
      */
     public List<ScrapedData> scrapeUrl(String url, boolean respectRobots) {
+        FetchedPage page = fetchPage(url, respectRobots);
+        return page != null ? parsePage(page) : List.of();
+    }
+    
+    /**
+     * Fetches a single URL without parsing it.
+     * 
+     * @param url The URL to fetch
+     * @param respectRobots Whether to respect robots.txt rules
+     * @return The fetched page, or null if the URL is disallowed or could not be fetched successfully
+     */
+    public FetchedPage fetchPage(String url, boolean respectRobots) {
         try {
             // Check robots.txt compliance
             if (respectRobots && !robotsCompliance.isUrlAllowed(url)) {
                 logger.warn("URL not allowed by robots.txt: {}", url);
-                return List.of();
+                return null;
             }
             
-            // Get crawl delay
-            long crawlDelay = respectRobots ? robotsCompliance.getCrawlDelay(url) : 1000;
+            // Get the host's policy; a longer robots.txt crawl delay takes precedence
+            HostPolicy policy = hostProfiles.forUrl(url).getPolicy();
+            if (respectRobots) {
+                long crawlDelay = robotsCompliance.getCrawlDelay(url, 0);
+                if (crawlDelay > policy.getRateLimitMs()) {
+                    policy = policy.withRateLimitMs(crawlDelay);
+                }
+            }
             
             // Fetch the page
             logger.info("Fetching URL: {}", url);
-            HttpResponse<String> response = httpFetcher.fetch(url, crawlDelay);
+            HttpResponse<byte[]> response = httpFetcher.fetchBytes(url, policy);
             
             if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                // Parse the HTML content
-                List<ScrapedData> data = htmlParser.parseHtml(response.body(), url, selectors);
-                logger.info("Extracted {} records from URL: {}", data.size(), url);
-                return data;
+                return new FetchedPage(url, response, policy.getMaxBodyBytes());
             } else {
                 logger.warn("HTTP error {} for URL: {}", response.statusCode(), url);
-                return List.of();
+                return null;
             }
             
         } catch (Exception e) {
             logger.error("Error scraping URL {}: {}", url, e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Parses a fetched page and extracts data from it.
+     * With several schemas, the records of all schemas are returned in schema order.
+     * 
+     * @param page The fetched page
+     * @return List of scraped data
+     */
+    public List<ScrapedData> parsePage(FetchedPage page) {
+        List<ScrapedData> data = new ArrayList<>();
+        for (List<ScrapedData> records : parsePageSchemas(page).values()) {
+            data.addAll(records);
+        }
+        return data;
+    }
+    
+    /**
+     * Parses a fetched page once and extracts data for every schema.
+     * 
+     * @param page The fetched page
+     * @return Scraped data per schema name, in schema order
+     */
+    public Map<String, List<ScrapedData>> parsePageSchemas(FetchedPage page) {
+        return parsePageSchemas(page, null);
+    }
+    
+    /**
+     * Parses a fetched page once, hands the document to a callback before extraction, and
+     * extracts data for every schema.
+     * 
+     * @param page The fetched page
+     * @param onParsed Called with the parsed document before extraction, or null
+     * @return Scraped data per schema name, in schema order
+     */
+    public Map<String, List<ScrapedData>> parsePageSchemas(FetchedPage page, Consumer<Document> onParsed) {
+        try {
+            // Parse the HTML content straight from the raw bytes, pre-screening them first
+            ByteBuffer body = ByteBuffer.wrap(page.getDecodedBody());
+            Map<String, List<ScrapedData>> data =
+                    htmlParser.parseHtml(body, page.getCharset(), page.getUrl(),
+                            hostProfiles.forUrl(page.getUrl()).getSchemas(), onParsed);
+            if (logger.isInfoEnabled()) {
+                int records = data.values().stream().mapToInt(List::size).sum();
+                logger.info("Extracted {} records from URL: {}", records, page.getUrl());
+            }
+            return data;
+        } catch (Exception e) {
+            logger.error("Error scraping URL {}: {}", page.getUrl(), e.getMessage());
+            return Map.of();
+        }
+    }
+    
+    /**
+     * Extracts the outlinks of a fetched page from its raw bytes, without building a DOM.
+     * 
+     * @param page The fetched page
+     * @return Absolute outlinks in document order
+     */
+    public List<String> extractLinks(FetchedPage page) {
+        try {
+            return linkExtractor.extractLinks(ByteBuffer.wrap(page.getDecodedBody()), page.getCharset(), page.getUrl());
+        } catch (Exception e) {
+            logger.error("Error extracting links from URL {}: {}", page.getUrl(), e.getMessage());
             return List.of();
         }
     }
     
+    /**
+     * Scrapes multiple URLs and publishes their records as each page finishes, through a
+     * pipeline with the default stage sizes. Pages are only fetched as fast as the subscriber
+     * requests records, so memory is bounded by the pages in flight rather than by the number
+     * of URLs.
+     * 
+     * @param urls URLs to scrape
+     * @param respectRobots Whether to respect robots.txt rules
+     * @return Publisher of the records of every schema; accepts a single subscriber
+     */
+    public Flow.Publisher<ScrapedData> publish(List<String> urls, boolean respectRobots) {
+        ScraperConfig defaults = new ScraperConfig();
+        ScrapePipeline pipeline = new ScrapePipeline(this, Map.of(), defaults.getFetchThreads(),
+                defaults.getParseThreads(), defaults.getQueueCapacity());
+        return pipeline.publish(urls.iterator(), respectRobots, Integer.MAX_VALUE);
+    }
+    
     /**
      * Scrapes multiple URLs asynchronously.
      * 
      * @param urls List of URLs to scrape
      * @param respectRobots Whether to respect robots.txt rules
      * @return CompletableFuture containing list of all scraped data
+     * @deprecated Holds every record in memory until the last URL is done; use
+     *             {@link #publish(List, boolean)} to receive records as pages finish.
      */
+    @Deprecated
     public CompletableFuture<List<ScrapedData>> scrapeUrlsAsync(List<String> urls, boolean respectRobots) {
         List<CompletableFuture<List<ScrapedData>>> futures = urls.stream()
                 .map(url -> CompletableFuture.supplyAsync(() -> scrapeUrl(url, respectRobots)))
@@ -114,4 +243,22 @@ public class WebScraper {
     public Duration getTimeout() {
         return httpFetcher.getTimeout();
     }
+    
+    /**
+     * Gets the HTML parser used by this scraper.
+     * 
+     * @return HTML parser
+     */
+    public HtmlParser getHtmlParser() {
+        return htmlParser;
+    }
+    
+    /**
+     * Gets the schemas this scraper extracts.
+     * 
+     * @return Selector sets by schema name
+     */
+    public Map<String, DataSelectors> getSchemas() {
+        return hostProfiles.getDefaultSchemas();
+    }
 }
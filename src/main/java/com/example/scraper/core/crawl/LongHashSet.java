@@ -0,0 +1,84 @@
+package com.example.scraper.core.crawl;
+
+import com.example.scraper.core.persistence.Hash64;
+
+/**
+ * Set of strings kept as 64-bit hashes in an open-addressed array, with linear probing at a load
+ * factor of at most 0.6. Takes 8 to 16 bytes per entry instead of a string and a hash map node,
+ * and unlike a Bloom filter it never mistakes a new entry for an old one unless two strings share
+ * all 64 bits, which at 10 million entries happens about once in 370,000 runs.
+ */
+final class LongHashSet {
+    
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final double MAX_LOAD = 0.6;
+    
+    private long[] slots = new long[INITIAL_CAPACITY];
+    private int size;
+    
+    /**
+     * Adds a string.
+     * 
+     * @param value The string
+     * @return true if it was not in the set before
+     */
+    boolean add(String value) {
+        if (size + 1 > slots.length * MAX_LOAD) {
+            grow();
+        }
+        if (!insert(slots, Hash64.of(value))) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+    
+    /**
+     * Checks whether a string is in the set.
+     * 
+     * @param value The string
+     * @return true if it was added before
+     */
+    boolean contains(String value) {
+        long hash = Hash64.of(value);
+        int mask = slots.length - 1;
+        for (int slot = (int) hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (slots[slot] == hash) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Gets the number of strings in the set.
+     * 
+     * @return Number of strings
+     */
+    int size() {
+        return size;
+    }
+    
+    private void grow() {
+        long[] grown = new long[slots.length * 2];
+        for (long hash : slots) {
+            if (hash != 0) {
+                insert(grown, hash);
+            }
+        }
+        slots = grown;
+    }
+    
+    private static boolean insert(long[] slots, long hash) {
+        int mask = slots.length - 1;
+        int slot = (int) hash & mask;
+        while (slots[slot] != 0) {
+            if (slots[slot] == hash) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = hash;
+        return true;
+    }
+}
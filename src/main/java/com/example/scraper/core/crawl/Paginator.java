@@ -0,0 +1,135 @@
+package com.example.scraper.core.crawl;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+
+/**
+ * Finds the next page of a paginated listing, either from a next-link selector evaluated on the
+ * parsed page or by incrementing the page number in the URL.
+ * 
+ * <p>URL patterns know the next page before the current one is even parsed, so it can be fetched
+ * straight away. Because such a chain has no natural end, it is stopped once a page yields no
+ * records; selector chains end on the first page without a next link.
+ */
+public class Paginator {
+    
+    private final Evaluator nextSelector;
+    private final Pattern pagePattern;
+    private final Set<String> stoppedChains = ConcurrentHashMap.newKeySet();
+    
+    private Paginator(Evaluator nextSelector, Pattern pagePattern) {
+        this.nextSelector = nextSelector;
+        this.pagePattern = pagePattern;
+    }
+    
+    /**
+     * Creates a paginator that follows the href of the first element matching a selector,
+     * e.g. {@code a[rel=next]}.
+     * 
+     * @param cssSelector Selector of the next-page link
+     * @return Paginator
+     * @throws IllegalArgumentException if the selector is invalid
+     */
+    public static Paginator bySelector(String cssSelector) {
+        try {
+            return new Paginator(QueryParser.parse(cssSelector), null);
+        } catch (IllegalStateException e) {
+            throw new IllegalArgumentException("Invalid next-page selector: " + cssSelector, e);
+        }
+    }
+    
+    /**
+     * Creates a paginator that increments the page number captured by the first group of a
+     * pattern found in the URL, e.g. {@code page=(\d+)}.
+     * 
+     * @param regex Pattern whose first group captures the page number
+     * @return Paginator
+     * @throws IllegalArgumentException if the pattern is invalid or has no capturing group
+     */
+    public static Paginator byPattern(String regex) {
+        Pattern pattern = Pattern.compile(regex);
+        if (pattern.matcher("").groupCount() < 1) {
+            throw new IllegalArgumentException("Page pattern needs a group capturing the page number: " + regex);
+        }
+        return new Paginator(null, pattern);
+    }
+    
+    /**
+     * Checks whether the next page is found from the parsed document rather than the URL.
+     * 
+     * @return true for selector pagination
+     */
+    public boolean needsDocument() {
+        return nextSelector != null;
+    }
+    
+    /**
+     * Gets the next page URL by incrementing the page number in a URL.
+     * 
+     * @param url Current page URL
+     * @return Next page URL, or null if the URL has no page number or its chain was stopped
+     */
+    public String nextFromUrl(String url) {
+        if (pagePattern == null) {
+            return null;
+        }
+        Matcher matcher = pagePattern.matcher(url);
+        if (!matcher.find() || matcher.start(1) < 0 || stoppedChains.contains(chainOf(matcher, url))) {
+            return null;
+        }
+        long page;
+        try {
+            page = Long.parseLong(matcher.group(1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return url.substring(0, matcher.start(1)) + (page + 1) + url.substring(matcher.end(1));
+    }
+    
+    /**
+     * Gets the next page URL from a parsed page.
+     * 
+     * @param document Parsed current page
+     * @return Absolute next page URL, or null if the page has no next link
+     */
+    public String nextFromDocument(Document document) {
+        if (nextSelector == null) {
+            return null;
+        }
+        Element link = document.selectFirst(nextSelector);
+        if (link == null) {
+            return null;
+        }
+        String next = link.absUrl("href");
+        return next.isEmpty() ? null : next;
+    }
+    
+    /**
+     * Stops a URL pattern chain after one of its pages yielded no records.
+     * 
+     * @param url URL of the empty page
+     */
+    public void stop(String url) {
+        if (pagePattern == null) {
+            return;
+        }
+        Matcher matcher = pagePattern.matcher(url);
+        if (matcher.find() && matcher.start(1) >= 0) {
+            stoppedChains.add(chainOf(matcher, url));
+        }
+    }
+    
+    /**
+     * Identifies a pagination chain by its URL with the page number left out.
+     */
+    private static String chainOf(Matcher matcher, String url) {
+        return url.substring(0, matcher.start(1)) + url.substring(matcher.end(1));
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.scraper.core.crawl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams seed URLs one line at a time from a file or standard input, so scraping starts with the
+ * first line and memory stays the same however long the list is.
+ * 
+ * <p>Gzip input is detected from its magic bytes. Blank lines and lines starting with {@code #}
+ * are skipped. Repeated URLs are dropped by remembering a 64-bit hash of each distinct URL, which
+ * takes 8 to 16 bytes per URL, about 130 MB for 10 million seeds. Not thread-safe;
+ * callers share it under a lock like any other URL iterator.
+ */
+public class SeedReader implements Iterator<String>, Closeable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SeedReader.class);
+    
+    private final Iterator<String> urls;
+    private final BufferedReader reader;
+    private final LongHashSet seen = new LongHashSet();
+    private String next;
+    private boolean exhausted;
+    private long read;
+    private long duplicates;
+    
+    /**
+     * Creates a reader.
+     * 
+     * @param urls URLs to return before those read from the input, deduplicated with them
+     * @param input Plain or gzip-compressed input with one URL per line; closed by {@link #close()}
+     * @throws IOException if the start of the input cannot be read
+     */
+    public SeedReader(List<String> urls, InputStream input) throws IOException {
+        this.urls = urls.iterator();
+        this.reader = new BufferedReader(new InputStreamReader(decompress(input), StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Opens a seed file.
+     * 
+     * @param urls URLs to return before those in the file
+     * @param file Plain or gzip-compressed file with one URL per line
+     * @return SeedReader
+     * @throws IOException if the file cannot be opened
+     */
+    public static SeedReader open(List<String> urls, Path file) throws IOException {
+        return new SeedReader(urls, Files.newInputStream(file));
+    }
+    
+    @Override
+    public boolean hasNext() {
+        while (next == null && !exhausted) {
+            String line = nextLine();
+            if (line == null) {
+                exhausted = true;
+            } else if (!line.isEmpty() && !line.startsWith("#")) {
+                read++;
+                if (seen.add(line)) {
+                    next = line;
+                } else {
+                    duplicates++;
+                }
+            }
+        }
+        return next != null;
+    }
+    
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String url = next;
+        next = null;
+        return url;
+    }
+    
+    /**
+     * Gets the number of seed URLs read so far, including duplicates.
+     * 
+     * @return URLs read
+     */
+    public long getRead() {
+        return read;
+    }
+    
+    /**
+     * Gets the number of seed URLs dropped as duplicates so far.
+     * 
+     * @return duplicate URLs
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        exhausted = true;
+        reader.close();
+    }
+    
+    private String nextLine() {
+        if (urls.hasNext()) {
+            return urls.next().trim();
+        }
+        try {
+            String line = reader.readLine();
+            return line != null ? line.trim() : null;
+        } catch (IOException e) {
+            logger.error("Error reading seed URLs after {} lines: {}", read, e.getMessage());
+            return null;
+        }
+    }
+    
+    private static InputStream decompress(InputStream input) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(input, 1 << 16);
+        buffered.mark(2);
+        int magic = buffered.read() | (buffered.read() << 8);
+        buffered.reset();
+        return magic == GZIPInputStream.GZIP_MAGIC ? new GZIPInputStream(buffered, 1 << 16) : buffered;
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.scraper.core.crawl;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Admission queue for a crawl that follows links from its seed URLs.
+ * 
+ * <p>Links are admitted once each (ignoring fragments), only over HTTP(S), only on the hosts of
+ * the seed URLs, and only up to a maximum link depth from the seeds. As an iterator, the frontier
+ * hands out URLs in breadth-first order; {@link #hasNext()} blocks while the queue is empty but
+ * pages taken earlier are still being processed, since those may still contribute links. Every
+ * URL returned by {@link #next()} must eventually be passed to {@link #complete(String)}.
+ * 
+ * <p>Seeds can also be streamed: they are then pulled one at a time whenever the queue runs
+ * empty, so the links of earlier seeds are crawled before later seeds are read. Streamed seeds
+ * are taken as already deduplicated by their source and are not remembered, so memory does not
+ * grow with the length of the seed list; a page reached both as a link and as a later seed is
+ * fetched twice. Admitted links and the hosts of seeds are remembered as 64-bit hashes of 8 to
+ * 16 bytes each, so that part grows with the number of pages the crawl discovers.
+ */
+public class UrlFrontier implements Iterator<String> {
+    
+    private static final Logger logger = LoggerFactory.getLogger(UrlFrontier.class);
+    
+    private final int maxDepth;
+    private final Iterator<String> seeds;
+    private final LongHashSet hosts = new LongHashSet();
+    private final LongHashSet seen = new LongHashSet();
+    private final Deque<Entry> queue = new ArrayDeque<>();
+    private final Map<String, Integer> inFlight = new HashMap<>();
+    private long admitted;
+    
+    /**
+     * Creates a frontier seeded with start URLs.
+     * 
+     * @param seeds Start URLs, whose hosts are the only hosts links are followed to
+     * @param maxDepth Maximum number of links followed from a seed; 0 only visits the seeds
+     */
+    public UrlFrontier(List<String> seeds, int maxDepth) {
+        this.maxDepth = maxDepth;
+        this.seeds = Collections.emptyIterator();
+        for (String seed : seeds) {
+            String host = hostOf(seed);
+            if (host != null) {
+                hosts.add(host);
+            }
+        }
+        for (String seed : seeds) {
+            admit(seed, 0);
+        }
+    }
+    
+    /**
+     * Creates a frontier that pulls its seeds from an iterator as the queue runs empty. Links are
+     * followed to the hosts of the seeds read so far.
+     * 
+     * @param seeds Start URLs, read lazily under this frontier's lock
+     * @param maxDepth Maximum number of links followed from a seed; 0 only visits the seeds
+     */
+    public UrlFrontier(Iterator<String> seeds, int maxDepth) {
+        this.maxDepth = maxDepth;
+        this.seeds = seeds;
+    }
+    
+    /**
+     * Offers the outlinks of a page that was taken from this frontier.
+     * 
+     * @param fromUrl URL of the page the links were found on
+     * @param links Absolute outlinks
+     * @return number of links admitted
+     */
+    public synchronized int offer(String fromUrl, List<String> links) {
+        Integer depth = inFlight.get(fromUrl);
+        if (depth == null || depth >= maxDepth) {
+            return 0;
+        }
+        int count = 0;
+        for (String link : links) {
+            if (admit(link, depth + 1)) {
+                count++;
+            }
+        }
+        if (count > 0) {
+            logger.debug("Admitted {} new links from {}", count, fromUrl);
+            notifyAll();
+        }
+        return count;
+    }
+    
+    /**
+     * Offers the next page of a paginated listing. Unlike outlinks, following pagination does not
+     * count towards the link depth, so the next page gets the depth of the current one.
+     * 
+     * @param fromUrl URL of the current page, taken from this frontier
+     * @param nextUrl Absolute URL of the next page, or null
+     * @return true if the next page was admitted
+     */
+    public synchronized boolean offerNext(String fromUrl, String nextUrl) {
+        Integer depth = inFlight.get(fromUrl);
+        if (depth == null || nextUrl == null || !admit(nextUrl, depth)) {
+            return false;
+        }
+        // Listing pages go first so the next page is fetched while this one is extracted
+        queue.addFirst(queue.removeLast());
+        notifyAll();
+        return true;
+    }
+    
+    /**
+     * Marks a URL taken from this frontier as fully processed.
+     * 
+     * @param url The URL
+     */
+    public synchronized void complete(String url) {
+        if (inFlight.remove(url) != null) {
+            notifyAll();
+        }
+    }
+    
+    /**
+     * Checks whether another URL is or may become available, waiting while pages are in flight.
+     * 
+     * @return true if {@link #next()} will return a URL
+     */
+    @Override
+    public synchronized boolean hasNext() {
+        try {
+            while (queue.isEmpty() && !admitSeed() && !inFlight.isEmpty()) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return !queue.isEmpty();
+    }
+    
+    @Override
+    public synchronized String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Entry entry = queue.poll();
+        inFlight.put(entry.url, entry.depth);
+        return entry.url;
+    }
+    
+    /**
+     * Gets the number of distinct URLs admitted so far, including seeds.
+     * 
+     * @return URLs admitted
+     */
+    public synchronized long getAdmitted() {
+        return admitted;
+    }
+    
+    /**
+     * Admits the next valid streamed seed, without remembering it.
+     * 
+     * @return true if a seed was admitted, false if the seeds are exhausted
+     */
+    private boolean admitSeed() {
+        while (seeds.hasNext()) {
+            String normalized = normalize(seeds.next());
+            String host = normalized != null ? hostOf(normalized) : null;
+            if (host != null) {
+                hosts.add(host);
+                queue.add(new Entry(normalized, 0));
+                admitted++;
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private boolean admit(String url, int depth) {
+        String normalized = normalize(url);
+        if (normalized == null) {
+            return false;
+        }
+        String host = hostOf(normalized);
+        if (host == null || !hosts.contains(host) || !seen.add(normalized)) {
+            return false;
+        }
+        queue.add(new Entry(normalized, depth));
+        admitted++;
+        return true;
+    }
+    
+    /**
+     * Normalizes a URL for admission by dropping its fragment.
+     * 
+     * @param url Absolute URL
+     * @return Normalized URL, or null if it is not an HTTP(S) URL
+     */
+    private static String normalize(String url) {
+        String lower = url.toLowerCase(Locale.ROOT);
+        if (!lower.startsWith("http://") && !lower.startsWith("https://")) {
+            return null;
+        }
+        int fragment = url.indexOf('#');
+        return fragment >= 0 ? url.substring(0, fragment) : url;
+    }
+    
+    private static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host.toLowerCase(Locale.ROOT) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    private static final class Entry {
+        
+        private final String url;
+        private final int depth;
+        
+        Entry(String url, int depth) {
+            this.url = url;
+            this.depth = depth;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.scraper.core.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+
+/**
+ * A successfully fetched page whose raw body has not been decoded or parsed yet.
+ */
+public class FetchedPage {
+    
+    private final String url;
+    private final HttpResponse<byte[]> response;
+    private final long maxBodyBytes;
+    private byte[] decodedBody;
+    
+    public FetchedPage(String url, HttpResponse<byte[]> response) {
+        this(url, response, 0);
+    }
+    
+    /**
+     * Creates a fetched page whose decoded body is limited like its raw body.
+     * 
+     * @param url Requested URL
+     * @param response HTTP response with the body as bytes
+     * @param maxBodyBytes Number of decoded body bytes kept, or 0 for the default limit
+     */
+    public FetchedPage(String url, HttpResponse<byte[]> response, long maxBodyBytes) {
+        this.url = url;
+        this.response = response;
+        this.maxBodyBytes = maxBodyBytes;
+    }
+    
+    /**
+     * Gets the URL that was requested.
+     * 
+     * @return Requested URL
+     */
+    public String getUrl() {
+        return url;
+    }
+    
+    /**
+     * Gets the underlying HTTP response.
+     * 
+     * @return HTTP response with the body as bytes
+     */
+    public HttpResponse<byte[]> getResponse() {
+        return response;
+    }
+    
+    /**
+     * Gets the charset declared by the server for this page.
+     * 
+     * @return Charset name, or null if the content should be sniffed
+     */
+    public String getCharset() {
+        return HttpFetcher.getDeclaredCharset(response);
+    }
+    
+    /**
+     * Opens a stream over the page body with any Content-Encoding undone.
+     * 
+     * @return InputStream over the decoded body
+     * @throws IOException if the compressed body header is invalid
+     */
+    public InputStream openBody() throws IOException {
+        return HttpFetcher.openBody(response);
+    }
+    
+    /**
+     * Gets the page body with any Content-Encoding undone.
+     * The body is decoded on first use, up to the page's maximum body size, and kept for later
+     * calls.
+     * 
+     * @return Decoded body bytes
+     * @throws IOException if the compressed body is invalid
+     */
+    public byte[] getDecodedBody() throws IOException {
+        if (decodedBody == null) {
+            decodedBody = HttpFetcher.decodeBody(response, maxBodyBytes);
+        }
+        return decodedBody;
+    }
+    
+    /**
+     * Gets the size of the raw body as received.
+     * 
+     * @return body size in bytes
+     */
+    public int getBodySize() {
+        return response.body().length;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.scraper.core.http;
+
+import java.time.Duration;
+
+/**
+ * Fetch settings for one host: request spacing, concurrency, timeout and body size limit.
+ */
+public final class HostPolicy {
+    
+    /** Policy matching the fetcher's built-in defaults. */
+    public static final HostPolicy DEFAULT = new HostPolicy(1000, 2, Duration.ofSeconds(30), 0);
+    
+    private final long rateLimitMs;
+    private final int maxConcurrency;
+    private final Duration timeout;
+    private final long maxBodyBytes;
+    
+    /**
+     * Creates a host policy.
+     * 
+     * @param rateLimitMs Minimum delay between requests to the host in milliseconds
+     * @param maxConcurrency Maximum number of requests to the host in flight at once
+     * @param timeout Timeout of a single request
+     * @param maxBodyBytes Number of body bytes read before the rest is dropped, or 0 for unlimited
+     */
+    public HostPolicy(long rateLimitMs, int maxConcurrency, Duration timeout, long maxBodyBytes) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1: " + maxConcurrency);
+        }
+        this.rateLimitMs = Math.max(0, rateLimitMs);
+        this.maxConcurrency = maxConcurrency;
+        this.timeout = timeout;
+        this.maxBodyBytes = Math.max(0, maxBodyBytes);
+    }
+    
+    /**
+     * Creates a copy of this policy with a different request delay.
+     * 
+     * @param rateLimitMs Minimum delay between requests in milliseconds
+     * @return HostPolicy
+     */
+    public HostPolicy withRateLimitMs(long rateLimitMs) {
+        return rateLimitMs == this.rateLimitMs ? this
+                : new HostPolicy(rateLimitMs, maxConcurrency, timeout, maxBodyBytes);
+    }
+    
+    public long getRateLimitMs() {
+        return rateLimitMs;
+    }
+    
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+    
+    public Duration getTimeout() {
+        return timeout;
+    }
+    
+    public long getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+    
+    @Override
+    public String toString() {
+        return "HostPolicy{" +
+                "rateLimitMs=" + rateLimitMs +
+                ", maxConcurrency=" + maxConcurrency +
+                ", timeout=" + timeout +
+                ", maxBodyBytes=" + maxBodyBytes +
+                '}';
+    }
+}
@@ -1,14 +1,23 @@
 package com.example.scraper.core.http;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
 import java.time.Duration;
+import java.util.Locale;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,9 +32,11 @@ public class HttpFetcher {
     private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
     private static final int MAX_CONCURRENT_REQUESTS_PER_DOMAIN = 2;
     
+    /** Most bytes a compressed body is decoded to when its host sets no maximum body size. */
+    public static final long MAX_DECODED_BODY_BYTES = 128L * 1024 * 1024;
+    
     private final HttpClient httpClient;
-    private final ConcurrentMap<String, Semaphore> domainSemaphores;
-    private final ConcurrentMap<String, Long> lastRequestTime;
+    private final ConcurrentMap<String, DomainState> domains;
     private final String userAgent;
     private final Duration timeout;
     
@@ -36,8 +47,7 @@ public class HttpFetcher {
     public HttpFetcher(String userAgent, Duration timeout) {
         this.userAgent = userAgent;
         this.timeout = timeout;
-        this.domainSemaphores = new ConcurrentHashMap<>();
-        this.lastRequestTime = new ConcurrentHashMap<>();
+        this.domains = new ConcurrentHashMap<>();
         
         this.httpClient = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(10))
@@ -54,30 +64,33 @@ public class HttpFetcher {
      * @return CompletableFuture containing the HTTP response
      */
     public CompletableFuture<HttpResponse<String>> fetchAsync(String url, long crawlDelayMs) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                URI uri = URI.create(url);
-                String domain = uri.getScheme() + "://" + uri.getHost();
-                
-                // Apply rate limiting
-                applyRateLimit(domain, crawlDelayMs);
-                
-                // Acquire semaphore for concurrent request limiting
-                Semaphore semaphore = domainSemaphores.computeIfAbsent(domain, 
-                    k -> new Semaphore(MAX_CONCURRENT_REQUESTS_PER_DOMAIN));
-                
-                semaphore.acquire();
-                try {
-                    return fetchWithRetry(url);
-                } finally {
-                    semaphore.release();
-                }
-                
-            } catch (Exception e) {
-                logger.error("Error fetching URL {}: {}", url, e.getMessage());
-                throw new RuntimeException("Failed to fetch URL: " + url, e);
-            }
-        });
+        return fetchAsync(url, crawlDelayMs, HttpResponse.BodyHandlers.ofString());
+    }
+    
+    /**
+     * Fetches content from a URL asynchronously using the given body handler.
+     * 
+     * @param url The URL to fetch
+     * @param crawlDelayMs Minimum delay between requests to the same domain
+     * @param bodyHandler Handler used to consume the response body
+     * @param <T> Response body type
+     * @return CompletableFuture containing the HTTP response
+     */
+    private <T> CompletableFuture<HttpResponse<T>> fetchAsync(String url, long crawlDelayMs,
+                                                             HttpResponse.BodyHandler<T> bodyHandler) {
+        return CompletableFuture.supplyAsync(() -> fetch(url, crawlDelayMs, bodyHandler));
+    }
+    
+    /**
+     * Fetches the raw, undecoded response body from a URL with rate limiting and error handling.
+     * Charset decoding is left to the caller so the body is never inflated into an intermediate String.
+     * 
+     * @param url The URL to fetch
+     * @param crawlDelayMs Minimum delay between requests to the same domain
+     * @return CompletableFuture containing the HTTP response with the body as bytes
+     */
+    public CompletableFuture<HttpResponse<byte[]>> fetchBytesAsync(String url, long crawlDelayMs) {
+        return fetchAsync(url, crawlDelayMs, HttpResponse.BodyHandlers.ofByteArray());
     }
     
     /**
@@ -88,51 +101,134 @@ public class HttpFetcher {
      * @return HTTP response
      */
     public HttpResponse<String> fetch(String url, long crawlDelayMs) {
+        return fetch(url, crawlDelayMs, HttpResponse.BodyHandlers.ofString());
+    }
+    
+    /**
+     * Fetches content from a URL on the calling thread using the given body handler.
+     * 
+     * @param url The URL to fetch
+     * @param crawlDelayMs Minimum delay between requests to the same domain
+     * @param bodyHandler Handler used to consume the response body
+     * @param <T> Response body type
+     * @return HTTP response
+     */
+    private <T> HttpResponse<T> fetch(String url, long crawlDelayMs, HttpResponse.BodyHandler<T> bodyHandler) {
+        HostPolicy policy = new HostPolicy(crawlDelayMs, MAX_CONCURRENT_REQUESTS_PER_DOMAIN, timeout, 0);
+        return fetch(url, policy, bodyHandler);
+    }
+    
+    /**
+     * Fetches content from a URL on the calling thread under a host policy.
+     * 
+     * @param url The URL to fetch
+     * @param policy Request spacing, concurrency and timeout for the URL's host
+     * @param bodyHandler Handler used to consume the response body
+     * @param <T> Response body type
+     * @return HTTP response
+     */
+    private <T> HttpResponse<T> fetch(String url, HostPolicy policy, HttpResponse.BodyHandler<T> bodyHandler) {
         try {
-            return fetchAsync(url, crawlDelayMs).get();
+            URI uri = URI.create(url);
+            String domain = uri.getScheme() + "://" + uri.getHost();
+            
+            // The concurrency limit is fixed by the first request to a domain
+            DomainState state = domains.computeIfAbsent(domain, k -> new DomainState(policy.getMaxConcurrency()));
+            
+            // Apply rate limiting
+            applyRateLimit(state, domain, policy.getRateLimitMs());
+            
+            // Acquire semaphore for concurrent request limiting
+            state.permits.acquire();
+            try {
+                return fetchWithRetry(url, bodyHandler, policy.getTimeout());
+            } finally {
+                state.permits.release();
+            }
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted fetching URL {}", url);
+            throw new RuntimeException("Failed to fetch URL: " + url, e);
         } catch (Exception e) {
-            logger.error("Error in synchronous fetch for URL {}: {}", url, e.getMessage());
+            logger.error("Error fetching URL {}: {}", url, e.getMessage());
             throw new RuntimeException("Failed to fetch URL: " + url, e);
         }
     }
     
+    /**
+     * Synchronous version of fetchBytesAsync. The request runs on the calling thread.
+     * 
+     * @param url The URL to fetch
+     * @param crawlDelayMs Minimum delay between requests to the same domain
+     * @return HTTP response with the body as bytes
+     */
+    public HttpResponse<byte[]> fetchBytes(String url, long crawlDelayMs) {
+        return fetch(url, crawlDelayMs, HttpResponse.BodyHandlers.ofByteArray());
+    }
+    
+    /**
+     * Fetches the raw response body from a URL on the calling thread under a host policy.
+     * Bodies longer than the policy's maximum body size are truncated.
+     * 
+     * @param url The URL to fetch
+     * @param policy Request spacing, concurrency, timeout and body size limit for the URL's host
+     * @return HTTP response with the body as bytes
+     */
+    public HttpResponse<byte[]> fetchBytes(String url, HostPolicy policy) {
+        long maxBodyBytes = policy.getMaxBodyBytes();
+        HttpResponse.BodyHandler<byte[]> bodyHandler = maxBodyBytes > 0
+                ? responseInfo -> new TruncatingBodySubscriber(url, maxBodyBytes)
+                : HttpResponse.BodyHandlers.ofByteArray();
+        return fetch(url, policy, bodyHandler);
+    }
+    
     /**
      * Applies rate limiting by ensuring minimum delay between requests to the same domain.
+     * Each caller reserves the next free request slot of the domain before sleeping, so
+     * concurrent callers are spaced out instead of all waking up together.
      * 
+     * @param state Request state of the domain
      * @param domain The domain to apply rate limiting for
      * @param crawlDelayMs Minimum delay in milliseconds
      */
-    private void applyRateLimit(String domain, long crawlDelayMs) {
-        Long lastTime = lastRequestTime.get(domain);
-        if (lastTime != null) {
-            long timeSinceLastRequest = System.currentTimeMillis() - lastTime;
-            if (timeSinceLastRequest < crawlDelayMs) {
-                long sleepTime = crawlDelayMs - timeSinceLastRequest;
-                logger.debug("Rate limiting: sleeping {}ms for domain {}", sleepTime, domain);
-                try {
-                    Thread.sleep(sleepTime);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("Rate limiting interrupted", e);
-                }
+    private void applyRateLimit(DomainState state, String domain, long crawlDelayMs) {
+        long now = System.currentTimeMillis();
+        long slot;
+        synchronized (state) {
+            slot = Math.max(now, state.nextRequestTime);
+            state.nextRequestTime = slot + crawlDelayMs;
+        }
+        
+        long sleepTime = slot - now;
+        if (sleepTime > 0) {
+            logger.debug("Rate limiting: sleeping {}ms for domain {}", sleepTime, domain);
+            try {
+                Thread.sleep(sleepTime);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Rate limiting interrupted", e);
             }
         }
-        lastRequestTime.put(domain, System.currentTimeMillis());
     }
     
     /**
      * Fetches content with exponential backoff retry for server errors.
      * 
      * @param url The URL to fetch
+     * @param bodyHandler Handler used to consume the response body
+     * @param timeout Timeout of each attempt
+     * @param <T> Response body type
      * @return HTTP response
      */
-    private HttpResponse<String> fetchWithRetry(String url) {
+    private <T> HttpResponse<T> fetchWithRetry(String url, HttpResponse.BodyHandler<T> bodyHandler,
+                                               Duration timeout) {
         int maxRetries = 3;
         int baseDelayMs = 1000; // 1 second base delay
         
         for (int attempt = 0; attempt <= maxRetries; attempt++) {
             try {
-                HttpResponse<String> response = performRequest(url);
+                HttpResponse<T> response = performRequest(url, bodyHandler, timeout);
                 int statusCode = response.statusCode();
                 
                 if (statusCode >= 200 && statusCode < 300) {
@@ -204,9 +300,13 @@ public class HttpFetcher {
      * Performs the actual HTTP request.
      * 
      * @param url The URL to request
+     * @param bodyHandler Handler used to consume the response body
+     * @param timeout Request timeout
+     * @param <T> Response body type
      * @return HTTP response
      */
-    private HttpResponse<String> performRequest(String url) throws Exception {
+    private <T> HttpResponse<T> performRequest(String url, HttpResponse.BodyHandler<T> bodyHandler,
+                                               Duration timeout) throws Exception {
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(url))
                 .timeout(timeout)
@@ -217,7 +317,126 @@ public class HttpFetcher {
                 .GET()
                 .build();
         
-        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        return httpClient.send(request, bodyHandler);
+    }
+    
+    /**
+     * Gets the charset declared in the Content-Type header of a response.
+     * 
+     * @param response The HTTP response
+     * @return Supported charset name, or null if none was declared or it is not supported
+     */
+    public static String getDeclaredCharset(HttpResponse<?> response) {
+        String contentType = response.headers().firstValue("Content-Type").orElse(null);
+        if (contentType == null) {
+            return null;
+        }
+        
+        for (String param : contentType.split(";")) {
+            String trimmed = param.trim();
+            if (trimmed.regionMatches(true, 0, "charset=", 0, 8)) {
+                String charset = trimmed.substring(8).replace("\"", "").replace("'", "").trim();
+                try {
+                    return Charset.isSupported(charset) ? charset : null;
+                } catch (IllegalArgumentException e) {
+                    logger.debug("Ignoring invalid charset in Content-Type: {}", contentType);
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Opens a stream over a raw response body, undoing any gzip or deflate Content-Encoding.
+     * 
+     * @param response The HTTP response with the body as bytes
+     * @return InputStream over the decoded body
+     * @throws IOException if the compressed body header is invalid
+     */
+    public static InputStream openBody(HttpResponse<byte[]> response) throws IOException {
+        InputStream in = new ByteArrayInputStream(response.body());
+        
+        switch (getContentEncoding(response)) {
+            case "gzip":
+            case "x-gzip":
+                return new GZIPInputStream(in);
+            case "deflate":
+                return new InflaterInputStream(in);
+            default:
+                return in;
+        }
+    }
+    
+    /**
+     * Gets a raw response body with any gzip or deflate Content-Encoding undone, up to
+     * {@link #MAX_DECODED_BODY_BYTES}.
+     * 
+     * @param response The HTTP response with the body as bytes
+     * @return Decoded body bytes
+     * @throws IOException if the compressed body is invalid
+     */
+    public static byte[] decodeBody(HttpResponse<byte[]> response) throws IOException {
+        return decodeBody(response, 0);
+    }
+    
+    /**
+     * Gets a raw response body with any gzip or deflate Content-Encoding undone.
+     * Uncompressed bodies are returned as-is without copying. A compressed body that ends early,
+     * for example because it was truncated at a maximum body size, decodes to what it holds.
+     * Decoding stops once the limit is reached, so a small compressed body cannot expand into
+     * more memory than the host's body size allows.
+     * 
+     * @param response The HTTP response with the body as bytes
+     * @param maxBytes Number of decoded bytes kept before the rest is dropped, or 0 for
+     *                 {@link #MAX_DECODED_BODY_BYTES}
+     * @return Decoded body bytes
+     * @throws IOException if the compressed body is invalid
+     */
+    public static byte[] decodeBody(HttpResponse<byte[]> response, long maxBytes) throws IOException {
+        String encoding = getContentEncoding(response);
+        if (encoding.isEmpty() || encoding.equals("identity")) {
+            return response.body();
+        }
+        long limit = maxBytes > 0 ? Math.min(maxBytes, MAX_DECODED_BODY_BYTES) : MAX_DECODED_BODY_BYTES;
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream((int) Math.min(limit, response.body().length));
+        try (InputStream in = openBody(response)) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while (decoded.size() < limit
+                    && (n = in.read(buffer, 0, (int) Math.min(buffer.length, limit - decoded.size()))) != -1) {
+                decoded.write(buffer, 0, n);
+            }
+            if (decoded.size() >= limit) {
+                logger.debug("Decoded body of {} bytes truncated at {} bytes", response.body().length, limit);
+            }
+        } catch (EOFException e) {
+            logger.debug("Compressed body ended early, keeping {} decoded bytes", decoded.size());
+        }
+        return decoded.toByteArray();
+    }
+    
+    /**
+     * Gets the Content-Encoding of a response.
+     * 
+     * @param response The HTTP response
+     * @return Lower-cased encoding, or an empty string if none was declared
+     */
+    private static String getContentEncoding(HttpResponse<?> response) {
+        return response.headers().firstValue("Content-Encoding").orElse("").trim().toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * Request state shared by all fetches to one domain.
+     */
+    private static final class DomainState {
+        
+        private final Semaphore permits;
+        private long nextRequestTime;
+        
+        DomainState(int maxConcurrency) {
+            this.permits = new Semaphore(maxConcurrency);
+        }
     }
     
     /**
@@ -229,6 +448,15 @@ public class HttpFetcher {
         return userAgent;
     }
     
+    /**
+     * Gets the HTTP client of this fetcher, for other requests that should share its connections.
+     * 
+     * @return HttpClient
+     */
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+    
     /**
      * Gets the timeout duration used by this fetcher.
      * 
@@ -0,0 +1,76 @@
+package com.example.scraper.core.http;
+
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects a response body up to a maximum size and cancels the rest of the download,
+ * like jsoup's own maximum body size.
+ */
+final class TruncatingBodySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TruncatingBodySubscriber.class);
+    
+    private final String url;
+    private final long maxBytes;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+    private Flow.Subscription subscription;
+    
+    TruncatingBodySubscriber(String url, long maxBytes) {
+        this.url = url;
+        this.maxBytes = maxBytes;
+    }
+    
+    @Override
+    public CompletionStage<byte[]> getBody() {
+        return result;
+    }
+    
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(Long.MAX_VALUE);
+    }
+    
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        if (result.isDone()) {
+            return;
+        }
+        for (ByteBuffer item : items) {
+            int length = (int) Math.min(item.remaining(), maxBytes - body.size());
+            if (item.hasArray()) {
+                body.write(item.array(), item.arrayOffset() + item.position(), length);
+            } else {
+                byte[] chunk = new byte[length];
+                item.get(chunk);
+                body.write(chunk, 0, length);
+            }
+            if (body.size() >= maxBytes) {
+                logger.debug("Body of {} truncated at {} bytes", url, maxBytes);
+                subscription.cancel();
+                result.complete(body.toByteArray());
+                return;
+            }
+        }
+    }
+    
+    @Override
+    public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+    
+    @Override
+    public void onComplete() {
+        result.complete(body.toByteArray());
+    }
+}
@@ -0,0 +1,364 @@
+package com.example.scraper.core.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import com.example.scraper.model.DataSelectors;
+import com.example.scraper.model.ParseMode;
+
+/**
+ * Cheap byte-level check that tells whether a page can possibly contain a container element,
+ * so pages that cannot match are skipped before any DOM is built.
+ * 
+ * <p>Each alternative of the container selector is reduced to the literal tokens its last
+ * compound selector requires: {@code <tag}, class names, ids and attribute names. All tokens are
+ * compiled into one case-insensitive Aho-Corasick automaton that scans the raw bytes in a single
+ * pass. A page passes as soon as every token of some alternative has been seen. Anything the
+ * analysis does not understand simply contributes no token, so the screen can let a page through
+ * needlessly but never rejects a page the selector would match.
+ */
+public class ContainerPrescreen {
+    
+    private static final int MAX_TOKENS = 64;
+    private static final int ALPHABET = 256;
+    
+    // Elements the HTML parser creates even when the markup never mentions them
+    private static final Set<String> IMPLIED_TAGS = Set.of("html", "head", "body", "tbody", "tr", "colgroup", "p");
+    
+    private static final ContainerPrescreen PASS_ALL = new ContainerPrescreen(null, null, null);
+    
+    private final int[] transitions;
+    private final long[] outputs;
+    private final long[] alternatives;
+    
+    private ContainerPrescreen(int[] transitions, long[] outputs, long[] alternatives) {
+        this.transitions = transitions;
+        this.outputs = outputs;
+        this.alternatives = alternatives;
+    }
+    
+    /**
+     * Compiles a pre-screen for the container selector of a selector configuration.
+     * In structured parse mode, pages with JSON-LD or microdata also pass.
+     * 
+     * @param selectors CSS selectors for data extraction
+     * @return Compiled pre-screen; one that passes every page if nothing useful can be derived
+     */
+    public static ContainerPrescreen compile(DataSelectors selectors) {
+        String containerSelector = selectors.getContainerSelector();
+        if (containerSelector == null || containerSelector.trim().isEmpty()) {
+            return PASS_ALL;
+        }
+        
+        List<List<String>> alternatives = new ArrayList<>();
+        for (String alternative : splitTopLevel(containerSelector, ',')) {
+            List<String> tokens = requiredTokens(lastCompound(alternative.trim()));
+            if (tokens.isEmpty()) {
+                // This alternative could match any page
+                return PASS_ALL;
+            }
+            alternatives.add(tokens);
+        }
+        if (selectors.getParseMode() == ParseMode.STRUCTURED) {
+            alternatives.add(List.of("application/ld+json"));
+            alternatives.add(List.of("itemscope"));
+        }
+        
+        return build(alternatives);
+    }
+    
+    /**
+     * Checks whether a page might contain a container element.
+     * 
+     * @param html Raw page bytes between the buffer's position and limit; the buffer is not modified
+     * @param charsetName Charset declared for the page, or null if unknown
+     * @return false only if the page certainly cannot match
+     */
+    public boolean mightMatch(ByteBuffer html, String charsetName) {
+        if (transitions == null || !isAsciiCompatible(html, charsetName)) {
+            return true;
+        }
+        
+        long found = 0;
+        int state = 0;
+        int limit = html.limit();
+        for (int i = html.position(); i < limit; i++) {
+            state = transitions[(state << 8) | (html.get(i) & 0xFF)];
+            long hits = outputs[state];
+            if (hits != 0 && (found | hits) != found) {
+                found |= hits;
+                for (long required : alternatives) {
+                    if ((found & required) == required) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Checks whether this pre-screen can ever reject a page.
+     * 
+     * @return true if the pre-screen is active
+     */
+    public boolean isEnabled() {
+        return transitions != null;
+    }
+    
+    /**
+     * Builds the automaton for a set of alternatives, each a list of required tokens.
+     * 
+     * @param alternativeTokens Required tokens per alternative
+     * @return Compiled pre-screen
+     */
+    private static ContainerPrescreen build(List<List<String>> alternativeTokens) {
+        Map<String, Integer> tokenIds = new LinkedHashMap<>();
+        long[] alternatives = new long[alternativeTokens.size()];
+        for (int a = 0; a < alternatives.length; a++) {
+            for (String token : alternativeTokens.get(a)) {
+                Integer id = tokenIds.computeIfAbsent(token, t -> tokenIds.size());
+                if (id >= MAX_TOKENS) {
+                    return PASS_ALL;
+                }
+                alternatives[a] |= 1L << id;
+            }
+        }
+        
+        // Trie over lower-cased token bytes
+        List<int[]> gotos = new ArrayList<>();
+        List<Long> outputList = new ArrayList<>();
+        gotos.add(newRow());
+        outputList.add(0L);
+        for (Map.Entry<String, Integer> entry : tokenIds.entrySet()) {
+            int state = 0;
+            for (byte b : entry.getKey().getBytes(StandardCharsets.US_ASCII)) {
+                int c = b & 0xFF;
+                if (gotos.get(state)[c] < 0) {
+                    gotos.get(state)[c] = gotos.size();
+                    gotos.add(newRow());
+                    outputList.add(0L);
+                }
+                state = gotos.get(state)[c];
+            }
+            outputList.set(state, outputList.get(state) | (1L << entry.getValue()));
+        }
+        
+        // Breadth-first failure links, folded into a dense DFA
+        int stateCount = gotos.size();
+        int[] transitions = new int[stateCount * ALPHABET];
+        long[] outputs = new long[stateCount];
+        int[] failure = new int[stateCount];
+        int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+        
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = gotos.get(0)[c];
+            if (next > 0) {
+                transitions[c] = next;
+                failure[next] = 0;
+                queue[tail++] = next;
+            }
+        }
+        outputs[0] = outputList.get(0);
+        
+        while (head < tail) {
+            int state = queue[head++];
+            outputs[state] = outputList.get(state) | outputs[failure[state]];
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = gotos.get(state)[c];
+                if (next > 0) {
+                    failure[next] = transitions[failure[state] * ALPHABET + c];
+                    transitions[state * ALPHABET + c] = next;
+                    queue[tail++] = next;
+                } else {
+                    transitions[state * ALPHABET + c] = transitions[failure[state] * ALPHABET + c];
+                }
+            }
+        }
+        
+        // Case-insensitive: upper-case input bytes follow the lower-case transitions
+        for (int state = 0; state < stateCount; state++) {
+            for (int c = 'A'; c <= 'Z'; c++) {
+                transitions[state * ALPHABET + c] = transitions[state * ALPHABET + Character.toLowerCase(c)];
+            }
+        }
+        
+        return new ContainerPrescreen(transitions, outputs, alternatives);
+    }
+    
+    private static int[] newRow() {
+        int[] row = new int[ALPHABET];
+        Arrays.fill(row, -1);
+        return row;
+    }
+    
+    /**
+     * Checks that the page bytes encode ASCII as single bytes, so tokens can be matched directly.
+     * 
+     * @param html Raw page bytes
+     * @param charsetName Declared charset, or null
+     * @return false for UTF-16/UTF-32 content
+     */
+    private static boolean isAsciiCompatible(ByteBuffer html, String charsetName) {
+        if (charsetName != null) {
+            String normalized = charsetName.toLowerCase(Locale.ROOT);
+            if (normalized.contains("utf-16") || normalized.contains("utf-32")
+                    || normalized.contains("utf16") || normalized.contains("utf32")) {
+                return false;
+            }
+        }
+        if (html.remaining() >= 2) {
+            int first = html.get(html.position()) & 0xFF;
+            int second = html.get(html.position() + 1) & 0xFF;
+            boolean utf16Bom = (first == 0xFE && second == 0xFF) || (first == 0xFF && second == 0xFE);
+            boolean utf32BeBom = first == 0x00 && second == 0x00;
+            return !utf16Bom && !utf32BeBom;
+        }
+        return true;
+    }
+    
+    /**
+     * Splits a selector on a separator that is not nested in brackets, parentheses or quotes.
+     * 
+     * @param selector Selector text
+     * @param separator Separator character
+     * @return Parts in order
+     */
+    static List<String> splitTopLevel(String selector, char separator) {
+        List<String> parts = new ArrayList<>();
+        int depth = 0;
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i < selector.length(); i++) {
+            char c = selector.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '(' || c == '[') {
+                depth++;
+            } else if (c == ')' || c == ']') {
+                depth--;
+            } else if (c == separator && depth == 0) {
+                parts.add(selector.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(selector.substring(start));
+        return parts;
+    }
+    
+    /**
+     * Gets the last compound selector of a complex selector, i.e. the part that the
+     * matched element itself must satisfy.
+     * 
+     * @param selector Complex selector without top-level commas
+     * @return Last compound selector
+     */
+    static String lastCompound(String selector) {
+        int depth = 0;
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i < selector.length(); i++) {
+            char c = selector.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '(' || c == '[') {
+                depth++;
+            } else if (c == ')' || c == ']') {
+                depth--;
+            } else if (depth == 0 && (Character.isWhitespace(c) || c == '>' || c == '+' || c == '~')) {
+                start = i + 1;
+            }
+        }
+        return selector.substring(start);
+    }
+    
+    /**
+     * Derives the literal tokens a page must contain for an element to match a compound selector.
+     * Parts that cannot be turned into a safe token are ignored.
+     * 
+     * @param compound Compound selector such as {@code div.product[data-id]}
+     * @return Lower-cased tokens, possibly empty
+     */
+    static List<String> requiredTokens(String compound) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        int length = compound.length();
+        
+        int tagEnd = identifierEnd(compound, 0);
+        if (tagEnd > 0) {
+            String tag = compound.substring(0, tagEnd).toLowerCase(Locale.ROOT);
+            if (!IMPLIED_TAGS.contains(tag)) {
+                tokens.add("<" + tag);
+            }
+            i = tagEnd;
+        }
+        
+        while (i < length) {
+            char c = compound.charAt(i);
+            if (c == '.' || c == '#') {
+                int end = identifierEnd(compound, i + 1);
+                if (end == i + 1) {
+                    return tokens;
+                }
+                addToken(tokens, compound.substring(i + 1, end));
+                i = end;
+            } else if (c == '[') {
+                int close = compound.indexOf(']', i);
+                if (close < 0) {
+                    return tokens;
+                }
+                int nameEnd = identifierEnd(compound, i + 1);
+                if (nameEnd > i + 1) {
+                    addToken(tokens, compound.substring(i + 1, nameEnd));
+                }
+                i = close + 1;
+            } else {
+                // Pseudo-classes, universal selectors, escapes: stop collecting from this compound
+                return tokens;
+            }
+        }
+        return tokens;
+    }
+    
+    private static void addToken(List<String> tokens, String token) {
+        if (token.chars().allMatch(ch -> ch < 0x80)) {
+            tokens.add(token.toLowerCase(Locale.ROOT));
+        }
+    }
+    
+    /**
+     * Finds the end of a CSS identifier made of letters, digits, hyphens and underscores.
+     * 
+     * @param text Selector text
+     * @param start Start index
+     * @return Index of the first character after the identifier
+     */
+    private static int identifierEnd(String text, int start) {
+        int i = start;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (!(Character.isLetterOrDigit(c) || c == '-' || c == '_')) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+}
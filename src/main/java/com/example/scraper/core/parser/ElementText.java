@@ -0,0 +1,204 @@
+package com.example.scraper.core.parser;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jsoup.nodes.CDataNode;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+/**
+ * Low-allocation equivalent of {@link Element#text()} followed by trimming.
+ * 
+ * <p>Text nodes are collected with whitespace collapsed into a builder owned by the current thread,
+ * and the trimmed value is copied out once, so extracting a field allocates only its result string.
+ * Regular expressions run directly against the builder. The spacing rules mirror jsoup's own text
+ * accumulator: a space before block elements and {@code <br>}, a space between a block element and
+ * following inline content, and whitespace kept as-is inside {@code <pre>}-like elements.
+ */
+final class ElementText implements NodeVisitor {
+    
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+    private static final ThreadLocal<ElementText> LOCAL = ThreadLocal.withInitial(ElementText::new);
+    
+    private StringBuilder accum = new StringBuilder(INITIAL_CAPACITY);
+    
+    private ElementText() {
+    }
+    
+    /**
+     * Gets the normalized text of an element.
+     * 
+     * @param element The element
+     * @return Same value as {@code element.text().trim()}, or null if that is empty
+     */
+    static String text(Element element) {
+        ElementText collector = LOCAL.get();
+        StringBuilder text = collector.collect(element);
+        try {
+            int end = trimEnd(text, 0, text.length());
+            int start = trimStart(text, 0, end);
+            return start < end ? text.substring(start, end) : null;
+        } finally {
+            collector.release();
+        }
+    }
+    
+    /**
+     * Finds a pattern in the normalized text of an element.
+     * 
+     * @param element The element
+     * @param pattern Pattern to find
+     * @return The first capturing group, or the whole match if the pattern has no groups, trimmed;
+     *         null if the pattern does not match or the value is empty
+     */
+    static String find(Element element, Pattern pattern) {
+        ElementText collector = LOCAL.get();
+        StringBuilder text = collector.collect(element);
+        try {
+            int end = trimEnd(text, 0, text.length());
+            int start = trimStart(text, 0, end);
+            Matcher matcher = pattern.matcher(text).region(start, end);
+            if (!matcher.find()) {
+                return null;
+            }
+            int group = matcher.groupCount() > 0 ? 1 : 0;
+            if (matcher.start(group) < 0) {
+                return null;
+            }
+            int valueEnd = trimEnd(text, matcher.start(group), matcher.end(group));
+            int valueStart = trimStart(text, matcher.start(group), valueEnd);
+            return valueStart < valueEnd ? text.substring(valueStart, valueEnd) : null;
+        } finally {
+            collector.release();
+        }
+    }
+    
+    private StringBuilder collect(Element element) {
+        NodeTraversor.traverse(this, element);
+        return accum;
+    }
+    
+    private void release() {
+        if (accum.capacity() > MAX_RETAINED_CAPACITY) {
+            // Do not keep a huge buffer alive after one very large element
+            accum = new StringBuilder(INITIAL_CAPACITY);
+        } else {
+            accum.setLength(0);
+        }
+    }
+    
+    @Override
+    public void head(Node node, int depth) {
+        if (node instanceof TextNode) {
+            TextNode textNode = (TextNode) node;
+            if (textNode instanceof CDataNode || preservesWhitespace(textNode.parent())) {
+                accum.append(textNode.getWholeText());
+            } else {
+                appendNormalizedWhitespace(textNode.getWholeText(), endsWithSpace());
+            }
+        } else if (node instanceof Element) {
+            Element element = (Element) node;
+            if (accum.length() > 0 && (element.isBlock() || element.nameIs("br")) && !endsWithSpace()) {
+                accum.append(' ');
+            }
+        }
+    }
+    
+    @Override
+    public void tail(Node node, int depth) {
+        // A block element followed by text or inline content is separated from it by a space
+        if (node instanceof Element && !((Element) node).tag().isInline()) {
+            Node next = node.nextSibling();
+            boolean inlineNext = next instanceof TextNode
+                    || next instanceof Element && ((Element) next).tag().isInline();
+            if (inlineNext && !endsWithSpace()) {
+                accum.append(' ');
+            }
+        }
+    }
+    
+    /**
+     * Appends text with every run of whitespace collapsed into one space and invisible characters
+     * dropped, the same as jsoup's text accumulator.
+     * 
+     * @param text Text to append
+     * @param stripLeading true to drop whitespace before the first visible character
+     */
+    private void appendNormalizedWhitespace(String text, boolean stripLeading) {
+        boolean lastWasWhite = false;
+        boolean reachedNonWhite = false;
+        int c;
+        for (int i = 0; i < text.length(); i += Character.charCount(c)) {
+            c = text.codePointAt(i);
+            if (isWhitespace(c)) {
+                if ((stripLeading && !reachedNonWhite) || lastWasWhite) {
+                    continue;
+                }
+                accum.append(' ');
+                lastWasWhite = true;
+            } else if (!isInvisible(c)) {
+                accum.appendCodePoint(c);
+                lastWasWhite = false;
+                reachedNonWhite = true;
+            }
+        }
+    }
+    
+    /**
+     * Checks whether a code point displays as whitespace, including the non-breaking space.
+     */
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == '\u00a0';
+    }
+    
+    /**
+     * Checks whether a code point is a zero-width space or soft hyphen, which text leaves out.
+     */
+    private static boolean isInvisible(int c) {
+        return c == '\u200b' || c == '\u00ad';
+    }
+    
+    private boolean endsWithSpace() {
+        return accum.length() != 0 && accum.charAt(accum.length() - 1) == ' ';
+    }
+    
+    /**
+     * Checks whether an element or one of its five closest ancestors keeps whitespace as-is,
+     * the same depth jsoup looks at.
+     * 
+     * @param node Parent of a text node
+     * @return true if whitespace must not be collapsed
+     */
+    private static boolean preservesWhitespace(Node node) {
+        if (!(node instanceof Element)) {
+            return false;
+        }
+        Element element = (Element) node;
+        for (int i = 0; i < 6 && element != null; i++) {
+            if (element.tag().preserveWhitespace()) {
+                return true;
+            }
+            element = element.parent();
+        }
+        return false;
+    }
+    
+    private static int trimStart(CharSequence text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+    
+    private static int trimEnd(CharSequence text, int start, int end) {
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,322 @@
+package com.example.scraper.core.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.example.scraper.model.DataSelectors;
+import com.example.scraper.model.FieldExtractor;
+import com.example.scraper.model.FieldSelector;
+import com.example.scraper.model.ScrapedData;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.Collector;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.QueryParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A set of named fields compiled once and evaluated against each container in a single
+ * traversal of its subtree. Each field takes the first element in document order that matches
+ * its selector, which is the same element {@code container.selectFirst(selector)} would return.
+ * 
+ * <p>With a learned {@link HostTemplate}, a field instead takes the element at its learned path
+ * whenever that element matches. Fields that matched more than one element of a container while
+ * learning get no path, so this only differs from {@code selectFirst} on a page that adds an
+ * earlier match the learning pages never had.
+ */
+public class ExtractionPlan {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ExtractionPlan.class);
+    private static final Element EMPTY_ROOT = new Element("div");
+    
+    private final CompiledField[] fields;
+    private final boolean requiresTitleOrUrl;
+    
+    private ExtractionPlan(List<CompiledField> fields) {
+        this.fields = fields.toArray(new CompiledField[0]);
+        this.requiresTitleOrUrl = fields.stream()
+                .anyMatch(f -> f.name.equals(ScrapedData.TITLE) || f.name.equals(ScrapedData.URL));
+    }
+    
+    /**
+     * Compiles the effective fields of a selector configuration.
+     * 
+     * @param selectors CSS selectors for data extraction
+     * @return Compiled plan
+     */
+    public static ExtractionPlan compile(DataSelectors selectors) {
+        return compile(selectors.getEffectiveFields());
+    }
+    
+    /**
+     * Compiles a list of field configurations. Fields with an invalid selector or pattern are
+     * logged and left out of the plan.
+     * 
+     * @param fieldSelectors Field configurations
+     * @return Compiled plan
+     */
+    public static ExtractionPlan compile(List<FieldSelector> fieldSelectors) {
+        List<CompiledField> compiled = new ArrayList<>();
+        for (FieldSelector field : fieldSelectors) {
+            try {
+                compiled.add(new CompiledField(field));
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                logger.warn("Skipping field '{}' with invalid configuration: {}", field.getName(), e.getMessage());
+            }
+        }
+        return new ExtractionPlan(compiled);
+    }
+    
+    /**
+     * Extracts a record from a container element.
+     * A record is returned only if it has a title or URL; plans that extract neither
+     * return a record as soon as any field has a value.
+     * 
+     * @param container The container element
+     * @return ScrapedData object or null if nothing usable was extracted
+     */
+    public ScrapedData extract(Element container) {
+        return extract(container, null);
+    }
+    
+    /**
+     * Extracts a record from a container element, using or training a host template.
+     * While the template is learning, fields are matched in full and their locations recorded.
+     * Once learned, each field is first looked up at its learned path and only fields whose
+     * element there does not match the selector are matched in full.
+     * 
+     * @param container The container element
+     * @param template Template of the page's host, or null to always match in full
+     * @return ScrapedData object or null if nothing usable was extracted
+     */
+    public ScrapedData extract(Element container, HostTemplate template) {
+        Element[] matches;
+        int[][] paths = template != null ? template.getPaths() : null;
+        if (paths != null) {
+            matches = locate(container, template, paths);
+        } else {
+            matches = match(container);
+            if (template != null) {
+                template.learn(container, matches, findAmbiguous(container, matches));
+            }
+        }
+        
+        ScrapedData data = new ScrapedData();
+        boolean extractedAny = false;
+        
+        for (int i = 0; i < fields.length; i++) {
+            if (matches[i] != null) {
+                String value = fields[i].extract(matches[i]);
+                if (value != null) {
+                    data.setField(fields[i].name, value);
+                    extractedAny = true;
+                }
+            }
+        }
+        
+        if (requiresTitleOrUrl) {
+            return data.getTitle() != null || data.getUrl() != null ? data : null;
+        }
+        return extractedAny ? data : null;
+    }
+    
+    /**
+     * Finds the first matching element of every field in one pre-order walk of the container,
+     * stopping as soon as all fields have matched.
+     * 
+     * @param container The container element
+     * @return Matched element per field, indexed like the plan's fields; null where nothing matched
+     */
+    Element[] match(Element container) {
+        Element[] matches = new Element[fields.length];
+        match(container, matches, fields.length);
+        return matches;
+    }
+    
+    /**
+     * Fills in the fields that have no match yet with one pre-order walk of the container.
+     * 
+     * @param container The container element
+     * @param matches Matches found so far; null entries are filled in where a match exists
+     * @param unmatched Number of null entries in matches
+     */
+    private void match(Element container, Element[] matches, int unmatched) {
+        if (unmatched == 0) {
+            return;
+        }
+        
+        NodeTraversor.filter(new NodeFilter() {
+            private int remaining = unmatched;
+            
+            @Override
+            public FilterResult head(Node node, int depth) {
+                if (!(node instanceof Element)) {
+                    return FilterResult.CONTINUE;
+                }
+                Element element = (Element) node;
+                for (int i = 0; i < fields.length; i++) {
+                    if (matches[i] == null && fields[i].evaluator.matches(container, element)) {
+                        matches[i] = element;
+                        remaining--;
+                    }
+                }
+                return remaining == 0 ? FilterResult.STOP : FilterResult.CONTINUE;
+            }
+        }, container);
+    }
+    
+    /**
+     * Finds the fields that match more than one element of a container. Their first match may
+     * move when an earlier match is added or removed, so a learned path cannot stand for it.
+     * 
+     * @param container The container element
+     * @param matches First match per field, null where nothing matched
+     * @return Per field, whether the selector matches another element besides the first match
+     */
+    private boolean[] findAmbiguous(Element container, Element[] matches) {
+        boolean[] ambiguous = new boolean[fields.length];
+        for (Element element : container.getAllElements()) {
+            for (int i = 0; i < fields.length; i++) {
+                if (!ambiguous[i] && matches[i] != null && matches[i] != element
+                        && fields[i].evaluator.matches(container, element)) {
+                    ambiguous[i] = true;
+                }
+            }
+        }
+        return ambiguous;
+    }
+    
+    /**
+     * Looks every field up at its learned path, validating the element found there against the
+     * field selector, and matches the remaining fields in full.
+     * 
+     * @param container The container element
+     * @param template Template of the page's host
+     * @param paths Learned path per field
+     * @return Matched element per field
+     */
+    private Element[] locate(Element container, HostTemplate template, int[][] paths) {
+        Element[] matches = new Element[fields.length];
+        int hits = 0;
+        for (int i = 0; i < fields.length; i++) {
+            if (paths[i] != null) {
+                Element candidate = HostTemplate.follow(container, paths[i]);
+                if (candidate != null && fields[i].evaluator.matches(container, candidate)) {
+                    matches[i] = candidate;
+                    hits++;
+                }
+            }
+        }
+        
+        int misses = fields.length - hits;
+        template.recordLookups(hits, misses);
+        match(container, matches, misses);
+        return matches;
+    }
+    
+    /**
+     * Clears the per-thread match memos that structural selectors (descendant, {@code :has}, ...)
+     * keep between calls. Call before and after extracting from a document on the current thread
+     * so no elements of a finished document stay reachable.
+     * 
+     * <p>jsoup only exposes the reset through its collector, whose documented contract is that
+     * every evaluation starts from a reset evaluator. Each field therefore runs one complete
+     * evaluation against an empty element, which leaves only that element in the memos.
+     */
+    public void reset() {
+        for (CompiledField field : fields) {
+            Collector.findFirst(field.evaluator, EMPTY_ROOT);
+        }
+    }
+    
+    /**
+     * Gets the names of the fields in this plan, in extraction order.
+     * 
+     * @return Field names
+     */
+    public List<String> getFieldNames() {
+        List<String> names = new ArrayList<>(fields.length);
+        for (CompiledField field : fields) {
+            names.add(field.name);
+        }
+        return names;
+    }
+    
+    /**
+     * Gets the number of fields in this plan.
+     * 
+     * @return number of fields
+     */
+    public int size() {
+        return fields.length;
+    }
+    
+    /**
+     * A field with its selector parsed and its pattern compiled.
+     */
+    private static final class CompiledField {
+        
+        private final String name;
+        private final Evaluator evaluator;
+        private final FieldExtractor extractor;
+        private final String attribute;
+        private final Pattern pattern;
+        
+        CompiledField(FieldSelector field) {
+            if (field.getName() == null) {
+                throw new IllegalArgumentException("field name is required");
+            }
+            this.name = field.getName();
+            this.evaluator = QueryParser.parse(field.getSelector());
+            this.extractor = field.getExtractor() != null ? field.getExtractor() : FieldExtractor.TEXT;
+            this.attribute = field.getAttribute();
+            
+            if (extractor == FieldExtractor.ATTRIBUTE && (attribute == null || attribute.isEmpty())) {
+                throw new IllegalArgumentException("attribute extractor requires an attribute name");
+            }
+            if (extractor == FieldExtractor.REGEX) {
+                if (field.getPattern() == null) {
+                    throw new IllegalArgumentException("regex extractor requires a pattern");
+                }
+                try {
+                    this.pattern = Pattern.compile(field.getPattern());
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalArgumentException(e.getMessage(), e);
+                }
+            } else {
+                this.pattern = null;
+            }
+        }
+        
+        /**
+         * Applies the extractor to the matched element.
+         * 
+         * @param element The matched element
+         * @return Normalized value, or null if empty
+         */
+        String extract(Element element) {
+            switch (extractor) {
+                case ATTRIBUTE:
+                    return HtmlParser.normalizeText(element.attr(attribute));
+                case HTML:
+                    return HtmlParser.normalizeText(element.html());
+                case REGEX:
+                    return ElementText.find(element, pattern);
+                case URL:
+                    String url = element.attr("href");
+                    if (url.trim().isEmpty()) {
+                        url = element.attr("src");
+                    }
+                    return HtmlParser.normalizeUrl(url);
+                case TEXT:
+                default:
+                    return ElementText.text(element);
+            }
+        }
+    }
+}
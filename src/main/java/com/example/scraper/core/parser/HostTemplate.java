@@ -0,0 +1,232 @@
+package com.example.scraper.core.parser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jsoup.nodes.Element;
+
+/**
+ * Field locations learned for the pages of one host.
+ * 
+ * <p>While learning, every container records the child-index path from the container to the
+ * element each field matched. After the configured number of pages, the path seen in the majority
+ * of containers becomes the field's template path. A field whose selector matched several
+ * elements of any learned container gets no path, since its first match is not tied to one
+ * location. Learned paths are only a hint: the extraction plan checks the element found at a path
+ * against the field selector and falls back to full selector matching when it does not match.
+ */
+public class HostTemplate {
+    
+    private final String host;
+    private final int learningPages;
+    private final int fieldCount;
+    
+    private List<Map<List<Integer>, Integer>> pathCounts;
+    private boolean[] ambiguous;
+    private int pagesLearned;
+    private int containersLearned;
+    private volatile int[][] paths;
+    
+    private final LongAdder pages = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    
+    HostTemplate(String host, int learningPages, int fieldCount) {
+        this.host = host;
+        this.learningPages = learningPages;
+        this.fieldCount = fieldCount;
+        this.pathCounts = new ArrayList<>(fieldCount);
+        this.ambiguous = new boolean[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            pathCounts.add(new HashMap<>());
+        }
+    }
+    
+    /**
+     * Records where each field matched inside a container of a learning page.
+     * 
+     * @param container The container element
+     * @param matches Matched element per field, null where nothing matched
+     * @param ambiguousFields Per field, whether the selector matched more than one element
+     */
+    synchronized void learn(Element container, Element[] matches, boolean[] ambiguousFields) {
+        if (paths != null) {
+            return;
+        }
+        containersLearned++;
+        for (int i = 0; i < fieldCount; i++) {
+            ambiguous[i] |= ambiguousFields[i];
+            List<Integer> path = pathOf(container, matches[i]);
+            if (path != null) {
+                pathCounts.get(i).merge(path, 1, Integer::sum);
+            }
+        }
+    }
+    
+    /**
+     * Marks a page of this host as extracted, freezing the template once enough pages were learned.
+     */
+    void pageDone() {
+        pages.increment();
+        if (paths == null) {
+            synchronized (this) {
+                if (paths == null && ++pagesLearned >= learningPages) {
+                    paths = induce();
+                    pathCounts = null;
+                    ambiguous = null;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Records the outcome of template lookups for one container.
+     * 
+     * @param hitCount Fields found at their learned path
+     * @param missCount Fields that needed full selector matching
+     */
+    void recordLookups(int hitCount, int missCount) {
+        hits.add(hitCount);
+        misses.add(missCount);
+    }
+    
+    /**
+     * Gets the learned path per field.
+     * 
+     * @return Child-index paths indexed like the plan's fields, null entries for fields without
+     *         a stable location; null while the template is still learning
+     */
+    int[][] getPaths() {
+        return paths;
+    }
+    
+    /**
+     * Picks, for every field that was never ambiguous, the path seen in more than half of the
+     * learned containers.
+     * 
+     * @return Learned paths per field
+     */
+    private int[][] induce() {
+        int[][] learned = new int[fieldCount][];
+        for (int i = 0; i < fieldCount; i++) {
+            Map.Entry<List<Integer>, Integer> best = null;
+            for (Map.Entry<List<Integer>, Integer> entry : pathCounts.get(i).entrySet()) {
+                if (best == null || entry.getValue() > best.getValue()) {
+                    best = entry;
+                }
+            }
+            if (best != null && best.getValue() * 2 > containersLearned && !ambiguous[i]) {
+                learned[i] = best.getKey().stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+        return learned;
+    }
+    
+    /**
+     * Computes the child-index path from a container down to one of its descendants.
+     * 
+     * @param container The container element
+     * @param element The matched element, or null
+     * @return Path of element sibling indexes, or null if the element is not inside the container
+     */
+    private static List<Integer> pathOf(Element container, Element element) {
+        if (element == null) {
+            return null;
+        }
+        List<Integer> path = new ArrayList<>();
+        Element current = element;
+        while (current != container) {
+            Element parent = current.parent();
+            if (parent == null) {
+                return null;
+            }
+            path.add(0, current.elementSiblingIndex());
+            current = parent;
+        }
+        return List.copyOf(path);
+    }
+    
+    /**
+     * Follows a learned path down from a container.
+     * 
+     * @param container The container element
+     * @param path Child-index path
+     * @return Element at the path, or null if the container's structure differs
+     */
+    static Element follow(Element container, int[] path) {
+        Element current = container;
+        for (int index : path) {
+            if (index >= current.childrenSize()) {
+                return null;
+            }
+            current = current.child(index);
+        }
+        return current;
+    }
+    
+    /**
+     * Gets the host this template belongs to.
+     * 
+     * @return host name
+     */
+    public String getHost() {
+        return host;
+    }
+    
+    /**
+     * Checks whether learning has finished and lookups use the learned paths.
+     * 
+     * @return true once the template is learned
+     */
+    public boolean isLearned() {
+        return paths != null;
+    }
+    
+    /**
+     * Gets the number of pages of this host that have been extracted.
+     * 
+     * @return pages extracted
+     */
+    public long getPages() {
+        return pages.sum();
+    }
+    
+    /**
+     * Gets the number of field lookups answered by a learned path.
+     * 
+     * @return template hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    /**
+     * Gets the number of field lookups that fell back to full selector matching.
+     * 
+     * @return template misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+    
+    /**
+     * Gets the fraction of field lookups answered by a learned path.
+     * 
+     * @return hit rate between 0.0 and 1.0
+     */
+    public double getHitRate() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return total > 0 ? (double) hitCount / total : 0.0;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s[pages=%d, learned=%s, hits=%d, misses=%d, hitRate=%.1f%%]",
+                host, getPages(), isLearned(), getHits(), getMisses(), getHitRate() * 100);
+    }
+}
@@ -1,13 +1,24 @@
 package com.example.scraper.core.parser;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import com.example.scraper.model.ScrapedData;
 import com.example.scraper.model.DataSelectors;
+import com.example.scraper.model.ParseMode;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -21,6 +32,18 @@ import org.slf4j.LoggerFactory;
 public class HtmlParser {
     
     private static final Logger logger = LoggerFactory.getLogger(HtmlParser.class);
+    private static final int MIN_PARALLEL_CHUNK = 256;
+    private static final String SINGLE_SCHEMA = "";
+    
+    private final Map<DataSelectors, ExtractionPlan> plans = Collections.synchronizedMap(new WeakHashMap<>());
+    private final Map<DataSelectors, TemplateCache> templates = Collections.synchronizedMap(new WeakHashMap<>());
+    private final Map<DataSelectors, ContainerPrescreen> prescreens = Collections.synchronizedMap(new WeakHashMap<>());
+    private final StructuredDataExtractor structuredDataExtractor = new StructuredDataExtractor();
+    private final ParallelExtractionStats parallelStats = new ParallelExtractionStats();
+    private volatile int parallelThreshold;
+    private volatile ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+    private final AtomicLong pagesScreened = new AtomicLong();
+    private final AtomicLong pagesSkipped = new AtomicLong();
     
     /**
      * Parses HTML content and extracts data using CSS selectors.
@@ -41,16 +64,158 @@ public class HtmlParser {
     }
     
     /**
-     * Extracts data from a jsoup Document using CSS selectors.
+     * Parses HTML directly from a byte stream and extracts data using CSS selectors.
+     * The stream is decoded straight into the parser's buffers without an intermediate String.
+     * When no charset is given, it is detected from a byte order mark or a {@code <meta charset>}
+     * declaration, falling back to UTF-8.
+     * 
+     * @param htmlStream Stream over the raw HTML bytes
+     * @param charsetName Charset declared by the server, or null to detect it from the content
+     * @param baseUrl The base URL for resolving relative links
+     * @param selectors CSS selectors for data extraction
+     * @return List of scraped data
+     */
+    public List<ScrapedData> parseHtml(InputStream htmlStream, String charsetName, String baseUrl,
+                                       DataSelectors selectors) {
+        try {
+            Document document = Jsoup.parse(htmlStream, charsetName, baseUrl);
+            return extractData(document, selectors);
+        } catch (Exception e) {
+            logger.error("Error parsing HTML content: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+    
+    /**
+     * Parses HTML directly from a byte buffer and extracts data using CSS selectors.
+     * The raw bytes are pre-screened first, and pages that cannot contain a container
+     * element are skipped without being parsed.
+     * 
+     * @param htmlBytes Buffer holding the raw HTML bytes between its position and limit
+     * @param charsetName Charset declared by the server, or null to detect it from the content
+     * @param baseUrl The base URL for resolving relative links
+     * @param selectors CSS selectors for data extraction
+     * @return List of scraped data
+     */
+    public List<ScrapedData> parseHtml(ByteBuffer htmlBytes, String charsetName, String baseUrl,
+                                       DataSelectors selectors) {
+        return parseHtml(htmlBytes, charsetName, baseUrl, Map.of(SINGLE_SCHEMA, selectors)).get(SINGLE_SCHEMA);
+    }
+    
+    /**
+     * Parses HTML from a byte buffer once and extracts data for several named selector sets.
+     * The page is only parsed if the pre-screen of at least one schema passes, and each schema
+     * is only run against the document if its own pre-screen passed.
+     * 
+     * @param htmlBytes Buffer holding the raw HTML bytes between its position and limit
+     * @param charsetName Charset declared by the server, or null to detect it from the content
+     * @param baseUrl The base URL for resolving relative links
+     * @param schemas Selector sets by schema name
+     * @return Scraped data per schema name, in the order of the given schemas; empty lists where
+     *         nothing was extracted
+     */
+    public Map<String, List<ScrapedData>> parseHtml(ByteBuffer htmlBytes, String charsetName, String baseUrl,
+                                                    Map<String, DataSelectors> schemas) {
+        return parseHtml(htmlBytes, charsetName, baseUrl, schemas, null);
+    }
+    
+    /**
+     * Parses HTML from a byte buffer once, hands the document to a callback, and then extracts
+     * data for several named selector sets. With a callback, the page is parsed even if no
+     * schema's pre-screen passes.
+     * 
+     * @param htmlBytes Buffer holding the raw HTML bytes between its position and limit
+     * @param charsetName Charset declared by the server, or null to detect it from the content
+     * @param baseUrl The base URL for resolving relative links
+     * @param schemas Selector sets by schema name
+     * @param onParsed Called with the parsed document before any extraction, or null
+     * @return Scraped data per schema name, in the order of the given schemas
+     */
+    public Map<String, List<ScrapedData>> parseHtml(ByteBuffer htmlBytes, String charsetName, String baseUrl,
+                                                    Map<String, DataSelectors> schemas,
+                                                    Consumer<Document> onParsed) {
+        Map<String, List<ScrapedData>> results = new LinkedHashMap<>();
+        List<String> candidates = new ArrayList<>(schemas.size());
+        for (Map.Entry<String, DataSelectors> schema : schemas.entrySet()) {
+            results.put(schema.getKey(), new ArrayList<>());
+            if (getPrescreen(schema.getValue()).mightMatch(htmlBytes, charsetName)) {
+                candidates.add(schema.getKey());
+            }
+        }
+        
+        pagesScreened.incrementAndGet();
+        if (candidates.isEmpty() && onParsed == null) {
+            pagesSkipped.incrementAndGet();
+            logger.debug("Pre-screen found no possible containers, skipping parse of {}", baseUrl);
+            return results;
+        }
+        
+        try {
+            Document document = Jsoup.parse(asInputStream(htmlBytes), charsetName, baseUrl);
+            if (onParsed != null) {
+                onParsed.accept(document);
+            }
+            for (String name : candidates) {
+                results.put(name, extractData(document, schemas.get(name)));
+            }
+        } catch (Exception e) {
+            logger.error("Error parsing HTML content: {}", e.getMessage());
+        }
+        return results;
+    }
+    
+    /**
+     * Wraps a byte buffer in an InputStream, avoiding a copy when the buffer is array-backed.
+     * 
+     * @param buffer The byte buffer
+     * @return InputStream over the remaining bytes of the buffer
+     */
+    private static InputStream asInputStream(ByteBuffer buffer) {
+        ByteBuffer view = buffer.duplicate();
+        if (view.hasArray()) {
+            return new ByteArrayInputStream(view.array(), view.arrayOffset() + view.position(), view.remaining());
+        }
+        
+        return new InputStream() {
+            @Override
+            public int read() {
+                return view.hasRemaining() ? view.get() & 0xFF : -1;
+            }
+            
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (!view.hasRemaining()) {
+                    return -1;
+                }
+                int count = Math.min(len, view.remaining());
+                view.get(b, off, count);
+                return count;
+            }
+        };
+    }
+    
+    /**
+     * Extracts data from an already parsed jsoup Document using CSS selectors.
+     * The same document can be passed with several selector configurations.
      * 
      * @param document The jsoup Document
      * @param selectors CSS selectors for data extraction
      * @return List of scraped data
      */
-    private List<ScrapedData> extractData(Document document, DataSelectors selectors) {
+    public List<ScrapedData> extractData(Document document, DataSelectors selectors) {
         List<ScrapedData> results = new ArrayList<>();
         
         try {
+            // Prefer JSON-LD / microdata entities over scanning the page for containers
+            if (selectors.getParseMode() == ParseMode.STRUCTURED) {
+                List<ScrapedData> structured = structuredDataExtractor.extract(document);
+                if (!structured.isEmpty()) {
+                    logger.debug("Extracted {} records from structured data", structured.size());
+                    return structured;
+                }
+                logger.debug("No structured data found, falling back to CSS selectors");
+            }
+            
             // Find the container elements (e.g., article, .item, etc.)
             Elements containers = document.select(selectors.getContainerSelector());
             
@@ -61,17 +226,24 @@ public class HtmlParser {
             
             logger.debug("Found {} containers with selector: {}", containers.size(), selectors.getContainerSelector());
             
-            for (Element container : containers) {
-                try {
-                    ScrapedData data = extractDataFromContainer(container, selectors);
-                    if (data != null) {
-                        results.add(data);
-                    }
-                } catch (Exception e) {
-                    logger.warn("Error extracting data from container: {}", e.getMessage());
-                    // Continue with next container
+            ExtractionPlan plan = getPlan(selectors);
+            HostTemplate template = selectors.getTemplateLearningPages() > 0
+                    ? getTemplates(selectors).forUrl(document.location()) : null;
+            ScrapedData[] extracted = new ScrapedData[containers.size()];
+            int threshold = parallelThreshold;
+            if (threshold > 0 && containers.size() >= threshold) {
+                extractParallel(plan, template, containers, extracted);
+            } else {
+                extractRange(plan, template, containers, extracted, 0, extracted.length);
+            }
+            for (ScrapedData data : extracted) {
+                if (data != null) {
+                    results.add(data);
                 }
             }
+            if (template != null) {
+                template.pageDone();
+            }
             
         } catch (Exception e) {
             logger.error("Error extracting data from document: {}", e.getMessage());
@@ -81,112 +253,194 @@ public class HtmlParser {
     }
     
     /**
-     * Extracts data from a single container element.
+     * Extracts records from a range of containers on the current thread.
      * 
-     * @param container The container element
-     * @param selectors CSS selectors for data extraction
-     * @return ScrapedData object or null if extraction fails
+     * @param plan Compiled extraction plan
+     * @param template Host template, or null
+     * @param containers All containers of the page
+     * @param results Record per container, filled in for the range; null where nothing was extracted
+     * @param from First container index, inclusive
+     * @param to Last container index, exclusive
      */
-    private ScrapedData extractDataFromContainer(Element container, DataSelectors selectors) {
-        ScrapedData data = new ScrapedData();
-        
-        // Extract title
-        Optional<String> title = extractText(container, selectors.getTitleSelector());
-        if (title.isPresent()) {
-            data.setTitle(normalizeText(title.get()));
+    private static void extractRange(ExtractionPlan plan, HostTemplate template, List<Element> containers,
+                                     ScrapedData[] results, int from, int to) {
+        // Selector match memos are per thread, so every thread clears its own
+        plan.reset();
+        try {
+            for (int i = from; i < to; i++) {
+                try {
+                    results[i] = plan.extract(containers.get(i), template);
+                } catch (Exception e) {
+                    logger.warn("Error extracting data from container: {}", e.getMessage());
+                    // Continue with next container
+                }
+            }
+        } finally {
+            plan.reset();
         }
+    }
+    
+    /**
+     * Extracts records from the containers of a large page in chunks on the fork-join pool.
+     * Each record is stored at its container's index, so the output order is the document order.
+     * 
+     * @param plan Compiled extraction plan
+     * @param template Host template, or null
+     * @param containers All containers of the page
+     * @param results Record per container
+     */
+    private void extractParallel(ExtractionPlan plan, HostTemplate template, List<Element> containers,
+                                 ScrapedData[] results) {
+        ForkJoinPool pool = forkJoinPool;
+        int chunkSize = Math.max(MIN_PARALLEL_CHUNK, containers.size() / (pool.getParallelism() * 4));
         
-        // Extract description
-        Optional<String> description = extractText(container, selectors.getDescriptionSelector());
-        if (description.isPresent()) {
-            data.setDescription(normalizeText(description.get()));
-        }
+        long start = System.nanoTime();
+        pool.invoke(new ExtractionTask(plan, template, containers, results, 0, containers.size(), chunkSize));
+        parallelStats.recordPage(containers.size(), System.nanoTime() - start, pool.getParallelism());
         
-        // Extract URL
-        Optional<String> url = extractUrl(container, selectors.getUrlSelector());
-        if (url.isPresent()) {
-            data.setUrl(normalizeUrl(url.get()));
-        }
+        logger.debug("Extracted {} containers in parallel in chunks of {}", containers.size(), chunkSize);
+    }
+    
+    /**
+     * Splits a container range in halves until it is small enough to extract directly.
+     */
+    @SuppressWarnings("serial") // Never serialized
+    private final class ExtractionTask extends RecursiveAction {
         
-        // Extract price if selector is provided
-        if (selectors.getPriceSelector() != null) {
-            Optional<String> price = extractText(container, selectors.getPriceSelector());
-            if (price.isPresent()) {
-                data.setPrice(normalizeText(price.get()));
-            }
-        }
+        private final ExtractionPlan plan;
+        private final HostTemplate template;
+        private final List<Element> containers;
+        private final ScrapedData[] results;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
         
-        // Extract image URL if selector is provided
-        if (selectors.getImageSelector() != null) {
-            Optional<String> imageUrl = extractUrl(container, selectors.getImageSelector());
-            if (imageUrl.isPresent()) {
-                data.setImageUrl(normalizeUrl(imageUrl.get()));
-            }
+        ExtractionTask(ExtractionPlan plan, HostTemplate template, List<Element> containers,
+                       ScrapedData[] results, int from, int to, int chunkSize) {
+            this.plan = plan;
+            this.template = template;
+            this.containers = containers;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
         }
         
-        // Only return data if we have at least a title or URL
-        if (data.getTitle() != null || data.getUrl() != null) {
-            return data;
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                long start = System.nanoTime();
+                extractRange(plan, template, containers, results, from, to);
+                parallelStats.recordChunk(System.nanoTime() - start);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ExtractionTask(plan, template, containers, results, from, middle, chunkSize),
+                    new ExtractionTask(plan, template, containers, results, middle, to, chunkSize));
         }
-        
-        return null;
     }
     
     /**
-     * Extracts text content from an element using a CSS selector.
+     * Sets the number of containers from which a page is extracted in parallel.
      * 
-     * @param container The container element
-     * @param selector CSS selector
-     * @return Optional containing the extracted text
+     * @param parallelThreshold Minimum container count for parallel extraction, or 0 to always
+     *                          extract sequentially
      */
-    private Optional<String> extractText(Element container, String selector) {
-        if (selector == null || selector.trim().isEmpty()) {
-            return Optional.empty();
-        }
-        
-        try {
-            Element element = container.selectFirst(selector);
-            if (element != null) {
-                String text = element.text();
-                if (text != null && !text.trim().isEmpty()) {
-                    return Optional.of(text);
-                }
-            }
-        } catch (Exception e) {
-            logger.debug("Error extracting text with selector '{}': {}", selector, e.getMessage());
-        }
-        
-        return Optional.empty();
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = Math.max(0, parallelThreshold);
     }
     
     /**
-     * Extracts URL from an element using a CSS selector.
+     * Gets the number of containers from which a page is extracted in parallel.
      * 
-     * @param container The container element
-     * @param selector CSS selector
-     * @return Optional containing the extracted URL
+     * @return parallel extraction threshold, or 0 if parallel extraction is off
      */
-    private Optional<String> extractUrl(Element container, String selector) {
-        if (selector == null || selector.trim().isEmpty()) {
-            return Optional.empty();
-        }
-        
-        try {
-            Element element = container.selectFirst(selector);
-            if (element != null) {
-                String url = element.attr("href");
-                if (url == null || url.trim().isEmpty()) {
-                    url = element.attr("src");
-                }
-                if (url != null && !url.trim().isEmpty()) {
-                    return Optional.of(url);
-                }
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+    
+    /**
+     * Sets the pool used for parallel extraction. Defaults to the common fork-join pool.
+     * 
+     * @param forkJoinPool Pool for parallel extraction
+     */
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+    
+    /**
+     * Gets statistics for pages extracted in parallel.
+     * 
+     * @return parallel extraction statistics
+     */
+    public ParallelExtractionStats getParallelStats() {
+        return parallelStats;
+    }
+    
+    /**
+     * Gets the compiled extraction plan for a selector configuration, compiling it on first use.
+     * Plans are cached per DataSelectors instance, so selectors should not be modified after
+     * they have been used for parsing.
+     * 
+     * @param selectors CSS selectors for data extraction
+     * @return Compiled extraction plan
+     */
+    public ExtractionPlan getPlan(DataSelectors selectors) {
+        return plans.computeIfAbsent(selectors, ExtractionPlan::compile);
+    }
+    
+    /**
+     * Gets the learned host templates for a selector configuration, creating the cache on first use.
+     * 
+     * @param selectors CSS selectors for data extraction
+     * @return Host templates of the selectors' extraction plan
+     */
+    public TemplateCache getTemplates(DataSelectors selectors) {
+        return templates.computeIfAbsent(selectors,
+                s -> new TemplateCache(s.getTemplateLearningPages(), getPlan(s).size()));
+    }
+    
+    /**
+     * Gets the learned templates of every host across all selector configurations.
+     * 
+     * @return host templates
+     */
+    public List<HostTemplate> getHostTemplates() {
+        List<HostTemplate> all = new ArrayList<>();
+        synchronized (templates) {
+            for (TemplateCache cache : templates.values()) {
+                all.addAll(cache.getTemplates());
             }
-        } catch (Exception e) {
-            logger.debug("Error extracting URL with selector '{}': {}", selector, e.getMessage());
         }
-        
-        return Optional.empty();
+        return all;
+    }
+    
+    /**
+     * Gets the byte-level pre-screen for a selector configuration, compiling it on first use.
+     * 
+     * @param selectors CSS selectors for data extraction
+     * @return Compiled pre-screen
+     */
+    public ContainerPrescreen getPrescreen(DataSelectors selectors) {
+        return prescreens.computeIfAbsent(selectors, ContainerPrescreen::compile);
+    }
+    
+    /**
+     * Gets the number of pages parsed from bytes, all of which went through the pre-screen.
+     * 
+     * @return pages screened
+     */
+    public long getPagesScreened() {
+        return pagesScreened.get();
+    }
+    
+    /**
+     * Gets the number of pages the pre-screen skipped without building a DOM.
+     * 
+     * @return pages skipped
+     */
+    public long getPagesSkipped() {
+        return pagesSkipped.get();
     }
     
     /**
@@ -195,7 +449,7 @@ public class HtmlParser {
      * @param text The text to normalize
      * @return Normalized text or null if empty
      */
-    private String normalizeText(String text) {
+    static String normalizeText(String text) {
         if (text == null) {
             return null;
         }
@@ -210,7 +464,7 @@ public class HtmlParser {
      * @param url The URL to normalize
      * @return Normalized URL or null if invalid
      */
-    private String normalizeUrl(String url) {
+    static String normalizeUrl(String url) {
         if (url == null || url.trim().isEmpty()) {
             return null;
         }
@@ -0,0 +1,348 @@
+package com.example.scraper.core.parser;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.jsoup.parser.Parser;
+
+/**
+ * Collects outlinks from raw HTML bytes without building a DOM.
+ * 
+ * <p>A minimal tag tokenizer walks the bytes once, reading only start tags. Comments, doctypes and
+ * end tags are skipped, and the content of raw text elements such as {@code <script>} and
+ * {@code <style>} is jumped over so markup inside them is not mistaken for links. Every
+ * {@code href} and {@code src} attribute is decoded, entity-unescaped and resolved against the
+ * page URL, or against the first {@code <base href>} like the DOM parser does, giving the same
+ * URLs as calling {@code absUrl} on every element of the parsed document.
+ */
+public class LinkExtractor {
+    
+    private static final Set<String> RAW_TEXT_TAGS = Set.of(
+            "script", "style", "textarea", "title", "xmp", "iframe", "noembed", "noframes");
+    private static final Pattern CONTROL_CHARS = Pattern.compile("[\\x00-\\x1f]+");
+    private static final Pattern EXTRA_DOT_SEGMENTS = Pattern.compile("^/(?>(?>\\.\\.?/)+)");
+    private static final Pattern URI_SCHEME = Pattern.compile("^[a-zA-Z][a-zA-Z0-9+-.]*:");
+    
+    /**
+     * Extracts the resolved href and src URLs of a page, in document order.
+     * 
+     * @param htmlBytes Buffer holding the raw HTML bytes between its position and limit
+     * @param charsetName Charset of the page, or null for UTF-8
+     * @param baseUrl The page URL used to resolve relative links
+     * @return Absolute URLs; attributes that cannot be resolved are left out
+     */
+    public List<String> extractLinks(ByteBuffer htmlBytes, String charsetName, String baseUrl) {
+        Charset charset = charsetOf(charsetName);
+        ByteBuffer html = htmlBytes.duplicate();
+        if (!isAsciiCompatible(charset)) {
+            // Multi-byte code units: scan a UTF-8 copy instead
+            html = ByteBuffer.wrap(charset.decode(html).toString().getBytes(StandardCharsets.UTF_8));
+            charset = StandardCharsets.UTF_8;
+        }
+        
+        Scanner scanner = new Scanner(html, charset);
+        scanner.scan();
+        
+        String base = baseUrl != null ? baseUrl : "";
+        if (scanner.baseHref != null) {
+            String resolvedBase = resolve(base, scanner.baseHref);
+            if (!resolvedBase.isEmpty()) {
+                base = resolvedBase;
+            }
+        }
+        
+        List<String> links = new ArrayList<>(scanner.values.size());
+        for (String value : scanner.values) {
+            String link = resolve(base, value);
+            if (!link.isEmpty()) {
+                links.add(link);
+            }
+        }
+        return links;
+    }
+    
+    /**
+     * Resolves a link against a base URL the way jsoup's {@code absUrl} does: control characters
+     * are stripped like browsers do, leading dot segments are dropped, and a link with a scheme
+     * Java has no handler for, such as {@code tel:}, is kept as it is.
+     * 
+     * @param baseUrl Absolute base URL
+     * @param link Attribute value
+     * @return Absolute URL, or an empty string if the link cannot be resolved
+     */
+    static String resolve(String baseUrl, String link) {
+        String base = CONTROL_CHARS.matcher(baseUrl).replaceAll("");
+        String relative = CONTROL_CHARS.matcher(link).replaceAll("");
+        try {
+            URL baseLocation;
+            try {
+                baseLocation = new URL(base);
+            } catch (MalformedURLException e) {
+                // The link may still be absolute on its own
+                return new URL(relative).toExternalForm();
+            }
+            if (relative.startsWith("?")) {
+                // URL would resolve a bare query against the directory rather than the file
+                relative = baseLocation.getPath() + relative;
+            }
+            URL url = new URL(baseLocation, relative);
+            String file = EXTRA_DOT_SEGMENTS.matcher(url.getFile()).replaceFirst("/");
+            if (url.getRef() != null) {
+                file = file + "#" + url.getRef();
+            }
+            return new URL(url.getProtocol(), url.getHost(), url.getPort(), file).toExternalForm();
+        } catch (MalformedURLException e) {
+            return URI_SCHEME.matcher(relative).find() ? relative : "";
+        }
+    }
+    
+    private static Charset charsetOf(String charsetName) {
+        if (charsetName != null) {
+            try {
+                return Charset.forName(charsetName);
+            } catch (IllegalArgumentException e) {
+                // Unknown or unsupported charset, fall back to the parser default
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+    
+    private static boolean isAsciiCompatible(Charset charset) {
+        String name = charset.name().toLowerCase(Locale.ROOT);
+        return !name.startsWith("utf-16") && !name.startsWith("utf-32");
+    }
+    
+    /**
+     * Single-use tokenizer state over one page.
+     */
+    private static final class Scanner {
+        
+        private final ByteBuffer html;
+        private final Charset charset;
+        private final int limit;
+        private final List<String> values = new ArrayList<>();
+        private String baseHref;
+        private int pos;
+        
+        Scanner(ByteBuffer html, Charset charset) {
+            this.html = html;
+            this.charset = charset;
+            this.limit = html.limit();
+            this.pos = html.position();
+        }
+        
+        void scan() {
+            while ((pos = indexOf('<', pos)) >= 0 && pos + 1 < limit) {
+                int next = html.get(pos + 1);
+                if (startsWith(pos, "<!--")) {
+                    pos = skipPast("-->", pos + 4);
+                } else if (next == '!' || next == '?' || next == '/') {
+                    pos = skipPast(">", pos + 2);
+                } else if (isAsciiLetter(next)) {
+                    readStartTag();
+                } else {
+                    pos++;
+                }
+            }
+        }
+        
+        /**
+         * Reads a start tag beginning at pos, recording its href and src attributes, and leaves
+         * pos after the tag, or after the element's content for raw text elements.
+         */
+        private void readStartTag() {
+            int nameStart = pos + 1;
+            int nameEnd = nameStart;
+            while (nameEnd < limit && !isTagNameEnd(html.get(nameEnd))) {
+                nameEnd++;
+            }
+            String name = ascii(nameStart, nameEnd).toLowerCase(Locale.ROOT);
+            boolean isBase = name.equals("base");
+            boolean hasHref = false;
+            boolean hasSrc = false;
+            
+            pos = nameEnd;
+            while (pos < limit) {
+                int c = html.get(pos);
+                if (c == '>') {
+                    pos++;
+                    break;
+                }
+                if (isWhitespace(c) || c == '/') {
+                    pos++;
+                    continue;
+                }
+                
+                int attrStart = pos;
+                pos++;
+                while (pos < limit && !isAttributeNameEnd(html.get(pos))) {
+                    pos++;
+                }
+                int attrEnd = pos;
+                pos = skipWhitespace(pos);
+                
+                String value = null;
+                if (pos < limit && html.get(pos) == '=') {
+                    pos = skipWhitespace(pos + 1);
+                    value = readAttributeValue();
+                }
+                
+                if (equalsIgnoreCase(attrStart, attrEnd, "href")) {
+                    if (!hasHref) {
+                        hasHref = true;
+                        record(value, isBase);
+                    }
+                } else if (equalsIgnoreCase(attrStart, attrEnd, "src") && !hasSrc) {
+                    hasSrc = true;
+                    record(value, false);
+                }
+            }
+            
+            if (name.equals("plaintext")) {
+                pos = limit;
+            } else if (RAW_TEXT_TAGS.contains(name)) {
+                pos = endOfRawText(name);
+            }
+        }
+        
+        private String readAttributeValue() {
+            if (pos >= limit) {
+                return "";
+            }
+            int quote = html.get(pos);
+            int start;
+            int end;
+            if (quote == '"' || quote == '\'') {
+                start = pos + 1;
+                end = indexOf(quote, start);
+                if (end < 0) {
+                    end = limit;
+                }
+                pos = Math.min(limit, end + 1);
+            } else {
+                start = pos;
+                end = pos;
+                while (end < limit && !isWhitespace(html.get(end)) && html.get(end) != '>') {
+                    end++;
+                }
+                pos = end;
+            }
+            return decode(start, end);
+        }
+        
+        private void record(String value, boolean isBase) {
+            String unescaped = Parser.unescapeEntities(value != null ? value : "", true);
+            if (isBase && baseHref == null && !unescaped.isEmpty()) {
+                baseHref = unescaped;
+            }
+            values.add(unescaped);
+        }
+        
+        /**
+         * Finds the end of a raw text element's content: the position of its end tag.
+         */
+        private int endOfRawText(String name) {
+            String endTag = "</" + name;
+            int at = pos;
+            while ((at = indexOf('<', at)) >= 0) {
+                int after = at + endTag.length();
+                if (after <= limit && equalsIgnoreCase(at, after, endTag)
+                        && (after == limit || isTagNameEnd(html.get(after)))) {
+                    return at;
+                }
+                at++;
+            }
+            return limit;
+        }
+        
+        private int indexOf(int b, int from) {
+            for (int i = from; i < limit; i++) {
+                if (html.get(i) == b) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        
+        private int skipPast(String marker, int from) {
+            for (int i = from; i + marker.length() <= limit; i++) {
+                if (startsWith(i, marker)) {
+                    return i + marker.length();
+                }
+            }
+            return limit;
+        }
+        
+        private int skipWhitespace(int from) {
+            int i = from;
+            while (i < limit && isWhitespace(html.get(i))) {
+                i++;
+            }
+            return i;
+        }
+        
+        private boolean startsWith(int at, String marker) {
+            if (at + marker.length() > limit) {
+                return false;
+            }
+            for (int i = 0; i < marker.length(); i++) {
+                if (html.get(at + i) != marker.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private boolean equalsIgnoreCase(int start, int end, String lowerCase) {
+            if (end - start != lowerCase.length()) {
+                return false;
+            }
+            for (int i = 0; i < lowerCase.length(); i++) {
+                int c = html.get(start + i);
+                if (c >= 'A' && c <= 'Z') {
+                    c += 'a' - 'A';
+                }
+                if (c != lowerCase.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private String ascii(int start, int end) {
+            byte[] bytes = new byte[end - start];
+            html.get(start, bytes);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+        
+        private String decode(int start, int end) {
+            byte[] bytes = new byte[end - start];
+            html.get(start, bytes);
+            return new String(bytes, charset);
+        }
+        
+        private static boolean isAsciiLetter(int c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+        
+        private static boolean isWhitespace(int c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+        }
+        
+        private static boolean isTagNameEnd(int c) {
+            return isWhitespace(c) || c == '/' || c == '>';
+        }
+        
+        private static boolean isAttributeNameEnd(int c) {
+            return isWhitespace(c) || c == '/' || c == '=' || c == '>';
+        }
+    }
+}
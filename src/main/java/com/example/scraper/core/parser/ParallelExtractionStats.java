@@ -0,0 +1,82 @@
+package com.example.scraper.core.parser;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics for pages whose containers were extracted in parallel.
+ */
+public class ParallelExtractionStats {
+    
+    private final LongAdder pages = new LongAdder();
+    private final LongAdder containers = new LongAdder();
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    private final LongAdder availableNanos = new LongAdder();
+    
+    /**
+     * Records one page extracted in parallel.
+     * 
+     * @param containerCount Number of containers on the page
+     * @param wallNanos Elapsed time of the parallel extraction
+     * @param parallelism Parallelism of the pool that ran it
+     */
+    void recordPage(int containerCount, long wallNanos, int parallelism) {
+        pages.increment();
+        containers.add(containerCount);
+        availableNanos.add(wallNanos * parallelism);
+    }
+    
+    /**
+     * Records one chunk of containers extracted by a pool worker.
+     * 
+     * @param nanos Time spent extracting the chunk
+     */
+    void recordChunk(long nanos) {
+        chunks.increment();
+        busyNanos.add(nanos);
+    }
+    
+    /**
+     * Gets the number of pages extracted in parallel.
+     * 
+     * @return pages extracted in parallel
+     */
+    public long getPages() {
+        return pages.sum();
+    }
+    
+    /**
+     * Gets the number of containers extracted in parallel.
+     * 
+     * @return containers extracted in parallel
+     */
+    public long getContainers() {
+        return containers.sum();
+    }
+    
+    /**
+     * Gets the number of chunks the containers were split into.
+     * 
+     * @return chunks extracted
+     */
+    public long getChunks() {
+        return chunks.sum();
+    }
+    
+    /**
+     * Gets the fraction of pool worker time spent extracting while parallel extractions ran.
+     * 
+     * @return utilization between 0.0 and 1.0
+     */
+    public double getUtilization() {
+        long available = availableNanos.sum();
+        return available > 0 ? Math.min(1.0, (double) busyNanos.sum() / available) : 0.0;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "parallel-extract[pages=%d, containers=%d, chunks=%d, utilization=%.1f%%]",
+                getPages(), getContainers(), getChunks(), getUtilization() * 100);
+    }
+}
@@ -0,0 +1,455 @@
+package com.example.scraper.core.parser;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.scraper.model.ScrapedData;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Extracts schema.org Product and Article entities from JSON-LD blocks and microdata.
+ * JSON-LD is read with Jackson's streaming parser, so only the handful of properties that map
+ * onto a record are materialized; everything else is skipped token by token.
+ */
+public class StructuredDataExtractor {
+    
+    /** Custom field holding the currency of a structured price. */
+    public static final String PRICE_CURRENCY = "price_currency";
+    
+    private static final Logger logger = LoggerFactory.getLogger(StructuredDataExtractor.class);
+    
+    // JSON-LD embedded in real pages is frequently not strictly valid JSON
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .enable(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS)
+            .enable(JsonReadFeature.ALLOW_TRAILING_COMMA)
+            .enable(JsonReadFeature.ALLOW_JAVA_COMMENTS)
+            .build();
+    
+    /**
+     * Extracts records from the structured data of a document. JSON-LD is preferred;
+     * microdata is only consulted when the page has no usable JSON-LD entities.
+     * 
+     * @param document The jsoup Document
+     * @return List of scraped data, empty if the page has no Product or Article entities
+     */
+    public List<ScrapedData> extract(Document document) {
+        List<ScrapedData> results = extractJsonLd(document);
+        if (results.isEmpty()) {
+            results = extractMicrodata(document);
+        }
+        return results;
+    }
+    
+    /**
+     * Extracts records from {@code <script type="application/ld+json">} blocks.
+     * 
+     * @param document The jsoup Document
+     * @return List of scraped data
+     */
+    public List<ScrapedData> extractJsonLd(Document document) {
+        List<ScrapedData> results = new ArrayList<>();
+        
+        for (Element script : document.select("script[type=application/ld+json]")) {
+            try (JsonParser parser = JSON_FACTORY.createParser(script.data())) {
+                while (parser.nextToken() != null) {
+                    readValue(parser, document.baseUri(), results);
+                }
+            } catch (IOException e) {
+                logger.debug("Skipping malformed JSON-LD block: {}", e.getMessage());
+            }
+        }
+        
+        return results;
+    }
+    
+    /**
+     * Extracts records from elements carrying {@code itemscope} and a Product or Article {@code itemtype}.
+     * 
+     * @param document The jsoup Document
+     * @return List of scraped data
+     */
+    public List<ScrapedData> extractMicrodata(Document document) {
+        List<ScrapedData> results = new ArrayList<>();
+        
+        for (Element scope : document.select("[itemscope][itemtype]")) {
+            Entity entity = new Entity();
+            entity.addType(scope.attr("itemtype"));
+            if (!entity.isWanted()) {
+                continue;
+            }
+            
+            for (Element property : scope.select("[itemprop]")) {
+                if (property == scope) {
+                    continue;
+                }
+                Element owner = nearestScope(property);
+                boolean inOffer = owner != scope && owner != null
+                        && owner.attr("itemprop").contains("offers") && nearestScope(owner) == scope;
+                if ((owner != scope && !inOffer) || property.hasAttr("itemscope")) {
+                    continue;
+                }
+                
+                String value = microdataValue(property);
+                for (String name : property.attr("itemprop").trim().split("\\s+")) {
+                    if (inOffer) {
+                        entity.setOfferProperty(name, value);
+                    } else {
+                        entity.setProperty(name, value);
+                    }
+                }
+            }
+            
+            ScrapedData data = entity.toScrapedData(document.baseUri());
+            if (data != null) {
+                results.add(data);
+            }
+        }
+        
+        return results;
+    }
+    
+    /**
+     * Reads the value at the current token, collecting any wanted entities nested in it.
+     * 
+     * @param parser Parser positioned on the first token of the value
+     * @param baseUrl Base URL for resolving relative links
+     * @param results Collected records
+     * @throws IOException if the JSON is malformed
+     */
+    private void readValue(JsonParser parser, String baseUrl, List<ScrapedData> results) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            readEntity(parser, baseUrl, results);
+        } else if (token == JsonToken.START_ARRAY) {
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                readValue(parser, baseUrl, results);
+            }
+        }
+    }
+    
+    /**
+     * Reads one JSON-LD node object. Properties that map onto a record are captured; any other
+     * property is searched for nested entities ({@code @graph}, {@code itemListElement}, ...),
+     * which are kept only when the node itself does not become a record.
+     * 
+     * @param parser Parser positioned on START_OBJECT
+     * @param baseUrl Base URL for resolving relative links
+     * @param results Collected records
+     * @throws IOException if the JSON is malformed
+     */
+    private void readEntity(JsonParser parser, String baseUrl, List<ScrapedData> results) throws IOException {
+        Entity entity = new Entity();
+        List<ScrapedData> nested = new ArrayList<>();
+        
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            
+            switch (field) {
+                case "@type":
+                    readTypes(parser, entity);
+                    break;
+                case "name":
+                case "headline":
+                case "description":
+                    entity.setProperty(field, firstText(parser, "@value"));
+                    break;
+                case "url":
+                case "image":
+                    entity.setProperty(field, firstText(parser, "url", "contentUrl", "@id"));
+                    break;
+                case "offers":
+                    readOffers(parser, entity);
+                    break;
+                default:
+                    readValue(parser, baseUrl, nested);
+            }
+        }
+        
+        // Products nested in a product (variants, isSimilarTo, ...) are not separate records
+        ScrapedData data = entity.toScrapedData(baseUrl);
+        if (data != null) {
+            results.add(data);
+        } else {
+            results.addAll(nested);
+        }
+    }
+    
+    /**
+     * Reads an {@code @type} value, which may be a single string or an array of strings.
+     * 
+     * @param parser Parser positioned on the first token of the value
+     * @param entity Entity being read
+     * @throws IOException if the JSON is malformed
+     */
+    private void readTypes(JsonParser parser, Entity entity) throws IOException {
+        if (parser.currentToken() == JsonToken.START_ARRAY) {
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken().isScalarValue()) {
+                    entity.addType(parser.getValueAsString());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } else if (parser.currentToken().isScalarValue()) {
+            entity.addType(parser.getValueAsString());
+        } else {
+            parser.skipChildren();
+        }
+    }
+    
+    /**
+     * Reads an Offer, AggregateOffer or array of offers, keeping the first price found.
+     * 
+     * @param parser Parser positioned on the first token of the value
+     * @param entity Entity being read
+     * @throws IOException if the JSON is malformed
+     */
+    private void readOffers(JsonParser parser, Entity entity) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_ARRAY) {
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                readOffers(parser, entity);
+            }
+        } else if (token == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if (field.equals("priceSpecification")) {
+                    readOffers(parser, entity);
+                } else if (parser.currentToken().isScalarValue()) {
+                    entity.setOfferProperty(field, parser.getValueAsString());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Reads the first textual value at the current token: a scalar directly, the first usable
+     * element of an array, or the first usable of the given keys of an object.
+     * The parser is left on the last token of the value.
+     * 
+     * @param parser Parser positioned on the first token of the value
+     * @param objectKeys Keys to look at when the value is an object
+     * @return Text value, or null if none was found
+     * @throws IOException if the JSON is malformed
+     */
+    private String firstText(JsonParser parser, String... objectKeys) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token.isScalarValue()) {
+            return token == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+        }
+        
+        String text = null;
+        if (token == JsonToken.START_ARRAY) {
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (text == null) {
+                    text = firstText(parser, objectKeys);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } else if (token == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if (text == null && isOneOf(field, objectKeys)) {
+                    text = firstText(parser, objectKeys);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return text;
+    }
+    
+    /**
+     * Checks whether a value equals any of the candidates.
+     * 
+     * @param value Value to look for
+     * @param candidates Candidate values
+     * @return true if the value is one of the candidates
+     */
+    private static boolean isOneOf(String value, String... candidates) {
+        for (String candidate : candidates) {
+            if (candidate.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Finds the closest ancestor of an element that starts a microdata item.
+     * 
+     * @param element The element
+     * @return The enclosing itemscope element, or null if there is none
+     */
+    private static Element nearestScope(Element element) {
+        for (Element parent = element.parent(); parent != null; parent = parent.parent()) {
+            if (parent.hasAttr("itemscope")) {
+                return parent;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Gets the value of a microdata property element according to its tag.
+     * 
+     * @param property Element carrying itemprop
+     * @return Property value
+     */
+    private static String microdataValue(Element property) {
+        switch (property.normalName()) {
+            case "meta":
+                return property.attr("content");
+            case "a":
+            case "area":
+            case "link":
+                return property.absUrl("href");
+            case "img":
+            case "audio":
+            case "video":
+            case "source":
+            case "iframe":
+            case "embed":
+                return property.absUrl("src");
+            case "object":
+                return property.absUrl("data");
+            case "data":
+            case "meter":
+                return property.attr("value");
+            case "time":
+                return property.hasAttr("datetime") ? property.attr("datetime") : property.text();
+            default:
+                return property.hasAttr("content") ? property.attr("content") : property.text();
+        }
+    }
+    
+    /**
+     * Resolves a possibly relative URL against the page URL.
+     * 
+     * @param baseUrl Page URL
+     * @param url URL to resolve
+     * @return Absolute URL, or the input unchanged if it cannot be resolved
+     */
+    private static String resolve(String baseUrl, String url) {
+        if (url == null || baseUrl == null || baseUrl.isEmpty()) {
+            return url;
+        }
+        try {
+            return new URI(baseUrl).resolve(url.trim()).toString();
+        } catch (Exception e) {
+            return url;
+        }
+    }
+    
+    /**
+     * Properties of one schema.org entity collected while reading it.
+     */
+    private static final class Entity {
+        
+        private boolean wanted;
+        private String name;
+        private String headline;
+        private String description;
+        private String url;
+        private String image;
+        private String price;
+        private String currency;
+        
+        void addType(String type) {
+            if (type == null) {
+                return;
+            }
+            // Accept both "Product" and "https://schema.org/Product"
+            String simpleName = type.substring(Math.max(type.lastIndexOf('/'), type.lastIndexOf('#')) + 1);
+            if (simpleName.equals("Product") || simpleName.equals("ProductGroup")
+                    || simpleName.equals("ProductModel") || simpleName.endsWith("Article")
+                    || simpleName.equals("BlogPosting")) {
+                wanted = true;
+            }
+        }
+        
+        boolean isWanted() {
+            return wanted;
+        }
+        
+        void setProperty(String property, String value) {
+            switch (property) {
+                case "name":
+                    name = firstNonNull(name, value);
+                    break;
+                case "headline":
+                    headline = firstNonNull(headline, value);
+                    break;
+                case "description":
+                    description = firstNonNull(description, value);
+                    break;
+                case "url":
+                    url = firstNonNull(url, value);
+                    break;
+                case "image":
+                    image = firstNonNull(image, value);
+                    break;
+                default:
+                    // Other properties do not map onto a record
+            }
+        }
+        
+        void setOfferProperty(String property, String value) {
+            switch (property) {
+                case "price":
+                case "lowPrice":
+                    price = firstNonNull(price, value);
+                    break;
+                case "priceCurrency":
+                    currency = firstNonNull(currency, value);
+                    break;
+                default:
+                    // Availability, seller, etc. are not part of a record
+            }
+        }
+        
+        private static String firstNonNull(String current, String value) {
+            return current != null ? current : value;
+        }
+        
+        /**
+         * Converts the entity into a record, applying the same normalization and
+         * title-or-URL requirement as CSS extraction.
+         * 
+         * @param baseUrl Base URL for resolving relative links
+         * @return ScrapedData object or null if the entity is not wanted or has no title or URL
+         */
+        ScrapedData toScrapedData(String baseUrl) {
+            if (!wanted) {
+                return null;
+            }
+            
+            ScrapedData data = new ScrapedData();
+            data.setTitle(HtmlParser.normalizeText(headline != null ? headline : name));
+            data.setDescription(HtmlParser.normalizeText(description));
+            data.setUrl(HtmlParser.normalizeUrl(resolve(baseUrl, url)));
+            data.setPrice(HtmlParser.normalizeText(price));
+            data.setImageUrl(HtmlParser.normalizeUrl(resolve(baseUrl, image)));
+            if (data.getPrice() != null) {
+                data.setField(PRICE_CURRENCY, HtmlParser.normalizeText(currency));
+            }
+            
+            return data.getTitle() != null || data.getUrl() != null ? data : null;
+        }
+    }
+}
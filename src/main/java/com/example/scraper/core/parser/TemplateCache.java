@@ -0,0 +1,58 @@
+package com.example.scraper.core.parser;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Learned host templates for one extraction plan, keyed by host.
+ */
+public class TemplateCache {
+    
+    private final int learningPages;
+    private final int fieldCount;
+    private final Map<String, HostTemplate> templates = new ConcurrentHashMap<>();
+    
+    public TemplateCache(int learningPages, int fieldCount) {
+        this.learningPages = learningPages;
+        this.fieldCount = fieldCount;
+    }
+    
+    /**
+     * Gets the template for the host of a page URL, creating it on first use.
+     * 
+     * @param url Page URL
+     * @return Host template, or null if the URL has no host
+     */
+    public HostTemplate forUrl(String url) {
+        String host = hostOf(url);
+        if (host == null) {
+            return null;
+        }
+        return templates.computeIfAbsent(host, h -> new HostTemplate(h, learningPages, fieldCount));
+    }
+    
+    /**
+     * Gets the templates of every host seen so far.
+     * 
+     * @return host templates
+     */
+    public List<HostTemplate> getTemplates() {
+        return new ArrayList<>(templates.values());
+    }
+    
+    private static String hostOf(String url) {
+        if (url == null || url.isEmpty()) {
+            return null;
+        }
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host.toLowerCase(Locale.ROOT) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.scraper.core.persistence;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.example.scraper.model.ScrapedData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Record sink that hands writes to another sink on its own thread.
+ * 
+ * <p>Writes are queued and return once queued; when the given number of batches is waiting,
+ * callers block until the sink catches up. {@link #flush()} queues a flush behind the pending
+ * batches without waiting for it. A failed write is rethrown from the next call, after which
+ * queued batches are dropped. {@link #close()} waits for everything queued to be written, closes
+ * the sink and then rethrows a failure that no later call has reported, including one of the
+ * last batch or flush, so an incomplete output never looks like a finished one.
+ * Batches are written as given, so callers must not change a list after handing it over.
+ */
+public class AsyncSink implements RecordSink {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AsyncSink.class);
+    
+    private final String name;
+    private final RecordSink sink;
+    private final ExecutorService executor;
+    private final Semaphore queued;
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    
+    /**
+     * Creates an asynchronous sink.
+     * 
+     * @param name Name of the sink, used for its thread and in messages
+     * @param sink Sink to write to
+     * @param queuedBatches Batches that may wait before callers block
+     */
+    public AsyncSink(String name, RecordSink sink, int queuedBatches) {
+        this.name = name;
+        this.sink = sink;
+        this.queued = new Semaphore(Math.max(1, queuedBatches));
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "scraper-sink-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @Override
+    public void writeData(List<ScrapedData> dataList) {
+        if (dataList == null || dataList.isEmpty()) {
+            return;
+        }
+        submit(() -> {
+            sink.writeData(dataList);
+            records.addAndGet(dataList.size());
+        });
+    }
+    
+    @Override
+    public void writeData(ScrapedData data) {
+        if (data == null) {
+            return;
+        }
+        writeData(Collections.singletonList(data));
+    }
+    
+    @Override
+    public void flush() {
+        submit(sink::flush);
+    }
+    
+    @Override
+    public void drain() {
+        submit(sink::drain);
+    }
+    
+    @Override
+    public void setFsync(boolean fsync) {
+        sink.setFsync(fsync);
+    }
+    
+    /**
+     * Waits for the queued batches to be written and closes the sink.
+     * 
+     * @throws RuntimeException if a write or flush failed, or queued batches were dropped
+     *                          because the calling thread was interrupted
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        boolean interrupted = false;
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                // Drop what is still queued, but let a running write finish before closing
+                interrupted = true;
+                executor.shutdownNow();
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, new InterruptedException("Interrupted while closing; queued records were dropped"));
+        }
+        sink.close();
+        Throwable error = failure.get();
+        if (error != null) {
+            logger.error("Output {} was incomplete after {} records: {}", name, records.get(), error.getMessage());
+            throw new RuntimeException("Output " + name + " write failed", error);
+        }
+        logger.info("Output {} wrote {} records", name, records.get());
+    }
+    
+    /**
+     * Gets the number of records written so far, not counting queued ones.
+     * 
+     * @return Records written
+     */
+    public long getRecordsWritten() {
+        return records.get();
+    }
+    
+    /**
+     * Queues a task behind the pending ones, blocking while the queue is full.
+     * 
+     * @param task Task to run on the sink's thread
+     */
+    private void submit(Runnable task) {
+        checkFailure();
+        try {
+            queued.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while queueing output for " + name, e);
+        }
+        executor.execute(() -> {
+            try {
+                if (failure.get() == null) {
+                    task.run();
+                }
+            } catch (RuntimeException e) {
+                logger.error("Output {} failed: {}", name, e.getMessage());
+                failure.compareAndSet(null, e);
+            } finally {
+                queued.release();
+            }
+        });
+    }
+    
+    private void checkFailure() {
+        Throwable error = failure.get();
+        if (error != null) {
+            throw new RuntimeException("Output " + name + " write failed", error);
+        }
+    }
+}
@@ -1,15 +1,14 @@
 package com.example.scraper.core.persistence;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.List;
 
 import com.example.scraper.model.ScrapedData;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.dataformat.csv.CsvMapper;
 import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import org.slf4j.Logger;
@@ -17,40 +16,87 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Writes scraped data to CSV files using Jackson CSV module.
+ * 
+ * <p>Rows are serialized by one CSV generator per file straight into its buffered UTF-8 stream,
+ * without building a String per record. Files are opened and rotated by a {@link SegmentManager}.
  */
-public class CSVWriter {
+public class CSVWriter implements RecordSink {
     
     private static final Logger logger = LoggerFactory.getLogger(CSVWriter.class);
-    private static final long MAX_FILE_SIZE = 10 * 1024 * 1024; // 10MB
-    private static final String FILE_ENCODING = "UTF-8";
+    // Created when the first CSV writer is, and shared by all of them
+    private static final CsvMapper CSV_MAPPER = new CsvMapper();
     
-    private final CsvMapper csvMapper;
     private final CsvSchema schema;
     private final ObjectWriter writer;
-    private final String outputPath;
-    private final boolean appendMode;
+    private final boolean gzip;
+    private final SegmentManager segments;
     
-    private File currentFile;
-    private FileWriter fileWriter;
+    private JsonGenerator generator;
     private boolean headerWritten = false;
-    private int fileCounter = 0;
     
     public CSVWriter(String outputPath) {
         this(outputPath, false);
     }
     
     public CSVWriter(String outputPath, boolean appendMode) {
-        this.outputPath = outputPath;
-        this.appendMode = appendMode;
+        this(outputPath, appendMode, List.of());
+    }
+    
+    /**
+     * Creates a CSV writer with additional columns for custom named fields.
+     * 
+     * @param outputPath Output file path
+     * @param appendMode Whether to append to an existing file
+     * @param extraColumns Custom field names to write after the built-in columns
+     */
+    public CSVWriter(String outputPath, boolean appendMode, List<String> extraColumns) {
+        this(outputPath, appendMode, extraColumns, false);
+    }
+    
+    /**
+     * Creates a CSV writer with additional columns that optionally compresses its output.
+     * 
+     * @param outputPath Output file path
+     * @param appendMode Whether to append to an existing file
+     * @param extraColumns Custom field names to write after the built-in columns
+     * @param gzip Whether to write gzip files, named with a .gz suffix, compressed in parallel
+     */
+    public CSVWriter(String outputPath, boolean appendMode, List<String> extraColumns, boolean gzip) {
+        this(outputPath, appendMode, extraColumns, gzip, SegmentPolicy.DEFAULT);
+    }
+    
+    /**
+     * Creates a CSV writer with additional columns and its own rotation policy.
+     * 
+     * @param outputPath Output file path
+     * @param appendMode Whether to append to an existing file
+     * @param extraColumns Custom field names to write after the built-in columns
+     * @param gzip Whether to write gzip files, named with a .gz suffix, compressed in parallel
+     * @param segmentPolicy When to rotate files and whether to write sealed segments
+     */
+    public CSVWriter(String outputPath, boolean appendMode, List<String> extraColumns, boolean gzip,
+                     SegmentPolicy segmentPolicy) {
+        this.gzip = gzip;
+        this.segments = new SegmentManager(outputPath, appendMode, gzip, segmentPolicy);
         
-        this.csvMapper = new CsvMapper();
-        this.schema = csvMapper.schemaFor(ScrapedData.class)
-                .withHeader()
+        CsvSchema.Builder schemaBuilder = CSV_MAPPER.schemaFor(ScrapedData.class).rebuild();
+        for (String column : extraColumns) {
+            if (!schemaBuilder.hasColumn(column)) {
+                schemaBuilder.addColumn(column);
+            }
+        }
+        this.schema = schemaBuilder.build()
+                .withoutHeader()
                 .withColumnSeparator(',')
                 .withQuoteChar('"')
                 .withLineSeparator("\n");
         
-        this.writer = csvMapper.writer(schema);
+        // The header is written once per file by writeHeader(); fields without a column are dropped.
+        // Flushing is left to flush() and closing files to the segment manager
+        this.writer = CSV_MAPPER.writer(schema)
+                .with(JsonGenerator.Feature.IGNORE_UNKNOWN)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
         
         initializeFile();
     }
@@ -60,24 +106,11 @@ public class CSVWriter {
      */
     private void initializeFile() {
         try {
-            Path path = Paths.get(outputPath);
-            Path parentDir = path.getParent();
-            
-            if (parentDir != null) {
-                Files.createDirectories(parentDir);
-            }
-            
-            // Determine the actual file to use
-            if (appendMode && Files.exists(path)) {
-                currentFile = path.toFile();
-                fileWriter = new FileWriter(currentFile, true); // Append mode
-                headerWritten = true; // Assume header already exists
-                logger.debug("Opened existing file for appending: {}", currentFile.getAbsolutePath());
+            openFile();
+            if (segments.isAppended()) {
+                logger.debug("Opened existing file for appending: {}", getCurrentFile().getAbsolutePath());
             } else {
-                currentFile = path.toFile();
-                fileWriter = new FileWriter(currentFile, false); // Overwrite mode
-                headerWritten = false;
-                logger.debug("Created new file: {}", currentFile.getAbsolutePath());
+                logger.debug("Created new file: {}", getCurrentFile().getAbsolutePath());
             }
             
         } catch (IOException e) {
@@ -91,30 +124,19 @@ public class CSVWriter {
      * 
      * @param dataList List of scraped data
      */
+    @Override
     public void writeData(List<ScrapedData> dataList) {
         if (dataList == null || dataList.isEmpty()) {
             return;
         }
         
         try {
-            // Check if we need to rotate the file
-            if (shouldRotateFile()) {
-                rotateFile();
-            }
-            
-            // Write header if needed
-            if (!headerWritten) {
-                writeHeader();
-                headerWritten = true;
-            }
-            
             // Write data
             for (ScrapedData data : dataList) {
-                String csvLine = writer.writeValueAsString(data);
-                fileWriter.write(csvLine);
+                writeRow(data);
             }
+            endBatch();
             
-            fileWriter.flush();
             logger.debug("Wrote {} records to CSV file", dataList.size());
             
         } catch (IOException e) {
@@ -128,27 +150,16 @@ public class CSVWriter {
      * 
      * @param data Scraped data record
      */
+    @Override
     public void writeData(ScrapedData data) {
         if (data == null) {
             return;
         }
         
         try {
-            // Check if we need to rotate the file
-            if (shouldRotateFile()) {
-                rotateFile();
-            }
-            
-            // Write header if needed
-            if (!headerWritten) {
-                writeHeader();
-                headerWritten = true;
-            }
-            
             // Write data
-            String csvLine = writer.writeValueAsString(data);
-            fileWriter.write(csvLine);
-            fileWriter.flush();
+            writeRow(data);
+            endBatch();
             
         } catch (IOException e) {
             logger.error("Error writing CSV data: {}", e.getMessage());
@@ -156,45 +167,140 @@ public class CSVWriter {
         }
     }
     
+    /**
+     * Serializes one record as a row, rotating the file first if it is full and writing the
+     * header if the file does not have one yet.
+     * 
+     * @param data Scraped data record
+     * @throws IOException if the row cannot be written
+     */
+    private void writeRow(ScrapedData data) throws IOException {
+        // Check if we need to rotate the file
+        if (segments.shouldRotate(generator.getOutputBuffered())) {
+            rotateFile();
+        }
+        
+        // Write header if needed
+        if (!headerWritten) {
+            writeHeader();
+            headerWritten = true;
+        }
+        
+        writer.writeValue(generator, data);
+        segments.addRecords(1);
+    }
+    
     /**
      * Writes the CSV header.
      */
     private void writeHeader() throws IOException {
-        String header = "title,description,url,price,image_url\n";
-        fileWriter.write(header);
-        fileWriter.flush();
+        StringBuilder header = new StringBuilder();
+        for (CsvSchema.Column column : schema) {
+            if (header.length() > 0) {
+                header.append(',');
+            }
+            header.append(column.getName());
+        }
+        header.append('\n');
+        generator.writeRaw(header.toString());
     }
     
     /**
-     * Checks if the current file should be rotated due to size.
+     * Ends a batch of whole rows. Compressed output may start a new gzip member here, so rows
+     * are never split across members.
      * 
-     * @return true if file should be rotated
+     * @throws IOException if the output cannot be written
      */
-    private boolean shouldRotateFile() {
-        return currentFile != null && currentFile.length() > MAX_FILE_SIZE;
+    private void endBatch() throws IOException {
+        if (gzip) {
+            generator.flush();
+        }
     }
     
     /**
-     * Rotates the current file to a new one with incremented name.
+     * Writes buffered records through to the file. Records are otherwise buffered until the
+     * buffer fills, the file is rotated or the writer is closed. A file that has been open for
+     * longer than the rotation policy allows is rotated instead. Compressed output keeps a
+     * partial gzip block back until it is full or {@link #drain()} is called.
      */
-    private void rotateFile() {
+    @Override
+    public void flush() {
+        flush(false);
+    }
+    
+    /**
+     * Writes buffered records through to the file like {@link #flush()}, compressing a partial
+     * gzip block into a member of its own.
+     */
+    @Override
+    public void drain() {
+        flush(true);
+    }
+    
+    private void flush(boolean drain) {
         try {
-            // Close current file
-            if (fileWriter != null) {
-                fileWriter.close();
+            if (generator == null) {
+                return;
             }
+            if (segments.shouldRotate(generator.getOutputBuffered())) {
+                rotateFile();
+            } else {
+                generator.flush();
+                if (drain) {
+                    segments.drain();
+                } else {
+                    segments.flush();
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Error flushing CSV file: {}", e.getMessage());
+            throw new RuntimeException("Failed to flush CSV file", e);
+        }
+    }
+    
+    /**
+     * Sets whether files are synced to disk when they are rotated or closed.
+     * 
+     * @param fsync true to sync each file before closing it
+     */
+    @Override
+    public void setFsync(boolean fsync) {
+        segments.setFsync(fsync);
+    }
+    
+    /**
+     * Opens the next file behind a CSV generator writing UTF-8.
+     * 
+     * @throws IOException if the file cannot be opened
+     */
+    private void openFile() throws IOException {
+        generator = writer.createGenerator(segments.open(), JsonEncoding.UTF8);
+        headerWritten = segments.isAppended(); // Assume an existing file has a header
+    }
+    
+    /**
+     * Writes out the generator and seals the current file.
+     * 
+     * @throws IOException if the file cannot be written
+     */
+    private void closeFile() throws IOException {
+        if (generator == null) {
+            return;
+        }
+        generator.close();
+        generator = null;
+        segments.seal();
+    }
+    
+    /**
+     * Rotates the current file to the next one.
+     */
+    private void rotateFile() {
+        try {
+            closeFile();
+            openFile();
             
-            // Create new file with incremented name
-            fileCounter++;
-            String baseName = outputPath.substring(0, outputPath.lastIndexOf('.'));
-            String extension = outputPath.substring(outputPath.lastIndexOf('.'));
-            String newFileName = baseName + "_" + fileCounter + extension;
-            
-            currentFile = new File(newFileName);
-            fileWriter = new FileWriter(currentFile, false);
-            headerWritten = false; // Reset header flag for new file
-            
-            logger.info("Rotated CSV file to: {}", currentFile.getAbsolutePath());
+            logger.info("Rotated CSV file to: {}", getCurrentFile().getAbsolutePath());
             
         } catch (IOException e) {
             logger.error("Error rotating CSV file: {}", e.getMessage());
@@ -204,15 +310,18 @@ public class CSVWriter {
     
     /**
      * Closes the CSV writer and releases resources.
+     * 
+     * @throws RuntimeException if the last records cannot be written out or the file cannot be
+     *                          sealed, so the output is incomplete
      */
+    @Override
     public void close() {
         try {
-            if (fileWriter != null) {
-                fileWriter.close();
-            }
+            closeFile();
             logger.debug("CSV writer closed");
         } catch (IOException e) {
             logger.error("Error closing CSV writer: {}", e.getMessage());
+            throw new RuntimeException("Failed to close CSV file", e);
         }
     }
     
@@ -222,7 +331,7 @@ public class CSVWriter {
      * @return Current file
      */
     public File getCurrentFile() {
-        return currentFile;
+        return segments.getCurrentFile();
     }
     
     /**
@@ -231,6 +340,6 @@ public class CSVWriter {
      * @return Number of files created
      */
     public int getFileCount() {
-        return fileCounter + 1;
+        return segments.getFileCount();
     }
 }
@@ -0,0 +1,79 @@
+package com.example.scraper.core.persistence;
+
+/**
+ * Condition on one column that a {@link ColumnarReader} selects records by. Values are compared
+ * as strings, the same way row group statistics are collected, so row groups whose minimum and
+ * maximum rule out a match are skipped without being read. Null values never match.
+ */
+public final class ColumnFilter {
+    
+    private final String column;
+    private final String min;
+    private final String max;
+    
+    private ColumnFilter(String column, String min, String max) {
+        this.column = column;
+        this.min = min;
+        this.max = max;
+    }
+    
+    /**
+     * Matches records whose column equals a value.
+     * 
+     * @param column Column name
+     * @param value Value to match
+     * @return ColumnFilter
+     */
+    public static ColumnFilter equalTo(String column, String value) {
+        return new ColumnFilter(column, value, value);
+    }
+    
+    /**
+     * Matches records whose column lies in a range, compared as strings.
+     * 
+     * @param column Column name
+     * @param min Lowest value to match, inclusive, or null for no lower bound
+     * @param max Highest value to match, inclusive, or null for no upper bound
+     * @return ColumnFilter
+     */
+    public static ColumnFilter between(String column, String min, String max) {
+        return new ColumnFilter(column, min, max);
+    }
+    
+    public String getColumn() {
+        return column;
+    }
+    
+    /**
+     * Checks whether a row group may hold a matching record, from its statistics.
+     * 
+     * @param chunkMin Lowest value of the column in the row group, or null if all are null
+     * @param chunkMax Highest value of the column in the row group, or null if all are null
+     * @return false if no record of the row group can match
+     */
+    public boolean mightMatch(String chunkMin, String chunkMax) {
+        if (chunkMin == null || chunkMax == null) {
+            return false;
+        }
+        return (min == null || chunkMax.compareTo(min) >= 0) && (max == null || chunkMin.compareTo(max) <= 0);
+    }
+    
+    /**
+     * Checks whether a value matches.
+     * 
+     * @param value Column value of a record
+     * @return true if the record is selected
+     */
+    public boolean matches(String value) {
+        return value != null && (min == null || value.compareTo(min) >= 0) && (max == null || value.compareTo(max) <= 0);
+    }
+    
+    @Override
+    public String toString() {
+        return "ColumnFilter{" +
+                "column='" + column + '\'' +
+                ", min='" + min + '\'' +
+                ", max='" + max + '\'' +
+                '}';
+    }
+}
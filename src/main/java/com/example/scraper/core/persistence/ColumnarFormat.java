@@ -0,0 +1,175 @@
+package com.example.scraper.core.persistence;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Layout of the columnar format written by {@link ColumnarWriter} and read by
+ * {@link ColumnarReader}, and the byte buffers both encode it with.
+ * 
+ * <p>A file starts with {@link #MAGIC} and a version byte, followed by row groups. Each row group
+ * holds one chunk per column with the values of all its rows, in column order. A chunk is either
+ * dictionary encoded, as the distinct values followed by a run-length encoded index per row, or
+ * plain, as every value in turn; either way it may be deflated. The footer lists the columns and,
+ * for every chunk, its offset, length, encoding, null count and minimum and maximum value. It is
+ * followed by its own length as a 4-byte big-endian int and {@link #MAGIC} again, so a reader
+ * finds it from the end of the file.
+ * 
+ * <p>Integers are unsigned LEB128 varints. Strings are a varint of their UTF-8 length plus one,
+ * followed by the bytes, with 0 standing for null. In dictionary chunks index 0 stands for null
+ * and index i for the i-th dictionary value. Indexes come in runs, each with a varint header: an
+ * odd header {@code (n << 1) | 1} is followed by one index repeated n times, an even header
+ * {@code n << 1} by n indexes.
+ */
+final class ColumnarFormat {
+    
+    static final byte[] MAGIC = {'S', 'W', 'S', 'C'};
+    static final int VERSION = 1;
+    
+    /** Chunk holds a dictionary and run-length encoded indexes rather than plain values. */
+    static final int DICTIONARY = 1;
+    /** Chunk is deflated. */
+    static final int DEFLATED = 2;
+    
+    /** Bytes after the footer: its length and the magic. */
+    static final int TRAILER_SIZE = 8;
+    
+    private ColumnarFormat() {
+    }
+    
+    /**
+     * Growable byte array that values are encoded into.
+     */
+    static final class Output {
+        
+        private byte[] bytes;
+        private int size;
+        
+        Output(int capacity) {
+            bytes = new byte[capacity];
+        }
+        
+        void writeByte(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+        
+        void write(byte[] b, int off, int len) {
+            ensure(len);
+            System.arraycopy(b, off, bytes, size, len);
+            size += len;
+        }
+        
+        void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+        
+        void writeInt(int value) {
+            ensure(4);
+            bytes[size++] = (byte) (value >>> 24);
+            bytes[size++] = (byte) (value >>> 16);
+            bytes[size++] = (byte) (value >>> 8);
+            bytes[size++] = (byte) value;
+        }
+        
+        void writeString(String value) {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length + 1L);
+            write(utf8, 0, utf8.length);
+        }
+        
+        /**
+         * Makes room for at least the given number of bytes, e.g. before deflating into
+         * {@link #array()} directly.
+         */
+        void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+        
+        byte[] array() {
+            return bytes;
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        void setSize(int size) {
+            this.size = size;
+        }
+        
+        void reset() {
+            size = 0;
+        }
+    }
+    
+    /**
+     * Cursor over encoded bytes.
+     */
+    static final class Input {
+        
+        private final byte[] bytes;
+        private final int end;
+        private int position;
+        
+        Input(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.position = offset;
+            this.end = offset + length;
+        }
+        
+        int readByte() throws IOException {
+            check(1);
+            return bytes[position++] & 0xFF;
+        }
+        
+        long readVarlong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint at offset " + position);
+        }
+        
+        int readVarint() throws IOException {
+            long value = readVarlong();
+            if (value > Integer.MAX_VALUE) {
+                throw new IOException("Value out of range at offset " + position);
+            }
+            return (int) value;
+        }
+        
+        String readString() throws IOException {
+            int length = readVarint();
+            if (length == 0) {
+                return null;
+            }
+            check(length - 1);
+            String value = new String(bytes, position, length - 1, StandardCharsets.UTF_8);
+            position += length - 1;
+            return value;
+        }
+        
+        private void check(int length) throws IOException {
+            if (length < 0 || position + length > end) {
+                throw new IOException("Unexpected end of columnar data");
+            }
+        }
+    }
+}
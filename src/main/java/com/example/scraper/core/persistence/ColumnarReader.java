@@ -0,0 +1,335 @@
+package com.example.scraper.core.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.example.scraper.model.ScrapedData;
+
+/**
+ * Reads files written by {@link ColumnarWriter}.
+ * 
+ * <p>Only the footer is read when the file is opened. A scan then reads just the chunks of the
+ * projected columns, and of the filter column, of the row groups whose statistics allow a match,
+ * so selecting one column of a few row groups touches a small part of the file.
+ */
+public class ColumnarReader implements Closeable {
+    
+    private final FileChannel channel;
+    private final List<String> columns = new ArrayList<>();
+    private final List<RowGroup> rowGroups = new ArrayList<>();
+    private final Inflater inflater = new Inflater(true);
+    
+    private long rowCount;
+    private int rowGroupsSkipped;
+    
+    /**
+     * Opens a columnar file and reads its footer.
+     * 
+     * @param path File path
+     * @throws IOException if the file cannot be read or is not a columnar file
+     */
+    public ColumnarReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            readFooter(path);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+    
+    private void readFooter(Path path) throws IOException {
+        long size = channel.size();
+        int headerSize = ColumnarFormat.MAGIC.length + 1;
+        if (size < headerSize + ColumnarFormat.TRAILER_SIZE) {
+            throw new IOException("Not a columnar file: " + path);
+        }
+        byte[] header = read(0, headerSize);
+        byte[] trailer = read(size - ColumnarFormat.TRAILER_SIZE, ColumnarFormat.TRAILER_SIZE);
+        if (!Arrays.equals(header, 0, ColumnarFormat.MAGIC.length, ColumnarFormat.MAGIC, 0, ColumnarFormat.MAGIC.length)
+                || !Arrays.equals(trailer, 4, 8, ColumnarFormat.MAGIC, 0, ColumnarFormat.MAGIC.length)) {
+            throw new IOException("Not a columnar file: " + path);
+        }
+        if (header[ColumnarFormat.MAGIC.length] != ColumnarFormat.VERSION) {
+            throw new IOException("Unsupported columnar file version " + header[ColumnarFormat.MAGIC.length] + ": " + path);
+        }
+        int footerLength = ((trailer[0] & 0xFF) << 24) | ((trailer[1] & 0xFF) << 16) | ((trailer[2] & 0xFF) << 8)
+                | (trailer[3] & 0xFF);
+        if (footerLength < 0 || footerLength > size - headerSize - ColumnarFormat.TRAILER_SIZE) {
+            throw new IOException("Corrupt columnar footer: " + path);
+        }
+        
+        byte[] footerBytes = read(size - ColumnarFormat.TRAILER_SIZE - footerLength, footerLength);
+        ColumnarFormat.Input footer = new ColumnarFormat.Input(footerBytes, 0, footerBytes.length);
+        int columnCount = footer.readVarint();
+        for (int i = 0; i < columnCount; i++) {
+            columns.add(footer.readString());
+        }
+        int groupCount = footer.readVarint();
+        for (int i = 0; i < groupCount; i++) {
+            RowGroup group = new RowGroup(footer.readVarint(), columnCount);
+            for (int column = 0; column < columnCount; column++) {
+                Chunk chunk = new Chunk();
+                chunk.offset = footer.readVarlong();
+                chunk.length = footer.readVarint();
+                chunk.rawLength = footer.readVarint();
+                chunk.encoding = footer.readByte();
+                chunk.nulls = footer.readVarint();
+                chunk.min = footer.readString();
+                chunk.max = footer.readString();
+                group.chunks[column] = chunk;
+            }
+            rowGroups.add(group);
+            rowCount += group.rows;
+        }
+    }
+    
+    /**
+     * Reads all records of all columns.
+     * 
+     * @return Records in file order
+     * @throws IOException if the file cannot be read
+     */
+    public List<ScrapedData> readAll() throws IOException {
+        return read(null, null);
+    }
+    
+    /**
+     * Reads the matching records with only the given columns set.
+     * 
+     * @param projection Columns to read, or null for all
+     * @param filter Condition records must meet, or null for all records
+     * @return Records in file order
+     * @throws IOException if the file cannot be read
+     */
+    public List<ScrapedData> read(List<String> projection, ColumnFilter filter) throws IOException {
+        List<ScrapedData> records = new ArrayList<>();
+        scan(projection, filter, records::add);
+        return records;
+    }
+    
+    /**
+     * Hands the matching records to a consumer, with only the given columns set.
+     * 
+     * @param projection Columns to read, or null for all
+     * @param filter Condition records must meet, or null for all records
+     * @param consumer Receives each matching record in file order
+     * @return Number of matching records
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a column does not exist
+     */
+    public long scan(List<String> projection, ColumnFilter filter, Consumer<ScrapedData> consumer) throws IOException {
+        int[] projected = projection == null ? allColumns() : columnIndexes(projection);
+        int filterColumn = filter == null ? -1 : columnIndex(filter.getColumn());
+        long matched = 0;
+        
+        for (RowGroup group : rowGroups) {
+            if (filter != null) {
+                Chunk chunk = group.chunks[filterColumn];
+                if (!filter.mightMatch(chunk.min, chunk.max)) {
+                    rowGroupsSkipped++;
+                    continue;
+                }
+            }
+            String[] filterValues = filter == null ? null : decode(group, filterColumn);
+            String[][] projectedValues = new String[projected.length][];
+            for (int i = 0; i < projected.length; i++) {
+                projectedValues[i] = projected[i] == filterColumn ? filterValues : decode(group, projected[i]);
+            }
+            for (int row = 0; row < group.rows; row++) {
+                if (filterValues != null && !filter.matches(filterValues[row])) {
+                    continue;
+                }
+                ScrapedData data = new ScrapedData();
+                for (int i = 0; i < projected.length; i++) {
+                    String value = projectedValues[i][row];
+                    if (value != null) {
+                        data.setField(columns.get(projected[i]), value);
+                    }
+                }
+                consumer.accept(data);
+                matched++;
+            }
+        }
+        return matched;
+    }
+    
+    /**
+     * Reads and decodes one column chunk of a row group.
+     */
+    private String[] decode(RowGroup group, int column) throws IOException {
+        Chunk chunk = group.chunks[column];
+        byte[] bytes = read(chunk.offset, chunk.length);
+        if ((chunk.encoding & ColumnarFormat.DEFLATED) != 0) {
+            bytes = inflate(bytes, chunk.rawLength);
+        }
+        ColumnarFormat.Input input = new ColumnarFormat.Input(bytes, 0, bytes.length);
+        String[] values = new String[group.rows];
+        if ((chunk.encoding & ColumnarFormat.DICTIONARY) == 0) {
+            for (int row = 0; row < group.rows; row++) {
+                values[row] = input.readString();
+            }
+            return values;
+        }
+        
+        String[] dictionary = new String[input.readVarint() + 1];
+        for (int i = 1; i < dictionary.length; i++) {
+            dictionary[i] = input.readString();
+        }
+        int row = 0;
+        while (row < group.rows) {
+            long header = input.readVarlong();
+            int count = (int) (header >>> 1);
+            if (count <= 0 || count > group.rows - row) {
+                throw new IOException("Corrupt columnar chunk at offset " + chunk.offset);
+            }
+            if ((header & 1) != 0) {
+                Arrays.fill(values, row, row + count, dictionary[dictionaryIndex(input, dictionary)]);
+                row += count;
+            } else {
+                for (int end = row + count; row < end; row++) {
+                    values[row] = dictionary[dictionaryIndex(input, dictionary)];
+                }
+            }
+        }
+        return values;
+    }
+    
+    private static int dictionaryIndex(ColumnarFormat.Input input, String[] dictionary) throws IOException {
+        int index = input.readVarint();
+        if (index >= dictionary.length) {
+            throw new IOException("Dictionary index out of range: " + index);
+        }
+        return index;
+    }
+    
+    private byte[] inflate(byte[] bytes, int rawLength) throws IOException {
+        byte[] raw = new byte[rawLength];
+        inflater.reset();
+        inflater.setInput(bytes);
+        try {
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, length, rawLength - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != rawLength) {
+                throw new IOException("Corrupt deflated columnar chunk");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt deflated columnar chunk", e);
+        }
+        return raw;
+    }
+    
+    private byte[] read(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of columnar file");
+            }
+        }
+        return buffer.array();
+    }
+    
+    private int[] allColumns() {
+        int[] indexes = new int[columns.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = i;
+        }
+        return indexes;
+    }
+    
+    private int[] columnIndexes(List<String> names) {
+        int[] indexes = new int[names.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = columnIndex(names.get(i));
+        }
+        return indexes;
+    }
+    
+    private int columnIndex(String name) {
+        int index = columns.indexOf(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("No column " + name + ", columns are " + columns);
+        }
+        return index;
+    }
+    
+    /**
+     * Gets the columns of the file, in file order.
+     * 
+     * @return Column names
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+    
+    /**
+     * Gets the number of records in the file.
+     * 
+     * @return Record count
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+    
+    /**
+     * Gets the number of row groups in the file.
+     * 
+     * @return Row group count
+     */
+    public int getRowGroupCount() {
+        return rowGroups.size();
+    }
+    
+    /**
+     * Gets the number of row groups scans have skipped because of their statistics.
+     * 
+     * @return Skipped row groups
+     */
+    public int getRowGroupsSkipped() {
+        return rowGroupsSkipped;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+    
+    private static final class RowGroup {
+        
+        final int rows;
+        final Chunk[] chunks;
+        
+        RowGroup(int rows, int columnCount) {
+            this.rows = rows;
+            this.chunks = new Chunk[columnCount];
+        }
+    }
+    
+    private static final class Chunk {
+        
+        long offset;
+        int length;
+        int rawLength;
+        int encoding;
+        int nulls;
+        String min;
+        String max;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.scraper.core.persistence;
+
+/**
+ * Provides {@link ColumnarWriter} sinks under the name "columnar". Append mode and gzip do not
+ * apply to the format and are ignored.
+ */
+public class ColumnarSinkProvider implements RecordSinkProvider {
+    
+    @Override
+    public String getName() {
+        return "columnar";
+    }
+    
+    @Override
+    public String getExtension() {
+        return ".scol";
+    }
+    
+    @Override
+    public RecordSink create(SinkOptions options) {
+        return new ColumnarWriter(options.getOutputFile(), options.getExtraColumns(), options.getSegmentPolicy(),
+                ColumnarWriter.DEFAULT_ROW_GROUP_ROWS);
+    }
+}
@@ -0,0 +1,459 @@
+package com.example.scraper.core.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import com.example.scraper.model.ScrapedData;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes scraped data to compact binary columnar files that analytics can scan without parsing
+ * every field of every record; see {@link ColumnarFormat} for the layout and
+ * {@link ColumnarReader} to read them.
+ * 
+ * <p>Records are collected in memory into row groups of a fixed number of rows. When a row group
+ * is full, each column is written as one chunk: dictionary encoded if its values repeat, such as
+ * prices and image URLs, otherwise plain, and deflated if that makes it smaller. The minimum and
+ * maximum value of each chunk are kept in the footer, so readers can skip row groups that cannot
+ * match a filter. Columns are the built-in fields followed by any extra columns; other custom
+ * fields are dropped, like in CSV output.
+ * 
+ * <p>A file can only be read once its footer is written, when it is rotated or the writer is
+ * closed. {@link #flush()} writes completed row groups through but does not cut the current one
+ * short. Files are opened and rotated by a {@link SegmentManager}; rotation by size only takes
+ * effect at row group boundaries. Files are never appended to, and are not gzipped as their
+ * chunks are compressed already.
+ */
+public class ColumnarWriter implements RecordSink {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarWriter.class);
+    
+    /** Default number of records per row group. */
+    public static final int DEFAULT_ROW_GROUP_ROWS = 16 * 1024;
+    
+    // Shorter runs of one dictionary index are written as literals
+    private static final int MIN_REPEAT_RUN = 4;
+    
+    private final List<String> columns;
+    private final int rowGroupRows;
+    private final SegmentManager segments;
+    private final String[][] values;
+    private final int[] indexes;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final List<String> dictionaryValues = new ArrayList<>();
+    private final ColumnarFormat.Output chunk = new ColumnarFormat.Output(64 * 1024);
+    private final ColumnarFormat.Output deflated = new ColumnarFormat.Output(64 * 1024);
+    private final ColumnarFormat.Output rowGroupIndex = new ColumnarFormat.Output(4 * 1024);
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+    
+    private OutputStream stream;
+    private long position;
+    private int rows;
+    private int rowGroups;
+    private String chunkMin;
+    private String chunkMax;
+    private int chunkNulls;
+    
+    public ColumnarWriter(String outputPath) {
+        this(outputPath, List.of());
+    }
+    
+    /**
+     * Creates a columnar writer with additional columns for custom named fields.
+     * 
+     * @param outputPath Output file path
+     * @param extraColumns Custom field names to write after the built-in columns
+     */
+    public ColumnarWriter(String outputPath, List<String> extraColumns) {
+        this(outputPath, extraColumns, SegmentPolicy.DEFAULT, DEFAULT_ROW_GROUP_ROWS);
+    }
+    
+    /**
+     * Creates a columnar writer with its own rotation policy and row group size.
+     * 
+     * @param outputPath Output file path
+     * @param extraColumns Custom field names to write after the built-in columns
+     * @param segmentPolicy When to rotate files and whether to write sealed segments
+     * @param rowGroupRows Records per row group
+     */
+    public ColumnarWriter(String outputPath, List<String> extraColumns, SegmentPolicy segmentPolicy,
+                          int rowGroupRows) {
+        this.segments = new SegmentManager(outputPath, false, false, segmentPolicy);
+        this.rowGroupRows = Math.max(1, rowGroupRows);
+        
+        List<String> names = new ArrayList<>();
+        for (CsvSchema.Column column : new CsvMapper().schemaFor(ScrapedData.class)) {
+            names.add(column.getName());
+        }
+        for (String column : extraColumns) {
+            if (!names.contains(column)) {
+                names.add(column);
+            }
+        }
+        this.columns = List.copyOf(names);
+        this.values = new String[columns.size()][this.rowGroupRows];
+        this.indexes = new int[this.rowGroupRows];
+        
+        try {
+            openFile();
+            logger.debug("Created new file: {}", getCurrentFile().getAbsolutePath());
+        } catch (IOException e) {
+            logger.error("Error initializing columnar file: {}", e.getMessage());
+            throw new RuntimeException("Failed to initialize columnar file", e);
+        }
+    }
+    
+    /**
+     * Writes a list of scraped data to the current row group.
+     * 
+     * @param dataList List of scraped data
+     */
+    @Override
+    public void writeData(List<ScrapedData> dataList) {
+        if (dataList == null || dataList.isEmpty()) {
+            return;
+        }
+        
+        try {
+            for (ScrapedData data : dataList) {
+                writeRow(data);
+            }
+            
+            logger.debug("Wrote {} records to columnar file", dataList.size());
+            
+        } catch (IOException e) {
+            logger.error("Error writing columnar data: {}", e.getMessage());
+            throw new RuntimeException("Failed to write columnar data", e);
+        }
+    }
+    
+    /**
+     * Writes a single scraped data record to the current row group.
+     * 
+     * @param data Scraped data record
+     */
+    @Override
+    public void writeData(ScrapedData data) {
+        if (data == null) {
+            return;
+        }
+        
+        try {
+            writeRow(data);
+            
+        } catch (IOException e) {
+            logger.error("Error writing columnar data: {}", e.getMessage());
+            throw new RuntimeException("Failed to write columnar data", e);
+        }
+    }
+    
+    /**
+     * Adds one record to the current row group, rotating the file first if it is full and writing
+     * the row group once it is complete.
+     * 
+     * @param data Scraped data record
+     * @throws IOException if a row group cannot be written
+     */
+    private void writeRow(ScrapedData data) throws IOException {
+        if (segments.shouldRotate(0)) {
+            rotateFile();
+        }
+        for (int column = 0; column < columns.size(); column++) {
+            values[column][rows] = data.getField(columns.get(column));
+        }
+        rows++;
+        segments.addRecords(1);
+        if (rows == rowGroupRows) {
+            writeRowGroup();
+        }
+    }
+    
+    /**
+     * Writes completed row groups through to the file. The current row group stays in memory
+     * until it is full, the file is rotated or the writer is closed. A file that has been open for
+     * longer than the rotation policy allows is rotated instead.
+     */
+    @Override
+    public void flush() {
+        try {
+            if (stream == null) {
+                return;
+            }
+            if (segments.shouldRotate(0)) {
+                rotateFile();
+            } else {
+                segments.flush();
+            }
+        } catch (IOException e) {
+            logger.error("Error flushing columnar file: {}", e.getMessage());
+            throw new RuntimeException("Failed to flush columnar file", e);
+        }
+    }
+    
+    /**
+     * Sets whether files are synced to disk when they are rotated or closed.
+     * 
+     * @param fsync true to sync each file before closing it
+     */
+    @Override
+    public void setFsync(boolean fsync) {
+        segments.setFsync(fsync);
+    }
+    
+    /**
+     * Writes the buffered rows as one chunk per column and adds their locations and statistics
+     * to the row group index.
+     * 
+     * @throws IOException if the file cannot be written
+     */
+    private void writeRowGroup() throws IOException {
+        rowGroupIndex.writeVarint(rows);
+        for (int column = 0; column < columns.size(); column++) {
+            int encoding = encodeChunk(values[column]);
+            int rawLength = chunk.size();
+            ColumnarFormat.Output out = chunk;
+            if (deflate()) {
+                encoding |= ColumnarFormat.DEFLATED;
+                out = deflated;
+            }
+            stream.write(out.array(), 0, out.size());
+            
+            rowGroupIndex.writeVarint(position);
+            rowGroupIndex.writeVarint(out.size());
+            rowGroupIndex.writeVarint(rawLength);
+            rowGroupIndex.writeByte(encoding);
+            rowGroupIndex.writeVarint(chunkNulls);
+            rowGroupIndex.writeString(chunkMin);
+            rowGroupIndex.writeString(chunkMax);
+            position += out.size();
+            
+            // Let the strings of the row group be collected
+            Arrays.fill(values[column], 0, rows, null);
+        }
+        rowGroups++;
+        rows = 0;
+    }
+    
+    /**
+     * Encodes the buffered values of one column into {@link #chunk} and collects their
+     * statistics. Values are dictionary encoded unless more than half of them are distinct.
+     * 
+     * @param columnValues Values of the column, one per buffered row
+     * @return Encoding flags of the chunk
+     */
+    private int encodeChunk(String[] columnValues) {
+        chunk.reset();
+        dictionary.clear();
+        dictionaryValues.clear();
+        chunkMin = null;
+        chunkMax = null;
+        chunkNulls = 0;
+        int maxDictionarySize = Math.max(1, rows / 2);
+        boolean useDictionary = true;
+        
+        for (int row = 0; row < rows; row++) {
+            String value = columnValues[row];
+            if (value == null) {
+                chunkNulls++;
+                indexes[row] = 0;
+                continue;
+            }
+            if (chunkMin == null || value.compareTo(chunkMin) < 0) {
+                chunkMin = value;
+            }
+            if (chunkMax == null || value.compareTo(chunkMax) > 0) {
+                chunkMax = value;
+            }
+            if (useDictionary) {
+                Integer index = dictionary.get(value);
+                if (index == null) {
+                    if (dictionaryValues.size() == maxDictionarySize) {
+                        useDictionary = false;
+                        continue;
+                    }
+                    dictionaryValues.add(value);
+                    index = dictionaryValues.size();
+                    dictionary.put(value, index);
+                }
+                indexes[row] = index;
+            }
+        }
+        
+        if (!useDictionary) {
+            for (int row = 0; row < rows; row++) {
+                chunk.writeString(columnValues[row]);
+            }
+            return 0;
+        }
+        chunk.writeVarint(dictionaryValues.size());
+        for (String value : dictionaryValues) {
+            chunk.writeString(value);
+        }
+        writeRuns();
+        return ColumnarFormat.DICTIONARY;
+    }
+    
+    /**
+     * Run-length encodes the dictionary indexes of the buffered rows into {@link #chunk}.
+     */
+    private void writeRuns() {
+        int literalStart = 0;
+        int row = 0;
+        while (row < rows) {
+            int runEnd = row + 1;
+            while (runEnd < rows && indexes[runEnd] == indexes[row]) {
+                runEnd++;
+            }
+            if (runEnd - row >= MIN_REPEAT_RUN) {
+                writeLiterals(literalStart, row);
+                chunk.writeVarint(((long) (runEnd - row) << 1) | 1);
+                chunk.writeVarint(indexes[row]);
+                literalStart = runEnd;
+            }
+            row = runEnd;
+        }
+        writeLiterals(literalStart, rows);
+    }
+    
+    private void writeLiterals(int start, int end) {
+        if (end > start) {
+            chunk.writeVarint((long) (end - start) << 1);
+            for (int row = start; row < end; row++) {
+                chunk.writeVarint(indexes[row]);
+            }
+        }
+    }
+    
+    /**
+     * Deflates {@link #chunk} into {@link #deflated}.
+     * 
+     * @return true if the deflated chunk is smaller and should be written instead
+     */
+    private boolean deflate() {
+        deflater.reset();
+        deflater.setInput(chunk.array(), 0, chunk.size());
+        deflater.finish();
+        deflated.reset();
+        while (!deflater.finished()) {
+            if (deflated.size() >= chunk.size()) {
+                return false;
+            }
+            deflated.ensure(8 * 1024);
+            int length = deflater.deflate(deflated.array(), deflated.size(), deflated.array().length - deflated.size());
+            deflated.setSize(deflated.size() + length);
+        }
+        return deflated.size() < chunk.size();
+    }
+    
+    /**
+     * Opens the next file and writes its header.
+     * 
+     * @throws IOException if the file cannot be opened
+     */
+    private void openFile() throws IOException {
+        stream = segments.open();
+        stream.write(ColumnarFormat.MAGIC);
+        stream.write(ColumnarFormat.VERSION);
+        position = ColumnarFormat.MAGIC.length + 1;
+        rowGroupIndex.reset();
+        rowGroups = 0;
+    }
+    
+    /**
+     * Writes the last row group and the footer, and seals the current file.
+     * 
+     * @throws IOException if the file cannot be written
+     */
+    private void closeFile() throws IOException {
+        if (stream == null) {
+            return;
+        }
+        if (rows > 0) {
+            writeRowGroup();
+        }
+        ColumnarFormat.Output footer = new ColumnarFormat.Output(rowGroupIndex.size() + 256);
+        footer.writeVarint(columns.size());
+        for (String column : columns) {
+            footer.writeString(column);
+        }
+        footer.writeVarint(rowGroups);
+        footer.write(rowGroupIndex.array(), 0, rowGroupIndex.size());
+        footer.writeInt(footer.size());
+        footer.write(ColumnarFormat.MAGIC, 0, ColumnarFormat.MAGIC.length);
+        stream.write(footer.array(), 0, footer.size());
+        stream = null;
+        segments.seal();
+    }
+    
+    /**
+     * Rotates the current file to the next one.
+     */
+    private void rotateFile() {
+        try {
+            closeFile();
+            openFile();
+            
+            logger.info("Rotated columnar file to: {}", getCurrentFile().getAbsolutePath());
+            
+        } catch (IOException e) {
+            logger.error("Error rotating columnar file: {}", e.getMessage());
+            throw new RuntimeException("Failed to rotate columnar file", e);
+        }
+    }
+    
+    /**
+     * Closes the columnar writer and releases resources.
+     * 
+     * @throws RuntimeException if the last row group or the footer cannot be written, so the file
+     *                          cannot be read
+     */
+    @Override
+    public void close() {
+        try {
+            closeFile();
+            logger.debug("Columnar writer closed");
+        } catch (IOException e) {
+            logger.error("Error closing columnar writer: {}", e.getMessage());
+            throw new RuntimeException("Failed to close columnar file", e);
+        } finally {
+            deflater.end();
+        }
+    }
+    
+    /**
+     * Gets the columns written, in file order.
+     * 
+     * @return Column names
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+    
+    /**
+     * Gets the current file being written to.
+     * 
+     * @return Current file
+     */
+    public File getCurrentFile() {
+        return segments.getCurrentFile();
+    }
+    
+    /**
+     * Gets the number of files created (including rotations).
+     * 
+     * @return Number of files created
+     */
+    public int getFileCount() {
+        return segments.getFileCount();
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.scraper.core.persistence;
+
+/**
+ * Provides {@link CSVWriter} sinks under the name "csv".
+ */
+public class CsvSinkProvider implements RecordSinkProvider {
+    
+    @Override
+    public String getName() {
+        return "csv";
+    }
+    
+    @Override
+    public String getExtension() {
+        return ".csv";
+    }
+    
+    @Override
+    public RecordSink create(SinkOptions options) {
+        return new CSVWriter(options.getOutputFile(), options.isAppendMode(), options.getExtraColumns(),
+                options.isGzip(), options.getSegmentPolicy());
+    }
+}
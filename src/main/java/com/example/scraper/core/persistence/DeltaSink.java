@@ -0,0 +1,293 @@
+package com.example.scraper.core.persistence;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.example.scraper.model.ScrapedData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Passes on only the records that changed since the previous run, so that repeated crawls of
+ * mostly unchanged pages write and load a small fraction of the full output.
+ * 
+ * <p>Each record is keyed by one of its fields, the canonical URL by default, and reduced to a
+ * 64-bit fingerprint of all its fields. A {@link FingerprintTable} kept between runs tells
+ * whether the key is new or its fingerprint changed; unchanged records are dropped. When the
+ * sink is closed, a record holding only the key is written for each key the previous runs saw
+ * but this one did not, so deletions are reported only correctly if every run visits all pages.
+ * Every record written gets the field {@value #CHANGE_TYPE}, set to new, changed or deleted.
+ * Records without a key cannot be tracked and are skipped.
+ * 
+ * <p>Fingerprints are stored as records are passed on, before the sink has written them. If a
+ * write, flush or close of the sink fails, or the closing thread is interrupted, the run is
+ * taken to be incomplete: no deletions are reported and the table is left unclean, so the next
+ * run writes every record as new instead of dropping records this run never wrote out.
+ */
+public class DeltaSink implements RecordSink {
+    
+    private static final Logger logger = LoggerFactory.getLogger(DeltaSink.class);
+    
+    /** Field telling whether a record is new, changed or deleted. */
+    public static final String CHANGE_TYPE = "change_type";
+    
+    private final RecordSink sink;
+    private final String keyField;
+    private final FingerprintTable table;
+    private boolean fsync = false;
+    private boolean failed = false;
+    
+    private long added;
+    private long changed;
+    private long unchanged;
+    private long skipped;
+    
+    /**
+     * Creates a delta sink in front of another sink.
+     * 
+     * @param sink Sink receiving the changed records
+     * @param stateFile Fingerprint table file, created on the first run
+     * @param keyField Field identifying a record across runs, e.g. {@code url}
+     */
+    public DeltaSink(RecordSink sink, Path stateFile, String keyField) {
+        this.sink = sink;
+        this.keyField = keyField;
+        try {
+            this.table = new FingerprintTable(stateFile);
+            logger.debug("Opened fingerprint table {} with {} records for run {}", stateFile, table.size(),
+                    table.getGeneration());
+        } catch (IOException e) {
+            logger.error("Error opening fingerprint table: {}", e.getMessage());
+            throw new RuntimeException("Failed to open fingerprint table", e);
+        }
+    }
+    
+    /**
+     * Writes the records of a list that are new or changed.
+     * 
+     * @param dataList List of scraped data
+     */
+    @Override
+    public void writeData(List<ScrapedData> dataList) {
+        if (dataList == null || dataList.isEmpty()) {
+            return;
+        }
+        
+        List<ScrapedData> delta = new ArrayList<>();
+        for (ScrapedData data : dataList) {
+            if (data != null && track(data)) {
+                delta.add(data);
+            }
+        }
+        if (!delta.isEmpty()) {
+            try {
+                sink.writeData(delta);
+            } catch (RuntimeException e) {
+                failed = true;
+                throw e;
+            }
+        }
+    }
+    
+    /**
+     * Writes a single scraped data record if it is new or changed.
+     * 
+     * @param data Scraped data record
+     */
+    @Override
+    public void writeData(ScrapedData data) {
+        if (data != null && track(data)) {
+            try {
+                sink.writeData(data);
+            } catch (RuntimeException e) {
+                failed = true;
+                throw e;
+            }
+        }
+    }
+    
+    /**
+     * Looks a record up in the fingerprint table and sets its change type.
+     * 
+     * @return true if the record is to be written
+     */
+    private boolean track(ScrapedData data) {
+        String key = key(data, keyField);
+        if (key == null) {
+            skipped++;
+            return false;
+        }
+        
+        try {
+            FingerprintTable.Change change = table.update(key, fingerprint(data));
+            if (change == FingerprintTable.Change.UNCHANGED) {
+                unchanged++;
+                return false;
+            }
+            if (change == FingerprintTable.Change.NEW) {
+                added++;
+            } else {
+                changed++;
+            }
+            data.setField(CHANGE_TYPE, change.name().toLowerCase(Locale.ROOT));
+            return true;
+            
+        } catch (IOException e) {
+            failed = true;
+            logger.error("Error updating fingerprint table: {}", e.getMessage());
+            throw new RuntimeException("Failed to update fingerprint table", e);
+        }
+    }
+    
+    /**
+     * Flushes the sink and the keys added to the fingerprint table.
+     */
+    @Override
+    public void flush() {
+        flush(false);
+    }
+    
+    /**
+     * Drains the sink and flushes the keys added to the fingerprint table.
+     */
+    @Override
+    public void drain() {
+        flush(true);
+    }
+    
+    private void flush(boolean drain) {
+        try {
+            if (drain) {
+                sink.drain();
+            } else {
+                sink.flush();
+            }
+            table.flush(fsync);
+        } catch (RuntimeException e) {
+            failed = true;
+            throw e;
+        } catch (IOException e) {
+            failed = true;
+            logger.error("Error flushing fingerprint table: {}", e.getMessage());
+            throw new RuntimeException("Failed to flush fingerprint table", e);
+        }
+    }
+    
+    /**
+     * Sets whether the fingerprint table is synced to disk on every flush, and the sink's output
+     * the way that sink syncs it, e.g. files when they are rotated or closed.
+     * 
+     * @param fsync true to sync output to disk
+     */
+    @Override
+    public void setFsync(boolean fsync) {
+        this.fsync = fsync;
+        sink.setFsync(fsync);
+    }
+    
+    /**
+     * Writes a deleted record for each key not seen in this run, then closes the sink and the
+     * fingerprint table. If the run is incomplete, only closes the sink and leaves the table
+     * unclean.
+     * 
+     * @throws RuntimeException if the sink fails to close
+     */
+    @Override
+    public void close() {
+        boolean interrupted = Thread.currentThread().isInterrupted();
+        List<ScrapedData> deleted = new ArrayList<>();
+        if (!failed && !interrupted) {
+            try {
+                table.removeUnseen(key -> {
+                    ScrapedData data = new ScrapedData();
+                    data.setField(keyField, key);
+                    data.setField(CHANGE_TYPE, "deleted");
+                    deleted.add(data);
+                });
+                if (!deleted.isEmpty()) {
+                    sink.writeData(deleted);
+                }
+            } catch (IOException | RuntimeException e) {
+                failed = true;
+                logger.error("Error writing deleted records: {}", e.getMessage());
+            }
+        }
+        
+        RuntimeException closeFailure = null;
+        try {
+            sink.close();
+        } catch (RuntimeException e) {
+            failed = true;
+            closeFailure = e;
+        }
+        
+        try {
+            if (failed || interrupted) {
+                table.discard();
+                logger.warn("Output was incomplete; the next delta run will write every record as new");
+            } else {
+                table.close();
+                if (skipped > 0) {
+                    logger.warn("Skipped {} records without a {}", skipped, keyField);
+                }
+                logger.info("Delta: {} new, {} changed, {} deleted, {} unchanged records", added, changed,
+                        deleted.size(), unchanged);
+            }
+        } catch (IOException e) {
+            logger.error("Error closing fingerprint table: {}", e.getMessage());
+        }
+        if (closeFailure != null) {
+            throw closeFailure;
+        }
+    }
+    
+    /**
+     * Gets the key of a record: the canonical form of its URL if keyed by URL, or else the
+     * trimmed value of the key field.
+     * 
+     * @param data Scraped data record
+     * @param keyField Key field name
+     * @return Key, or null if the field is empty
+     */
+    static String key(ScrapedData data, String keyField) {
+        String value = data.getField(keyField);
+        if (ScrapedData.URL.equals(keyField)) {
+            return RecordStore.canonicalKey(value);
+        }
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return value.trim();
+    }
+    
+    /**
+     * Hashes every field of a record but the change type. The URL is hashed in canonical form
+     * and custom fields in name order, so neither the way a link was written nor the order
+     * fields were extracted in counts as a change.
+     * 
+     * @param data Scraped data record
+     * @return 64-bit fingerprint
+     */
+    static long fingerprint(ScrapedData data) {
+        Hash64 hash = new Hash64()
+                .update(data.getTitle())
+                .update(data.getDescription())
+                .update(RecordStore.canonicalKey(data.getUrl()))
+                .update(data.getPrice())
+                .update(data.getImageUrl());
+        Map<String, String> fields = data.getFields();
+        if (!fields.isEmpty()) {
+            for (Map.Entry<String, String> field : new TreeMap<>(fields).entrySet()) {
+                if (!field.getKey().equals(CHANGE_TYPE)) {
+                    hash.update(field.getKey()).update(field.getValue());
+                }
+            }
+        }
+        return hash.finish();
+    }
+}
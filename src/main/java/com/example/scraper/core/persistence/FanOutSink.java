@@ -0,0 +1,98 @@
+package com.example.scraper.core.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.scraper.model.ScrapedData;
+
+/**
+ * Record sink that writes the same records to several sinks at once, e.g. a CSV and a JSONL
+ * file.
+ * 
+ * <p>Each sink is written on its own thread through an {@link AsyncSink} with its own queue, so a
+ * slow sink only holds up callers once its own queue is full, while the others keep writing. The
+ * same batch is handed to every sink, so callers must not change a list after writing it. A
+ * failure of any sink is rethrown from the next call, or from {@link #close()} at the latest.
+ */
+public class FanOutSink implements RecordSink {
+    
+    private final List<AsyncSink> sinks = new ArrayList<>();
+    
+    /**
+     * Creates a fan-out sink.
+     * 
+     * @param names Names of the sinks, used for their threads and in messages
+     * @param sinks Sinks to write to
+     * @param queuedBatches Batches that may wait per sink before callers block
+     */
+    public FanOutSink(List<String> names, List<? extends RecordSink> sinks, int queuedBatches) {
+        for (int i = 0; i < sinks.size(); i++) {
+            this.sinks.add(new AsyncSink(names.get(i), sinks.get(i), queuedBatches));
+        }
+    }
+    
+    @Override
+    public void writeData(List<ScrapedData> dataList) {
+        if (dataList == null || dataList.isEmpty()) {
+            return;
+        }
+        for (AsyncSink sink : sinks) {
+            sink.writeData(dataList);
+        }
+    }
+    
+    @Override
+    public void writeData(ScrapedData data) {
+        if (data == null) {
+            return;
+        }
+        for (AsyncSink sink : sinks) {
+            sink.writeData(data);
+        }
+    }
+    
+    @Override
+    public void flush() {
+        for (AsyncSink sink : sinks) {
+            sink.flush();
+        }
+    }
+    
+    @Override
+    public void drain() {
+        for (AsyncSink sink : sinks) {
+            sink.drain();
+        }
+    }
+    
+    @Override
+    public void setFsync(boolean fsync) {
+        for (AsyncSink sink : sinks) {
+            sink.setFsync(fsync);
+        }
+    }
+    
+    /**
+     * Closes every sink, even if one fails.
+     * 
+     * @throws RuntimeException the first failure of any sink, with the others suppressed
+     */
+    @Override
+    public void close() {
+        RuntimeException failure = null;
+        for (AsyncSink sink : sinks) {
+            try {
+                sink.close();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package com.example.scraper.core.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent table of record fingerprints, telling which records of a run are new or changed
+ * since the previous run and which were not seen again.
+ * 
+ * <p>The table file is a memory-mapped hash table of 24-byte slots, each holding a 64-bit hash
+ * of a record's key, a 64-bit fingerprint of its content, the offset of the key in a side file
+ * and the run it was last seen in, with linear probing at a load factor of at most 0.6. Only
+ * the hashes are compared, so two keys colliding in all 64 bits would be taken for one; with a
+ * hundred million keys the chance of that is below one in three thousand. The key text is kept
+ * in the side file, named like the table file with {@code .keys} appended, only so that
+ * records that disappear can be reported by key.
+ * 
+ * <p>Each time the table is opened starts a new run. The table is trusted only if it was closed
+ * cleanly; otherwise it is discarded with a warning, and every record of the run counts as new.
+ * One process at a time may open a table.
+ */
+public class FingerprintTable implements Closeable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(FingerprintTable.class);
+    
+    /**
+     * How a record compares with the previous run.
+     */
+    public enum Change {
+        NEW, CHANGED, UNCHANGED
+    }
+    
+    private static final int MAGIC = 0x53574650; // "SWFP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 24;
+    private static final int INITIAL_CAPACITY = 1 << 12;
+    private static final int MAX_CAPACITY = 1 << 26;
+    private static final double MAX_LOAD = 0.6;
+    private static final long MIN_COMPACT_KEY_BYTES = 1024 * 1024;
+    
+    private final Path file;
+    private final Path keysFile;
+    private final FileChannel channel;
+    private final FileLock lock;
+    
+    private MappedByteBuffer table;
+    private int capacity;
+    private int size;
+    private int generation;
+    private FileChannel keysChannel;
+    private OutputStream keysStream;
+    private long keyBytes;
+    private long liveKeyBytes;
+    
+    /**
+     * Opens a table, creating it if it does not exist, and starts a new run.
+     * 
+     * @param file Table file; the keys are kept next to it
+     * @throws IOException if the table cannot be opened or is open elsewhere
+     */
+    public FingerprintTable(Path file) throws IOException {
+        this.file = file;
+        this.keysFile = file.resolveSibling(file.getFileName() + ".keys");
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            channel.close();
+            throw new IOException("Fingerprint table " + file + " is already open in this process", e);
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException("Fingerprint table " + file + " is open in another process");
+        }
+        
+        try {
+            open();
+        } catch (IOException | RuntimeException e) {
+            closeFiles();
+            throw e;
+        }
+    }
+    
+    private void open() throws IOException {
+        boolean trusted = false;
+        long length = channel.size();
+        if (length >= HEADER_SIZE) {
+            table = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            trusted = table.getInt(0) == MAGIC && table.getInt(4) == VERSION && table.getInt(16) == 1
+                    && length == HEADER_SIZE + (long) table.getInt(8) * SLOT_SIZE
+                    && Files.exists(keysFile) && Files.size(keysFile) >= table.getLong(24);
+            if (!trusted) {
+                logger.warn("Fingerprint table {} was not closed cleanly; every record counts as new", file);
+            }
+        }
+        
+        if (trusted) {
+            capacity = table.getInt(8);
+            size = table.getInt(12);
+            generation = table.getInt(20) + 1;
+            keyBytes = table.getLong(24);
+            liveKeyBytes = table.getLong(32);
+        } else {
+            capacity = INITIAL_CAPACITY;
+            size = 0;
+            generation = 1;
+            keyBytes = 0;
+            liveKeyBytes = 0;
+            map(capacity);
+        }
+        
+        keysChannel = FileChannel.open(keysFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        keysChannel.truncate(keyBytes);
+        keysChannel.position(keyBytes);
+        keysStream = new BufferedOutputStream(Channels.newOutputStream(keysChannel), 64 * 1024);
+        
+        // Until close() marks it clean again, a crash leaves the table to be discarded
+        table.putInt(16, 0);
+        table.putInt(20, generation);
+        table.force();
+    }
+    
+    /**
+     * Records the fingerprint of a record seen in this run.
+     * 
+     * @param key Record key
+     * @param fingerprint Fingerprint of the record's content
+     * @return How the record compares with the last time its key was seen
+     * @throws IOException if the key cannot be stored
+     */
+    public Change update(String key, long fingerprint) throws IOException {
+        long hash = Hash64.of(key);
+        int slot = find(hash);
+        if (slot >= 0) {
+            int position = slotPosition(slot);
+            table.putInt(position + 20, generation);
+            if (table.getLong(position + 8) == fingerprint) {
+                return Change.UNCHANGED;
+            }
+            table.putLong(position + 8, fingerprint);
+            return Change.CHANGED;
+        }
+        
+        if (size + 1 > capacity * MAX_LOAD) {
+            grow();
+            slot = find(hash);
+        }
+        setSlot(-slot - 1, hash, fingerprint, appendKey(key), generation);
+        size++;
+        return Change.NEW;
+    }
+    
+    /**
+     * Removes the keys not seen in this run, passing each to a consumer.
+     * 
+     * @param consumer Receives the removed keys
+     * @throws IOException if a key cannot be read
+     */
+    public void removeUnseen(Consumer<String> consumer) throws IOException {
+        keysStream.flush();
+        List<Long> unseen = new ArrayList<>();
+        for (int slot = 0; slot < capacity; slot++) {
+            int position = slotPosition(slot);
+            if (table.getLong(position) != 0 && table.getInt(position + 20) != generation) {
+                unseen.add(table.getLong(position));
+            }
+        }
+        for (long hash : unseen) {
+            int slot = find(hash);
+            String key = readKey(table.getInt(slotPosition(slot) + 16));
+            removeSlot(slot);
+            size--;
+            liveKeyBytes -= 4 + key.getBytes(StandardCharsets.UTF_8).length;
+            consumer.accept(key);
+        }
+    }
+    
+    /**
+     * Writes the keys added so far through to their file and, if requested, syncs both files
+     * to disk.
+     * 
+     * @param force true to sync to disk
+     * @throws IOException if the files cannot be written
+     */
+    public void flush(boolean force) throws IOException {
+        keysStream.flush();
+        if (force) {
+            keysChannel.force(false);
+            table.force();
+        }
+    }
+    
+    /**
+     * Rewrites the keys file if most of it belongs to removed keys, marks the table clean and
+     * closes it.
+     * 
+     * @throws IOException if the files cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            keysStream.flush();
+            if (keyBytes > MIN_COMPACT_KEY_BYTES && liveKeyBytes * 2 < keyBytes) {
+                compactKeys();
+            }
+            keysChannel.force(false);
+            table.putInt(12, size);
+            table.putLong(24, keyBytes);
+            table.putLong(32, liveKeyBytes);
+            table.force();
+            table.putInt(16, 1);
+            table.force();
+        } finally {
+            closeFiles();
+        }
+    }
+    
+    /**
+     * Closes the table without marking it clean, e.g. because the records of this run were not
+     * all written out. The next run discards the table and counts every record as new.
+     * 
+     * @throws IOException if the files cannot be closed
+     */
+    public void discard() throws IOException {
+        closeFiles();
+    }
+    
+    /**
+     * Gets the number of keys in the table.
+     * 
+     * @return Key count
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Gets the number of this run, counting from 1 when the table was created.
+     * 
+     * @return Run number
+     */
+    public int getGeneration() {
+        return generation;
+    }
+    
+    // Keys file: each key as a 4-byte length followed by its UTF-8 bytes
+    
+    private int appendKey(String key) throws IOException {
+        byte[] utf8 = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes + 4 + utf8.length > Integer.MAX_VALUE) {
+            throw new IOException("Fingerprint table keys file " + keysFile + " is full");
+        }
+        int offset = (int) keyBytes;
+        keysStream.write(ByteBuffer.allocate(4).putInt(utf8.length).array());
+        keysStream.write(utf8);
+        keyBytes += 4 + utf8.length;
+        liveKeyBytes += 4 + utf8.length;
+        return offset;
+    }
+    
+    private String readKey(int offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(length, offset);
+        ByteBuffer utf8 = ByteBuffer.allocate(length.getInt(0));
+        readFully(utf8, offset + 4L);
+        return new String(utf8.array(), StandardCharsets.UTF_8);
+    }
+    
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (keysChannel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of " + keysFile);
+            }
+        }
+    }
+    
+    private void compactKeys() throws IOException {
+        Path tempFile = keysFile.resolveSibling(keysFile.getFileName() + ".tmp");
+        long written = 0;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempFile), 64 * 1024)) {
+            for (int slot = 0; slot < capacity; slot++) {
+                int position = slotPosition(slot);
+                if (table.getLong(position) == 0) {
+                    continue;
+                }
+                byte[] utf8 = readKey(table.getInt(position + 16)).getBytes(StandardCharsets.UTF_8);
+                out.write(ByteBuffer.allocate(4).putInt(utf8.length).array());
+                out.write(utf8);
+                table.putInt(position + 16, (int) written);
+                written += 4 + utf8.length;
+            }
+        }
+        keysChannel.close();
+        Files.move(tempFile, keysFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        keysChannel = FileChannel.open(keysFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        keysStream = new BufferedOutputStream(Channels.newOutputStream(keysChannel), 64 * 1024);
+        logger.debug("Compacted fingerprint table keys from {} to {} bytes", keyBytes, written);
+        keyBytes = written;
+        liveKeyBytes = written;
+    }
+    
+    // Table: a header followed by slots of key hash, fingerprint, key offset and run
+    
+    private void map(int newCapacity) throws IOException {
+        long length = HEADER_SIZE + (long) newCapacity * SLOT_SIZE;
+        if (channel.size() > length) {
+            channel.truncate(length);
+        }
+        table = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        for (int position = 0; position < length; position += 8) {
+            table.putLong(position, 0);
+        }
+        table.putInt(0, MAGIC);
+        table.putInt(4, VERSION);
+        table.putInt(8, newCapacity);
+    }
+    
+    /**
+     * Doubles the table in place. The slots are copied to the heap, the file is cleared and
+     * extended to the new size and the slots are inserted again; a crash in between leaves the
+     * table unclean.
+     */
+    private void grow() throws IOException {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IOException("Fingerprint table " + file + " is full at " + size + " keys");
+        }
+        long[] hashes = new long[size];
+        long[] fingerprints = new long[size];
+        int[] offsets = new int[size];
+        int[] generations = new int[size];
+        int count = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            int position = slotPosition(slot);
+            if (table.getLong(position) != 0) {
+                hashes[count] = table.getLong(position);
+                fingerprints[count] = table.getLong(position + 8);
+                offsets[count] = table.getInt(position + 16);
+                generations[count] = table.getInt(position + 20);
+                count++;
+            }
+        }
+        
+        capacity *= 2;
+        map(capacity);
+        table.putInt(20, generation);
+        for (int i = 0; i < count; i++) {
+            setSlot(-find(hashes[i]) - 1, hashes[i], fingerprints[i], offsets[i], generations[i]);
+        }
+    }
+    
+    /**
+     * Finds the slot of a key hash.
+     * 
+     * @return Slot index, or -(insertion slot) - 1 if the hash is not stored
+     */
+    private int find(long hash) {
+        int mask = capacity - 1;
+        int slot = (int) hash & mask;
+        while (true) {
+            long slotHash = table.getLong(slotPosition(slot));
+            if (slotHash == 0) {
+                return -slot - 1;
+            }
+            if (slotHash == hash) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+    
+    /**
+     * Empties a slot, moving later slots of the same probe sequence back so that lookups do not
+     * stop at the gap.
+     */
+    private void removeSlot(int slot) {
+        int mask = capacity - 1;
+        int gap = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            long hash = table.getLong(slotPosition(next));
+            if (hash == 0) {
+                break;
+            }
+            int home = (int) hash & mask;
+            boolean stays = gap <= next ? gap < home && home <= next : gap < home || home <= next;
+            if (!stays) {
+                int from = slotPosition(next);
+                setSlot(gap, hash, table.getLong(from + 8), table.getInt(from + 16), table.getInt(from + 20));
+                gap = next;
+            }
+        }
+        setSlot(gap, 0, 0, 0, 0);
+    }
+    
+    private void setSlot(int slot, long hash, long fingerprint, int keyOffset, int slotGeneration) {
+        int position = slotPosition(slot);
+        table.putLong(position, hash);
+        table.putLong(position + 8, fingerprint);
+        table.putInt(position + 16, keyOffset);
+        table.putInt(position + 20, slotGeneration);
+    }
+    
+    private static int slotPosition(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+    
+    private void closeFiles() throws IOException {
+        try {
+            if (keysStream != null) {
+                keysStream.close();
+            } else if (keysChannel != null) {
+                keysChannel.close();
+            }
+        } finally {
+            if (lock != null && lock.isValid()) {
+                lock.release();
+            }
+            channel.close();
+        }
+    }
+}
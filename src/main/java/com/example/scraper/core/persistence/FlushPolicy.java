@@ -0,0 +1,63 @@
+package com.example.scraper.core.persistence;
+
+/**
+ * When buffered output is flushed to the file. Whether output is also synced to disk is set on the
+ * sinks themselves, see {@link RecordSink#setFsync(boolean)}.
+ * 
+ * <p>With no record count and no interval, output is group-committed: flushed whenever the writer
+ * has caught up with everything queued for it. With a count or an interval, output is flushed once
+ * that many records are buffered or that long after the first buffered record, whichever comes
+ * first, and not merely because the writer is idle.
+ */
+public final class FlushPolicy {
+    
+    /** Flush whenever the writer has caught up. */
+    public static final FlushPolicy DEFAULT = new FlushPolicy(0, 0);
+    
+    private final int everyRecords;
+    private final long everyMs;
+    
+    /**
+     * Creates a flush policy.
+     * 
+     * @param everyRecords Buffered records that trigger a flush, or 0 for no limit
+     * @param everyMs Longest time a record stays buffered in milliseconds, or 0 for no limit
+     */
+    public FlushPolicy(int everyRecords, long everyMs) {
+        this.everyRecords = Math.max(0, everyRecords);
+        this.everyMs = Math.max(0, everyMs);
+    }
+    
+    /**
+     * Checks whether buffered output is due to be flushed.
+     * 
+     * @param bufferedRecords Records written since the last flush
+     * @param bufferedMs Time since the first of them was written in milliseconds
+     * @return true if the output should be flushed now
+     */
+    public boolean isDue(long bufferedRecords, long bufferedMs) {
+        return (everyRecords > 0 && bufferedRecords >= everyRecords) || (everyMs > 0 && bufferedMs >= everyMs);
+    }
+    
+    /**
+     * Checks whether output is flushed whenever the writer has caught up.
+     * 
+     * @return true if neither a record count nor an interval is set
+     */
+    public boolean isGroupCommit() {
+        return everyRecords == 0 && everyMs == 0;
+    }
+    
+    public long getEveryMs() {
+        return everyMs;
+    }
+
+    
+    @Override
+    public String toString() {
+        return "FlushPolicy{" +
+                "everyRecords=" + everyRecords +
+                ", everyMs=" + everyMs +
+                '}';
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.scraper.core.persistence;
+
+/**
+ * Incremental 64-bit string hash: FNV-1a over the characters, finished with the MurmurHash3
+ * mixer so that similar inputs differ in every bit. Used for keys and record fingerprints in
+ * files, so the algorithm must not change, and by the crawl for its in-memory URL sets.
+ */
+public final class Hash64 {
+    
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+    
+    private long hash = OFFSET_BASIS;
+    
+    /**
+     * Hashes a single string, without the separator {@link #update(String)} adds.
+     * 
+     * @param value String to hash
+     * @return Hash, never 0
+     */
+    public static long of(String value) {
+        Hash64 hash = new Hash64();
+        for (int i = 0; i < value.length(); i++) {
+            hash.add(value.charAt(i));
+        }
+        return hash.finish();
+    }
+    
+    /**
+     * Adds a string, followed by a separator so that adjacent values cannot run together. Null
+     * hashes differently from the empty string.
+     * 
+     * @param value String to add, or null
+     * @return this
+     */
+    public Hash64 update(String value) {
+        if (value == null) {
+            return add('\u001E');
+        }
+        for (int i = 0; i < value.length(); i++) {
+            add(value.charAt(i));
+        }
+        return add('\u001F');
+    }
+    
+    private Hash64 add(char c) {
+        hash ^= c;
+        hash *= PRIME;
+        return this;
+    }
+    
+    /**
+     * Gets the hash of everything added.
+     * 
+     * @return Hash, never 0 so that 0 can mark an empty slot
+     */
+    public long finish() {
+        long mixed = hash;
+        mixed ^= mixed >>> 33;
+        mixed *= 0xff51afd7ed558ccdL;
+        mixed ^= mixed >>> 33;
+        mixed *= 0xc4ceb9fe1a85ec53L;
+        mixed ^= mixed >>> 33;
+        return mixed != 0 ? mixed : 1;
+    }
+}
@@ -1,43 +1,68 @@
 package com.example.scraper.core.persistence;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.List;
 
 import com.example.scraper.model.ScrapedData;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Writes scraped data to JSONL (JSON Lines) files for streaming output.
+ * 
+ * <p>Records are serialized by one UTF-8 generator per file straight into its buffered stream,
+ * without building a String per record. Files are opened and rotated by a {@link SegmentManager}.
  */
-public class JSONLWriter {
+public class JSONLWriter implements RecordSink {
     
     private static final Logger logger = LoggerFactory.getLogger(JSONLWriter.class);
-    private static final long MAX_FILE_SIZE = 10 * 1024 * 1024; // 10MB
-    private static final String FILE_ENCODING = "UTF-8";
+    // Created when the first JSONL writer is, and shared by all of them. Flushing is left to
+    // flush() and closing files to the segment manager
+    private static final ObjectWriter OBJECT_WRITER = new ObjectMapper().writer()
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     
-    private final ObjectMapper objectMapper;
-    private final String outputPath;
-    private final boolean appendMode;
+    private final boolean gzip;
+    private final SegmentManager segments;
     
-    private File currentFile;
-    private FileWriter fileWriter;
-    private int fileCounter = 0;
+    private JsonGenerator generator;
     
     public JSONLWriter(String outputPath) {
         this(outputPath, false);
     }
     
     public JSONLWriter(String outputPath, boolean appendMode) {
-        this.outputPath = outputPath;
-        this.appendMode = appendMode;
-        this.objectMapper = new ObjectMapper();
+        this(outputPath, appendMode, false);
+    }
+    
+    /**
+     * Creates a JSONL writer that optionally compresses its output.
+     * 
+     * @param outputPath Output file path
+     * @param appendMode Whether to append to an existing file
+     * @param gzip Whether to write gzip files, named with a .gz suffix, compressed in parallel
+     */
+    public JSONLWriter(String outputPath, boolean appendMode, boolean gzip) {
+        this(outputPath, appendMode, gzip, SegmentPolicy.DEFAULT);
+    }
+    
+    /**
+     * Creates a JSONL writer with its own rotation policy.
+     * 
+     * @param outputPath Output file path
+     * @param appendMode Whether to append to an existing file
+     * @param gzip Whether to write gzip files, named with a .gz suffix, compressed in parallel
+     * @param segmentPolicy When to rotate files and whether to write sealed segments
+     */
+    public JSONLWriter(String outputPath, boolean appendMode, boolean gzip, SegmentPolicy segmentPolicy) {
+        this.gzip = gzip;
+        this.segments = new SegmentManager(outputPath, appendMode, gzip, segmentPolicy);
         
         initializeFile();
     }
@@ -47,22 +72,11 @@ public class JSONLWriter {
      */
     private void initializeFile() {
         try {
-            Path path = Paths.get(outputPath);
-            Path parentDir = path.getParent();
-            
-            if (parentDir != null) {
-                Files.createDirectories(parentDir);
-            }
-            
-            // Determine the actual file to use
-            if (appendMode && Files.exists(path)) {
-                currentFile = path.toFile();
-                fileWriter = new FileWriter(currentFile, true); // Append mode
-                logger.debug("Opened existing file for appending: {}", currentFile.getAbsolutePath());
+            openFile();
+            if (segments.isAppended()) {
+                logger.debug("Opened existing file for appending: {}", getCurrentFile().getAbsolutePath());
             } else {
-                currentFile = path.toFile();
-                fileWriter = new FileWriter(currentFile, false); // Overwrite mode
-                logger.debug("Created new file: {}", currentFile.getAbsolutePath());
+                logger.debug("Created new file: {}", getCurrentFile().getAbsolutePath());
             }
             
         } catch (IOException e) {
@@ -76,25 +90,19 @@ public class JSONLWriter {
      * 
      * @param dataList List of scraped data
      */
+    @Override
     public void writeData(List<ScrapedData> dataList) {
         if (dataList == null || dataList.isEmpty()) {
             return;
         }
         
         try {
-            // Check if we need to rotate the file
-            if (shouldRotateFile()) {
-                rotateFile();
-            }
-            
             // Write each record as a separate JSON line
             for (ScrapedData data : dataList) {
-                String jsonLine = objectMapper.writeValueAsString(data);
-                fileWriter.write(jsonLine);
-                fileWriter.write("\n"); // JSONL format: one JSON object per line
+                writeLine(data);
             }
+            endBatch();
             
-            fileWriter.flush();
             logger.debug("Wrote {} records to JSONL file", dataList.size());
             
         } catch (IOException e) {
@@ -108,22 +116,16 @@ public class JSONLWriter {
      * 
      * @param data Scraped data record
      */
+    @Override
     public void writeData(ScrapedData data) {
         if (data == null) {
             return;
         }
         
         try {
-            // Check if we need to rotate the file
-            if (shouldRotateFile()) {
-                rotateFile();
-            }
-            
             // Write record as JSON line
-            String jsonLine = objectMapper.writeValueAsString(data);
-            fileWriter.write(jsonLine);
-            fileWriter.write("\n"); // JSONL format: one JSON object per line
-            fileWriter.flush();
+            writeLine(data);
+            endBatch();
             
         } catch (IOException e) {
             logger.error("Error writing JSONL data: {}", e.getMessage());
@@ -132,34 +134,119 @@ public class JSONLWriter {
     }
     
     /**
-     * Checks if the current file should be rotated due to size.
+     * Serializes one record and its line separator into the generator, rotating the file first
+     * if it is full.
      * 
-     * @return true if file should be rotated
+     * @param data Scraped data record
+     * @throws IOException if the record cannot be written
      */
-    private boolean shouldRotateFile() {
-        return currentFile != null && currentFile.length() > MAX_FILE_SIZE;
+    private void writeLine(ScrapedData data) throws IOException {
+        // Check if we need to rotate the file
+        if (segments.shouldRotate(generator.getOutputBuffered())) {
+            rotateFile();
+        }
+        OBJECT_WRITER.writeValue(generator, data);
+        generator.writeRaw('\n'); // JSONL format: one JSON object per line
+        segments.addRecords(1);
     }
     
     /**
-     * Rotates the current file to a new one with incremented name.
+     * Ends a batch of whole records. Compressed output may start a new gzip member here, so
+     * records are never split across members.
+     * 
+     * @throws IOException if the output cannot be written
      */
-    private void rotateFile() {
+    private void endBatch() throws IOException {
+        if (gzip) {
+            generator.flush();
+        }
+    }
+    
+    /**
+     * Writes buffered records through to the file. Records are otherwise buffered until the
+     * buffer fills, the file is rotated or the writer is closed. A file that has been open for
+     * longer than the rotation policy allows is rotated instead. Compressed output keeps a
+     * partial gzip block back until it is full or {@link #drain()} is called.
+     */
+    @Override
+    public void flush() {
+        flush(false);
+    }
+    
+    /**
+     * Writes buffered records through to the file like {@link #flush()}, compressing a partial
+     * gzip block into a member of its own.
+     */
+    @Override
+    public void drain() {
+        flush(true);
+    }
+    
+    private void flush(boolean drain) {
         try {
-            // Close current file
-            if (fileWriter != null) {
-                fileWriter.close();
+            if (generator == null) {
+                return;
             }
+            if (segments.shouldRotate(generator.getOutputBuffered())) {
+                rotateFile();
+            } else {
+                generator.flush();
+                if (drain) {
+                    segments.drain();
+                } else {
+                    segments.flush();
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Error flushing JSONL file: {}", e.getMessage());
+            throw new RuntimeException("Failed to flush JSONL file", e);
+        }
+    }
+    
+    /**
+     * Sets whether files are synced to disk when they are rotated or closed.
+     * 
+     * @param fsync true to sync each file before closing it
+     */
+    @Override
+    public void setFsync(boolean fsync) {
+        segments.setFsync(fsync);
+    }
+    
+    /**
+     * Opens the next file behind a UTF-8 generator.
+     * 
+     * @throws IOException if the file cannot be opened
+     */
+    private void openFile() throws IOException {
+        generator = OBJECT_WRITER.createGenerator(segments.open(), JsonEncoding.UTF8);
+        // Lines are ended by writeLine() instead of the default space between root values
+        generator.setRootValueSeparator(null);
+    }
+    
+    /**
+     * Writes out the generator and seals the current file.
+     * 
+     * @throws IOException if the file cannot be written
+     */
+    private void closeFile() throws IOException {
+        if (generator == null) {
+            return;
+        }
+        generator.close();
+        generator = null;
+        segments.seal();
+    }
+    
+    /**
+     * Rotates the current file to the next one.
+     */
+    private void rotateFile() {
+        try {
+            closeFile();
+            openFile();
             
-            // Create new file with incremented name
-            fileCounter++;
-            String baseName = outputPath.substring(0, outputPath.lastIndexOf('.'));
-            String extension = outputPath.substring(outputPath.lastIndexOf('.'));
-            String newFileName = baseName + "_" + fileCounter + extension;
-            
-            currentFile = new File(newFileName);
-            fileWriter = new FileWriter(currentFile, false);
-            
-            logger.info("Rotated JSONL file to: {}", currentFile.getAbsolutePath());
+            logger.info("Rotated JSONL file to: {}", getCurrentFile().getAbsolutePath());
             
         } catch (IOException e) {
             logger.error("Error rotating JSONL file: {}", e.getMessage());
@@ -169,15 +256,18 @@ public class JSONLWriter {
     
     /**
      * Closes the JSONL writer and releases resources.
+     * 
+     * @throws RuntimeException if the last records cannot be written out or the file cannot be
+     *                          sealed, so the output is incomplete
      */
+    @Override
     public void close() {
         try {
-            if (fileWriter != null) {
-                fileWriter.close();
-            }
+            closeFile();
             logger.debug("JSONL writer closed");
         } catch (IOException e) {
             logger.error("Error closing JSONL writer: {}", e.getMessage());
+            throw new RuntimeException("Failed to close JSONL file", e);
         }
     }
     
@@ -187,7 +277,7 @@ public class JSONLWriter {
      * @return Current file
      */
     public File getCurrentFile() {
-        return currentFile;
+        return segments.getCurrentFile();
     }
     
     /**
@@ -196,6 +286,6 @@ public class JSONLWriter {
      * @return Number of files created
      */
     public int getFileCount() {
-        return fileCounter + 1;
+        return segments.getFileCount();
     }
 }
@@ -0,0 +1,23 @@
+package com.example.scraper.core.persistence;
+
+/**
+ * Provides {@link JSONLWriter} sinks under the name "jsonl".
+ */
+public class JsonlSinkProvider implements RecordSinkProvider {
+    
+    @Override
+    public String getName() {
+        return "jsonl";
+    }
+    
+    @Override
+    public String getExtension() {
+        return ".jsonl";
+    }
+    
+    @Override
+    public RecordSink create(SinkOptions options) {
+        return new JSONLWriter(options.getOutputFile(), options.isAppendMode(), options.isGzip(),
+                options.getSegmentPolicy());
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.scraper.core.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip output stream that compresses blocks on several threads, like pigz.
+ * 
+ * <p>Written bytes are collected into blocks, and every block is compressed into a complete gzip
+ * member of its own. Members are written in order, and their concatenation is a valid gzip file
+ * that any gzip reader decompresses in one pass. Because each member starts fresh, the output
+ * can also be split at member boundaries and decompressed in parallel downstream.
+ * 
+ * <p>Blocks are only cut at {@link #flush()}, so a writer that flushes after whole records never
+ * splits a record across members. {@link #drain()} additionally compresses the partial block and
+ * waits for every pending member. Not thread-safe; one writer thread owns each stream.
+ */
+public class ParallelGzipOutputStream extends FilterOutputStream {
+    
+    /** Default uncompressed size at which a block is cut. */
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+    
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    // Shared by every stream; daemon threads so an unclosed stream never keeps the JVM alive
+    private static final ExecutorService COMPRESSORS = Executors.newFixedThreadPool(THREADS, compressorThreads());
+    private static final ThreadLocal<Deflater> DEFLATERS =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    // Member header as written by java.util.zip.GZIPOutputStream: magic, deflate, no flags
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+    
+    private final int blockSize;
+    private final int maxPending;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private byte[] block;
+    private int blockLength;
+    private long compressedBytes;
+    private long uncompressedBytes;
+    private boolean closed;
+    
+    /**
+     * Creates a stream with the default block size.
+     * 
+     * @param out Stream the gzip members are written to
+     */
+    public ParallelGzipOutputStream(OutputStream out) {
+        this(out, DEFAULT_BLOCK_SIZE);
+    }
+    
+    /**
+     * Creates a stream.
+     * 
+     * @param out Stream the gzip members are written to
+     * @param blockSize Uncompressed bytes at which {@link #flush()} cuts a block
+     */
+    public ParallelGzipOutputStream(OutputStream out, int blockSize) {
+        super(out);
+        this.blockSize = blockSize;
+        // Enough blocks in flight to keep every core busy without holding more in memory
+        this.maxPending = THREADS * 2;
+        this.block = new byte[blockSize];
+    }
+    
+    @Override
+    public void write(int b) throws IOException {
+        ensureCapacity(1);
+        block[blockLength++] = (byte) b;
+    }
+    
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureCapacity(len);
+        System.arraycopy(b, off, block, blockLength, len);
+        blockLength += len;
+    }
+    
+    /**
+     * Marks a record boundary: cuts the current block if it has reached the block size and writes
+     * the members that have finished compressing. Does not wait for pending members and does not
+     * flush the underlying stream; use {@link #drain()} for that.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (blockLength >= blockSize) {
+            submitBlock();
+        }
+        writeCompleted(false);
+    }
+    
+    /**
+     * Compresses the partial block, writes every pending member and flushes the underlying stream.
+     * 
+     * @throws IOException if a member cannot be compressed or written
+     */
+    public void drain() throws IOException {
+        if (blockLength > 0) {
+            submitBlock();
+        }
+        writeCompleted(true);
+        out.flush();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            drain();
+        } finally {
+            out.close();
+        }
+    }
+    
+    /**
+     * Gets the number of compressed bytes written to the underlying stream so far. Blocks that are
+     * still being compressed are not counted.
+     * 
+     * @return Compressed bytes
+     */
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+    
+    /**
+     * Gets the number of uncompressed bytes handed to the compressors so far.
+     * 
+     * @return Uncompressed bytes
+     */
+    public long getUncompressedBytes() {
+        return uncompressedBytes;
+    }
+    
+    private void ensureCapacity(int len) {
+        if (blockLength + len > block.length) {
+            // Records larger than a block grow it rather than being split
+            block = Arrays.copyOf(block, Math.max(block.length * 2, blockLength + len));
+        }
+    }
+    
+    private void submitBlock() throws IOException {
+        byte[] data = block;
+        int length = blockLength;
+        pending.add(COMPRESSORS.submit(() -> compress(data, length)));
+        uncompressedBytes += length;
+        block = new byte[blockSize];
+        blockLength = 0;
+        
+        // Wait for the oldest member while too many are in flight
+        while (pending.size() > maxPending) {
+            writeMember(pending.poll());
+        }
+    }
+    
+    /**
+     * Writes pending members in order.
+     * 
+     * @param all true to wait for every member, false to stop at the first unfinished one
+     */
+    private void writeCompleted(boolean all) throws IOException {
+        while (!pending.isEmpty() && (all || pending.peek().isDone())) {
+            writeMember(pending.poll());
+        }
+    }
+    
+    private void writeMember(Future<byte[]> member) throws IOException {
+        try {
+            byte[] compressed = member.get();
+            out.write(compressed);
+            compressedBytes += compressed.length;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing output");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compress output block", e.getCause());
+        }
+    }
+    
+    /**
+     * Compresses one block into a complete gzip member.
+     */
+    private static byte[] compress(byte[] data, int length) {
+        Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+        
+        ByteArrayOutputStream member = new ByteArrayOutputStream(length / 4 + 64);
+        member.writeBytes(HEADER);
+        byte[] buffer = new byte[64 * 1024];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            member.write(buffer, 0, n);
+        }
+        
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        writeIntLE(member, (int) crc.getValue());
+        writeIntLE(member, length);
+        return member.toByteArray();
+    }
+    
+    private static void writeIntLE(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+    
+    private static ThreadFactory compressorThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "scraper-gzip-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.scraper.core.persistence;
+
+import java.util.List;
+
+import com.example.scraper.model.ScrapedData;
+
+/**
+ * Destination that scraped records are written to, such as a CSV or JSONL file.
+ * 
+ * <p>Sinks are created by a {@link RecordSinkProvider}, found by name through {@link RecordSinks}.
+ * A sink is used by one thread at a time; {@link AsyncSink} gives a sink its own thread.
+ */
+public interface RecordSink {
+    
+    /**
+     * Writes a list of scraped data.
+     * 
+     * @param dataList List of scraped data
+     */
+    void writeData(List<ScrapedData> dataList);
+    
+    /**
+     * Writes a single scraped data record.
+     * 
+     * @param data Scraped data record
+     */
+    void writeData(ScrapedData data);
+    
+    /**
+     * Writes buffered records through to the output. A sink may hold back a little to write it
+     * together with later records, such as a partial compression block.
+     */
+    void flush();
+    
+    /**
+     * Writes buffered records through to the output, holding nothing back. Used when records
+     * are due by a deadline rather than merely because the writer is idle, as it may write
+     * smaller units than {@link #flush()}.
+     */
+    default void drain() {
+        flush();
+    }
+    
+    /**
+     * Sets whether output is synced to disk. Output files are synced when they are rotated or
+     * closed; state kept between runs, such as a record store or a fingerprint table, is synced
+     * on every flush.
+     * 
+     * @param fsync true to sync output to disk
+     */
+    void setFsync(boolean fsync);
+    
+    /**
+     * Writes out everything buffered and releases resources.
+     * 
+     * @throws RuntimeException if the output cannot be completed; sinks must not only log such
+     *                          failures, so that callers can report the run as failed
+     */
+    void close();
+}
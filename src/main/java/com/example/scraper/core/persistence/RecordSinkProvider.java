@@ -0,0 +1,35 @@
+package com.example.scraper.core.persistence;
+
+/**
+ * Service that creates record sinks of one output format.
+ * 
+ * <p>Providers are found with {@link java.util.ServiceLoader}: a jar on the classpath can add a
+ * format by listing its provider class in
+ * {@code META-INF/services/com.example.scraper.core.persistence.RecordSinkProvider}. The format
+ * is then selected by name, like the built-in {@code csv} and {@code jsonl}.
+ */
+public interface RecordSinkProvider {
+    
+    /**
+     * Gets the format name sinks are selected by.
+     * 
+     * @return Lowercase format name, e.g. "csv"
+     */
+    String getName();
+    
+    /**
+     * Gets the file extension of the format, used to name its file when several formats are
+     * written at once.
+     * 
+     * @return Extension including the dot, e.g. ".csv"
+     */
+    String getExtension();
+    
+    /**
+     * Creates a sink writing to the given output.
+     * 
+     * @param options Output file and settings
+     * @return New record sink
+     */
+    RecordSink create(SinkOptions options);
+}
@@ -0,0 +1,47 @@
+package com.example.scraper.core.persistence;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+/**
+ * Looks up record sink providers by format name. Providers are loaded once with
+ * {@link ServiceLoader}; when two share a name, the first on the classpath wins.
+ */
+public final class RecordSinks {
+    
+    private static final Map<String, RecordSinkProvider> PROVIDERS = loadProviders();
+    
+    private RecordSinks() {
+    }
+    
+    /**
+     * Gets the provider of a format.
+     * 
+     * @param name Format name, ignoring case
+     * @return Provider, or null if no provider has that name
+     */
+    public static RecordSinkProvider provider(String name) {
+        return PROVIDERS.get(name.toLowerCase(Locale.ROOT));
+    }
+    
+    /**
+     * Gets the names of all available formats.
+     * 
+     * @return Format names in classpath order
+     */
+    public static Set<String> names() {
+        return PROVIDERS.keySet();
+    }
+    
+    private static Map<String, RecordSinkProvider> loadProviders() {
+        Map<String, RecordSinkProvider> providers = new LinkedHashMap<>();
+        for (RecordSinkProvider provider : ServiceLoader.load(RecordSinkProvider.class)) {
+            providers.putIfAbsent(provider.getName().toLowerCase(Locale.ROOT), provider);
+        }
+        return Collections.unmodifiableMap(providers);
+    }
+}
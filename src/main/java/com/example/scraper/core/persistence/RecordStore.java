@@ -0,0 +1,819 @@
+package com.example.scraper.core.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import com.example.scraper.model.ScrapedData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local log-structured store holding the latest version of each scraped record, keyed by its
+ * canonical URL, so repeated crawls keep a current snapshot instead of a growing log.
+ * 
+ * <p>A store is a directory. Records are appended as JSON to segment files
+ * {@code segment-000001.log}, {@code segment-000002.log} and so on, each framed with its length,
+ * a CRC32 checksum and its key. Deleting a record appends a tombstone. The file {@code index} is
+ * a memory-mapped hash table from a 64-bit hash of each key to the segment, offset and length of
+ * its latest version, with linear probing at a load factor of at most 0.6; it doubles in size as
+ * keys are added. A hash match is confirmed against the key stored with the record, so colliding
+ * keys are told apart at the cost of one read. Writing a record identical to the stored one
+ * appends nothing.
+ * 
+ * <p>The index is trusted only if the store was closed cleanly; otherwise it is rebuilt by
+ * replaying the segments, and a record cut short at the end of the last segment is truncated.
+ * {@link #compact()} rewrites the live records into new segments and deletes the old ones. One
+ * process at a time may open a store for writing; read-only opens fail while it is open.
+ * 
+ * <p>All methods are synchronized, so one instance can be shared between a writer and readers.
+ */
+public class RecordStore implements Closeable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RecordStore.class);
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    
+    /** Default size at which a segment is closed and the next one started. */
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+    
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.log");
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    // Record length and checksum
+    private static final int FRAME_SIZE = 8;
+    private static final int MAX_SEGMENT_BYTES = Integer.MAX_VALUE - 1024;
+    
+    private static final int INDEX_MAGIC = 0x53575249; // "SWRI"
+    private static final int INDEX_VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 24;
+    private static final int INITIAL_CAPACITY = 1 << 12;
+    private static final int MAX_CAPACITY = 1 << 26;
+    private static final double MAX_LOAD = 0.6;
+    
+    private final Path dir;
+    private final boolean readOnly;
+    private final long segmentBytes;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final TreeSet<Integer> segments = new TreeSet<>();
+    private final Map<Integer, FileChannel> readers = new HashMap<>();
+    private final CRC32 crc = new CRC32();
+    
+    private FileChannel indexChannel;
+    private MappedByteBuffer index;
+    private int capacity;
+    private int size;
+    private long liveBytes;
+    private long totalBytes;
+    private boolean fsync = false;
+    
+    private int activeSegment;
+    private FileChannel activeChannel;
+    private OutputStream activeStream;
+    private long activeLength;
+    private boolean dirty;
+    
+    private long written;
+    private long unchanged;
+    
+    /**
+     * Opens a store for writing, creating it if it does not exist, with the default segment size.
+     * 
+     * @param dir Store directory
+     * @throws IOException if the store cannot be opened or is open for writing elsewhere
+     */
+    public RecordStore(Path dir) throws IOException {
+        this(dir, false, DEFAULT_SEGMENT_BYTES);
+    }
+    
+    /**
+     * Opens a store.
+     * 
+     * @param dir Store directory
+     * @param readOnly true to only read from an existing store
+     * @param segmentBytes Size at which a segment is closed and the next one started
+     * @throws IOException if the store cannot be opened, is open for writing elsewhere, or is
+     *                     opened read-only but does not exist or was not closed cleanly
+     */
+    public RecordStore(Path dir, boolean readOnly, long segmentBytes) throws IOException {
+        this.dir = dir;
+        this.readOnly = readOnly;
+        this.segmentBytes = segmentBytes > 0 ? Math.min(segmentBytes, MAX_SEGMENT_BYTES) : DEFAULT_SEGMENT_BYTES;
+        if (readOnly && !Files.isDirectory(dir)) {
+            throw new IOException("No record store at " + dir);
+        }
+        Files.createDirectories(dir);
+        
+        lockChannel = FileChannel.open(dir.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.READ);
+        try {
+            lock = lockChannel.tryLock(0, Long.MAX_VALUE, readOnly);
+        } catch (OverlappingFileLockException e) {
+            lockChannel.close();
+            throw new IOException("Record store " + dir + " is already open in this process", e);
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("Record store " + dir + " is open for writing by another process");
+        }
+        
+        try {
+            open();
+        } catch (IOException | RuntimeException e) {
+            closeFiles();
+            throw e;
+        }
+    }
+    
+    private void open() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "segment-*.log")) {
+            for (Path file : files) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.add(Integer.parseInt(matcher.group(1)));
+                    totalBytes += Files.size(file);
+                }
+            }
+        }
+        
+        Path indexFile = dir.resolve("index");
+        boolean trusted = false;
+        if (Files.exists(indexFile) && Files.size(indexFile) >= HEADER_SIZE) {
+            mapIndex(indexFile);
+            trusted = index.getInt(0) == INDEX_MAGIC && index.getInt(4) == INDEX_VERSION
+                    && index.getInt(16) == 1 && index.getLong(32) == totalBytes
+                    && index.capacity() == HEADER_SIZE + (long) index.getInt(8) * SLOT_SIZE;
+            if (trusted) {
+                capacity = index.getInt(8);
+                size = index.getInt(12);
+                liveBytes = index.getLong(24);
+            }
+        }
+        if (!trusted) {
+            if (readOnly) {
+                throw new IOException("Record store " + dir + " was not closed cleanly; open it for writing to recover");
+            }
+            rebuildIndex(indexFile);
+        }
+        
+        if (!readOnly) {
+            // Until close() marks it clean again, a crash leaves the index to be rebuilt
+            index.putInt(16, 0);
+            index.force();
+            openActiveSegment(segments.isEmpty() ? 1 : segments.last());
+        }
+        logger.debug("Opened record store {} with {} records in {} segments", dir, size, segments.size());
+    }
+    
+    /**
+     * Stores a record under the canonical form of its URL, replacing any earlier version.
+     * 
+     * @param data Scraped data record
+     * @return true if the record was stored, false if it has no URL or is identical to the stored version
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized boolean put(ScrapedData data) throws IOException {
+        checkWritable();
+        String key = canonicalKey(data.getUrl());
+        if (key == null) {
+            return false;
+        }
+        byte[] record = encode(PUT, key, OBJECT_MAPPER.writeValueAsBytes(data));
+        long hash = Hash64.of(key);
+        int slot = find(key, hash);
+        if (slot >= 0) {
+            if (Arrays.equals(read(slotSegment(slot), slotOffset(slot), slotLength(slot)), record)) {
+                unchanged++;
+                return false;
+            }
+            liveBytes -= slotLength(slot);
+        } else {
+            if (size + 1 > capacity * MAX_LOAD) {
+                growIndex();
+                slot = find(key, hash);
+            }
+            slot = -slot - 1;
+            size++;
+        }
+        long offset = append(record);
+        setSlot(slot, hash, activeSegment, (int) offset, record.length);
+        liveBytes += record.length;
+        written++;
+        return true;
+    }
+    
+    /**
+     * Deletes the record of a URL by appending a tombstone.
+     * 
+     * @param url Record URL, canonicalized like on put
+     * @return true if a record was deleted
+     * @throws IOException if the tombstone cannot be written
+     */
+    public synchronized boolean delete(String url) throws IOException {
+        checkWritable();
+        String key = canonicalKey(url);
+        if (key == null) {
+            return false;
+        }
+        int slot = find(key, Hash64.of(key));
+        if (slot < 0) {
+            return false;
+        }
+        liveBytes -= slotLength(slot);
+        append(encode(DELETE, key, new byte[0]));
+        removeSlot(slot);
+        size--;
+        return true;
+    }
+    
+    /**
+     * Looks up the latest version of a record.
+     * 
+     * @param url Record URL, canonicalized like on put
+     * @return Stored record, or null if there is none
+     * @throws IOException if the record cannot be read
+     */
+    public synchronized ScrapedData get(String url) throws IOException {
+        String key = canonicalKey(url);
+        if (key == null) {
+            return null;
+        }
+        int slot = find(key, Hash64.of(key));
+        if (slot < 0) {
+            return null;
+        }
+        return decodeValue(read(slotSegment(slot), slotOffset(slot), slotLength(slot)));
+    }
+    
+    /**
+     * Hands every stored record to a consumer, in the order they were written.
+     * 
+     * @param consumer Receives each record
+     * @throws IOException if a record cannot be read
+     */
+    public synchronized void forEach(Consumer<ScrapedData> consumer) throws IOException {
+        for (int slot : slotsInLogOrder()) {
+            consumer.accept(decodeValue(read(slotSegment(slot), slotOffset(slot), slotLength(slot))));
+        }
+    }
+    
+    /**
+     * Rewrites the live records into new segments and deletes the old segments, dropping
+     * replaced versions and tombstones.
+     * 
+     * @throws IOException if the store cannot be rewritten
+     */
+    public synchronized void compact() throws IOException {
+        checkWritable();
+        long before = totalBytes;
+        int lastOld = activeSegment;
+        closeActiveSegment();
+        openActiveSegment(lastOld + 1);
+        
+        for (int slot : slotsInLogOrder()) {
+            byte[] record = read(slotSegment(slot), slotOffset(slot), slotLength(slot));
+            long offset = append(record);
+            setSlot(slot, index.getLong(slotPosition(slot)), activeSegment, (int) offset, record.length);
+        }
+        flushActiveSegment();
+        activeChannel.force(false);
+        index.force();
+        
+        // Oldest first, so a crash part way leaves no tombstone without the puts before it
+        for (int segment : new ArrayList<>(segments.headSet(lastOld, true))) {
+            FileChannel reader = readers.remove(segment);
+            if (reader != null) {
+                reader.close();
+            }
+            Path file = segmentPath(segment);
+            totalBytes -= Files.size(file);
+            Files.delete(file);
+            segments.remove(segment);
+        }
+        logger.info("Compacted record store {} from {} to {} bytes", dir, before, totalBytes);
+    }
+    
+    /**
+     * Writes buffered records through to the segment file, and syncs the segment and index to
+     * disk if requested.
+     * 
+     * @throws IOException if the store cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        if (readOnly || activeStream == null) {
+            return;
+        }
+        flushActiveSegment();
+        if (fsync) {
+            activeChannel.force(false);
+            index.force();
+        }
+    }
+    
+    /**
+     * Sets whether segments and the index are synced to disk on flush and close.
+     * 
+     * @param fsync true to sync on every flush
+     */
+    public synchronized void setFsync(boolean fsync) {
+        this.fsync = fsync;
+    }
+    
+    /**
+     * Writes out everything buffered, marks the index clean and releases the store.
+     * 
+     * @throws IOException if the store cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!lockChannel.isOpen()) {
+            return;
+        }
+        try {
+            if (!readOnly) {
+                closeActiveSegment();
+                index.putInt(12, size);
+                index.putLong(24, liveBytes);
+                index.putLong(32, totalBytes);
+                index.force();
+                index.putInt(16, 1);
+                index.force();
+            }
+        } finally {
+            closeFiles();
+        }
+        if (!readOnly) {
+            logger.info("Record store {} holds {} records; {} written, {} unchanged", dir, size, written, unchanged);
+        }
+    }
+    
+    /**
+     * Gets the number of records stored.
+     * 
+     * @return Number of live records
+     */
+    public synchronized int size() {
+        return size;
+    }
+    
+    /**
+     * Gets the bytes of the latest version of every record.
+     * 
+     * @return Live bytes
+     */
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+    
+    /**
+     * Gets the bytes of all segments, including replaced versions and tombstones.
+     * 
+     * @return Total bytes
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+    
+    /**
+     * Gets the number of segment files.
+     * 
+     * @return Segment count
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+    
+    /**
+     * Gets the key a record is stored under: its URL without fragment, with lowercase scheme
+     * and host, without the default port and with "/" for an empty path. Relative URLs are only
+     * trimmed and stripped of their fragment.
+     * 
+     * @param url Record URL
+     * @return Canonical key, or null for a missing or blank URL
+     */
+    public static String canonicalKey(String url) {
+        if (url == null || url.isBlank()) {
+            return null;
+        }
+        String key = url.trim();
+        int fragment = key.indexOf('#');
+        if (fragment >= 0) {
+            key = key.substring(0, fragment);
+        }
+        int scheme = key.indexOf("://");
+        if (scheme <= 0) {
+            return key;
+        }
+        int authorityEnd = scheme + 3;
+        while (authorityEnd < key.length() && "/?".indexOf(key.charAt(authorityEnd)) < 0) {
+            authorityEnd++;
+        }
+        String schemeName = key.substring(0, scheme).toLowerCase(Locale.ROOT);
+        String authority = key.substring(scheme + 3, authorityEnd);
+        int userInfo = authority.lastIndexOf('@');
+        String host = authority.substring(userInfo + 1).toLowerCase(Locale.ROOT);
+        if ((schemeName.equals("http") && host.endsWith(":80")) || (schemeName.equals("https") && host.endsWith(":443"))) {
+            host = host.substring(0, host.lastIndexOf(':'));
+        }
+        String rest = key.substring(authorityEnd);
+        if (rest.isEmpty() || rest.charAt(0) == '?') {
+            rest = "/" + rest;
+        }
+        return schemeName + "://" + authority.substring(0, userInfo + 1) + host + rest;
+    }
+    
+    // Log records: length and CRC32 of the rest, then type, key length, key and JSON value
+    
+    private byte[] encode(byte type, String key, byte[] value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(FRAME_SIZE + 5 + keyBytes.length + value.length);
+        record.putInt(record.capacity() - FRAME_SIZE);
+        record.putInt(0);
+        record.put(type);
+        record.putInt(keyBytes.length);
+        record.put(keyBytes);
+        record.put(value);
+        crc.reset();
+        crc.update(record.array(), FRAME_SIZE, record.capacity() - FRAME_SIZE);
+        record.putInt(4, (int) crc.getValue());
+        return record.array();
+    }
+    
+    private static String decodeKey(byte[] record) {
+        int keyLength = ByteBuffer.wrap(record).getInt(FRAME_SIZE + 1);
+        return new String(record, FRAME_SIZE + 5, keyLength, StandardCharsets.UTF_8);
+    }
+    
+    private static ScrapedData decodeValue(byte[] record) throws IOException {
+        int valueStart = FRAME_SIZE + 5 + ByteBuffer.wrap(record).getInt(FRAME_SIZE + 1);
+        return OBJECT_MAPPER.readValue(record, valueStart, record.length - valueStart, ScrapedData.class);
+    }
+    
+    private byte[] read(int segment, int offset, int length) throws IOException {
+        if (segment == activeSegment && dirty) {
+            flushActiveSegment();
+        }
+        FileChannel channel = readers.get(segment);
+        if (channel == null) {
+            channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ);
+            readers.put(segment, channel);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Record at " + segment + ":" + offset + " is beyond the end of its segment");
+            }
+        }
+        return buffer.array();
+    }
+    
+    // Segments
+    
+    private long append(byte[] record) throws IOException {
+        if (activeLength > 0 && activeLength + record.length > segmentBytes) {
+            closeActiveSegment();
+            openActiveSegment(activeSegment + 1);
+        }
+        long offset = activeLength;
+        activeStream.write(record);
+        activeLength += record.length;
+        totalBytes += record.length;
+        dirty = true;
+        return offset;
+    }
+    
+    private void openActiveSegment(int segment) throws IOException {
+        activeSegment = segment;
+        activeChannel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        activeLength = activeChannel.size();
+        activeStream = new BufferedOutputStream(Channels.newOutputStream(activeChannel), 64 * 1024);
+        segments.add(segment);
+    }
+    
+    private void flushActiveSegment() throws IOException {
+        activeStream.flush();
+        dirty = false;
+    }
+    
+    private void closeActiveSegment() throws IOException {
+        if (activeStream == null) {
+            return;
+        }
+        flushActiveSegment();
+        if (fsync) {
+            activeChannel.force(false);
+        }
+        activeStream.close();
+        activeStream = null;
+        activeChannel = null;
+        if (Files.size(segmentPath(activeSegment)) == 0) {
+            Files.delete(segmentPath(activeSegment));
+            segments.remove(activeSegment);
+        }
+    }
+    
+    private Path segmentPath(int segment) {
+        return dir.resolve(String.format("segment-%06d.log", segment));
+    }
+    
+    // Index: a header followed by slots of hash, segment, offset and length
+    
+    private void mapIndex(Path indexFile) throws IOException {
+        indexChannel = FileChannel.open(indexFile, readOnly
+                ? new StandardOpenOption[] {StandardOpenOption.READ}
+                : new StandardOpenOption[] {StandardOpenOption.READ, StandardOpenOption.WRITE});
+        index = indexChannel.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, 0,
+                indexChannel.size());
+    }
+    
+    private MappedByteBuffer createIndex(Path file, int newCapacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + (long) newCapacity * SLOT_SIZE);
+            buffer.putInt(0, INDEX_MAGIC);
+            buffer.putInt(4, INDEX_VERSION);
+            buffer.putInt(8, newCapacity);
+            return buffer;
+        }
+    }
+    
+    private void growIndex() throws IOException {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IOException("Record store index is full at " + size + " records");
+        }
+        int newCapacity = capacity * 2;
+        Path indexFile = dir.resolve("index");
+        Path tempFile = dir.resolve("index.tmp");
+        MappedByteBuffer grown = createIndex(tempFile, newCapacity);
+        int mask = newCapacity - 1;
+        for (int slot = 0; slot < capacity; slot++) {
+            int position = slotPosition(slot);
+            long hash = index.getLong(position);
+            if (hash == 0) {
+                continue;
+            }
+            int target = (int) hash & mask;
+            while (grown.getLong(HEADER_SIZE + target * SLOT_SIZE) != 0) {
+                target = (target + 1) & mask;
+            }
+            for (int i = 0; i < SLOT_SIZE; i += 4) {
+                grown.putInt(HEADER_SIZE + target * SLOT_SIZE + i, index.getInt(position + i));
+            }
+        }
+        grown.force();
+        if (indexChannel != null) {
+            indexChannel.close();
+        }
+        Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        index = grown;
+        capacity = newCapacity;
+        indexChannel = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+    
+    /**
+     * Replaces the index with one built by replaying every segment in order. A record cut short
+     * at the end of the last segment, as left by a crash, is truncated.
+     */
+    private void rebuildIndex(Path indexFile) throws IOException {
+        if (!segments.isEmpty()) {
+            logger.warn("Rebuilding the index of record store {} from {} segments", dir, segments.size());
+        }
+        if (indexChannel != null) {
+            indexChannel.close();
+        }
+        capacity = INITIAL_CAPACITY;
+        size = 0;
+        liveBytes = 0;
+        index = createIndex(indexFile, capacity);
+        indexChannel = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        
+        for (int segment : new ArrayList<>(segments)) {
+            long valid = replaySegment(segment);
+            long length = Files.size(segmentPath(segment));
+            if (valid < length) {
+                if (segment != segments.last()) {
+                    throw new IOException("Corrupt record at " + segmentPath(segment) + ":" + valid);
+                }
+                logger.warn("Truncating incomplete record at the end of {} after {} bytes", segmentPath(segment), valid);
+                try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                }
+                totalBytes -= length - valid;
+            }
+        }
+    }
+    
+    /**
+     * Applies the records of one segment to the index.
+     * 
+     * @return Bytes of whole, intact records at the start of the segment
+     */
+    private long replaySegment(int segment) throws IOException {
+        long offset = 0;
+        try (InputStream file = Files.newInputStream(segmentPath(segment));
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, 64 * 1024))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return offset;
+                }
+                if (length < 5 || length > MAX_SEGMENT_BYTES) {
+                    return offset;
+                }
+                byte[] record = new byte[FRAME_SIZE + length];
+                ByteBuffer.wrap(record).putInt(length);
+                try {
+                    in.readFully(record, 4, record.length - 4);
+                } catch (EOFException e) {
+                    return offset;
+                }
+                crc.reset();
+                crc.update(record, FRAME_SIZE, length);
+                if (ByteBuffer.wrap(record).getInt(4) != (int) crc.getValue()) {
+                    return offset;
+                }
+                
+                String key = decodeKey(record);
+                long hash = Hash64.of(key);
+                int slot = find(key, hash);
+                if (record[FRAME_SIZE] == DELETE) {
+                    if (slot >= 0) {
+                        liveBytes -= slotLength(slot);
+                        removeSlot(slot);
+                        size--;
+                    }
+                } else {
+                    if (slot >= 0) {
+                        liveBytes -= slotLength(slot);
+                    } else {
+                        if (size + 1 > capacity * MAX_LOAD) {
+                            growIndex();
+                            slot = find(key, hash);
+                        }
+                        slot = -slot - 1;
+                        size++;
+                    }
+                    setSlot(slot, hash, segment, (int) offset, record.length);
+                    liveBytes += record.length;
+                }
+                offset += record.length;
+            }
+        }
+    }
+    
+    /**
+     * Finds the slot of a key.
+     * 
+     * @return Slot index, or -(insertion slot) - 1 if the key is not stored
+     */
+    private int find(String key, long hash) throws IOException {
+        int mask = capacity - 1;
+        int slot = (int) hash & mask;
+        while (true) {
+            long slotHash = index.getLong(slotPosition(slot));
+            if (slotHash == 0) {
+                return -slot - 1;
+            }
+            if (slotHash == hash
+                    && key.equals(decodeKey(read(slotSegment(slot), slotOffset(slot), slotLength(slot))))) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+    
+    /**
+     * Empties a slot, moving later slots of the same probe sequence back so that lookups do not
+     * stop at the gap.
+     */
+    private void removeSlot(int slot) {
+        int mask = capacity - 1;
+        int gap = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            long hash = index.getLong(slotPosition(next));
+            if (hash == 0) {
+                break;
+            }
+            int home = (int) hash & mask;
+            boolean stays = gap <= next ? gap < home && home <= next : gap < home || home <= next;
+            if (!stays) {
+                for (int i = 0; i < SLOT_SIZE; i += 4) {
+                    index.putInt(slotPosition(gap) + i, index.getInt(slotPosition(next) + i));
+                }
+                gap = next;
+            }
+        }
+        setSlot(gap, 0, 0, 0, 0);
+    }
+    
+    private void setSlot(int slot, long hash, int segment, int offset, int length) {
+        int position = slotPosition(slot);
+        index.putLong(position, hash);
+        index.putInt(position + 8, segment);
+        index.putInt(position + 12, offset);
+        index.putInt(position + 16, length);
+    }
+    
+    private int slotSegment(int slot) {
+        return index.getInt(slotPosition(slot) + 8);
+    }
+    
+    private int slotOffset(int slot) {
+        return index.getInt(slotPosition(slot) + 12);
+    }
+    
+    private int slotLength(int slot) {
+        return index.getInt(slotPosition(slot) + 16);
+    }
+    
+    private static int slotPosition(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+    
+    /**
+     * Gets the occupied slots ordered by the position of their record in the log, so records
+     * are read sequentially.
+     */
+    private int[] slotsInLogOrder() {
+        long[] positions = new long[size];
+        int[] slotOf = new int[size];
+        int count = 0;
+        for (int slot = 0; slot < capacity && count < size; slot++) {
+            if (index.getLong(slotPosition(slot)) != 0) {
+                positions[count] = ((long) slotSegment(slot) << 32) | slotOffset(slot);
+                slotOf[count] = slot;
+                count++;
+            }
+        }
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(positions[a], positions[b]));
+        int[] slots = new int[count];
+        for (int i = 0; i < count; i++) {
+            slots[i] = slotOf[order[i]];
+        }
+        return slots;
+    }
+    
+    private void checkWritable() {
+        if (readOnly) {
+            throw new IllegalStateException("Record store " + dir + " is open read-only");
+        }
+    }
+    
+    private void closeFiles() throws IOException {
+        try {
+            if (activeStream != null) {
+                activeStream.close();
+                activeStream = null;
+            }
+            for (FileChannel reader : readers.values()) {
+                reader.close();
+            }
+            readers.clear();
+            if (indexChannel != null) {
+                indexChannel.close();
+            }
+        } finally {
+            lock.release();
+            lockChannel.close();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.scraper.core.persistence;
+
+/**
+ * Provides {@link RecordStoreWriter} sinks under the name "store". The output path names the
+ * store directory, and the segment policy's byte limit sets the store's segment size. Other
+ * output settings do not apply and are ignored.
+ */
+public class RecordStoreSinkProvider implements RecordSinkProvider {
+    
+    @Override
+    public String getName() {
+        return "store";
+    }
+    
+    @Override
+    public String getExtension() {
+        return ".store";
+    }
+    
+    @Override
+    public RecordSink create(SinkOptions options) {
+        return new RecordStoreWriter(options.getOutputFile(), options.getSegmentPolicy().getMaxBytes());
+    }
+}
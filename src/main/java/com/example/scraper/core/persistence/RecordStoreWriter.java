@@ -0,0 +1,154 @@
+package com.example.scraper.core.persistence;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.example.scraper.model.ScrapedData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes scraped data into a {@link RecordStore}, replacing the stored version of each URL.
+ * 
+ * <p>The store survives between runs, so scraping the same pages again updates it in place;
+ * unchanged records cost a lookup and nothing more. Records without a URL cannot be keyed and
+ * are skipped. When the writer is closed and more than half of the store's bytes belong to
+ * replaced versions and tombstones, the store is compacted.
+ */
+public class RecordStoreWriter implements RecordSink {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RecordStoreWriter.class);
+    
+    private final RecordStore store;
+    private long skipped;
+    
+    public RecordStoreWriter(String outputPath) {
+        this(outputPath, RecordStore.DEFAULT_SEGMENT_BYTES);
+    }
+    
+    /**
+     * Creates a writer for a store with its own segment size.
+     * 
+     * @param outputPath Store directory, created if it does not exist
+     * @param segmentBytes Size at which a segment is closed and the next one started
+     */
+    public RecordStoreWriter(String outputPath, long segmentBytes) {
+        try {
+            this.store = new RecordStore(Path.of(outputPath), false, segmentBytes);
+            logger.debug("Opened record store {} with {} records", outputPath, store.size());
+        } catch (IOException e) {
+            logger.error("Error opening record store: {}", e.getMessage());
+            throw new RuntimeException("Failed to open record store", e);
+        }
+    }
+    
+    /**
+     * Writes a list of scraped data to the store.
+     * 
+     * @param dataList List of scraped data
+     */
+    @Override
+    public void writeData(List<ScrapedData> dataList) {
+        if (dataList == null || dataList.isEmpty()) {
+            return;
+        }
+        
+        for (ScrapedData data : dataList) {
+            writeData(data);
+        }
+    }
+    
+    /**
+     * Writes a single scraped data record to the store.
+     * 
+     * @param data Scraped data record
+     */
+    @Override
+    public void writeData(ScrapedData data) {
+        if (data == null) {
+            return;
+        }
+        
+        try {
+            if (RecordStore.canonicalKey(data.getUrl()) == null) {
+                skipped++;
+                return;
+            }
+            store.put(data);
+            
+        } catch (IOException e) {
+            logger.error("Error writing to record store: {}", e.getMessage());
+            throw new RuntimeException("Failed to write to record store", e);
+        }
+    }
+    
+    /**
+     * Writes buffered records through to the store's files.
+     */
+    @Override
+    public void flush() {
+        try {
+            store.flush();
+        } catch (IOException e) {
+            logger.error("Error flushing record store: {}", e.getMessage());
+            throw new RuntimeException("Failed to flush record store", e);
+        }
+    }
+    
+    /**
+     * Sets whether the store's segments and index are synced to disk on every flush and on close.
+     * 
+     * @param fsync true to sync on every flush
+     */
+    @Override
+    public void setFsync(boolean fsync) {
+        store.setFsync(fsync);
+    }
+    
+    /**
+     * Compacts the store if most of it is garbage, and closes it. The store is closed even if
+     * compaction fails.
+     * 
+     * @throws RuntimeException if the store cannot be compacted or closed; if closing failed, the
+     *                          index is not marked clean and is rebuilt on the next open
+     */
+    @Override
+    public void close() {
+        IOException failure = null;
+        try {
+            if (store.getTotalBytes() - store.getLiveBytes() > store.getLiveBytes()) {
+                store.compact();
+            }
+        } catch (IOException e) {
+            logger.error("Error compacting record store: {}", e.getMessage());
+            failure = e;
+        }
+        try {
+            store.close();
+            if (skipped > 0) {
+                logger.warn("Skipped {} records without a URL", skipped);
+            }
+            logger.debug("Record store writer closed");
+        } catch (IOException e) {
+            logger.error("Error closing record store: {}", e.getMessage());
+            if (failure == null) {
+                failure = e;
+            } else {
+                failure.addSuppressed(e);
+            }
+        }
+        if (failure != null) {
+            throw new RuntimeException("Failed to close record store", failure);
+        }
+    }
+    
+    /**
+     * Gets the store written to, e.g. to look up records while scraping.
+     * 
+     * @return Record store
+     */
+    public RecordStore getStore() {
+        return store;
+    }
+}
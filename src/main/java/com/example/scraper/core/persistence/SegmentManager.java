@@ -0,0 +1,376 @@
+package com.example.scraper.core.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Manages the files an output writer writes to: opens them, counts what goes into them and
+ * rotates them according to a {@link SegmentPolicy}.
+ * 
+ * <p>Bytes and records are counted in memory as they are written, so checking whether a file is
+ * full costs no filesystem calls and can be done before every record. For gzip output the
+ * compressed bytes are counted; blocks still being compressed are not.
+ * 
+ * <p>With sealed segments, {@code output.jsonl} is written as {@code output-000001.jsonl},
+ * {@code output-000002.jsonl} and so on. Each segment is written to a hidden {@code .part} file
+ * and renamed once complete, so a file with the final name is always whole. Its name, record
+ * count, size and SHA-256 checksum are then appended as one JSON line to
+ * {@code output.manifest.jsonl}, which loaders can follow to ingest finished segments while the
+ * crawl continues. Numbering resumes after the highest existing segment, so restarts never
+ * overwrite earlier output. Segments without records are discarded.
+ */
+public class SegmentManager {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SegmentManager.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    
+    private final String outputPath;
+    private final boolean appendMode;
+    private final boolean gzip;
+    private final SegmentPolicy policy;
+    
+    private boolean fsync = false;
+    private File currentFile;
+    private File finalFile;
+    private FileOutputStream fileStream;
+    private CountingOutputStream countingStream;
+    private ParallelGzipOutputStream gzipStream;
+    private OutputStream stream;
+    private boolean appended;
+    private long records;
+    private long openedAt;
+    private int sequence;
+    private int fileCount;
+    
+    /**
+     * Creates a segment manager. No file is opened until {@link #open()}.
+     * 
+     * @param outputPath Output file path; segment names are derived from it
+     * @param appendMode Whether the first file appends to an existing one; ignored for sealed segments
+     * @param gzip Whether to compress output, adding a .gz suffix to file names
+     * @param policy When to rotate files and whether to seal them
+     */
+    public SegmentManager(String outputPath, boolean appendMode, boolean gzip, SegmentPolicy policy) {
+        this.outputPath = outputPath;
+        this.appendMode = appendMode;
+        this.gzip = gzip;
+        this.policy = policy;
+    }
+    
+    /**
+     * Opens the next file.
+     * 
+     * @return Stream to write the file's content to; closed by {@link #seal()}, not by the caller
+     * @throws IOException if the file cannot be created
+     */
+    public OutputStream open() throws IOException {
+        Path parentDir = Paths.get(outputPath).toAbsolutePath().getParent();
+        if (parentDir != null) {
+            Files.createDirectories(parentDir);
+        }
+        
+        MessageDigest digest = null;
+        if (policy.isSealed()) {
+            if (fileCount == 0) {
+                sequence = lastSequence(parentDir);
+            }
+            sequence++;
+            finalFile = new File(fileName(segmentPath(sequence)));
+            currentFile = new File(finalFile.getParentFile(), "." + finalFile.getName() + ".part");
+            appended = false;
+            digest = sha256();
+        } else {
+            finalFile = new File(fileName(fileCount == 0 ? outputPath : rotatedPath(fileCount)));
+            currentFile = finalFile;
+            appended = fileCount == 0 && appendMode && currentFile.exists();
+        }
+        
+        fileStream = new FileOutputStream(currentFile, appended);
+        countingStream = new CountingOutputStream(new BufferedOutputStream(fileStream, BUFFER_SIZE),
+                appended ? currentFile.length() : 0, digest);
+        if (gzip) {
+            gzipStream = new ParallelGzipOutputStream(countingStream);
+            stream = gzipStream;
+        } else {
+            gzipStream = null;
+            stream = countingStream;
+        }
+        records = 0;
+        openedAt = System.nanoTime();
+        fileCount++;
+        return stream;
+    }
+    
+    /**
+     * Counts records written to the current file.
+     * 
+     * @param count Number of records
+     */
+    public void addRecords(int count) {
+        records += count;
+    }
+    
+    /**
+     * Checks whether the current file is due to be rotated before the next record.
+     * 
+     * @param pendingBytes Bytes the caller has buffered for the file but not written yet
+     * @return true if the file should be sealed and the next one opened
+     */
+    public boolean shouldRotate(long pendingBytes) {
+        if (countingStream == null) {
+            return false;
+        }
+        long ageMs = policy.getMaxAgeMs() > 0 ? (System.nanoTime() - openedAt) / 1_000_000 : 0;
+        return policy.isDue(countingStream.getCount() + Math.max(0, pendingBytes), records, ageMs);
+    }
+    
+    /**
+     * Writes what has been handed to the current file through to disk. For gzip output only
+     * full blocks are compressed and written, so members keep their size however often the
+     * writer flushes; the partial block waits for {@link #drain()}.
+     * 
+     * @throws IOException if the file cannot be written
+     */
+    public void flush() throws IOException {
+        if (gzipStream != null) {
+            gzipStream.flush();
+            countingStream.flush();
+        } else if (stream != null) {
+            stream.flush();
+        }
+    }
+    
+    /**
+     * Writes everything handed to the current file through to disk, compressing any partial
+     * gzip block into a member of its own.
+     * 
+     * @throws IOException if the file cannot be written
+     */
+    public void drain() throws IOException {
+        if (gzipStream != null) {
+            gzipStream.drain();
+        } else if (stream != null) {
+            stream.flush();
+        }
+    }
+    
+    /**
+     * Finishes the current file: flushes it, syncs it to disk if requested and closes it. A sealed
+     * segment is then renamed to its final name and added to the manifest, or deleted if it holds
+     * no records.
+     * 
+     * @throws IOException if the file cannot be written or renamed
+     */
+    public void seal() throws IOException {
+        if (stream == null) {
+            return;
+        }
+        try {
+            drain();
+            if (fsync) {
+                fileStream.getFD().sync();
+            }
+        } finally {
+            stream.close();
+            stream = null;
+        }
+        
+        if (!policy.isSealed()) {
+            return;
+        }
+        if (records == 0) {
+            Files.deleteIfExists(currentFile.toPath());
+            sequence--;
+            fileCount--;
+            return;
+        }
+        Files.move(currentFile.toPath(), finalFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        appendToManifest();
+        logger.info("Sealed segment {} with {} records", finalFile.getName(), records);
+        currentFile = finalFile;
+    }
+    
+    /**
+     * Sets whether files are synced to disk when they are sealed.
+     * 
+     * @param fsync true to sync each file before closing it
+     */
+    public void setFsync(boolean fsync) {
+        this.fsync = fsync;
+    }
+    
+    /**
+     * Checks whether the current file continues an existing one rather than starting empty.
+     * 
+     * @return true if the current file was opened for appending
+     */
+    public boolean isAppended() {
+        return appended;
+    }
+    
+    /**
+     * Gets the file being written to. For a sealed segment this is its temporary file until the
+     * segment is sealed.
+     * 
+     * @return Current file
+     */
+    public File getCurrentFile() {
+        return currentFile;
+    }
+    
+    /**
+     * Gets the number of files created, including rotations.
+     * 
+     * @return Number of files created
+     */
+    public int getFileCount() {
+        return fileCount;
+    }
+    
+    /**
+     * Gets the path of the manifest listing sealed segments.
+     * 
+     * @return Manifest path
+     */
+    public Path getManifestPath() {
+        return Paths.get(baseName(outputPath) + ".manifest.jsonl");
+    }
+    
+    private void appendToManifest() throws IOException {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("segment", finalFile.getName());
+        entry.put("records", records);
+        entry.put("bytes", countingStream.getCount());
+        entry.put("sha256", HexFormat.of().formatHex(countingStream.getDigest()));
+        entry.put("sealed_at", Instant.now().toString());
+        byte[] line = (OBJECT_MAPPER.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+        
+        // One write per entry, so a reader never sees half a line unless the process dies mid-write
+        try (FileChannel manifest = FileChannel.open(getManifestPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            manifest.write(ByteBuffer.wrap(line));
+            if (fsync) {
+                manifest.force(false);
+            }
+        }
+    }
+    
+    /**
+     * Finds the highest segment number already used next to the output path, including
+     * unfinished segments left by an earlier run.
+     */
+    private int lastSequence(Path dir) throws IOException {
+        String base = Paths.get(baseName(outputPath)).getFileName().toString();
+        Pattern segment = Pattern.compile("\\.?" + Pattern.quote(base) + "-(\\d+)" + Pattern.quote(extension(outputPath))
+                + "(\\.gz)?(\\.part)?");
+        int last = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Matcher matcher = segment.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    last = Math.max(last, Integer.parseInt(matcher.group(1)));
+                    if (matcher.group(3) != null) {
+                        logger.warn("Ignoring unfinished segment {} from an earlier run", file);
+                    }
+                }
+            }
+        }
+        return last;
+    }
+    
+    private String segmentPath(int number) {
+        return String.format("%s-%06d%s", baseName(outputPath), number, extension(outputPath));
+    }
+    
+    private String rotatedPath(int number) {
+        return baseName(outputPath) + "_" + number + extension(outputPath);
+    }
+    
+    private String fileName(String path) {
+        return gzip ? path + ".gz" : path;
+    }
+    
+    private static String baseName(String path) {
+        int dot = path.lastIndexOf('.');
+        return dot > path.lastIndexOf(File.separatorChar) ? path.substring(0, dot) : path;
+    }
+    
+    private static String extension(String path) {
+        return path.substring(baseName(path).length());
+    }
+    
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+    
+    /**
+     * Counts and optionally digests the bytes written to a file.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        
+        private final MessageDigest digest;
+        private long count;
+        
+        CountingOutputStream(OutputStream out, long count, MessageDigest digest) {
+            super(out);
+            this.count = count;
+            this.digest = digest;
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+            if (digest != null) {
+                digest.update((byte) b);
+            }
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+            if (digest != null) {
+                digest.update(b, off, len);
+            }
+        }
+        
+        long getCount() {
+            return count;
+        }
+        
+        byte[] getDigest() {
+            return digest.digest();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.scraper.core.persistence;
+
+/**
+ * When output files are rotated, and whether they are written as sealed segments.
+ * 
+ * <p>A file is rotated once it holds the given number of bytes or records, or once it has been
+ * open for the given time, whichever comes first. By default files are written in place as
+ * {@code output.jsonl}, {@code output_1.jsonl} and so on. Sealed segments are written to a
+ * hidden temporary file and renamed to {@code output-000001.jsonl} when finished, and each
+ * finished segment is listed in a manifest; see {@link SegmentManager}.
+ */
+public final class SegmentPolicy {
+    
+    /** Default size limit of an output file in bytes. */
+    public static final long DEFAULT_MAX_BYTES = 10 * 1024 * 1024; // 10MB
+    
+    /** Rotate files at 10MB and write them in place. */
+    public static final SegmentPolicy DEFAULT = new SegmentPolicy(DEFAULT_MAX_BYTES, 0, 0, false);
+    
+    private final long maxBytes;
+    private final long maxRecords;
+    private final long maxAgeMs;
+    private final boolean sealed;
+    
+    /**
+     * Creates a segment policy.
+     * 
+     * @param maxBytes Bytes on disk after which a file is rotated, or 0 for no limit
+     * @param maxRecords Records after which a file is rotated, or 0 for no limit
+     * @param maxAgeMs Time after which a file with records is rotated in milliseconds, or 0 for no limit
+     * @param sealed Whether to write sealed segments with a manifest instead of files in place
+     */
+    public SegmentPolicy(long maxBytes, long maxRecords, long maxAgeMs, boolean sealed) {
+        this.maxBytes = Math.max(0, maxBytes);
+        this.maxRecords = Math.max(0, maxRecords);
+        this.maxAgeMs = Math.max(0, maxAgeMs);
+        this.sealed = sealed;
+    }
+    
+    /**
+     * Checks whether a file is due to be rotated.
+     * 
+     * @param bytes Bytes in the file so far
+     * @param records Records in the file so far
+     * @param ageMs Time since the file was opened in milliseconds
+     * @return true if the file should be rotated before the next record
+     */
+    public boolean isDue(long bytes, long records, long ageMs) {
+        if (maxBytes > 0 && bytes >= maxBytes) {
+            return true;
+        }
+        return records > 0 && ((maxRecords > 0 && records >= maxRecords) || (maxAgeMs > 0 && ageMs >= maxAgeMs));
+    }
+    
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+    
+    public long getMaxRecords() {
+        return maxRecords;
+    }
+    
+    public long getMaxAgeMs() {
+        return maxAgeMs;
+    }
+    
+    public boolean isSealed() {
+        return sealed;
+    }
+    
+    @Override
+    public String toString() {
+        return "SegmentPolicy{" +
+                "maxBytes=" + maxBytes +
+                ", maxRecords=" + maxRecords +
+                ", maxAgeMs=" + maxAgeMs +
+                ", sealed=" + sealed +
+                '}';
+    }
+}
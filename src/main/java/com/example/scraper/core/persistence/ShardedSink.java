@@ -0,0 +1,187 @@
+package com.example.scraper.core.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.example.scraper.model.ScrapedData;
+
+/**
+ * Record sink that spreads records over several independent sinks, each serializing on its own
+ * thread into its own files, so encoding scales with cores.
+ * 
+ * <p>Records are routed by a hash of their host or URL, so all records with the same key end up
+ * in the same shard, in the order they were written. Each shard is an {@link AsyncSink} with its
+ * own queue; {@link #flush()} queues a flush behind each shard's pending batches without waiting
+ * for it. A failed shard write is rethrown from the next call that reaches the shard, and
+ * {@link #close()} waits for everything queued to be written and rethrows any failure left.
+ */
+public class ShardedSink implements RecordSink {
+    
+    /**
+     * What records are routed by.
+     */
+    public enum ShardKey {
+        /** Host of the record's URL; records without a host share one shard. */
+        HOST,
+        /** The record's whole URL. */
+        URL;
+        
+        /**
+         * Parses a shard key name, ignoring case.
+         * 
+         * @param name "host" or "url"
+         * @return ShardKey
+         * @throws IllegalArgumentException if the name is unknown
+         */
+        public static ShardKey fromString(String name) {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        }
+    }
+    
+    private final List<AsyncSink> shards = new ArrayList<>();
+    private final ShardKey shardKey;
+    
+    /**
+     * Creates a sharded sink.
+     * 
+     * @param names Names of the shards, used for their threads and in messages
+     * @param sinks One sink per shard, each with its own files
+     * @param shardKey What records are routed by
+     * @param queuedBatches Batches that may wait per shard before callers block
+     */
+    public ShardedSink(List<String> names, List<? extends RecordSink> sinks, ShardKey shardKey, int queuedBatches) {
+        this.shardKey = shardKey;
+        for (int i = 0; i < sinks.size(); i++) {
+            shards.add(new AsyncSink(names.get(i), sinks.get(i), queuedBatches));
+        }
+    }
+    
+    @Override
+    public void writeData(List<ScrapedData> dataList) {
+        if (dataList == null || dataList.isEmpty()) {
+            return;
+        }
+        List<List<ScrapedData>> parts = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            parts.add(new ArrayList<>());
+        }
+        for (ScrapedData data : dataList) {
+            parts.get(shardOf(data)).add(data);
+        }
+        for (int i = 0; i < shards.size(); i++) {
+            if (!parts.get(i).isEmpty()) {
+                shards.get(i).writeData(parts.get(i));
+            }
+        }
+    }
+    
+    @Override
+    public void writeData(ScrapedData data) {
+        if (data == null) {
+            return;
+        }
+        shards.get(shardOf(data)).writeData(data);
+    }
+    
+    @Override
+    public void flush() {
+        for (AsyncSink shard : shards) {
+            shard.flush();
+        }
+    }
+    
+    @Override
+    public void drain() {
+        for (AsyncSink shard : shards) {
+            shard.drain();
+        }
+    }
+    
+    @Override
+    public void setFsync(boolean fsync) {
+        for (AsyncSink shard : shards) {
+            shard.setFsync(fsync);
+        }
+    }
+    
+    /**
+     * Closes every shard, even if one fails.
+     * 
+     * @throws RuntimeException the first failure of any shard, with the others suppressed
+     */
+    @Override
+    public void close() {
+        RuntimeException failure = null;
+        for (AsyncSink shard : shards) {
+            try {
+                shard.close();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    
+    /**
+     * Gets the number of records each shard has written.
+     * 
+     * @return Records written, by shard index
+     */
+    public List<Long> getRecordsWritten() {
+        List<Long> written = new ArrayList<>();
+        for (AsyncSink shard : shards) {
+            written.add(shard.getRecordsWritten());
+        }
+        return written;
+    }
+    
+    /**
+     * Picks the shard of a record.
+     * 
+     * @param data Scraped data record
+     * @return Shard index
+     */
+    int shardOf(ScrapedData data) {
+        String url = data.getUrl();
+        int hash = 0;
+        if (url != null) {
+            int start = 0;
+            int end = url.length();
+            if (shardKey == ShardKey.HOST) {
+                // Hash the authority between "://" and the path, without user info or port and
+                // ignoring case; called for every record, so without parsing or allocating
+                int scheme = url.indexOf("://");
+                if (scheme < 0) {
+                    end = 0;
+                } else {
+                    start = scheme + 3;
+                    end = start;
+                    while (end < url.length() && "/?#".indexOf(url.charAt(end)) < 0) {
+                        if (url.charAt(end) == '@') {
+                            start = end + 1;
+                        }
+                        end++;
+                    }
+                    int port = url.lastIndexOf(':', end - 1);
+                    if (port >= start && url.charAt(end - 1) != ']') {
+                        end = port;
+                    }
+                }
+            }
+            for (int i = start; i < end; i++) {
+                char c = url.charAt(i);
+                hash = 31 * hash + (shardKey == ShardKey.HOST ? Character.toLowerCase(c) : c);
+            }
+        }
+        // Spread similar keys, such as hosts differing in one character, over all shards
+        hash *= 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), shards.size());
+    }
+}
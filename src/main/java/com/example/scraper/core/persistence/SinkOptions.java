@@ -0,0 +1,76 @@
+package com.example.scraper.core.persistence;
+
+import java.util.List;
+
+/**
+ * Settings a {@link RecordSinkProvider} creates a sink with. Formats ignore settings that do not
+ * apply to them.
+ */
+public class SinkOptions {
+    
+    private String outputFile;
+    private boolean appendMode = false;
+    private List<String> extraColumns = List.of();
+    private boolean gzip = false;
+    private SegmentPolicy segmentPolicy = SegmentPolicy.DEFAULT;
+    
+    public SinkOptions(String outputFile) {
+        this.outputFile = outputFile;
+    }
+    
+    public String getOutputFile() {
+        return outputFile;
+    }
+    
+    public void setOutputFile(String outputFile) {
+        this.outputFile = outputFile;
+    }
+    
+    public boolean isAppendMode() {
+        return appendMode;
+    }
+    
+    public void setAppendMode(boolean appendMode) {
+        this.appendMode = appendMode;
+    }
+    
+    /**
+     * Gets custom field names, which formats with fixed columns write after the built-in ones.
+     * 
+     * @return Custom field names
+     */
+    public List<String> getExtraColumns() {
+        return extraColumns;
+    }
+    
+    public void setExtraColumns(List<String> extraColumns) {
+        this.extraColumns = extraColumns;
+    }
+    
+    public boolean isGzip() {
+        return gzip;
+    }
+    
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+    
+    public SegmentPolicy getSegmentPolicy() {
+        return segmentPolicy;
+    }
+    
+    public void setSegmentPolicy(SegmentPolicy segmentPolicy) {
+        this.segmentPolicy = segmentPolicy;
+    }
+    
+    @Override
+    public String toString() {
+        return "SinkOptions{" +
+                "outputFile='" + outputFile + '\'' +
+                ", appendMode=" + appendMode +
+                ", extraColumns=" + extraColumns +
+                ", gzip=" + gzip +
+                ", segmentPolicy=" + segmentPolicy +
+                '}';
+    }
+}
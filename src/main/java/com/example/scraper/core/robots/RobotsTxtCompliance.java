@@ -5,6 +5,7 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.Locale;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -41,10 +42,7 @@ public class RobotsTxtCompliance {
      */
     public boolean isUrlAllowed(String url) {
         try {
-            URI uri = URI.create(url);
-            String domain = uri.getScheme() + "://" + uri.getHost();
-            
-            BaseRobotRules rules = getRobotRules(domain);
+            BaseRobotRules rules = getRobotRules(siteOf(url));
             return rules.isAllowed(url);
             
         } catch (Exception e) {
@@ -57,18 +55,45 @@ public class RobotsTxtCompliance {
     /**
      * Gets the crawl delay for a domain from robots.txt.
      * 
-     * @param domain The domain to check
+     * @param url A URL on the domain, or the domain itself such as {@code https://example.com}
      * @return crawl delay in milliseconds, or default 1000ms if not specified
      */
-    public long getCrawlDelay(String domain) {
+    public long getCrawlDelay(String url) {
+        return getCrawlDelay(url, 1000);
+    }
+    
+    /**
+     * Gets the crawl delay for a domain from robots.txt.
+     * 
+     * @param url A URL on the domain, or the domain itself such as {@code https://example.com}
+     * @param defaultDelayMs Delay returned when robots.txt does not specify one
+     * @return crawl delay in milliseconds
+     */
+    public long getCrawlDelay(String url, long defaultDelayMs) {
         try {
-            BaseRobotRules rules = getRobotRules(domain);
+            BaseRobotRules rules = getRobotRules(siteOf(url));
+            // crawler-commons already converts the Crawl-delay seconds to milliseconds
             long delay = rules.getCrawlDelay();
-            return delay > 0 ? delay * 1000 : 1000; // Convert to milliseconds, default 1 second
+            return delay > 0 ? delay : defaultDelayMs;
         } catch (Exception e) {
-            logger.warn("Error getting crawl delay for domain {}: {}", domain, e.getMessage());
-            return 1000; // Default 1 second
+            logger.warn("Error getting crawl delay for {}: {}", url, e.getMessage());
+            return defaultDelayMs;
+        }
+    }
+    
+    /**
+     * Gets the site a URL belongs to, which is where its robots.txt lives.
+     * 
+     * @param url Absolute URL
+     * @return Scheme, host and port of the URL, such as {@code http://localhost:8080}
+     */
+    private static String siteOf(String url) {
+        URI uri = URI.create(url);
+        if (uri.getScheme() == null || uri.getHost() == null) {
+            throw new IllegalArgumentException("Not an absolute URL: " + url);
         }
+        String site = uri.getScheme().toLowerCase(Locale.ROOT) + "://" + uri.getHost().toLowerCase(Locale.ROOT);
+        return uri.getPort() >= 0 ? site + ":" + uri.getPort() : site;
     }
     
     /**
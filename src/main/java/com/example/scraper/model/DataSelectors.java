@@ -1,5 +1,11 @@
 package com.example.scraper.model;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
@@ -8,23 +14,38 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 public class DataSelectors {
     
     @JsonProperty("container_selector")
+    @JsonAlias("container")
     private String containerSelector;
     
     @JsonProperty("title_selector")
+    @JsonAlias("title")
     private String titleSelector;
     
     @JsonProperty("description_selector")
+    @JsonAlias("description")
     private String descriptionSelector;
     
     @JsonProperty("url_selector")
+    @JsonAlias("url")
     private String urlSelector;
     
     @JsonProperty("price_selector")
+    @JsonAlias("price")
     private String priceSelector;
     
     @JsonProperty("image_selector")
+    @JsonAlias("image")
     private String imageSelector;
     
+    @JsonProperty("fields")
+    private List<FieldSelector> fields = new ArrayList<>();
+    
+    @JsonProperty("parse_mode")
+    private ParseMode parseMode = ParseMode.CSS;
+    
+    @JsonProperty("template_learning_pages")
+    private int templateLearningPages;
+    
     public DataSelectors() {
         // Default constructor for Jackson
     }
@@ -37,6 +58,24 @@ public class DataSelectors {
         this.urlSelector = urlSelector;
     }
     
+    /**
+     * Creates a copy of another selector set. The custom field list is copied, the fields in it
+     * are shared.
+     * 
+     * @param other Selector set to copy
+     */
+    public DataSelectors(DataSelectors other) {
+        this.containerSelector = other.containerSelector;
+        this.titleSelector = other.titleSelector;
+        this.descriptionSelector = other.descriptionSelector;
+        this.urlSelector = other.urlSelector;
+        this.priceSelector = other.priceSelector;
+        this.imageSelector = other.imageSelector;
+        this.fields = new ArrayList<>(other.fields);
+        this.parseMode = other.parseMode;
+        this.templateLearningPages = other.templateLearningPages;
+    }
+    
     // Getters and setters
     public String getContainerSelector() {
         return containerSelector;
@@ -86,6 +125,71 @@ public class DataSelectors {
         this.imageSelector = imageSelector;
     }
     
+    public List<FieldSelector> getFields() {
+        return fields;
+    }
+    
+    public void setFields(List<FieldSelector> fields) {
+        this.fields = fields != null ? fields : new ArrayList<>();
+    }
+    
+    public ParseMode getParseMode() {
+        return parseMode;
+    }
+    
+    public void setParseMode(ParseMode parseMode) {
+        this.parseMode = parseMode != null ? parseMode : ParseMode.CSS;
+    }
+    
+    /**
+     * Gets the number of pages per host used to learn where fields sit inside a container.
+     * Later pages of the host look fields up at the learned locations first.
+     * 
+     * @return learning pages per host, or 0 if template learning is off
+     */
+    public int getTemplateLearningPages() {
+        return templateLearningPages;
+    }
+    
+    public void setTemplateLearningPages(int templateLearningPages) {
+        this.templateLearningPages = Math.max(0, templateLearningPages);
+    }
+    
+    /**
+     * Adds a custom named field to extract from each container.
+     * 
+     * @param field Field configuration
+     */
+    public void addField(FieldSelector field) {
+        this.fields.add(field);
+    }
+    
+    /**
+     * Gets every field to extract: the built-in title, description, url, price and image_url
+     * fields whose selectors are set, followed by the custom fields.
+     * A custom field with the same name as a built-in one replaces it.
+     * 
+     * @return Effective field configurations in extraction order
+     */
+    public List<FieldSelector> getEffectiveFields() {
+        Map<String, FieldSelector> effective = new LinkedHashMap<>();
+        putIfSelected(effective, new FieldSelector(ScrapedData.TITLE, titleSelector, FieldExtractor.TEXT));
+        putIfSelected(effective, new FieldSelector(ScrapedData.DESCRIPTION, descriptionSelector, FieldExtractor.TEXT));
+        putIfSelected(effective, new FieldSelector(ScrapedData.URL, urlSelector, FieldExtractor.URL));
+        putIfSelected(effective, new FieldSelector(ScrapedData.PRICE, priceSelector, FieldExtractor.TEXT));
+        putIfSelected(effective, new FieldSelector(ScrapedData.IMAGE_URL, imageSelector, FieldExtractor.URL));
+        for (FieldSelector field : fields) {
+            putIfSelected(effective, field);
+        }
+        return new ArrayList<>(effective.values());
+    }
+    
+    private static void putIfSelected(Map<String, FieldSelector> effective, FieldSelector field) {
+        if (field.getName() != null && field.getSelector() != null && !field.getSelector().trim().isEmpty()) {
+            effective.put(field.getName(), field);
+        }
+    }
+    
     @Override
     public String toString() {
         return "DataSelectors{" +
@@ -95,6 +199,9 @@ public class DataSelectors {
                 ", urlSelector='" + urlSelector + '\'' +
                 ", priceSelector='" + priceSelector + '\'' +
                 ", imageSelector='" + imageSelector + '\'' +
+                ", fields=" + fields +
+                ", parseMode=" + parseMode +
+                ", templateLearningPages=" + templateLearningPages +
                 '}';
     }
 }
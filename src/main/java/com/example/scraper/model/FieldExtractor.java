@@ -0,0 +1,29 @@
+package com.example.scraper.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * How the value of a named field is taken from the element its selector matched.
+ */
+public enum FieldExtractor {
+    
+    /** Normalized text content of the element. */
+    @JsonProperty("text")
+    TEXT,
+    
+    /** Value of a named attribute of the element. */
+    @JsonProperty("attribute")
+    ATTRIBUTE,
+    
+    /** Inner HTML of the element. */
+    @JsonProperty("html")
+    HTML,
+    
+    /** First match of a regular expression against the element's text (group 1 if present). */
+    @JsonProperty("regex")
+    REGEX,
+    
+    /** Link target of the element: {@code href}, falling back to {@code src}. */
+    @JsonProperty("url")
+    URL
+}
@@ -0,0 +1,114 @@
+package com.example.scraper.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Configuration for one named field: a CSS selector plus the extractor applied to the first match.
+ */
+public class FieldSelector {
+    
+    @JsonProperty("name")
+    private String name;
+    
+    @JsonProperty("selector")
+    private String selector;
+    
+    @JsonProperty("extractor")
+    private FieldExtractor extractor = FieldExtractor.TEXT;
+    
+    @JsonProperty("attribute")
+    private String attribute;
+    
+    @JsonProperty("pattern")
+    private String pattern;
+    
+    public FieldSelector() {
+        // Default constructor for Jackson
+    }
+    
+    public FieldSelector(String name, String selector, FieldExtractor extractor) {
+        this.name = name;
+        this.selector = selector;
+        this.extractor = extractor;
+    }
+    
+    /**
+     * Creates a field that extracts the value of an attribute.
+     * 
+     * @param name Field name
+     * @param selector CSS selector
+     * @param attribute Attribute name (jsoup's {@code abs:} prefix is supported)
+     * @return FieldSelector
+     */
+    public static FieldSelector attribute(String name, String selector, String attribute) {
+        FieldSelector field = new FieldSelector(name, selector, FieldExtractor.ATTRIBUTE);
+        field.setAttribute(attribute);
+        return field;
+    }
+    
+    /**
+     * Creates a field that extracts a regular expression match from the element text.
+     * 
+     * @param name Field name
+     * @param selector CSS selector
+     * @param pattern Regular expression; group 1 is used when present
+     * @return FieldSelector
+     */
+    public static FieldSelector regex(String name, String selector, String pattern) {
+        FieldSelector field = new FieldSelector(name, selector, FieldExtractor.REGEX);
+        field.setPattern(pattern);
+        return field;
+    }
+    
+    // Getters and setters
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public String getSelector() {
+        return selector;
+    }
+    
+    public void setSelector(String selector) {
+        this.selector = selector;
+    }
+    
+    public FieldExtractor getExtractor() {
+        return extractor;
+    }
+    
+    public void setExtractor(FieldExtractor extractor) {
+        this.extractor = extractor;
+    }
+    
+    public String getAttribute() {
+        return attribute;
+    }
+    
+    public void setAttribute(String attribute) {
+        this.attribute = attribute;
+    }
+    
+    public String getPattern() {
+        return pattern;
+    }
+    
+    public void setPattern(String pattern) {
+        this.pattern = pattern;
+    }
+    
+    @Override
+    public String toString() {
+        return "FieldSelector{" +
+                "name='" + name + '\'' +
+                ", selector='" + selector + '\'' +
+                ", extractor=" + extractor +
+                ", attribute='" + attribute + '\'' +
+                ", pattern='" + pattern + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.scraper.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Scraping settings for one host. Settings left unset are inherited from the defaults of the
+ * configuration file, and from the command line below that.
+ */
+public class HostProfile {
+    
+    @JsonProperty("selectors")
+    private DataSelectors selectors;
+    
+    @JsonProperty("rateLimitMs")
+    private Long rateLimitMs;
+    
+    @JsonProperty("maxConcurrency")
+    private Integer maxConcurrency;
+    
+    @JsonProperty("timeoutMs")
+    private Long timeoutMs;
+    
+    @JsonProperty("maxBodyBytes")
+    private Long maxBodyBytes;
+    
+    @JsonProperty("parseMode")
+    private ParseMode parseMode;
+    
+    public HostProfile() {
+        // Default constructor for Jackson
+    }
+    
+    // Getters and setters
+    
+    /**
+     * Gets the selectors that replace the default schema's selectors on this host.
+     * 
+     * @return selectors, or null to inherit
+     */
+    public DataSelectors getSelectors() {
+        return selectors;
+    }
+    
+    public void setSelectors(DataSelectors selectors) {
+        this.selectors = selectors;
+    }
+    
+    /**
+     * Gets the minimum delay between requests to this host. A longer Crawl-delay in robots.txt
+     * still applies when robots.txt is respected.
+     * 
+     * @return delay in milliseconds, or null to inherit
+     */
+    public Long getRateLimitMs() {
+        return rateLimitMs;
+    }
+    
+    public void setRateLimitMs(Long rateLimitMs) {
+        this.rateLimitMs = rateLimitMs;
+    }
+    
+    /**
+     * Gets the maximum number of requests to this host in flight at once.
+     * 
+     * @return concurrent requests, or null to inherit
+     */
+    public Integer getMaxConcurrency() {
+        return maxConcurrency;
+    }
+    
+    public void setMaxConcurrency(Integer maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+    
+    /**
+     * Gets the timeout of a single request to this host.
+     * 
+     * @return timeout in milliseconds, or null to inherit
+     */
+    public Long getTimeoutMs() {
+        return timeoutMs;
+    }
+    
+    public void setTimeoutMs(Long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+    
+    /**
+     * Gets the number of body bytes read from a response before the rest is dropped.
+     * 
+     * @return maximum body size in bytes, 0 for unlimited, or null to inherit
+     */
+    public Long getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+    
+    public void setMaxBodyBytes(Long maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+    }
+    
+    /**
+     * Gets the parse mode applied to every schema on this host.
+     * 
+     * @return parse mode, or null to keep each schema's own
+     */
+    public ParseMode getParseMode() {
+        return parseMode;
+    }
+    
+    public void setParseMode(ParseMode parseMode) {
+        this.parseMode = parseMode;
+    }
+    
+    @Override
+    public String toString() {
+        return "HostProfile{" +
+                "selectors=" + selectors +
+                ", rateLimitMs=" + rateLimitMs +
+                ", maxConcurrency=" + maxConcurrency +
+                ", timeoutMs=" + timeoutMs +
+                ", maxBodyBytes=" + maxBodyBytes +
+                ", parseMode=" + parseMode +
+                '}';
+    }
+}
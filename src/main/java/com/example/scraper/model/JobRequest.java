@@ -0,0 +1,138 @@
+package com.example.scraper.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A scrape job submitted to the scraper daemon. Settings left unset fall back to the daemon's
+ * own options; page and thread counts are capped at them.
+ */
+public class JobRequest {
+
+    @JsonProperty("urls")
+    private List<String> urls = new ArrayList<>();
+
+    @JsonProperty("max_pages")
+    private Integer maxPages;
+
+    @JsonProperty("fetch_threads")
+    private Integer fetchThreads;
+
+    @JsonProperty("follow_links")
+    private Integer followLinks;
+
+    @JsonProperty("next_selector")
+    private String nextSelector;
+
+    @JsonProperty("page_pattern")
+    private String pagePattern;
+
+    @JsonProperty("format")
+    private String format;
+
+    @JsonProperty("output")
+    private String output;
+
+    @JsonProperty("respect_robots")
+    private Boolean respectRobots;
+
+    public JobRequest() {
+        // Default constructor for Jackson
+    }
+
+    // Getters and setters
+    public List<String> getUrls() {
+        return urls;
+    }
+
+    public void setUrls(List<String> urls) {
+        this.urls = urls != null ? urls : new ArrayList<>();
+    }
+
+    public Integer getMaxPages() {
+        return maxPages;
+    }
+
+    public void setMaxPages(Integer maxPages) {
+        this.maxPages = maxPages;
+    }
+
+    public Integer getFetchThreads() {
+        return fetchThreads;
+    }
+
+    public void setFetchThreads(Integer fetchThreads) {
+        this.fetchThreads = fetchThreads;
+    }
+
+    public Integer getFollowLinks() {
+        return followLinks;
+    }
+
+    public void setFollowLinks(Integer followLinks) {
+        this.followLinks = followLinks;
+    }
+
+    public String getNextSelector() {
+        return nextSelector;
+    }
+
+    public void setNextSelector(String nextSelector) {
+        this.nextSelector = nextSelector;
+    }
+
+    public String getPagePattern() {
+        return pagePattern;
+    }
+
+    public void setPagePattern(String pagePattern) {
+        this.pagePattern = pagePattern;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    /**
+     * Gets the output file of the job. Without one, records are written as JSONL to a spool
+     * file that is streamed back through the results endpoint.
+     *
+     * @return output file path, or null
+     */
+    public String getOutput() {
+        return output;
+    }
+
+    public void setOutput(String output) {
+        this.output = output;
+    }
+
+    public Boolean getRespectRobots() {
+        return respectRobots;
+    }
+
+    public void setRespectRobots(Boolean respectRobots) {
+        this.respectRobots = respectRobots;
+    }
+
+    @Override
+    public String toString() {
+        return "JobRequest{" +
+                "urls=" + urls +
+                ", maxPages=" + maxPages +
+                ", fetchThreads=" + fetchThreads +
+                ", followLinks=" + followLinks +
+                ", nextSelector='" + nextSelector + '\'' +
+                ", pagePattern='" + pagePattern + '\'' +
+                ", format='" + format + '\'' +
+                ", output='" + output + '\'' +
+                ", respectRobots=" + respectRobots +
+                '}';
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.scraper.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * How records are located in a parsed page.
+ */
+public enum ParseMode {
+    
+    /** Scan the page for container elements and extract fields with CSS selectors. */
+    @JsonProperty("css")
+    CSS,
+    
+    /**
+     * Map schema.org Product and Article entities from JSON-LD blocks or microdata,
+     * falling back to the CSS selectors only when the page has no structured data.
+     */
+    @JsonProperty("structured")
+    STRUCTURED
+}
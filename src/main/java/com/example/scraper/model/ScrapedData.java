@@ -1,12 +1,29 @@
 package com.example.scraper.model;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 
 /**
  * Represents scraped data from a web page.
+ * Besides the built-in properties, a record carries any custom named fields configured
+ * in {@link DataSelectors}; these are serialized alongside the built-in ones.
  */
+@JsonPropertyOrder({ScrapedData.TITLE, ScrapedData.DESCRIPTION, ScrapedData.URL, ScrapedData.PRICE,
+        ScrapedData.IMAGE_URL})
 public class ScrapedData {
     
+    public static final String TITLE = "title";
+    public static final String DESCRIPTION = "description";
+    public static final String URL = "url";
+    public static final String PRICE = "price";
+    public static final String IMAGE_URL = "image_url";
+    
     @JsonProperty("title")
     private String title;
     
@@ -22,6 +39,9 @@ public class ScrapedData {
     @JsonProperty("image_url")
     private String imageUrl;
     
+    @JsonIgnore
+    private final Map<String, String> fields = new LinkedHashMap<>();
+    
     public ScrapedData() {
         // Default constructor for Jackson
     }
@@ -73,6 +93,73 @@ public class ScrapedData {
         this.imageUrl = imageUrl;
     }
     
+    /**
+     * Gets the custom named fields of this record.
+     * 
+     * @return Map of field name to value, in extraction order
+     */
+    @JsonAnyGetter
+    public Map<String, String> getFields() {
+        return fields;
+    }
+    
+    /**
+     * Gets a field by name, whether built-in or custom.
+     * 
+     * @param name Field name
+     * @return Field value, or null if not set
+     */
+    public String getField(String name) {
+        switch (name) {
+            case TITLE:
+                return title;
+            case DESCRIPTION:
+                return description;
+            case URL:
+                return url;
+            case PRICE:
+                return price;
+            case IMAGE_URL:
+                return imageUrl;
+            default:
+                return fields.get(name);
+        }
+    }
+    
+    /**
+     * Sets a field by name. Built-in names set the corresponding property; any other
+     * name is stored as a custom field.
+     * 
+     * @param name Field name
+     * @param value Field value
+     */
+    @JsonAnySetter
+    public void setField(String name, String value) {
+        switch (name) {
+            case TITLE:
+                this.title = value;
+                break;
+            case DESCRIPTION:
+                this.description = value;
+                break;
+            case URL:
+                this.url = value;
+                break;
+            case PRICE:
+                this.price = value;
+                break;
+            case IMAGE_URL:
+                this.imageUrl = value;
+                break;
+            default:
+                if (value != null) {
+                    fields.put(name, value);
+                } else {
+                    fields.remove(name);
+                }
+        }
+    }
+    
     @Override
     public String toString() {
         return "ScrapedData{" +
@@ -81,6 +168,7 @@ public class ScrapedData {
                 ", url='" + url + '\'' +
                 ", price='" + price + '\'' +
                 ", imageUrl='" + imageUrl + '\'' +
+                (fields.isEmpty() ? "" : ", fields=" + fields) +
                 '}';
     }
     
@@ -95,7 +183,8 @@ public class ScrapedData {
         if (description != null ? !description.equals(that.description) : that.description != null) return false;
         if (url != null ? !url.equals(that.url) : that.url != null) return false;
         if (price != null ? !price.equals(that.price) : that.price != null) return false;
-        return imageUrl != null ? imageUrl.equals(that.imageUrl) : that.imageUrl == null;
+        if (imageUrl != null ? !imageUrl.equals(that.imageUrl) : that.imageUrl != null) return false;
+        return fields.equals(that.fields);
     }
     
     @Override
@@ -105,6 +194,7 @@ public class ScrapedData {
         result = 31 * result + (url != null ? url.hashCode() : 0);
         result = 31 * result + (price != null ? price.hashCode() : 0);
         result = 31 * result + (imageUrl != null ? imageUrl.hashCode() : 0);
+        result = 31 * result + fields.hashCode();
         return result;
     }
 }
@@ -0,0 +1,98 @@
+package com.example.scraper.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Contents of a scraper configuration file such as {@code scraper-config.json}.
+ * The profile settings at the top level are the defaults for every host; entries under
+ * {@code hosts} override them for one host and its subdomains.
+ */
+public class ScraperSettings extends HostProfile {
+    
+    @JsonProperty("startUrls")
+    private List<String> startUrls = new ArrayList<>();
+    
+    @JsonProperty("userAgent")
+    private String userAgent;
+    
+    @JsonProperty("respectRobots")
+    private Boolean respectRobots;
+    
+    @JsonProperty("formats")
+    private List<String> formats;
+    
+    @JsonProperty("hosts")
+    private Map<String, HostProfile> hosts = new LinkedHashMap<>();
+    
+    public ScraperSettings() {
+        // Default constructor for Jackson
+    }
+    
+    // Getters and setters
+    public List<String> getStartUrls() {
+        return startUrls;
+    }
+    
+    public void setStartUrls(List<String> startUrls) {
+        this.startUrls = startUrls != null ? startUrls : new ArrayList<>();
+    }
+    
+    public String getUserAgent() {
+        return userAgent;
+    }
+    
+    public void setUserAgent(String userAgent) {
+        this.userAgent = userAgent;
+    }
+    
+    public Boolean getRespectRobots() {
+        return respectRobots;
+    }
+    
+    public void setRespectRobots(Boolean respectRobots) {
+        this.respectRobots = respectRobots;
+    }
+    
+    /**
+     * Gets the names of the output formats to write, each to its own file.
+     * 
+     * @return format names, or null if not set
+     */
+    public List<String> getFormats() {
+        return formats;
+    }
+    
+    public void setFormats(List<String> formats) {
+        this.formats = formats;
+    }
+    
+    /**
+     * Gets the per-host profiles, keyed by host name.
+     * 
+     * @return host profiles
+     */
+    public Map<String, HostProfile> getHosts() {
+        return hosts;
+    }
+    
+    public void setHosts(Map<String, HostProfile> hosts) {
+        this.hosts = hosts != null ? hosts : new LinkedHashMap<>();
+    }
+    
+    @Override
+    public String toString() {
+        return "ScraperSettings{" +
+                "startUrls=" + startUrls +
+                ", userAgent='" + userAgent + '\'' +
+                ", respectRobots=" + respectRobots +
+                ", formats=" + formats +
+                ", defaults=" + super.toString() +
+                ", hosts=" + hosts +
+                '}';
+    }
+}
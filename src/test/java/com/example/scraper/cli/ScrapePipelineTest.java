@@ -0,0 +1,362 @@
+package com.example.scraper.cli;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import com.example.scraper.core.http.FetchedPage;
+import com.example.scraper.core.persistence.FlushPolicy;
+import com.example.scraper.core.persistence.RecordSink;
+import com.example.scraper.model.DataSelectors;
+import com.example.scraper.model.ScrapedData;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScrapePipelineTest {
+    
+    @Test
+    void testPublishEmitsOnlyRequestedRecords() throws InterruptedException {
+        ScrapePipeline pipeline = new ScrapePipeline(new StubScraper(5), Map.of(), 1, 1, 4);
+        TestSubscriber subscriber = new TestSubscriber(3);
+        pipeline.publish(urls(10), false, Integer.MAX_VALUE).subscribe(subscriber);
+        
+        subscriber.awaitRecords(3);
+        // The write stage holds the rest back until more is requested
+        Thread.sleep(200);
+        assertEquals(3, subscriber.records().size());
+        assertFalse(subscriber.isDone());
+        
+        subscriber.subscription.request(10);
+        subscriber.awaitRecords(13);
+        Thread.sleep(100);
+        assertEquals(13, subscriber.records().size());
+        
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        assertTrue(subscriber.completed);
+        assertNull(subscriber.error);
+        assertEquals(50, subscriber.records().size());
+        // With one worker per stage, records come in page order
+        for (int i = 0; i < 50; i++) {
+            assertEquals("https://example.com/page/" + i / 5 + "#" + i % 5, subscriber.records().get(i).getUrl());
+        }
+    }
+    
+    @Test
+    void testCancelInterruptsRunner() throws InterruptedException {
+        StubScraper scraper = new StubScraper(1);
+        scraper.fetchDelayMs = 60_000;
+        ScrapePipeline pipeline = new ScrapePipeline(scraper, Map.of(), 2, 1, 4);
+        TestSubscriber subscriber = new TestSubscriber(Long.MAX_VALUE);
+        pipeline.publish(urls(100), false, Integer.MAX_VALUE).subscribe(subscriber);
+        
+        assertTrue(scraper.fetching.await(5, TimeUnit.SECONDS));
+        subscriber.subscription.cancel();
+        // The runner is interrupted and stops the fetch workers blocked in their fetch
+        assertTrue(scraper.interrupted.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertFalse(subscriber.isDone());
+        assertEquals(0, subscriber.records().size());
+    }
+    
+    @Test
+    void testNonPositiveRequestSignalsError() throws InterruptedException {
+        ScrapePipeline pipeline = new ScrapePipeline(new StubScraper(5), Map.of(), 2, 2, 4);
+        TestSubscriber subscriber = new TestSubscriber(0);
+        pipeline.publish(urls(10), false, Integer.MAX_VALUE).subscribe(subscriber);
+        
+        assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, subscriber.error);
+        assertFalse(subscriber.completed);
+        assertEquals(0, subscriber.records().size());
+    }
+    
+    @Test
+    void testPublisherAcceptsSingleSubscriber() throws InterruptedException {
+        ScrapePipeline pipeline = new ScrapePipeline(new StubScraper(2), Map.of(), 2, 2, 4);
+        Flow.Publisher<ScrapedData> publisher = pipeline.publish(urls(3), false, Integer.MAX_VALUE);
+        TestSubscriber first = new TestSubscriber(Long.MAX_VALUE);
+        TestSubscriber second = new TestSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(first);
+        publisher.subscribe(second);
+        
+        assertTrue(second.done.await(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, second.error);
+        assertTrue(first.done.await(5, TimeUnit.SECONDS));
+        assertTrue(first.completed);
+        assertEquals(6, first.records().size());
+    }
+    
+    @Test
+    void testSlowWriterHoldsBackUpstreamStages() throws Exception {
+        StubScraper scraper = new StubScraper(2);
+        CountingSink sink = new CountingSink();
+        sink.gate = new CountDownLatch(1);
+        ScrapePipeline pipeline = new ScrapePipeline(scraper, new OutputWriter(sink), 2, 1, 2);
+        CompletableFuture<Long> run = CompletableFuture.supplyAsync(() -> run(pipeline, urls(200)));
+        
+        // Fetching stops once both queues are full and every worker is blocked handing on a page
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pipeline.getStats().get(1).getQueueDepth() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(200);
+        int fetched = scraper.fetches.get();
+        assertTrue(fetched <= 2 + 2 + 1 + 1 + 2, "fetched " + fetched + " pages ahead of the writer");
+        assertEquals(2, pipeline.getStats().get(1).getQueueDepth());
+        assertEquals(2, pipeline.getStats().get(2).getQueueDepth());
+        Thread.sleep(100);
+        assertEquals(fetched, scraper.fetches.get());
+        
+        sink.gate.countDown();
+        assertEquals(400, run.get(10, TimeUnit.SECONDS));
+        assertEquals(400, sink.records.size());
+        assertEquals(200, scraper.fetches.get());
+    }
+    
+    @Test
+    void testEndOfInputStopsEveryWorker() {
+        CountingSink sink = new CountingSink();
+        ScrapePipeline pipeline = new ScrapePipeline(new StubScraper(3), new OutputWriter(sink), 4, 3, 2);
+        long written = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> pipeline.run(urls(50), false, 100));
+        assertEquals(150, written);
+        assertEquals(150, sink.records.size());
+        for (StageStats stats : pipeline.getStats()) {
+            assertEquals(0, stats.getQueueDepth(), stats.getName());
+        }
+        // Every parse worker took its own end marker and exited, so a page limit also ends the run
+        assertEquals(30, assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> new ScrapePipeline(new StubScraper(3), new OutputWriter(new CountingSink()), 4, 3, 2)
+                        .run(urls(50), false, 10)));
+    }
+    
+    @Test
+    void testFlushEveryRecords() throws InterruptedException {
+        CountingSink sink = new CountingSink();
+        ScrapePipeline pipeline = new ScrapePipeline(new StubScraper(1), new OutputWriter(sink), 1, 1, 4);
+        pipeline.setFlushPolicy(new FlushPolicy(10, 0));
+        pipeline.run(urls(55), false, 100);
+        
+        // Five flushes of ten records, then the last five at the end of input; never on idle
+        assertEquals(6, sink.drains.get());
+        assertEquals(0, sink.flushes.get());
+        assertEquals(List.of(10, 20, 30, 40, 50, 55), sink.recordsAtDrain);
+    }
+    
+    @Test
+    void testFlushEveryMs() throws InterruptedException {
+        StubScraper scraper = new StubScraper(1);
+        scraper.fetchDelayMs = 20;
+        CountingSink sink = new CountingSink();
+        ScrapePipeline pipeline = new ScrapePipeline(scraper, new OutputWriter(sink), 1, 1, 4);
+        pipeline.setFlushPolicy(new FlushPolicy(0, 150));
+        pipeline.run(urls(30), false, 100);
+        
+        // About 600ms of pages arriving one at a time, flushed every 150ms rather than per page
+        int drains = sink.drains.get();
+        assertTrue(drains >= 2 && drains <= 8, drains + " flushes");
+        assertEquals(0, sink.flushes.get());
+        assertEquals(30, (int) sink.recordsAtDrain.get(drains - 1));
+    }
+    
+    @Test
+    void testGroupCommitFlushesWhenIdle() throws InterruptedException {
+        StubScraper scraper = new StubScraper(5);
+        scraper.fetchDelayMs = 20;
+        CountingSink sink = new CountingSink();
+        ScrapePipeline pipeline = new ScrapePipeline(scraper, new OutputWriter(sink), 1, 1, 4);
+        pipeline.run(urls(10), false, 100);
+        
+        // The writer catches up after every page, so each page is one group commit
+        assertEquals(10, sink.flushes.get());
+        assertEquals(0, sink.drains.get());
+        
+        // A burst queued at once is written before a single commit
+        CountingSink burst = new CountingSink();
+        burst.gate = new CountDownLatch(1);
+        ScrapePipeline bursty = new ScrapePipeline(new StubScraper(5), new OutputWriter(burst), 1, 1, 16);
+        CompletableFuture<Long> run = CompletableFuture.supplyAsync(() -> run(bursty, urls(10)));
+        Thread.sleep(300);
+        burst.gate.countDown();
+        run.join();
+        assertTrue(burst.flushes.get() <= 2, burst.flushes.get() + " flushes");
+    }
+    
+    private static long run(ScrapePipeline pipeline, Iterator<String> urls) {
+        try {
+            return pipeline.run(urls, false, Integer.MAX_VALUE);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+    
+    private static Iterator<String> urls(int count) {
+        return IntStream.range(0, count).mapToObj(i -> "https://example.com/page/" + i).iterator();
+    }
+    
+    /**
+     * Scraper that fetches nothing and makes up a fixed number of records per page.
+     */
+    private static class StubScraper extends WebScraper {
+        
+        private final int recordsPerPage;
+        private final CountDownLatch fetching = new CountDownLatch(1);
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+        private final AtomicInteger fetches = new AtomicInteger();
+        private volatile long fetchDelayMs;
+        
+        StubScraper(int recordsPerPage) {
+            super("test-agent", new DataSelectors());
+            this.recordsPerPage = recordsPerPage;
+        }
+        
+        @Override
+        public FetchedPage fetchPage(String url, boolean respectRobots) {
+            fetches.incrementAndGet();
+            fetching.countDown();
+            if (fetchDelayMs > 0) {
+                try {
+                    Thread.sleep(fetchDelayMs);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            return new FetchedPage(url, null);
+        }
+        
+        @Override
+        public Map<String, List<ScrapedData>> parsePageSchemas(FetchedPage page, Consumer<Document> onParsed) {
+            List<ScrapedData> records = new ArrayList<>();
+            for (int i = 0; i < recordsPerPage; i++) {
+                records.add(new ScrapedData("Record " + i, null, page.getUrl() + "#" + i));
+            }
+            return Map.of(DEFAULT_SCHEMA, records);
+        }
+    }
+    
+    /**
+     * Sink that keeps records in memory and counts flushes and drains, optionally holding every
+     * write until a gate opens.
+     */
+    private static class CountingSink implements RecordSink {
+        
+        private final List<ScrapedData> records = new CopyOnWriteArrayList<>();
+        private final List<Integer> recordsAtDrain = new CopyOnWriteArrayList<>();
+        private final AtomicInteger flushes = new AtomicInteger();
+        private final AtomicInteger drains = new AtomicInteger();
+        private volatile CountDownLatch gate;
+        
+        @Override
+        public void writeData(List<ScrapedData> dataList) {
+            CountDownLatch wait = gate;
+            if (wait != null) {
+                try {
+                    wait.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            records.addAll(dataList);
+        }
+        
+        @Override
+        public void writeData(ScrapedData data) {
+            writeData(List.of(data));
+        }
+        
+        @Override
+        public void flush() {
+            flushes.incrementAndGet();
+        }
+        
+        @Override
+        public void drain() {
+            drains.incrementAndGet();
+            recordsAtDrain.add(records.size());
+        }
+        
+        @Override
+        public void setFsync(boolean fsync) {
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+    
+    /**
+     * Subscriber that requests a number of records up front and collects what it receives.
+     */
+    private static class TestSubscriber implements Flow.Subscriber<ScrapedData> {
+        
+        private final long initialRequest;
+        private final List<ScrapedData> records = new ArrayList<>();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Flow.Subscription subscription;
+        private volatile boolean completed;
+        private volatile Throwable error;
+        
+        TestSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+        
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+        
+        @Override
+        public synchronized void onNext(ScrapedData item) {
+            records.add(item);
+            notifyAll();
+        }
+        
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+        
+        @Override
+        public void onComplete() {
+            completed = true;
+            done.countDown();
+        }
+        
+        synchronized List<ScrapedData> records() {
+            return new ArrayList<>(records);
+        }
+        
+        boolean isDone() {
+            return done.getCount() == 0;
+        }
+        
+        synchronized void awaitRecords(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (records.size() < count && System.currentTimeMillis() < deadline) {
+                wait(100);
+            }
+            assertEquals(count, records.size());
+        }
+    }
+}
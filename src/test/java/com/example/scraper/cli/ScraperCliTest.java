@@ -0,0 +1,127 @@
+package com.example.scraper.cli;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.example.scraper.core.parser.StructuredDataExtractor;
+import com.example.scraper.model.DataSelectors;
+import com.example.scraper.model.HostProfile;
+import com.example.scraper.model.ParseMode;
+import com.example.scraper.model.ScrapedData;
+import com.example.scraper.model.ScraperSettings;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScraperCliTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void testStructuredModeWritesPriceCurrencyColumn() throws IOException {
+        DataSelectors selectors = new DataSelectors(".product", "h2", "p", null);
+        selectors.setParseMode(ParseMode.STRUCTURED);
+        List<String> lines = writeCsv(new ScraperConfig(), selectors);
+        assertTrue(lines.get(0).endsWith("," + StructuredDataExtractor.PRICE_CURRENCY), lines.get(0));
+        assertTrue(lines.get(1).endsWith(",EUR"), lines.get(1));
+    }
+    
+    @Test
+    void testStructuredHostProfileWritesPriceCurrencyColumn() throws IOException {
+        HostProfile profile = new HostProfile();
+        profile.setParseMode(ParseMode.STRUCTURED);
+        ScraperSettings settings = new ScraperSettings();
+        settings.setHosts(Map.of("shop.example.com", profile));
+        ScraperConfig config = new ScraperConfig();
+        config.setSettings(settings);
+        
+        List<String> lines = writeCsv(config, new DataSelectors(".product", "h2", "p", null));
+        assertTrue(lines.get(0).endsWith("," + StructuredDataExtractor.PRICE_CURRENCY), lines.get(0));
+    }
+    
+    @Test
+    void testCssModeHasNoPriceCurrencyColumn() throws IOException {
+        List<String> lines = writeCsv(new ScraperConfig(), new DataSelectors(".product", "h2", "p", null));
+        assertFalse(lines.get(0).contains(StructuredDataExtractor.PRICE_CURRENCY), lines.get(0));
+    }
+    
+    @Test
+    void testSchemaFilesTakeParseModeAndTemplateLearningDefaults() throws IOException {
+        Path plain = tempDir.resolve("plain.json");
+        Files.writeString(plain, "{\"container\": \".product\", \"title\": \"h2\"}");
+        Path own = tempDir.resolve("own.json");
+        Files.writeString(own, "{\"container\": \".product\", \"title\": \"h2\", \"parse_mode\": \"css\","
+                + " \"template_learning_pages\": 2}");
+        ScraperConfig config = new ScraperConfig();
+        config.addSchemaFile("plain", plain.toString());
+        config.addSchemaFile("own", own.toString());
+        config.setParseMode(ParseMode.STRUCTURED);
+        config.setTemplateLearningPages(5);
+        
+        Map<String, DataSelectors> schemas = ScraperCli.createSchemas(config);
+        assertEquals(ParseMode.STRUCTURED, schemas.get("plain").getParseMode());
+        assertEquals(5, schemas.get("plain").getTemplateLearningPages());
+        assertEquals(ParseMode.CSS, schemas.get("own").getParseMode());
+        assertEquals(2, schemas.get("own").getTemplateLearningPages());
+    }
+    
+    @Test
+    void testCloseFailureExitsWithError() throws Exception {
+        HttpServer site = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        site.createContext("/shop", exchange -> {
+            byte[] body = "<html><body><div class=\"product\"><h2>Product</h2></div></body></html>"
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        site.start();
+        try {
+            // The record is only sealed at close, where adding it to the manifest fails
+            Files.createDirectory(tempDir.resolve("out.manifest.jsonl"));
+            String url = "http://localhost:" + site.getAddress().getPort() + "/shop";
+            Process process = new ProcessBuilder(
+                    Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp", System.getProperty("java.class.path"), ScraperCli.class.getName(),
+                    "--url", url, "--output", tempDir.resolve("out.jsonl").toString(), "--format", "jsonl",
+                    "--segments", "--no-respect-robots")
+                    .redirectErrorStream(true)
+                    .start();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+            assertEquals(1, process.exitValue(), output);
+            assertTrue(output.contains("Failed to close JSONL file"), output);
+        } finally {
+            site.stop(0);
+        }
+    }
+    
+    private List<String> writeCsv(ScraperConfig config, DataSelectors selectors) throws IOException {
+        Path output = tempDir.resolve("out.csv");
+        config.setOutputFile(output.toString());
+        config.setOutputFormat("csv");
+        Map<String, OutputWriter> outputWriters = new LinkedHashMap<>();
+        ScraperCli.openOutputWriters(config, Map.of(WebScraper.DEFAULT_SCHEMA, selectors), outputWriters);
+        try {
+            ScrapedData data = new ScrapedData("Product", "Description", "https://shop.example.com/p/1");
+            data.setField(StructuredDataExtractor.PRICE_CURRENCY, "EUR");
+            outputWriters.get(WebScraper.DEFAULT_SCHEMA).writeData(data);
+        } finally {
+            ScraperCli.closeOutputWriters(outputWriters);
+        }
+        return Files.readAllLines(output);
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.scraper.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.example.scraper.core.http.HostPolicy;
+import com.example.scraper.model.DataSelectors;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScraperDaemonTest {
+    
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CountDownLatch slowRequested = new CountDownLatch(1);
+    private final CountDownLatch slowReleased = new CountDownLatch(1);
+    @TempDir
+    Path outputDir;
+    private HttpServer site;
+    private ExecutorService siteThreads;
+    private ScraperDaemon daemon;
+    private String siteUrl;
+    private String jobsUrl;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        // A shop with five products per page, and a page that does not answer until released
+        site = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        site.createContext("/shop", exchange -> {
+            String page = exchange.getRequestURI().getQuery().substring("page=".length());
+            StringBuilder html = new StringBuilder("<html><body>");
+            for (int i = 0; i < 5; i++) {
+                html.append("<div class=\"product\"><h2>Product ").append(page).append('-').append(i)
+                        .append("</h2><p>Description</p></div>");
+            }
+            byte[] body = html.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        site.createContext("/slow", exchange -> {
+            slowRequested.countDown();
+            try {
+                slowReleased.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        siteThreads = Executors.newCachedThreadPool();
+        site.setExecutor(siteThreads);
+        site.start();
+        siteUrl = "http://localhost:" + site.getAddress().getPort();
+        
+        ScraperConfig config = new ScraperConfig();
+        config.setMaxJobs(1);
+        config.setFetchThreads(2);
+        config.setParseThreads(1);
+        config.setRespectRobots(false);
+        config.setSegmentRecords(5);
+        config.setJobOutputDir(outputDir.toString());
+        HostProfiles hostProfiles = new HostProfiles(new HostPolicy(0, 2, Duration.ofSeconds(30), 0),
+                Map.of(WebScraper.DEFAULT_SCHEMA, new DataSelectors(".product", "h2", "p", null)), Map.of());
+        daemon = new ScraperDaemon(new WebScraper("test-agent", hostProfiles), config);
+        daemon.start();
+        jobsUrl = "http://localhost:" + daemon.getPort() + "/jobs";
+    }
+    
+    @AfterEach
+    void tearDown() {
+        slowReleased.countDown();
+        daemon.stop();
+        site.stop(0);
+        siteThreads.shutdownNow();
+    }
+    
+    @Test
+    void testInvalidRequestsAreRejected() throws Exception {
+        assertEquals(400, post("{not json").statusCode());
+        assertEquals(400, post("{\"urls\": []}").statusCode());
+        HttpResponse<String> relative = post("{\"urls\": [\"/shop?page=1\"]}");
+        assertEquals(400, relative.statusCode());
+        assertTrue(relative.body().contains("Not an absolute URL"), relative.body());
+        assertEquals(400, post("{\"urls\": [\"" + siteUrl + "/shop?page=1\"], \"next_selector\": \"a.next\","
+                + " \"page_pattern\": \"page=(\\\\d+)\"}").statusCode());
+        assertEquals(400, post("{\"urls\": [\"" + siteUrl + "/shop?page=1\"], \"format\": \"csv,jsonl\","
+                + " \"output\": \"out.csv\"}").statusCode());
+        
+        // Nothing was accepted
+        assertEquals(0, json(get("")).size());
+        assertEquals(404, get("/1").statusCode());
+        assertEquals(404, send(HttpRequest.newBuilder(URI.create(jobsUrl.replace("/jobs", "/other")))).statusCode());
+    }
+    
+    @Test
+    void testRequestsWebPagesCouldSendAreRejected() throws Exception {
+        String job = "{\"urls\": [\"" + siteUrl + "/shop?page=1\"]}";
+        HttpResponse<String> plainText = send(HttpRequest.newBuilder(URI.create(jobsUrl))
+                .header("Content-Type", "text/plain").POST(HttpRequest.BodyPublishers.ofString(job)));
+        assertEquals(415, plainText.statusCode());
+        assertEquals(415, send(HttpRequest.newBuilder(URI.create(jobsUrl))
+                .POST(HttpRequest.BodyPublishers.ofString(job))).statusCode());
+        assertEquals(403, send(HttpRequest.newBuilder(URI.create(jobsUrl)).header("Origin", "https://evil.example.com")
+                .header("Content-Type", "application/json").POST(HttpRequest.BodyPublishers.ofString(job))).statusCode());
+        assertEquals(403, send(HttpRequest.newBuilder(URI.create(jobsUrl)).header("Origin", "null").GET()).statusCode());
+        
+        // A name rebound to 127.0.0.1 still shows in the Host header
+        assertTrue(rawGet("evil.example.com:" + daemon.getPort()).startsWith("HTTP/1.1 403"));
+        assertTrue(rawGet("localhost.evil.example.com").startsWith("HTTP/1.1 403"));
+        assertTrue(rawGet("127.0.0.1:" + daemon.getPort()).startsWith("HTTP/1.1 200"));
+        assertTrue(rawGet("[::1]:" + daemon.getPort()).startsWith("HTTP/1.1 200"));
+        
+        assertEquals(0, json(get("")).size());
+    }
+    
+    @Test
+    void testOutputIsConfinedToJobOutputDirectory() throws Exception {
+        String urls = "{\"urls\": [\"" + siteUrl + "/shop?page=1\"], \"format\": \"jsonl\", \"output\": ";
+        assertEquals(400, post(urls + "\"../escaped.jsonl\"}").statusCode());
+        assertEquals(400, post(urls + "\"" + outputDir.getParent().resolve("escaped.jsonl") + "\"}").statusCode());
+        assertEquals(400, post(urls + "\".\"}").statusCode());
+        Files.createSymbolicLink(outputDir.resolve("link"), outputDir.getParent());
+        assertEquals(400, post(urls + "\"link/escaped.jsonl\"}").statusCode());
+        
+        String id = json(post(urls + "\"products.jsonl\"}")).get("id").asText();
+        assertEquals(5, get("/" + id + "/results").body().lines().count());
+        assertEquals("succeeded", json(get("/" + id)).get("state").asText());
+        assertEquals(5, Files.readAllLines(outputDir.resolve("products.jsonl")).size());
+        assertTrue(Files.notExists(outputDir.getParent().resolve("escaped.jsonl")));
+    }
+    
+    @Test
+    void testFullQueueIsRejected() throws Exception {
+        String slowJob = "{\"urls\": [\"" + siteUrl + "/slow\"]}";
+        // One job runs and the next hundred wait in the queue
+        for (int i = 0; i < 101; i++) {
+            assertEquals(202, post(slowJob).statusCode());
+        }
+        HttpResponse<String> rejected = post(slowJob);
+        assertEquals(503, rejected.statusCode());
+        assertTrue(rejected.body().contains("queue is full"), rejected.body());
+        assertEquals(101, json(get("")).size());
+    }
+    
+    @Test
+    void testDeleteCancelsJobs() throws Exception {
+        String running = json(post("{\"urls\": [\"" + siteUrl + "/slow\"]}")).get("id").asText();
+        String queued = json(post("{\"urls\": [\"" + siteUrl + "/shop?page=1\"]}")).get("id").asText();
+        assertTrue(slowRequested.await(10, TimeUnit.SECONDS));
+        assertEquals("queued", json(get("/" + queued)).get("state").asText());
+        
+        HttpResponse<String> cancelled = delete("/" + queued);
+        assertEquals(200, cancelled.statusCode());
+        assertEquals("cancelled", json(cancelled).get("state").asText());
+        assertEquals("cancelled", json(delete("/" + running)).get("state").asText());
+        slowReleased.countDown();
+        
+        // A finished job is forgotten on a second delete
+        assertEquals(204, delete("/" + running).statusCode());
+        assertEquals(404, get("/" + running).statusCode());
+        assertEquals("cancelled", json(get("/" + queued)).get("state").asText());
+        
+        // The worker is free again for new jobs
+        String next = json(post("{\"urls\": [\"" + siteUrl + "/shop?page=2\"]}")).get("id").asText();
+        assertEquals(5, get("/" + next + "/results").body().lines().count());
+        assertEquals("succeeded", json(get("/" + next)).get("state").asText());
+    }
+    
+    @Test
+    void testResultsStreamAcrossRotations() throws Exception {
+        List<String> urls = new ArrayList<>();
+        Set<String> expected = new HashSet<>();
+        for (int page = 1; page <= 4; page++) {
+            urls.add("\"" + siteUrl + "/shop?page=" + page + "\"");
+            for (int i = 0; i < 5; i++) {
+                expected.add("Product " + page + "-" + i);
+            }
+        }
+        String id = json(post("{\"urls\": " + urls + "}")).get("id").asText();
+        
+        // Streamed while the job runs; with five records per file it spans several files
+        HttpResponse<String> results = get("/" + id + "/results");
+        assertEquals(200, results.statusCode());
+        assertEquals("application/x-ndjson", results.headers().firstValue("Content-Type").orElse(null));
+        Set<String> titles = new HashSet<>();
+        List<String> lines = results.body().lines().toList();
+        for (String line : lines) {
+            titles.add(objectMapper.readTree(line).get("title").asText());
+        }
+        assertEquals(20, lines.size());
+        assertEquals(expected, titles);
+        
+        JsonNode status = json(get("/" + id));
+        assertEquals("succeeded", status.get("state").asText());
+        assertEquals(20, status.get("records").asInt());
+        assertEquals(204, delete("/" + id).statusCode());
+    }
+    
+    private HttpResponse<String> post(String body) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(jobsUrl)).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)));
+    }
+    
+    /**
+     * Lists the jobs with a hand-written request, since the HTTP client does not let the Host
+     * header be set.
+     */
+    private String rawGet(String host) throws IOException {
+        try (Socket socket = new Socket("localhost", daemon.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /jobs HTTP/1.1\r\nHost: " + host + "\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            InputStream in = socket.getInputStream();
+            return new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+        }
+    }
+    
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(jobsUrl + path)).GET());
+    }
+    
+    private HttpResponse<String> delete(String path) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(jobsUrl + path)).DELETE());
+    }
+    
+    private HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return client.send(request.timeout(Duration.ofSeconds(30)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+    
+    private JsonNode json(HttpResponse<String> response) throws IOException {
+        return objectMapper.readTree(response.body());
+    }
+}
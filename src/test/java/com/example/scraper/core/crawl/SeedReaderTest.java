@@ -0,0 +1,115 @@
+package com.example.scraper.core.crawl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeedReaderTest {
+    
+    private static final String SEEDS = "https://shop.example.com/p/1\n"
+            + "\n"
+            + "# Products added this week\n"
+            + "  https://shop.example.com/p/2  \n"
+            + "https://shop.example.com/p/1\n"
+            + "   \n"
+            + "https://blog.example.com/post/1\n";
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void testSkipsBlankAndCommentLines() throws IOException {
+        try (SeedReader reader = new SeedReader(List.of(), input(SEEDS))) {
+            assertEquals(List.of("https://shop.example.com/p/1", "https://shop.example.com/p/2",
+                    "https://blog.example.com/post/1"), drain(reader));
+            assertEquals(4, reader.getRead());
+            assertEquals(1, reader.getDuplicates());
+        }
+    }
+    
+    @Test
+    void testDetectsGzipInput() throws IOException {
+        Path file = tempDir.resolve("seeds.txt.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(SEEDS.getBytes(StandardCharsets.UTF_8));
+        }
+        Path plain = tempDir.resolve("seeds.txt");
+        Files.writeString(plain, SEEDS);
+        
+        try (SeedReader compressed = SeedReader.open(List.of(), file);
+             SeedReader uncompressed = SeedReader.open(List.of(), plain)) {
+            assertEquals(drain(uncompressed), drain(compressed));
+        }
+    }
+    
+    @Test
+    void testUrlsComeBeforeInputAndAreDeduplicatedWithIt() throws IOException {
+        List<String> urls = List.of("https://blog.example.com/post/1", "https://shop.example.com/p/9");
+        try (SeedReader reader = new SeedReader(urls, input(SEEDS))) {
+            assertEquals(List.of("https://blog.example.com/post/1", "https://shop.example.com/p/9",
+                    "https://shop.example.com/p/1", "https://shop.example.com/p/2"), drain(reader));
+            assertEquals(6, reader.getRead());
+            assertEquals(2, reader.getDuplicates());
+        }
+    }
+    
+    @Test
+    void testCountsDuplicatesInLargeInput() throws IOException {
+        StringBuilder seeds = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            seeds.append("https://shop.example.com/p/").append(i % 150_000).append('\n');
+        }
+        try (SeedReader reader = new SeedReader(List.of(), input(seeds.toString()))) {
+            assertEquals(150_000, drain(reader).size());
+            assertEquals(200_000, reader.getRead());
+            assertEquals(50_000, reader.getDuplicates());
+            assertFalse(reader.hasNext());
+        }
+    }
+    
+    @Test
+    void testFrontierFollowsLinksOnStreamedSeedHosts() throws IOException {
+        try (SeedReader reader = new SeedReader(List.of(), input(SEEDS))) {
+            UrlFrontier frontier = new UrlFrontier(reader, 1);
+            String first = frontier.next();
+            assertEquals("https://shop.example.com/p/1", first);
+            assertEquals(1, frontier.offer(first, List.of("https://shop.example.com/p/3#reviews",
+                    "https://shop.example.com/p/3", "https://other.example.com/")));
+            frontier.complete(first);
+            
+            List<String> crawled = new ArrayList<>();
+            while (frontier.hasNext()) {
+                String url = frontier.next();
+                crawled.add(url);
+                frontier.complete(url);
+            }
+            assertEquals(List.of("https://shop.example.com/p/3", "https://shop.example.com/p/2",
+                    "https://blog.example.com/post/1"), crawled);
+            assertEquals(4, frontier.getAdmitted());
+            assertTrue(reader.getDuplicates() > 0);
+        }
+    }
+    
+    private static ByteArrayInputStream input(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static List<String> drain(SeedReader reader) {
+        List<String> urls = new ArrayList<>();
+        reader.forEachRemaining(urls::add);
+        return urls;
+    }
+}
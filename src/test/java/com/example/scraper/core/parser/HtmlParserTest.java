@@ -1,12 +1,30 @@
 package com.example.scraper.core.parser;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
 
+import com.example.scraper.core.crawl.Paginator;
+import com.example.scraper.core.crawl.UrlFrontier;
 import com.example.scraper.model.DataSelectors;
+import com.example.scraper.model.FieldExtractor;
+import com.example.scraper.model.FieldSelector;
+import com.example.scraper.model.ParseMode;
 import com.example.scraper.model.ScrapedData;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -118,6 +136,459 @@ class HtmlParserTest {
         assertTrue(results.isEmpty());
     }
     
+    @Test
+    void testParseBytesMatchesStringParse() throws IOException {
+        byte[] html = Files.readAllBytes(Paths.get("src/test/resources/fixtures/ecommerce-site.html"));
+        
+        selectors.setContainerSelector("div.product");
+        selectors.setTitleSelector("h1.product-title");
+        selectors.setDescriptionSelector("p.product-description");
+        selectors.setUrlSelector("a.product-link");
+        selectors.setPriceSelector("span.product-price");
+        selectors.setImageSelector("img.product-image");
+        
+        List<ScrapedData> fromString = parser.parseHtml(new String(html, StandardCharsets.UTF_8),
+                "https://shop.example.com", selectors);
+        List<ScrapedData> fromStream = parser.parseHtml(new ByteArrayInputStream(html), null,
+                "https://shop.example.com", selectors);
+        List<ScrapedData> fromBuffer = parser.parseHtml(ByteBuffer.wrap(html), null,
+                "https://shop.example.com", selectors);
+        
+        assertEquals(fromString, fromStream);
+        assertEquals(fromString, fromBuffer);
+    }
+    
+    @Test
+    void testParseBytesDetectsMetaCharset() {
+        String html = "<html><head><meta charset=\"ISO-8859-1\"></head>"
+                + "<body><article><h1>Caf\u00e9 cr\u00e8me</h1></article></body></html>";
+        byte[] bytes = html.getBytes(StandardCharsets.ISO_8859_1);
+        
+        selectors.setContainerSelector("article");
+        selectors.setTitleSelector("h1");
+        
+        List<ScrapedData> results = parser.parseHtml(new ByteArrayInputStream(bytes), null,
+                "https://example.com", selectors);
+        
+        assertEquals(1, results.size());
+        assertEquals("Caf\u00e9 cr\u00e8me", results.get(0).getTitle());
+    }
+    
+    @Test
+    void testParseBytesHonoursByteOrderMark() {
+        String html = "\uFEFF<html><body><article><h1>\u65e5\u672c\u8a9e</h1></article></body></html>";
+        byte[] bytes = html.getBytes(StandardCharsets.UTF_16BE);
+        
+        selectors.setContainerSelector("article");
+        selectors.setTitleSelector("h1");
+        
+        List<ScrapedData> results = parser.parseHtml(ByteBuffer.wrap(bytes), null, "https://example.com", selectors);
+        
+        assertEquals(1, results.size());
+        assertEquals("\u65e5\u672c\u8a9e", results.get(0).getTitle());
+    }
+    
+    @Test
+    void testParseCustomFields() throws IOException {
+        String html = Files.readString(Paths.get("src/test/resources/fixtures/ecommerce-site.html"));
+        
+        selectors.setContainerSelector("div.product");
+        selectors.setTitleSelector("h1.product-title");
+        selectors.addField(FieldSelector.attribute("link", "a.product-link", "abs:href"));
+        selectors.addField(FieldSelector.regex("amount", "span.product-price", "([0-9]+\\.[0-9]{2})"));
+        selectors.addField(new FieldSelector("title_html", "h1.product-title", FieldExtractor.HTML));
+        selectors.addField(new FieldSelector("missing", "span.does-not-exist", FieldExtractor.TEXT));
+        
+        List<ScrapedData> results = parser.parseHtml(html, "https://shop.example.com", selectors);
+        
+        assertEquals(3, results.size());
+        
+        ScrapedData first = results.get(0);
+        assertEquals("Wireless Bluetooth Headphones", first.getTitle());
+        assertEquals("https://shop.example.com/products/wireless-headphones", first.getField("link"));
+        assertEquals("99.99", first.getField("amount"));
+        assertEquals("Wireless Bluetooth Headphones", first.getField("title_html"));
+        assertNull(first.getField("missing"));
+        assertNull(first.getUrl());
+    }
+    
+    @Test
+    void testCustomFieldOverridesBuiltIn() throws IOException {
+        String html = Files.readString(Paths.get("src/test/resources/fixtures/ecommerce-site.html"));
+        
+        selectors.setContainerSelector("div.product");
+        selectors.setTitleSelector("h1.product-title");
+        selectors.setPriceSelector("span.product-price");
+        selectors.addField(FieldSelector.regex(ScrapedData.PRICE, "span.product-price", "[0-9.]+"));
+        
+        List<ScrapedData> results = parser.parseHtml(html, "https://shop.example.com", selectors);
+        
+        assertEquals("99.99", results.get(0).getPrice());
+        assertTrue(results.get(0).getFields().isEmpty());
+    }
+    
+    @Test
+    void testParseStructuredDataFromJsonLd() throws IOException {
+        String html = Files.readString(Paths.get("src/test/resources/fixtures/structured-data-site.html"));
+        
+        selectors.setParseMode(ParseMode.STRUCTURED);
+        selectors.setContainerSelector("div.product");
+        selectors.setTitleSelector("h1.product-title");
+        
+        List<ScrapedData> results = parser.parseHtml(html, "https://gear.example.com/list", selectors);
+        
+        assertEquals(2, results.size());
+        
+        ScrapedData first = results.get(0);
+        assertEquals("Trail Running Shoes", first.getTitle());
+        assertEquals("Lightweight shoes with aggressive grip for muddy trails.", first.getDescription());
+        assertEquals("https://gear.example.com/products/trail-shoes", first.getUrl());
+        assertEquals("129.95", first.getPrice());
+        assertEquals("USD", first.getField("price_currency"));
+        assertEquals("https://gear.example.com/images/trail-shoes.jpg", first.getImageUrl());
+        
+        ScrapedData second = results.get(1);
+        assertEquals("Ultralight Tent", second.getTitle());
+        assertEquals("349.00", second.getPrice());
+        assertEquals("https://gear.example.com/images/tent.jpg", second.getImageUrl());
+    }
+    
+    @Test
+    void testParseStructuredDataFromMicrodata() {
+        String html = "<html><body>"
+                + "<div itemscope itemtype=\"https://schema.org/Product\">"
+                + "<h2 itemprop=\"name\">Camp Stove</h2>"
+                + "<a itemprop=\"url\" href=\"/products/camp-stove\">details</a>"
+                + "<div itemprop=\"offers\" itemscope itemtype=\"https://schema.org/Offer\">"
+                + "<span itemprop=\"price\" content=\"59.00\">$59</span>"
+                + "<meta itemprop=\"priceCurrency\" content=\"EUR\">"
+                + "</div></div></body></html>";
+        
+        selectors.setParseMode(ParseMode.STRUCTURED);
+        selectors.setContainerSelector("div.product");
+        
+        List<ScrapedData> results = parser.parseHtml(html, "https://gear.example.com/", selectors);
+        
+        assertEquals(1, results.size());
+        assertEquals("Camp Stove", results.get(0).getTitle());
+        assertEquals("https://gear.example.com/products/camp-stove", results.get(0).getUrl());
+        assertEquals("59.00", results.get(0).getPrice());
+        assertEquals("EUR", results.get(0).getField("price_currency"));
+    }
+    
+    @Test
+    void testStructuredModeFallsBackToCss() throws IOException {
+        String html = Files.readString(Paths.get("src/test/resources/fixtures/ecommerce-site.html"));
+        
+        selectors.setParseMode(ParseMode.STRUCTURED);
+        selectors.setContainerSelector("div.product");
+        selectors.setTitleSelector("h1.product-title");
+        
+        List<ScrapedData> results = parser.parseHtml(html, "https://shop.example.com", selectors);
+        
+        assertEquals(3, results.size());
+        assertEquals("Wireless Bluetooth Headphones", results.get(0).getTitle());
+    }
+    
+    @Test
+    void testPrescreenSkipsPagesWithoutContainers() throws IOException {
+        byte[] news = Files.readAllBytes(Paths.get("src/test/resources/fixtures/news-site.html"));
+        byte[] shop = Files.readAllBytes(Paths.get("src/test/resources/fixtures/ecommerce-site.html"));
+        
+        selectors.setContainerSelector("div.product");
+        selectors.setTitleSelector("h1.product-title");
+        
+        assertTrue(parser.parseHtml(ByteBuffer.wrap(news), null, "https://news.example.com", selectors).isEmpty());
+        assertEquals(3, parser.parseHtml(ByteBuffer.wrap(shop), null, "https://shop.example.com", selectors).size());
+        assertEquals(2, parser.getPagesScreened());
+        assertEquals(1, parser.getPagesSkipped());
+    }
+    
+    @Test
+    void testPrescreenNeverRejectsMatchingPages() throws IOException {
+        String[] containerSelectors = {
+            "div.product", "DIV.Product", ".product-container > .product", "article, div.product",
+            "div[class]", "div.product:not(.sold)", "tbody tr", "*", "#main", "span.missing, p"
+        };
+        String[] fixtures = {"news-site.html", "ecommerce-site.html", "structured-data-site.html"};
+        
+        for (String fixture : fixtures) {
+            byte[] html = Files.readAllBytes(Paths.get("src/test/resources/fixtures", fixture));
+            Document document = Jsoup.parse(new String(html, StandardCharsets.UTF_8));
+            for (String containerSelector : containerSelectors) {
+                DataSelectors candidate = new DataSelectors();
+                candidate.setContainerSelector(containerSelector);
+                boolean passes = ContainerPrescreen.compile(candidate).mightMatch(ByteBuffer.wrap(html), null);
+                if (!document.select(containerSelector).isEmpty()) {
+                    assertTrue(passes, containerSelector + " rejected " + fixture);
+                }
+            }
+        }
+        
+        DataSelectors table = new DataSelectors();
+        table.setContainerSelector("tbody tr.row");
+        byte[] implied = "<table><TR class=ROW><td>x</td></tr></table>".getBytes(StandardCharsets.UTF_8);
+        assertTrue(ContainerPrescreen.compile(table).mightMatch(ByteBuffer.wrap(implied), null));
+        byte[] other = "<table><tr class=other><td>x</td></tr></table>".getBytes(StandardCharsets.UTF_8);
+        assertFalse(ContainerPrescreen.compile(table).mightMatch(ByteBuffer.wrap(other), null));
+        
+        // Tag soup where the parser creates the container element itself
+        String[][] soup = {
+            {"tr", "<table><td>Cell</td></table>"},
+            {"table tr", "<table><tbody><td>Cell</td></tbody></table>"},
+            {"p", "<div>Text</p></div>"},
+            {"div > p", "<div></p>Text</div>"}
+        };
+        for (String[] page : soup) {
+            DataSelectors candidate = new DataSelectors();
+            candidate.setContainerSelector(page[0]);
+            assertFalse(Jsoup.parse(page[1]).select(page[0]).isEmpty(), page[1]);
+            byte[] html = page[1].getBytes(StandardCharsets.UTF_8);
+            assertTrue(ContainerPrescreen.compile(candidate).mightMatch(ByteBuffer.wrap(html), null),
+                    page[0] + " rejected " + page[1]);
+        }
+    }
+    
+    @Test
+    void testLearnedTemplateMatchesFullExtraction() throws IOException {
+        String html = Files.readString(Paths.get("src/test/resources/fixtures/ecommerce-site.html"));
+        
+        selectors.setContainerSelector("div.product");
+        selectors.setTitleSelector("h1.product-title");
+        selectors.setDescriptionSelector("p.product-description");
+        selectors.setPriceSelector(".product-price");
+        selectors.setTemplateLearningPages(1);
+        
+        List<ScrapedData> learned = parser.parseHtml(html, "https://shop.example.com/a", selectors);
+        List<ScrapedData> templated = parser.parseHtml(html, "https://shop.example.com/b", selectors);
+        
+        HostTemplate template = parser.getTemplates(selectors).forUrl("https://shop.example.com/");
+        assertTrue(template.isLearned());
+        assertEquals(learned, templated);
+        assertEquals(9, template.getHits());
+        assertEquals(0, template.getMisses());
+        
+        // A page with a different layout falls back to full selector matching
+        String moved = "<html><body><div class=\"product\"><span class=\"product-price\">$5</span>"
+                + "<div><h1 class=\"product-title\">Moved</h1></div></div></body></html>";
+        List<ScrapedData> fallback = parser.parseHtml(moved, "https://shop.example.com/c", selectors);
+        
+        assertEquals(1, fallback.size());
+        assertEquals("Moved", fallback.get(0).getTitle());
+        assertEquals("$5", fallback.get(0).getPrice());
+        assertTrue(template.getMisses() > 0);
+        assertEquals(3, template.getPages());
+    }
+    
+    @Test
+    void testAmbiguousFieldsAreNotLearned() {
+        selectors.setContainerSelector("div.product");
+        selectors.setTitleSelector("h2");
+        selectors.setPriceSelector(".price");
+        selectors.setTemplateLearningPages(1);
+        
+        // Every learned container has an old and a current price
+        String learning = "<html><body>"
+                + "<div class=\"product\"><h2>One</h2><s class=\"price old\">$9</s><b class=\"price\">$5</b></div>"
+                + "<div class=\"product\"><h2>Two</h2><s class=\"price old\">$8</s><b class=\"price\">$4</b></div>"
+                + "</body></html>";
+        parser.parseHtml(learning, "https://shop.example.com/a", selectors);
+        HostTemplate template = parser.getTemplates(selectors).forUrl("https://shop.example.com/");
+        assertTrue(template.isLearned());
+        
+        // A price nested before the learned location is the first match
+        String later = "<html><body><div class=\"product\"><h2>Three <b class=\"price\">$3</b></h2>"
+                + "<s class=\"price old\">$7</s><b class=\"price\">$6</b></div></body></html>";
+        List<ScrapedData> records = parser.parseHtml(later, "https://shop.example.com/b", selectors);
+        assertEquals(1, records.size());
+        assertEquals("$3", records.get(0).getPrice());
+        assertEquals(Jsoup.parse(later).selectFirst("div.product").selectFirst(".price").text(),
+                records.get(0).getPrice());
+        // The title was unambiguous and is still looked up at its learned path
+        assertEquals(1, template.getHits());
+    }
+    
+    @Test
+    void testParallelExtractionPreservesOrder() {
+        StringBuilder html = new StringBuilder("<html><body>");
+        for (int i = 0; i < 2000; i++) {
+            html.append("<div class=\"item\"><h2>Item ").append(i).append("</h2>")
+                    .append("<a href=\"https://shop.example.com/items/").append(i).append("\">link</a></div>");
+        }
+        html.append("</body></html>");
+        
+        selectors.setContainerSelector("div.item");
+        selectors.setTitleSelector("h2");
+        selectors.setUrlSelector("a");
+        
+        List<ScrapedData> sequential = parser.parseHtml(html.toString(), "https://shop.example.com", selectors);
+        
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            HtmlParser parallelParser = new HtmlParser();
+            parallelParser.setForkJoinPool(pool);
+            parallelParser.setParallelThreshold(1000);
+            List<ScrapedData> parallel = parallelParser.parseHtml(html.toString(), "https://shop.example.com", selectors);
+            
+            assertEquals(2000, parallel.size());
+            assertEquals(sequential, parallel);
+            assertEquals(1, parallelParser.getParallelStats().getPages());
+            assertTrue(parallelParser.getParallelStats().getChunks() > 1);
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    void testParseMultipleSchemasFromOneDocument() throws IOException {
+        byte[] html = Files.readAllBytes(Paths.get("src/test/resources/fixtures/ecommerce-site.html"));
+        
+        DataSelectors products = new DataSelectors();
+        products.setContainerSelector("div.product");
+        products.setTitleSelector("h1.product-title");
+        products.setPriceSelector(".product-price");
+        
+        DataSelectors images = new DataSelectors();
+        images.setContainerSelector("div.product");
+        images.addField(FieldSelector.attribute("alt", "img", "alt"));
+        
+        DataSelectors articles = new DataSelectors();
+        articles.setContainerSelector("article.news");
+        articles.setTitleSelector("h2");
+        
+        Map<String, DataSelectors> schemas = new LinkedHashMap<>();
+        schemas.put("products", products);
+        schemas.put("images", images);
+        schemas.put("articles", articles);
+        
+        Map<String, List<ScrapedData>> results =
+                parser.parseHtml(ByteBuffer.wrap(html), null, "https://shop.example.com", schemas);
+        
+        assertEquals(List.of("products", "images", "articles"), List.copyOf(results.keySet()));
+        assertEquals(parser.parseHtml(ByteBuffer.wrap(html), null, "https://shop.example.com", products),
+                results.get("products"));
+        assertEquals(3, results.get("images").size());
+        assertEquals("Wireless Headphones", results.get("images").get(0).getField("alt"));
+        assertNull(results.get("images").get(0).getTitle());
+        assertTrue(results.get("articles").isEmpty());
+    }
+    
+    @Test
+    void testElementTextMatchesJsoupText() throws IOException {
+        String tricky = "<div> Lead <b>bold</b><p>Block</p>tail<br>after <span> \u00a0x </span>"
+                + "<pre>  keep\n   spacing </pre><ul><li>One</li><li>Two</li></ul>"
+                + "<div><![CDATA[ raw  data ]]></div>\u200b</div><p>   </p><p>soft\u00adhyphen\t\r\fend</p>";
+        String[] documents = {
+            tricky,
+            Files.readString(Paths.get("src/test/resources/fixtures/news-site.html")),
+            Files.readString(Paths.get("src/test/resources/fixtures/ecommerce-site.html"))
+        };
+        
+        for (String html : documents) {
+            for (Element element : Jsoup.parse(html).getAllElements()) {
+                String expected = element.text().trim();
+                assertEquals(expected.isEmpty() ? null : expected, ElementText.text(element), element.cssSelector());
+            }
+        }
+        
+        Element price = Jsoup.parse("<p> Price: <b>$ 12.50 </b> incl. VAT</p>").selectFirst("p");
+        assertEquals("12.50", ElementText.find(price, Pattern.compile("\\$\\s*([0-9.]+)")));
+        assertEquals("Price:", ElementText.find(price, Pattern.compile("^\\w+:")));
+        assertNull(ElementText.find(price, Pattern.compile("EUR (\\d+)")));
+    }
+    
+    @Test
+    void testLinkExtractorMatchesDomLinks() throws IOException {
+        String tricky = "<html><head><base href=\"/catalog/\"><title>a <a href=x></title>"
+                + "<script>document.write('<a href=\"/js\">')</script></head><body>"
+                + "<!-- <a href=\"/commented\"> --><A HREF='Page?a=1&amp;b=2'>one</A>"
+                + "<a href=/unquoted>two</a><img src=\"//cdn.example.com/i.png\" alt='<a href=no>'>"
+                + "<a href=\"mailto:team@example.com\">mail</a><a href=\"#top\" href=\"/second\">top</a>"
+                + "<iframe src=\"frame.html\"><a href=\"/inside-iframe\"></iframe><link href=\"style.css\">"
+                + "<a href=\"?q=1\">query</a><a href=\"../../../up\">up</a><a href=\"tel:+123\">call</a>"
+                + "<a href=\"/tab&#9;bed\">tab</a><a href=\"http://[bad\">bad</a>"
+                + "</body></html>";
+        String[] documents = {
+            tricky,
+            Files.readString(Paths.get("src/test/resources/fixtures/news-site.html")),
+            Files.readString(Paths.get("src/test/resources/fixtures/ecommerce-site.html")),
+            Files.readString(Paths.get("src/test/resources/fixtures/structured-data-site.html"))
+        };
+        
+        LinkExtractor linkExtractor = new LinkExtractor();
+        for (String html : documents) {
+            List<String> expected = new ArrayList<>();
+            for (Element element : Jsoup.parse(html, "https://shop.example.com/a/b").getAllElements()) {
+                for (Attribute attribute : element.attributes()) {
+                    if (attribute.getKey().equals("href") || attribute.getKey().equals("src")) {
+                        String link = element.absUrl(attribute.getKey());
+                        if (!link.isEmpty()) {
+                            expected.add(link);
+                        }
+                    }
+                }
+            }
+            
+            ByteBuffer bytes = ByteBuffer.wrap(html.getBytes(StandardCharsets.UTF_8));
+            assertEquals(expected, linkExtractor.extractLinks(bytes, null, "https://shop.example.com/a/b"));
+        }
+    }
+    
+    @Test
+    void testPaginationFindsNextPageBeforeExtraction() {
+        String html = "<html><body><p>No products here</p><a rel=\"next\" href=\"?page=3\">Next</a></body></html>";
+        selectors.setContainerSelector("div.product");
+        selectors.setTitleSelector("h2");
+        Paginator bySelector = Paginator.bySelector("a[rel=next]");
+        List<String> next = new ArrayList<>();
+        
+        // The callback sees the document even though the pre-screen rules out every container
+        Map<String, List<ScrapedData>> results = parser.parseHtml(
+                ByteBuffer.wrap(html.getBytes(StandardCharsets.UTF_8)), "UTF-8", "https://example.com/list?page=2",
+                Map.of("default", selectors), document -> next.add(bySelector.nextFromDocument(document)));
+        assertTrue(results.get("default").isEmpty());
+        assertEquals(List.of("https://example.com/list?page=3"), next);
+        
+        Paginator byPattern = Paginator.byPattern("page=(\\d+)");
+        assertEquals("https://example.com/list?page=10&sort=asc",
+                byPattern.nextFromUrl("https://example.com/list?page=9&sort=asc"));
+        assertNull(byPattern.nextFromUrl("https://example.com/list"));
+        byPattern.stop("https://example.com/list?page=12&sort=asc");
+        assertNull(byPattern.nextFromUrl("https://example.com/list?page=10&sort=asc"));
+        assertEquals("https://example.com/other?page=2", byPattern.nextFromUrl("https://example.com/other?page=1"));
+        
+        // Next pages keep the depth of their listing and are taken before queued links
+        UrlFrontier frontier = new UrlFrontier(List.of("https://example.com/list?page=1"), 0);
+        String first = frontier.next();
+        assertEquals(0, frontier.offer(first, List.of("https://example.com/p/1")));
+        assertTrue(frontier.offerNext(first, byPattern.nextFromUrl(first)));
+        assertFalse(frontier.offerNext(first, "https://elsewhere.com/list?page=2"));
+        frontier.complete(first);
+        assertEquals("https://example.com/list?page=2", frontier.next());
+    }
+    
+    @Test
+    void testResetReleasesFinishedDocument() {
+        ExtractionPlan plan = ExtractionPlan.compile(List.of(
+                new FieldSelector(ScrapedData.TITLE, "div h2", FieldExtractor.TEXT),
+                new FieldSelector("badge", "div ~ span.badge", FieldExtractor.TEXT)));
+        WeakReference<Document> finished = extractFromNewDocument(plan);
+        
+        // Structural selectors memoize matches per thread, keeping the document reachable
+        collectGarbage(finished);
+        assertTrue(finished.get() != null);
+        
+        plan.reset();
+        collectGarbage(finished);
+        assertNull(finished.get());
+        
+        // The plan still works after a reset
+        WeakReference<Document> next = extractFromNewDocument(plan);
+        plan.reset();
+        collectGarbage(next);
+        assertNull(next.get());
+    }
+    
     @Test
     void testIsValidSelector() {
         assertTrue(parser.isValidSelector("h1"));
@@ -129,4 +600,25 @@ class HtmlParserTest {
         assertFalse(parser.isValidSelector(""));
         assertFalse(parser.isValidSelector("invalid["));
     }
+    
+    private static WeakReference<Document> extractFromNewDocument(ExtractionPlan plan) {
+        Document document = Jsoup.parse("<ul><li><div><h2>First</h2></div><span class=\"badge\">New</span></li>"
+                + "<li><div><h2>Second</h2></div></li></ul>");
+        for (Element container : document.select("li")) {
+            assertTrue(plan.extract(container) != null);
+        }
+        return new WeakReference<>(document);
+    }
+    
+    private static void collectGarbage(WeakReference<?> reference) {
+        for (int i = 0; i < 10 && reference.get() != null; i++) {
+            System.gc();
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
 }
@@ -0,0 +1,110 @@
+package com.example.scraper.core.persistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.scraper.model.ScrapedData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColumnarWriterTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void testRecordsRoundTrip() throws IOException {
+        List<ScrapedData> records = products(2500);
+        records.get(7).setTitle("Crème brûlée ☕");
+        records.get(8).setTitle("");
+        records.get(9).setField("undeclared", "dropped");
+        Path file = write(records, 1000);
+        records.get(9).setField("undeclared", null);
+        
+        try (ColumnarReader reader = new ColumnarReader(file)) {
+            assertEquals(List.of("title", "description", "url", "price", "image_url", "brand"), reader.getColumns());
+            assertEquals(2500, reader.getRowCount());
+            assertEquals(3, reader.getRowGroupCount());
+            assertEquals(records, reader.readAll());
+        }
+    }
+    
+    @Test
+    void testProjectionAndRowGroupSkipping() throws IOException {
+        Path file = write(products(5000), 1000);
+        
+        try (ColumnarReader reader = new ColumnarReader(file)) {
+            // Prices rise with the row group, so only the row group of product 3000-3999 can match
+            List<ScrapedData> matches = reader.read(List.of("url"), ColumnFilter.equalTo("price", "$30.50"));
+            assertEquals(4, reader.getRowGroupsSkipped());
+            assertEquals(25, matches.size());
+            for (ScrapedData data : matches) {
+                assertTrue(data.getUrl().startsWith("https://shop.example.com/p/3"), data.getUrl());
+                assertNull(data.getTitle());
+                assertNull(data.getPrice());
+            }
+            
+            assertEquals(0, reader.read(null, ColumnFilter.between("price", "$99", null)).size());
+            assertEquals(9, reader.getRowGroupsSkipped());
+            assertThrows(IllegalArgumentException.class, () -> reader.read(List.of("missing"), null));
+        }
+    }
+    
+    @Test
+    void testSmallerThanCsv() throws IOException {
+        List<ScrapedData> records = products(20000);
+        Path file = write(records, ColumnarWriter.DEFAULT_ROW_GROUP_ROWS);
+        Path csv = tempDir.resolve("products.csv");
+        CSVWriter csvWriter = new CSVWriter(csv.toString(), false, List.of("brand"));
+        csvWriter.writeData(records);
+        csvWriter.close();
+        
+        long columnarSize = Files.size(file);
+        long csvSize = Files.size(csv);
+        assertTrue(columnarSize * 3 < csvSize, "columnar " + columnarSize + " bytes, CSV " + csvSize + " bytes");
+    }
+    
+    @Test
+    void testCloseFailureIsThrown() throws IOException {
+        // The footer is written at close, and sealing the file then fails on the manifest
+        Files.createDirectory(tempDir.resolve("products.manifest.jsonl"));
+        ColumnarWriter writer = new ColumnarWriter(tempDir.resolve("products.scol").toString(), List.of("brand"),
+                new SegmentPolicy(0, 0, 0, true), ColumnarWriter.DEFAULT_ROW_GROUP_ROWS);
+        writer.writeData(products(10));
+        RuntimeException failure = assertThrows(RuntimeException.class, writer::close);
+        assertEquals("Failed to close columnar file", failure.getMessage());
+    }
+    
+    private Path write(List<ScrapedData> records, int rowGroupRows) {
+        Path file = tempDir.resolve("products.scol");
+        ColumnarWriter writer = new ColumnarWriter(file.toString(), List.of("brand"), SegmentPolicy.DEFAULT, rowGroupRows);
+        for (int i = 0; i < records.size(); i += 100) {
+            writer.writeData(records.subList(i, Math.min(records.size(), i + 100)));
+        }
+        writer.close();
+        return file;
+    }
+    
+    private static List<ScrapedData> products(int count) {
+        List<ScrapedData> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ScrapedData data = new ScrapedData("Product " + i, i % 10 == 0 ? null : "In stock, ships in "
+                    + (i % 3 + 1) + " days", "https://shop.example.com/p/" + i);
+            data.setPrice(String.format("$%d.%02d", i / 1000 * 10, i % 40 * 2));
+            data.setImageUrl("https://cdn.example.com/img/category-" + (i % 5) + ".jpg");
+            if (i % 2 == 0) {
+                data.setField("brand", i % 4 == 0 ? "Acme" : "Globex");
+            }
+            records.add(data);
+        }
+        return records;
+    }
+}
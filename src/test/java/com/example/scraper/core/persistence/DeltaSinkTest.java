@@ -0,0 +1,232 @@
+package com.example.scraper.core.persistence;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.example.scraper.model.ScrapedData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeltaSinkTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void testEmitsOnlyChangesBetweenRuns() {
+        Path state = tempDir.resolve("products.delta");
+        List<ScrapedData> first = run(state, ScrapedData.URL, products(0, 10000));
+        assertEquals(10000, first.size());
+        assertEquals("new", first.get(0).getField(DeltaSink.CHANGE_TYPE));
+        
+        // Ten repriced, products 0-4 gone, 10000-10002 added, and one URL written differently
+        List<ScrapedData> second = products(5, 10003);
+        for (int i = 100; i < 110; i++) {
+            second.get(i).setPrice("$0.99");
+        }
+        second.get(200).setUrl("HTTPS://Shop.Example.com/p/205#reviews");
+        Map<String, String> changes = changeTypes(run(state, ScrapedData.URL, second));
+        assertEquals(18, changes.size());
+        assertEquals("changed", changes.get("https://shop.example.com/p/105"));
+        assertEquals("new", changes.get("https://shop.example.com/p/10002"));
+        assertEquals("deleted", changes.get("https://shop.example.com/p/0"));
+        assertNull(changes.get("https://shop.example.com/p/205"));
+        
+        List<ScrapedData> third = products(5, 10003);
+        for (int i = 100; i < 110; i++) {
+            third.get(i).setPrice("$0.99");
+        }
+        assertEquals(0, run(state, ScrapedData.URL, third).size());
+    }
+    
+    @Test
+    void testCustomKeyAndFieldOrder() {
+        Path state = tempDir.resolve("products.delta");
+        ScrapedData data = new ScrapedData("Product", null, "https://shop.example.com/p/1");
+        data.setField("sku", " A-1 ");
+        data.setField("brand", "Acme");
+        data.setField("color", "red");
+        run(state, "sku", List.of(data, new ScrapedData("No SKU", null, null)));
+        
+        ScrapedData reordered = new ScrapedData("Product", null, "https://shop.example.com/p/1");
+        reordered.setField("color", "red");
+        reordered.setField("brand", "Acme");
+        reordered.setField("sku", " A-1 ");
+        assertEquals(DeltaSink.fingerprint(data), DeltaSink.fingerprint(reordered));
+        assertEquals(0, run(state, "sku", List.of(reordered)).size());
+        
+        List<ScrapedData> gone = run(state, "sku", List.of());
+        assertEquals(1, gone.size());
+        assertEquals("A-1", gone.get(0).getField("sku"));
+        assertEquals("deleted", gone.get(0).getField(DeltaSink.CHANGE_TYPE));
+    }
+    
+    @Test
+    void testUncleanStateCountsEverythingAsNew() throws IOException {
+        Path state = tempDir.resolve("products.delta");
+        run(state, ScrapedData.URL, products(0, 100));
+        try (RandomAccessFile table = new RandomAccessFile(state.toFile(), "rw")) {
+            table.seek(16);
+            table.writeInt(0);
+        }
+        
+        List<ScrapedData> output = run(state, ScrapedData.URL, products(0, 100));
+        assertEquals(100, output.size());
+        assertTrue(output.stream().allMatch(data -> "new".equals(data.getField(DeltaSink.CHANGE_TYPE))));
+        assertEquals(0, run(state, ScrapedData.URL, products(0, 100)).size());
+    }
+    
+    @Test
+    void testFailedWriteLeavesStateUnclean() {
+        Path state = tempDir.resolve("products.delta");
+        run(state, ScrapedData.URL, products(0, 100));
+        
+        // The sink fails on the second batch, after the first half of the run was tracked
+        CollectingSink failing = new CollectingSink();
+        failing.failAfter = 1;
+        DeltaSink sink = new DeltaSink(failing, state, ScrapedData.URL);
+        List<ScrapedData> repriced = products(0, 100);
+        repriced.forEach(data -> data.setPrice("$0.99"));
+        sink.writeData(repriced.subList(0, 50));
+        assertThrows(RuntimeException.class, () -> sink.writeData(repriced.subList(50, 100)));
+        sink.close();
+        assertEquals(50, failing.records.size());
+        
+        List<ScrapedData> output = run(state, ScrapedData.URL, repriced);
+        assertEquals(100, output.size());
+        assertTrue(output.stream().allMatch(data -> "new".equals(data.getField(DeltaSink.CHANGE_TYPE))));
+    }
+    
+    @Test
+    void testFailureReportedOnCloseLeavesStateUnclean() {
+        Path state = tempDir.resolve("products.delta");
+        run(state, ScrapedData.URL, products(0, 100));
+        
+        // Written on another thread, so the failure only surfaces when the sink is closed
+        CollectingSink failing = new CollectingSink();
+        failing.failAfter = 0;
+        DeltaSink sink = new DeltaSink(new FanOutSink(List.of("failing"), List.of(failing), 4), state,
+                ScrapedData.URL);
+        List<ScrapedData> repriced = products(0, 50);
+        repriced.forEach(data -> data.setPrice("$0.99"));
+        sink.writeData(repriced);
+        assertThrows(RuntimeException.class, sink::close);
+        
+        List<ScrapedData> output = run(state, ScrapedData.URL, products(0, 100));
+        assertEquals(100, output.size());
+        assertTrue(output.stream().noneMatch(data -> "deleted".equals(data.getField(DeltaSink.CHANGE_TYPE))));
+    }
+    
+    @Test
+    void testFailedSealLeavesStateUnclean() throws IOException {
+        Path state = tempDir.resolve("products.delta");
+        run(state, ScrapedData.URL, products(0, 100));
+        
+        // The records are buffered until close, where the segment cannot be added to the manifest
+        Files.createDirectory(tempDir.resolve("out.manifest.jsonl"));
+        JSONLWriter writer = new JSONLWriter(tempDir.resolve("out.jsonl").toString(), false, false,
+                new SegmentPolicy(0, 0, 0, true));
+        DeltaSink sink = new DeltaSink(writer, state, ScrapedData.URL);
+        List<ScrapedData> repriced = products(0, 100);
+        repriced.forEach(data -> data.setPrice("$0.99"));
+        sink.writeData(repriced);
+        assertThrows(RuntimeException.class, sink::close);
+        
+        List<ScrapedData> output = run(state, ScrapedData.URL, repriced);
+        assertEquals(100, output.size());
+        assertTrue(output.stream().allMatch(data -> "new".equals(data.getField(DeltaSink.CHANGE_TYPE))));
+    }
+    
+    @Test
+    void testInterruptedRunReportsNoDeletions() {
+        Path state = tempDir.resolve("products.delta");
+        run(state, ScrapedData.URL, products(0, 100));
+        
+        CollectingSink collected = new CollectingSink();
+        DeltaSink sink = new DeltaSink(collected, state, ScrapedData.URL);
+        sink.writeData(products(0, 30));
+        Thread.currentThread().interrupt();
+        try {
+            sink.close();
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(0, collected.records.size());
+        
+        assertEquals(100, run(state, ScrapedData.URL, products(0, 100)).size());
+    }
+    
+    private static List<ScrapedData> run(Path state, String keyField, List<ScrapedData> records) {
+        CollectingSink collected = new CollectingSink();
+        DeltaSink sink = new DeltaSink(collected, state, keyField);
+        for (int i = 0; i < records.size(); i += 100) {
+            sink.writeData(records.subList(i, Math.min(records.size(), i + 100)));
+        }
+        sink.close();
+        return collected.records;
+    }
+    
+    private static Map<String, String> changeTypes(List<ScrapedData> records) {
+        Map<String, String> changes = new HashMap<>();
+        for (ScrapedData data : records) {
+            changes.put(data.getUrl(), data.getField(DeltaSink.CHANGE_TYPE));
+        }
+        return changes;
+    }
+    
+    private static List<ScrapedData> products(int from, int to) {
+        List<ScrapedData> records = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            ScrapedData data = new ScrapedData("Product " + i, "Description of product " + i,
+                    "https://shop.example.com/p/" + i);
+            data.setPrice("$" + i);
+            data.setField("brand", i % 2 == 0 ? "Acme" : "Globex");
+            records.add(data);
+        }
+        return records;
+    }
+    
+    private static class CollectingSink implements RecordSink {
+        
+        private final List<ScrapedData> records = new ArrayList<>();
+        private int failAfter = -1;
+        private int batches;
+        
+        @Override
+        public void writeData(List<ScrapedData> dataList) {
+            if (failAfter >= 0 && batches >= failAfter) {
+                throw new RuntimeException("Failed to write to disk");
+            }
+            batches++;
+            records.addAll(dataList);
+        }
+        
+        @Override
+        public void writeData(ScrapedData data) {
+            writeData(List.of(data));
+        }
+        
+        @Override
+        public void flush() {
+        }
+        
+        @Override
+        public void setFsync(boolean fsync) {
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.scraper.core.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import com.example.scraper.model.ScrapedData;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FanOutSinkTest {
+    
+    @Test
+    void testCloseRethrowsFailureOfLastBatch() {
+        CollectingSink good = new CollectingSink();
+        CollectingSink bad = new CollectingSink();
+        bad.failing = true;
+        FanOutSink sink = new FanOutSink(List.of("good", "bad"), List.of(good, bad), 4);
+        
+        // The only batch fails on the sink's thread, so no later call can report it
+        sink.writeData(products(0, 10));
+        RuntimeException e = assertThrows(RuntimeException.class, sink::close);
+        assertTrue(e.getMessage().contains("bad"), e.getMessage());
+        assertEquals(10, good.records.size());
+        assertTrue(good.closed);
+        assertTrue(bad.closed);
+    }
+    
+    @Test
+    void testEverySinkGetsTheSameStream() {
+        List<CollectingSink> sinks = List.of(new CollectingSink(), new CollectingSink(), new CollectingSink());
+        FanOutSink sink = new FanOutSink(List.of("a", "b", "c"), sinks, 4);
+        for (int i = 0; i < 1000; i += 100) {
+            sink.writeData(products(i, i + 100));
+        }
+        sink.writeData(new ScrapedData("Last", null, "https://shop.example.com/last"));
+        sink.flush();
+        sink.close();
+        
+        for (CollectingSink collected : sinks) {
+            assertEquals(1001, collected.records.size());
+            for (int i = 0; i < 1000; i++) {
+                assertEquals("Product " + i, collected.records.get(i).getTitle());
+            }
+            assertEquals("Last", collected.records.get(1000).getTitle());
+            assertEquals(1, collected.flushes);
+            assertTrue(collected.closed);
+        }
+    }
+    
+    @Test
+    void testSlowSinkDoesNotStallOthers() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CollectingSink fast = new CollectingSink();
+        CollectingSink slow = new CollectingSink() {
+            @Override
+            public void writeData(List<ScrapedData> dataList) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.writeData(dataList);
+            }
+        };
+        FanOutSink sink = new FanOutSink(List.of("fast", "slow"), List.of(fast, slow), 16);
+        
+        // The slow sink's batches wait in its own queue while the fast sink keeps writing
+        for (int i = 0; i < 10; i++) {
+            sink.writeData(products(i * 10, i * 10 + 10));
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (fast.size() < 100 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(100, fast.size());
+        assertEquals(0, slow.size());
+        
+        release.countDown();
+        sink.close();
+        assertEquals(100, slow.size());
+    }
+    
+    static List<ScrapedData> products(int from, int to) {
+        List<ScrapedData> records = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            ScrapedData data = new ScrapedData("Product " + i, null, "https://shop" + (i % 7) + ".example.com/p/" + i);
+            data.setPrice("$" + i);
+            records.add(data);
+        }
+        return records;
+    }
+    
+    /**
+     * Sink keeping records in memory, optionally failing every write.
+     */
+    static class CollectingSink implements RecordSink {
+        
+        final List<ScrapedData> records = new ArrayList<>();
+        volatile boolean failing;
+        volatile boolean closed;
+        volatile int flushes;
+        
+        @Override
+        public synchronized void writeData(List<ScrapedData> dataList) {
+            if (failing) {
+                throw new RuntimeException("Failed to write to disk");
+            }
+            records.addAll(dataList);
+        }
+        
+        @Override
+        public void writeData(ScrapedData data) {
+            writeData(List.of(data));
+        }
+        
+        @Override
+        public void flush() {
+            flushes++;
+        }
+        
+        @Override
+        public void setFsync(boolean fsync) {
+        }
+        
+        @Override
+        public void close() {
+            closed = true;
+        }
+        
+        synchronized int size() {
+            return records.size();
+        }
+    }
+}
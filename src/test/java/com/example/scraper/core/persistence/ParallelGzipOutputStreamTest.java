@@ -0,0 +1,161 @@
+package com.example.scraper.core.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import com.example.scraper.model.ScrapedData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelGzipOutputStreamTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void testMembersDecompressTogetherAndAlone() throws IOException, DataFormatException {
+        StringBuilder expected = new StringBuilder();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(compressed, 4096)) {
+            for (int i = 0; i < 5000; i++) {
+                String line = "{\"title\":\"Product " + i + "\",\"url\":\"https://example.com/p/" + i + "\"}\n";
+                expected.append(line);
+                gzip.write(line.getBytes(StandardCharsets.UTF_8));
+                // A record boundary after every line
+                gzip.flush();
+            }
+        }
+        byte[] bytes = compressed.toByteArray();
+        
+        // The whole stream is one ordinary gzip file
+        assertEquals(expected.toString(), new String(gunzip(bytes), StandardCharsets.UTF_8));
+        
+        // Each member decompresses on its own and holds whole lines
+        List<String> members = splitMembers(bytes);
+        assertTrue(members.size() > 10, "expected many members, got " + members.size());
+        StringBuilder joined = new StringBuilder();
+        for (String member : members) {
+            assertTrue(member.endsWith("\n"));
+            joined.append(member);
+        }
+        assertEquals(expected.toString(), joined.toString());
+    }
+    
+    @Test
+    void testDrainWritesPartialBlock() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(compressed);
+        gzip.write("first line\n".getBytes(StandardCharsets.UTF_8));
+        
+        // A record boundary alone keeps the partial block; drain writes it
+        gzip.flush();
+        assertEquals(0, compressed.size());
+        gzip.drain();
+        assertEquals("first line\n", new String(gunzip(compressed.toByteArray()), StandardCharsets.UTF_8));
+        assertEquals(compressed.size(), gzip.getCompressedBytes());
+        
+        gzip.write("second line\n".getBytes(StandardCharsets.UTF_8));
+        gzip.close();
+        assertEquals("first line\nsecond line\n",
+                new String(gunzip(compressed.toByteArray()), StandardCharsets.UTF_8));
+    }
+    
+    @Test
+    void testGzipJsonlWriter() throws IOException {
+        Path output = tempDir.resolve("out.jsonl");
+        JSONLWriter writer = new JSONLWriter(output.toString(), false, true);
+        List<ScrapedData> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(new ScrapedData("Title " + i, "Description " + i, "https://example.com/" + i));
+        }
+        writer.writeData(batch);
+        writer.writeData(new ScrapedData("Last", null, "https://example.com/last"));
+        writer.close();
+        
+        assertEquals(tempDir.resolve("out.jsonl.gz").toFile(), writer.getCurrentFile());
+        String[] lines = new String(gunzip(Files.readAllBytes(tempDir.resolve("out.jsonl.gz"))),
+                StandardCharsets.UTF_8).split("\n");
+        assertEquals(101, lines.length);
+        assertTrue(lines[0].contains("\"title\":\"Title 0\""));
+        assertTrue(lines[100].contains("\"title\":\"Last\""));
+    }
+    
+    @Test
+    void testFrequentFlushesKeepMembersLarge() throws IOException, DataFormatException {
+        Path output = tempDir.resolve("out.jsonl");
+        JSONLWriter writer = new JSONLWriter(output.toString(), false, true);
+        // A fetch-bound crawl: the writer catches up and is flushed after every small page
+        for (int page = 0; page < 4000; page++) {
+            List<ScrapedData> batch = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                int n = page * 5 + i;
+                batch.add(new ScrapedData("Title " + n, "Description of item " + n, "https://example.com/" + n));
+            }
+            writer.writeData(batch);
+            writer.flush();
+        }
+        writer.close();
+        
+        byte[] bytes = Files.readAllBytes(tempDir.resolve("out.jsonl.gz"));
+        List<String> members = splitMembers(bytes);
+        assertEquals(20000, new String(gunzip(bytes), StandardCharsets.UTF_8).split("\n").length);
+        // Every member but the last holds a full block
+        assertTrue(members.size() <= 3, "expected few large members, got " + members.size());
+        for (String member : members.subList(0, members.size() - 1)) {
+            assertTrue(member.length() >= ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE, "member of " + member.length());
+        }
+        
+        // Draining, as for a --flush-ms deadline, ends the member at once
+        JSONLWriter drained = new JSONLWriter(tempDir.resolve("drained.jsonl").toString(), false, true);
+        for (int page = 0; page < 3; page++) {
+            drained.writeData(new ScrapedData("Title " + page, null, "https://example.com/" + page));
+            drained.drain();
+        }
+        drained.close();
+        assertEquals(3, splitMembers(Files.readAllBytes(tempDir.resolve("drained.jsonl.gz"))).size());
+    }
+    
+    private static byte[] gunzip(byte[] bytes) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readAllBytes();
+        }
+    }
+    
+    /**
+     * Splits concatenated gzip members and inflates each one separately.
+     */
+    private static List<String> splitMembers(byte[] bytes) throws DataFormatException {
+        List<String> members = new ArrayList<>();
+        int offset = 0;
+        while (offset < bytes.length) {
+            // Fixed 10-byte header without optional fields, then raw deflate data and an 8-byte trailer
+            assertEquals(0x1f, bytes[offset] & 0xff);
+            assertEquals(0x8b, bytes[offset + 1] & 0xff);
+            Inflater inflater = new Inflater(true);
+            inflater.setInput(bytes, offset + 10, bytes.length - offset - 10);
+            ByteArrayOutputStream member = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                member.write(buffer, 0, n);
+            }
+            offset = bytes.length - inflater.getRemaining() + 8;
+            inflater.end();
+            members.add(member.toString(StandardCharsets.UTF_8));
+        }
+        return members;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.scraper.core.persistence;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.example.scraper.core.persistence.FanOutSinkTest.CollectingSink;
+import com.example.scraper.model.ScrapedData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordSinksTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void testFindsBuiltInFormats() throws Exception {
+        assertEquals(".csv", RecordSinks.provider("csv").getExtension());
+        assertEquals("jsonl", RecordSinks.provider("JSONL").getName());
+        assertTrue(RecordSinks.names().containsAll(List.of("csv", "jsonl", "columnar", "store")));
+        
+        RecordSink sink = RecordSinks.provider("jsonl").create(new SinkOptions(tempDir.resolve("out.jsonl").toString()));
+        assertInstanceOf(JSONLWriter.class, sink);
+        sink.writeData(new ScrapedData("Title", null, "https://example.com/"));
+        sink.close();
+        assertEquals(1, Files.readAllLines(tempDir.resolve("out.jsonl")).size());
+    }
+    
+    @Test
+    void testFindsProviderOnClasspath() {
+        // Registered in this module's test resources, like a format shipped in its own jar
+        RecordSinkProvider provider = RecordSinks.provider("Memory");
+        assertInstanceOf(MemorySinkProvider.class, provider);
+        assertTrue(RecordSinks.names().contains("memory"));
+        assertInstanceOf(CollectingSink.class, provider.create(new SinkOptions("ignored")));
+    }
+    
+    @Test
+    void testUnknownFormat() {
+        assertNull(RecordSinks.provider("parquet"));
+        assertFalse(RecordSinks.names().contains("parquet"));
+    }
+    
+    /**
+     * Provider of in-memory sinks, found through META-INF/services.
+     */
+    public static class MemorySinkProvider implements RecordSinkProvider {
+        
+        @Override
+        public String getName() {
+            return "memory";
+        }
+        
+        @Override
+        public String getExtension() {
+            return ".mem";
+        }
+        
+        @Override
+        public RecordSink create(SinkOptions options) {
+            return new CollectingSink();
+        }
+    }
+}
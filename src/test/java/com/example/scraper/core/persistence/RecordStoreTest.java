@@ -0,0 +1,135 @@
+package com.example.scraper.core.persistence;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.scraper.model.ScrapedData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordStoreTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void testUpsertGetAndDelete() throws IOException {
+        Path dir = tempDir.resolve("products.store");
+        try (RecordStore store = new RecordStore(dir)) {
+            for (int i = 0; i < 10000; i++) {
+                assertTrue(store.put(product(i, "$" + i)));
+            }
+            // Same record again, under a differently written URL
+            assertFalse(store.put(product(5, "$5")));
+            ScrapedData repriced = product(5, "$4.50");
+            repriced.setUrl("HTTPS://Shop.Example.com:443/p/5#reviews");
+            assertTrue(store.put(repriced));
+            assertTrue(store.delete("https://shop.example.com/p/6"));
+            assertFalse(store.delete("https://shop.example.com/p/6"));
+            assertFalse(store.put(new ScrapedData("No URL", null, null)));
+            
+            assertEquals(9999, store.size());
+            assertEquals("$4.50", store.get("https://shop.example.com/p/5").getPrice());
+            assertNull(store.get("https://shop.example.com/p/6"));
+            assertEquals(product(9999, "$9999"), store.get("https://shop.example.com/p/9999"));
+        }
+        
+        try (RecordStore store = new RecordStore(dir, true, 0)) {
+            assertEquals(9999, store.size());
+            assertEquals("$4.50", store.get("https://shop.example.com/p/5").getPrice());
+            assertNull(store.get("https://shop.example.com/p/6"));
+            assertEquals("Product 7", store.get("https://shop.example.com/p/7").getTitle());
+            List<ScrapedData> all = new ArrayList<>();
+            store.forEach(all::add);
+            assertEquals(9999, all.size());
+            assertThrows(IllegalStateException.class, () -> store.put(product(1, "$1")));
+        }
+    }
+    
+    @Test
+    void testCompactionKeepsLatestVersions() throws IOException {
+        Path dir = tempDir.resolve("products.store");
+        try (RecordStore store = new RecordStore(dir, false, 64 * 1024)) {
+            for (int run = 0; run < 5; run++) {
+                for (int i = 0; i < 1000; i++) {
+                    store.put(product(i, "$" + run));
+                }
+            }
+            store.delete("https://shop.example.com/p/0");
+            long before = store.getTotalBytes();
+            assertTrue(store.getSegmentCount() > 1);
+            
+            store.compact();
+            assertEquals(999, store.size());
+            assertEquals(store.getLiveBytes(), store.getTotalBytes());
+            assertTrue(store.getTotalBytes() * 4 < before);
+            assertEquals("$4", store.get("https://shop.example.com/p/999").getPrice());
+            assertNull(store.get("https://shop.example.com/p/0"));
+            store.put(product(1, "$5"));
+        }
+        
+        try (RecordStore store = new RecordStore(dir)) {
+            assertEquals(999, store.size());
+            assertEquals("$5", store.get("https://shop.example.com/p/1").getPrice());
+            assertEquals("$4", store.get("https://shop.example.com/p/2").getPrice());
+        }
+    }
+    
+    @Test
+    void testRecoversFromUncleanShutdown() throws IOException {
+        Path dir = tempDir.resolve("products.store");
+        try (RecordStore store = new RecordStore(dir)) {
+            for (int i = 0; i < 100; i++) {
+                store.put(product(i, "$" + i));
+            }
+            store.delete("https://shop.example.com/p/3");
+        }
+        // As if the process died while appending a record and before marking the index clean
+        Path segment = dir.resolve("segment-000001.log");
+        Files.write(segment, new byte[] {0, 0, 1, 0, 42, 42}, StandardOpenOption.APPEND);
+        try (RandomAccessFile index = new RandomAccessFile(dir.resolve("index").toFile(), "rw")) {
+            index.seek(16);
+            index.writeInt(0);
+        }
+        assertThrows(IOException.class, () -> new RecordStore(dir, true, 0));
+        
+        try (RecordStore store = new RecordStore(dir)) {
+            assertEquals(99, store.size());
+            assertNull(store.get("https://shop.example.com/p/3"));
+            assertEquals("$42", store.get("https://shop.example.com/p/42").getPrice());
+            store.put(product(100, "$100"));
+        }
+        try (RecordStore store = new RecordStore(dir, true, 0)) {
+            assertEquals(100, store.size());
+            assertEquals("$100", store.get("https://shop.example.com/p/100").getPrice());
+        }
+    }
+    
+    @Test
+    void testCanonicalKey() {
+        assertEquals("https://shop.example.com/p/1?a=b", RecordStore.canonicalKey(" HTTPS://Shop.Example.COM:443/p/1?a=b#top "));
+        assertEquals("http://example.com:8080/", RecordStore.canonicalKey("http://Example.com:8080"));
+        assertEquals("http://example.com/?q=1", RecordStore.canonicalKey("http://example.com?q=1"));
+        assertEquals("/p/1", RecordStore.canonicalKey("/p/1#x"));
+        assertNull(RecordStore.canonicalKey(" "));
+    }
+    
+    private static ScrapedData product(int i, String price) {
+        ScrapedData data = new ScrapedData("Product " + i, "Description of product " + i,
+                "https://shop.example.com/p/" + i);
+        data.setPrice(price);
+        data.setField("brand", i % 2 == 0 ? "Acme" : "Globex");
+        return data;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.scraper.core.persistence;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentManagerTest {
+    
+    private static final SegmentPolicy SEALED = new SegmentPolicy(0, 2, 0, true);
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void testSealRenamesPartFile() throws IOException {
+        SegmentManager segments = new SegmentManager(tempDir.resolve("out.jsonl").toString(), false, false, SEALED);
+        OutputStream stream = segments.open();
+        Path part = tempDir.resolve(".out-000001.jsonl.part");
+        assertEquals(part.toFile(), segments.getCurrentFile());
+        
+        write(segments, stream, "{\"id\":1}\n");
+        segments.flush();
+        // Until sealed, only the hidden part file exists
+        assertTrue(Files.exists(part));
+        assertFalse(Files.exists(tempDir.resolve("out-000001.jsonl")));
+        assertFalse(Files.exists(segments.getManifestPath()));
+        
+        segments.seal();
+        assertFalse(Files.exists(part));
+        assertEquals("{\"id\":1}\n", Files.readString(tempDir.resolve("out-000001.jsonl")));
+        assertEquals(tempDir.resolve("out-000001.jsonl").toFile(), segments.getCurrentFile());
+    }
+    
+    @Test
+    void testManifestListsRecordsBytesAndChecksum() throws IOException, NoSuchAlgorithmException {
+        SegmentManager segments = new SegmentManager(tempDir.resolve("out.jsonl").toString(), false, false, SEALED);
+        OutputStream stream = segments.open();
+        write(segments, stream, "{\"id\":1}\n");
+        write(segments, stream, "{\"id\":2}\n");
+        assertTrue(segments.shouldRotate(0));
+        segments.seal();
+        stream = segments.open();
+        write(segments, stream, "{\"id\":3}\n");
+        segments.seal();
+        
+        assertEquals(tempDir.resolve("out.manifest.jsonl"), segments.getManifestPath());
+        List<String> lines = Files.readAllLines(segments.getManifestPath());
+        assertEquals(2, lines.size());
+        ObjectMapper mapper = new ObjectMapper();
+        for (int i = 0; i < lines.size(); i++) {
+            JsonNode entry = mapper.readTree(lines.get(i));
+            Path segment = tempDir.resolve(entry.get("segment").asText());
+            byte[] content = Files.readAllBytes(segment);
+            assertEquals(String.format("out-%06d.jsonl", i + 1), segment.getFileName().toString());
+            assertEquals(i == 0 ? 2 : 1, entry.get("records").asLong());
+            assertEquals(content.length, entry.get("bytes").asLong());
+            assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)),
+                    entry.get("sha256").asText());
+            assertTrue(entry.has("sealed_at"));
+        }
+    }
+    
+    @Test
+    void testEmptySegmentIsDiscarded() throws IOException {
+        SegmentManager segments = new SegmentManager(tempDir.resolve("out.jsonl").toString(), false, false, SEALED);
+        segments.open();
+        segments.seal();
+        assertEquals(0, segments.getFileCount());
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+        
+        // The discarded number is used again
+        OutputStream stream = segments.open();
+        write(segments, stream, "{\"id\":1}\n");
+        segments.seal();
+        assertTrue(Files.exists(tempDir.resolve("out-000001.jsonl")));
+        assertEquals(1, Files.readAllLines(segments.getManifestPath()).size());
+    }
+    
+    @Test
+    void testNumberingResumesAfterExistingSegments() throws IOException {
+        Files.writeString(tempDir.resolve("out-000002.jsonl.gz"), "");
+        // Left unfinished by a crashed run
+        Files.writeString(tempDir.resolve(".out-000004.jsonl.gz.part"), "");
+        Files.writeString(tempDir.resolve("other-000009.jsonl.gz"), "");
+        
+        SegmentManager segments = new SegmentManager(tempDir.resolve("out.jsonl").toString(), false, true, SEALED);
+        OutputStream stream = segments.open();
+        assertEquals(tempDir.resolve(".out-000005.jsonl.gz.part").toFile(), segments.getCurrentFile());
+        write(segments, stream, "{\"id\":1}\n");
+        segments.seal();
+        assertTrue(Files.exists(tempDir.resolve("out-000005.jsonl.gz")));
+        // The earlier part file is left alone
+        assertTrue(Files.exists(tempDir.resolve(".out-000004.jsonl.gz.part")));
+        
+        segments.open();
+        assertEquals(tempDir.resolve(".out-000006.jsonl.gz.part").toFile(), segments.getCurrentFile());
+        segments.seal();
+    }
+    
+    private static void write(SegmentManager segments, OutputStream stream, String line) throws IOException {
+        stream.write(line.getBytes(StandardCharsets.UTF_8));
+        segments.addRecords(1);
+    }
+}
@@ -1,12 +1,17 @@
 package com.example.scraper.core.robots;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
 
+import com.sun.net.httpserver.HttpServer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class RobotsTxtComplianceTest {
@@ -34,6 +39,30 @@ class RobotsTxtComplianceTest {
         assertTrue(delay >= 1000);
     }
     
+    @Test
+    void testRulesAndCrawlDelayFromSiteWithPort() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/robots.txt", exchange -> {
+            byte[] body = "User-agent: *\nCrawl-delay: 2\nDisallow: /private\n".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        try {
+            String site = "http://localhost:" + server.getAddress().getPort();
+            
+            // Rules come from the robots.txt of the same port, looked up from a full page URL
+            assertFalse(robotsCompliance.isUrlAllowed(site + "/private/page"));
+            assertTrue(robotsCompliance.isUrlAllowed(site + "/public/page"));
+            assertEquals(2000, robotsCompliance.getCrawlDelay(site + "/public/page"));
+            assertEquals(2000, robotsCompliance.getCrawlDelay(site, 0));
+            assertEquals(1, robotsCompliance.getCacheSize());
+        } finally {
+            server.stop(0);
+        }
+    }
+    
     @Test
     void testIsUrlAllowed() {
         // Test with a URL that should be allowed